@@ -37,6 +37,8 @@ CREATE INDEX idx_users_role ON users(role);
 CREATE INDEX idx_users_enabled ON users(enabled);
 */
 
+-- Schema changes and indexes are applied by Flyway (src/main/resources/db/migration)
+
 -- Verify the table structure
 SELECT column_name, data_type, is_nullable, column_default 
 FROM information_schema.columns 
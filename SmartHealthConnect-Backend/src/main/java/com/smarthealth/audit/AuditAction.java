@@ -0,0 +1,10 @@
+package com.smarthealth.audit;
+
+// What was done with a patient's data
+public enum AuditAction {
+    VIEW_RECORDS,
+    SEARCH_RECORDS,
+    VIEW_VITALS,
+    VIEW_ATTACHMENTS,
+    DOWNLOAD_ATTACHMENT
+}
@@ -0,0 +1,16 @@
+package com.smarthealth.audit;
+
+import java.time.LocalDateTime;
+
+/**
+ * One access to a patient's data: who (actor id and role), whose data, what
+ * was done, through which endpoint, and how many items were returned.
+ */
+public record AuditEvent(LocalDateTime occurredAt,
+                         long actorId,
+                         String actorRole,
+                         long patientId,
+                         AuditAction action,
+                         String resource,
+                         int itemCount) {
+}
@@ -0,0 +1,319 @@
+package com.smarthealth.audit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only audit files in a directory, rotated by size. Each file starts
+ * with a magic number and version and then holds frames, all big-endian:
+ * <pre>
+ * length   payload bytes                                     (1 int)
+ * crc      CRC32 of the payload                              (1 int)
+ * payload  occurredAt micros, actorId, patientId, itemCount,  (3 longs, 1 int,
+ *          actorRole, action, resource                         3 modified UTF-8)
+ * </pre>
+ * A frame is identified by its file number and offset. Every append is
+ * fsynced before it returns; on open, a torn frame at the end of the newest
+ * file is cut off. The directory also holds a random node id, so positions
+ * from different instances never clash once shipped to the database.
+ */
+public final class AuditSegmentLog implements Closeable {
+
+    static final int MAGIC = 0x41554454;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int FRAME_HEADER_BYTES = 8;
+    static final int MAX_FRAME_BYTES = 64 * 1024;
+
+    private static final String SUFFIX = ".audit";
+    private static final String NODE_FILE = "node-id";
+
+    public record Position(long segment, long offset) implements Comparable<Position> {
+
+        @Override
+        public int compareTo(Position other) {
+            int bySegment = Long.compare(segment, other.segment);
+            return bySegment != 0 ? bySegment : Long.compare(offset, other.offset);
+        }
+    }
+
+    public record Entry(Position position, int length, AuditEvent event) {
+
+        // Where the frame after this one starts
+        public Position next() {
+            return new Position(position.segment(), position.offset() + length);
+        }
+    }
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final String nodeId;
+    private final TreeSet<Long> segments = new TreeSet<>();
+    private FileChannel current;
+    private long currentSegment;
+    private long currentSize;
+
+    private AuditSegmentLog(Path dir, long segmentBytes, String nodeId) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.nodeId = nodeId;
+    }
+
+    public static AuditSegmentLog open(Path dir, long segmentBytes) throws IOException {
+        Files.createDirectories(dir);
+        AuditSegmentLog log = new AuditSegmentLog(dir, segmentBytes, readNodeId(dir));
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(f -> f.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .forEach(name -> log.segments.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length()))));
+        }
+        if (log.segments.isEmpty()) {
+            log.openSegment(0);
+        } else {
+            log.recover(log.segments.last());
+        }
+        return log;
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    // Where the next frame will go
+    public synchronized Position end() {
+        return new Position(currentSegment, currentSize);
+    }
+
+    public synchronized Position start() {
+        return new Position(segments.first(), HEADER_BYTES);
+    }
+
+    /**
+     * Appends the events and forces them to disk. The batch goes into one
+     * file; a new file is started first if it would overflow the current one.
+     */
+    public synchronized List<Entry> append(List<AuditEvent> events) throws IOException {
+        List<byte[]> frames = new ArrayList<>(events.size());
+        long batchBytes = 0;
+        for (AuditEvent event : events) {
+            byte[] frame = frame(event);
+            frames.add(frame);
+            batchBytes += frame.length;
+        }
+        if (currentSize > HEADER_BYTES && currentSize + batchBytes > segmentBytes) {
+            current.close();
+            openSegment(currentSegment + 1);
+        }
+
+        List<Entry> entries = new ArrayList<>(events.size());
+        ByteBuffer buffer = ByteBuffer.allocate((int) batchBytes);
+        long offset = currentSize;
+        for (int i = 0; i < frames.size(); i++) {
+            entries.add(new Entry(new Position(currentSegment, offset), frames.get(i).length, events.get(i)));
+            buffer.put(frames.get(i));
+            offset += frames.get(i).length;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            current.write(buffer, currentSize + buffer.position());
+        }
+        current.force(false);
+        currentSize = offset;
+        return entries;
+    }
+
+    /**
+     * Reads up to max frames starting at the given position, moving on to
+     * later files as each one is exhausted. Returns fewer when it reaches the end.
+     */
+    public synchronized List<Entry> read(Position from, int max) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        Position position = from;
+        while (entries.size() < max) {
+            Long segment = segments.ceiling(position.segment());
+            if (segment == null) {
+                break;
+            }
+            long offset = segment == position.segment() ? Math.max(position.offset(), HEADER_BYTES) : HEADER_BYTES;
+            long limit = segment == currentSegment ? currentSize : Files.size(segmentPath(segment));
+            try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+                while (entries.size() < max && offset < limit) {
+                    byte[] payload = readFrame(channel, offset, limit);
+                    if (payload == null) {
+                        // Only a crash mid-rotation leaves a damaged frame in an older file
+                        offset = limit;
+                        break;
+                    }
+                    entries.add(new Entry(new Position(segment, offset), FRAME_HEADER_BYTES + payload.length, decode(payload)));
+                    offset += FRAME_HEADER_BYTES + payload.length;
+                }
+            }
+            if (segment == currentSegment || entries.size() >= max) {
+                break;
+            }
+            position = new Position(segment + 1, HEADER_BYTES);
+        }
+        return entries;
+    }
+
+    // Deletes whole files older than the given one, always keeping the newest keep files
+    public synchronized int deleteBefore(long segment, int keep) throws IOException {
+        int deleted = 0;
+        while (segments.size() > Math.max(1, keep) && segments.first() < segment && segments.first() < currentSegment) {
+            Files.deleteIfExists(segmentPath(segments.pollFirst()));
+            deleted++;
+        }
+        return deleted;
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        current.close();
+    }
+
+    private void openSegment(long segment) throws IOException {
+        Path path = segmentPath(segment);
+        current = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            current.write(header, header.position());
+        }
+        current.force(true);
+        segments.add(segment);
+        currentSegment = segment;
+        currentSize = HEADER_BYTES;
+    }
+
+    // Finds the last whole frame of the newest file and cuts anything after it
+    private void recover(long segment) throws IOException {
+        Path path = segmentPath(segment);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (size < HEADER_BYTES || channel.read(header, 0) < HEADER_BYTES
+                || header.flip().getInt() != MAGIC || header.getInt() != VERSION) {
+            // Never got its header; start the file afresh
+            channel.close();
+            Files.delete(path);
+            segments.remove(segment);
+            openSegment(segment);
+            return;
+        }
+        long offset = HEADER_BYTES;
+        byte[] payload;
+        while (offset < size && (payload = readFrame(channel, offset, size)) != null) {
+            offset += FRAME_HEADER_BYTES + payload.length;
+        }
+        if (offset < size) {
+            channel.truncate(offset);
+            channel.force(true);
+        }
+        current = channel;
+        currentSegment = segment;
+        currentSize = offset;
+    }
+
+    // Null when the frame is torn or fails its checksum
+    private static byte[] readFrame(FileChannel channel, long offset, long limit) throws IOException {
+        if (offset + FRAME_HEADER_BYTES > limit) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+        readFully(channel, header, offset);
+        int length = header.getInt();
+        int crc = header.getInt();
+        if (length <= 0 || length > MAX_FRAME_BYTES || offset + FRAME_HEADER_BYTES + length > limit) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, offset + FRAME_HEADER_BYTES);
+        CRC32 checksum = new CRC32();
+        checksum.update(payload.array());
+        return (int) checksum.getValue() == crc ? payload.array() : null;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of audit segment");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static byte[] frame(AuditEvent event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        LocalDateTime at = event.occurredAt();
+        out.writeLong(at.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + at.getNano() / 1_000);
+        out.writeLong(event.actorId());
+        out.writeLong(event.patientId());
+        out.writeInt(event.itemCount());
+        out.writeUTF(event.actorRole());
+        out.writeUTF(event.action().name());
+        out.writeUTF(event.resource());
+        byte[] payload = bytes.toByteArray();
+
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        return ByteBuffer.allocate(FRAME_HEADER_BYTES + payload.length)
+                .putInt(payload.length)
+                .putInt((int) checksum.getValue())
+                .put(payload)
+                .array();
+    }
+
+    private static AuditEvent decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long micros = in.readLong();
+        LocalDateTime at = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+        long actorId = in.readLong();
+        long patientId = in.readLong();
+        int itemCount = in.readInt();
+        String actorRole = in.readUTF();
+        AuditAction action = AuditAction.valueOf(in.readUTF());
+        String resource = in.readUTF();
+        return new AuditEvent(at, actorId, actorRole, patientId, action, resource, itemCount);
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("%020d", segment) + SUFFIX);
+    }
+
+    // Created once per directory, written beside its final name and renamed into place
+    private static String readNodeId(Path dir) throws IOException {
+        Path file = dir.resolve(NODE_FILE);
+        if (Files.exists(file)) {
+            return Files.readString(file, StandardCharsets.UTF_8).trim();
+        }
+        String nodeId = UUID.randomUUID().toString();
+        Path tmp = dir.resolve(NODE_FILE + ".tmp");
+        Files.writeString(tmp, nodeId, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return nodeId;
+    }
+}
@@ -3,12 +3,26 @@ package com.smarthealth.controller;
 import com.smarthealth.entity.Appointment;
 import com.smarthealth.entity.User;
 import com.smarthealth.repository.AppointmentRepository;
+import com.smarthealth.repository.DoctorRepository;
 import com.smarthealth.repository.UserRepository;
+import com.smarthealth.security.JwtUtils;
+import com.smarthealth.security.UserPrincipal;
+import com.smarthealth.service.AppointmentBookingService;
+import com.smarthealth.service.AppointmentStatusService;
+import com.smarthealth.service.DoctorBoardService;
+import com.smarthealth.service.SlotAvailabilityIndex;
+import com.smarthealth.service.UserCounterService;
+import com.smarthealth.util.PageCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -22,25 +36,64 @@ import java.util.Optional;
 @CrossOrigin(origins = "http://localhost:3000")
 public class AppointmentController {
 
+    private static final int MAX_AVAILABILITY_DAYS = 31;
+    private static final int MAX_AVAILABILITY_SLOTS = 100;
+
     @Autowired
     private AppointmentRepository appointmentRepository;
 
+    // Page size when a cursor is sent without a limit
+    @Value("${app.pagination.defaultLimit:200}")
+    private int defaultPageSize;
+
+    @Value("${app.pagination.maxLimit:500}")
+    private int maxPageSize;
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private AppointmentBookingService appointmentBookingService;
+
+    @Autowired
+    private SlotAvailabilityIndex slotAvailabilityIndex;
+
+    @Autowired
+    private AppointmentStatusService appointmentStatusService;
+
+    @Autowired
+    private DoctorBoardService doctorBoardService;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserCounterService userCounterService;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
     @GetMapping("/patient")
     @PreAuthorize("hasRole('PATIENT')")
-    public ResponseEntity<?> getPatientAppointments(Authentication auth) {
+    public ResponseEntity<?> getPatientAppointments(@RequestParam(required = false) String cursor,
+                                                   @RequestParam(required = false) Integer limit,
+                                                   Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
-            List<Appointment> appointments = appointmentRepository.findByPatientId(user.getId());
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            Pageable page = PageCursor.window(cursor, limit, defaultPageSize, maxPageSize);
+            int pageSize = PageCursor.pageSize(page);
             
-            List<Map<String, Object>> appointmentList = appointments.stream().map(this::mapAppointmentToResponse).toList();
+            List<Appointment> appointments;
+            if (cursor == null) {
+                appointments = appointmentRepository.findPatientPage(user.getId(), page);
+            } else {
+                PageCursor.Position after = PageCursor.decode(cursor);
+                appointments = appointmentRepository.findPatientPageAfter(user.getId(), after.time(), after.id(), page);
+            }
             
-            return ResponseEntity.ok(Map.of(
-                "appointments", appointmentList,
-                "count", appointments.size()
-            ));
+            return ResponseEntity.ok(toAppointmentPage(appointments, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch appointments: " + e.getMessage()));
         }
@@ -48,17 +101,25 @@ public class AppointmentController {
 
     @GetMapping("/doctor")
     @PreAuthorize("hasRole('DOCTOR')")
-    public ResponseEntity<?> getDoctorAppointments(Authentication auth) {
+    public ResponseEntity<?> getDoctorAppointments(@RequestParam(required = false) String cursor,
+                                                   @RequestParam(required = false) Integer limit,
+                                                   Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
-            List<Appointment> appointments = appointmentRepository.findByDoctorId(user.getId());
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            Pageable page = PageCursor.window(cursor, limit, defaultPageSize, maxPageSize);
+            int pageSize = PageCursor.pageSize(page);
             
-            List<Map<String, Object>> appointmentList = appointments.stream().map(this::mapAppointmentToResponse).toList();
+            List<Appointment> appointments;
+            if (cursor == null) {
+                appointments = appointmentRepository.findDoctorPage(user.getId(), page);
+            } else {
+                PageCursor.Position after = PageCursor.decode(cursor);
+                appointments = appointmentRepository.findDoctorPageAfter(user.getId(), after.time(), after.id(), page);
+            }
             
-            return ResponseEntity.ok(Map.of(
-                "appointments", appointmentList,
-                "count", appointments.size()
-            ));
+            return ResponseEntity.ok(toAppointmentPage(appointments, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch appointments: " + e.getMessage()));
         }
@@ -68,7 +129,7 @@ public class AppointmentController {
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<?> getTodayAppointments(Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
             LocalDateTime startOfDay = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0).withNano(0);
             LocalDateTime endOfDay = startOfDay.plusDays(1);
             List<Appointment> appointments = appointmentRepository.findTodayAppointmentsByDoctor(user.getId(), startOfDay, endOfDay);
@@ -84,10 +145,29 @@ public class AppointmentController {
         }
     }
 
+    // EventSource cannot set headers, so the stream is opened with ?token= from here
+    @PostMapping("/doctor/today/stream-token")
+    @PreAuthorize("hasRole('DOCTOR')")
+    public ResponseEntity<?> getStreamToken(Authentication auth) {
+        UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+        return ResponseEntity.ok(Map.of(
+            "token", jwtUtils.generateStreamToken(user),
+            "expiresIn", jwtUtils.getStreamExpirationMs()
+        ));
+    }
+
+    // Live version of /doctor/today: a snapshot, then upsert/remove events as appointments change
+    @GetMapping(value = "/doctor/today/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('DOCTOR')")
+    public SseEmitter streamTodayAppointments(Authentication auth) {
+        UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+        return doctorBoardService.subscribe(user.getId());
+    }
+
     @GetMapping("/upcoming")
     public ResponseEntity<?> getUpcomingAppointments(Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
             List<Appointment> appointments;
             
             if (user.getRole() == User.Role.PATIENT) {
@@ -109,11 +189,74 @@ public class AppointmentController {
         }
     }
 
+    @GetMapping("/availability")
+    public ResponseEntity<?> getDoctorAvailability(@RequestParam Long doctorId,
+                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                   @RequestParam(required = false) Integer durationMinutes,
+                                                   @RequestParam(defaultValue = "10") int limit) {
+        try {
+            Optional<User> doctorOpt = userRepository.findById(doctorId);
+            if (doctorOpt.isEmpty() || doctorOpt.get().getRole() != User.Role.DOCTOR) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Doctor not found"));
+            }
+            return findFreeSlots(List.of(doctorId), from, to, durationMinutes, limit);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch availability: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/availability/specialization")
+    public ResponseEntity<?> getSpecializationAvailability(@RequestParam String specialization,
+                                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                           @RequestParam(required = false) Integer durationMinutes,
+                                                           @RequestParam(defaultValue = "10") int limit) {
+        try {
+            List<Long> doctorIds = doctorRepository.findActiveDoctorUserIdsBySpecialization(specialization);
+            return findFreeSlots(doctorIds, from, to, durationMinutes, limit);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch availability: " + e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<?> findFreeSlots(List<Long> doctorIds, LocalDateTime from, LocalDateTime to,
+                                            Integer durationMinutes, int limit) {
+        LocalDateTime start = from != null ? from : LocalDateTime.now();
+        LocalDateTime end = to != null ? to : start.plusDays(14);
+        if (!end.isAfter(start) || end.isAfter(start.plusDays(MAX_AVAILABILITY_DAYS))) {
+            return ResponseEntity.badRequest().body(Map.of("error",
+                "Invalid range: 'to' must be after 'from' and within " + MAX_AVAILABILITY_DAYS + " days"));
+        }
+        int duration = durationMinutes != null && durationMinutes > 0 ? durationMinutes : Appointment.DEFAULT_DURATION_MINUTES;
+        int cappedLimit = Math.max(1, Math.min(limit, MAX_AVAILABILITY_SLOTS));
+
+        List<Map<String, Object>> slots = slotAvailabilityIndex.findFreeSlots(doctorIds, start, end, duration, cappedLimit)
+            .stream()
+            .map(slot -> Map.<String, Object>of(
+                "doctorId", slot.doctorId(),
+                "start", slot.start().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+                "end", slot.end().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)))
+            .toList();
+
+        return ResponseEntity.ok(Map.of(
+            "slots", slots,
+            "count", slots.size()
+        ));
+    }
+
     @PostMapping("/book")
     @PreAuthorize("hasRole('PATIENT')")
     public ResponseEntity<?> bookAppointment(@RequestBody AppointmentRequest request, Authentication auth) {
         try {
-            User patient = (User) auth.getPrincipal();
+            UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
+            
+            Optional<User> patientOpt = userRepository.findById(principal.getId());
+            if (patientOpt.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Patient not found"));
+            }
+            
+            User patient = patientOpt.get();
             
             Optional<User> doctorOpt = userRepository.findById(request.getDoctorId());
             if (doctorOpt.isEmpty()) {
@@ -125,29 +268,29 @@ public class AppointmentController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Selected user is not a doctor"));
             }
             
-            // Check for conflicts
-            LocalDateTime startTime = request.getAppointmentDate();
-            LocalDateTime endTime = startTime.plusMinutes(request.getDurationMinutes() != null ? request.getDurationMinutes() : 30);
-            
-            List<Appointment> conflicts = appointmentRepository.findConflictingAppointments(
-                doctor.getId(), startTime, endTime);
-            
-            if (!conflicts.isEmpty()) {
-                return ResponseEntity.badRequest().body(Map.of("error", "Doctor is not available at this time"));
+            int durationMinutes = request.getDurationMinutes() != null
+                    ? request.getDurationMinutes() : Appointment.DEFAULT_DURATION_MINUTES;
+            if (durationMinutes <= 0 || durationMinutes > Appointment.MAX_DURATION_MINUTES) {
+                return ResponseEntity.badRequest().body(Map.of("error",
+                    "Duration must be between 1 and " + Appointment.MAX_DURATION_MINUTES + " minutes"));
             }
-            
             Appointment appointment = new Appointment(patient, doctor, request.getAppointmentDate(), 
                                                     request.getType(), request.getReason());
-            appointment.setDurationMinutes(request.getDurationMinutes());
+            appointment.setDurationMinutes(durationMinutes);
             appointment.setIsVideoConsultation(request.getIsVideoConsultation());
             
-            Appointment saved = appointmentRepository.save(appointment);
+            // Conflict check and insert are atomic per doctor
+            Appointment saved = appointmentBookingService.book(appointment);
             
             return ResponseEntity.ok(Map.of(
                 "message", "Appointment booked successfully",
                 "appointmentId", saved.getId(),
                 "appointment", mapAppointmentToResponse(saved)
             ));
+        } catch (AppointmentBookingService.SlotUnavailableException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (AppointmentBookingService.BookingBusyException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Failed to book appointment: " + e.getMessage()));
         }
@@ -158,34 +301,32 @@ public class AppointmentController {
                                                    @RequestBody Map<String, String> request, 
                                                    Authentication auth) {
         try {
-            Optional<Appointment> appointmentOpt = appointmentRepository.findById(id);
-            if (appointmentOpt.isEmpty()) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            Appointment appointment = appointmentOpt.get();
-            User user = (User) auth.getPrincipal();
-            
-            // Check if user has permission to update this appointment
-            if (!appointment.getPatient().getId().equals(user.getId()) && 
-                !appointment.getDoctor().getId().equals(user.getId())) {
-                return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
-            }
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
             
             String statusStr = request.get("status");
-            Appointment.Status status = Appointment.Status.valueOf(statusStr.toUpperCase());
-            appointment.setStatus(status);
-            
-            if (request.containsKey("notes")) {
-                appointment.setNotes(request.get("notes"));
+            if (statusStr == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Status is required"));
             }
+            Appointment.Status status = Appointment.Status.valueOf(statusStr.toUpperCase());
+            Long expectedVersion = request.get("version") != null ? Long.valueOf(request.get("version")) : null;
             
-            Appointment updated = appointmentRepository.save(appointment);
+            // Transition rules, access check and version check are all part of one conditional UPDATE
+            Appointment updated = appointmentStatusService.transition(id, user.getId(), status,
+                request.get("notes"), expectedVersion);
             
             return ResponseEntity.ok(Map.of(
                 "message", "Appointment status updated successfully",
                 "appointment", mapAppointmentToResponse(updated)
             ));
+        } catch (AppointmentStatusService.TransitionException e) {
+            return switch (e.getRejection()) {
+                case NOT_FOUND -> ResponseEntity.notFound().build();
+                case ACCESS_DENIED -> ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
+                case STALE_VERSION -> ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+                case INVALID_TRANSITION -> ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            };
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid status or version"));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Failed to update appointment: " + e.getMessage()));
         }
@@ -194,17 +335,14 @@ public class AppointmentController {
     @GetMapping("/stats")
     public ResponseEntity<?> getAppointmentStats(Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
             Map<String, Object> stats = new HashMap<>();
             
-            if (user.getRole() == User.Role.PATIENT) {
-                stats.put("total", appointmentRepository.countAppointmentsByPatientAndStatus(user.getId(), null));
-                stats.put("scheduled", appointmentRepository.countAppointmentsByPatientAndStatus(user.getId(), Appointment.Status.SCHEDULED));
-                stats.put("completed", appointmentRepository.countAppointmentsByPatientAndStatus(user.getId(), Appointment.Status.COMPLETED));
-            } else if (user.getRole() == User.Role.DOCTOR) {
-                stats.put("total", appointmentRepository.countAppointmentsByDoctorAndStatus(user.getId(), null));
-                stats.put("scheduled", appointmentRepository.countAppointmentsByDoctorAndStatus(user.getId(), Appointment.Status.SCHEDULED));
-                stats.put("completed", appointmentRepository.countAppointmentsByDoctorAndStatus(user.getId(), Appointment.Status.COMPLETED));
+            if (user.getRole() == User.Role.PATIENT || user.getRole() == User.Role.DOCTOR) {
+                UserCounterService.UserCounters counters = userCounterService.get(user.getId());
+                stats.put("total", counters.appointments());
+                stats.put("scheduled", counters.appointments(Appointment.Status.SCHEDULED));
+                stats.put("completed", counters.appointments(Appointment.Status.COMPLETED));
             }
             
             return ResponseEntity.ok(stats);
@@ -213,6 +351,20 @@ public class AppointmentController {
         }
     }
 
+    // Same keys as the old unpaged listing, plus the cursor for the next page
+    private Map<String, Object> toAppointmentPage(List<Appointment> rows, int pageSize) {
+        boolean hasMore = rows.size() > pageSize;
+        List<Appointment> page = hasMore ? rows.subList(0, pageSize) : rows;
+        Appointment last = page.isEmpty() ? null : page.get(page.size() - 1);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("appointments", page.stream().map(this::mapAppointmentToResponse).toList());
+        response.put("count", page.size());
+        response.put("hasMore", hasMore);
+        response.put("nextCursor", hasMore ? PageCursor.encode(last.getAppointmentDate(), last.getId()) : null);
+        return response;
+    }
+
     private Map<String, Object> mapAppointmentToResponse(Appointment appointment) {
         Map<String, Object> response = new HashMap<>();
         response.put("id", appointment.getId());
@@ -223,6 +375,7 @@ public class AppointmentController {
         response.put("notes", appointment.getNotes());
         response.put("durationMinutes", appointment.getDurationMinutes());
         response.put("isVideoConsultation", appointment.getIsVideoConsultation());
+        response.put("version", appointment.getVersion());
         response.put("createdAt", appointment.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
         
         // Patient info
@@ -0,0 +1,360 @@
+package com.smarthealth.controller;
+
+import com.smarthealth.audit.AuditAction;
+import com.smarthealth.entity.MedicalRecord;
+import com.smarthealth.entity.RecordAttachment;
+import com.smarthealth.entity.User;
+import com.smarthealth.repository.MedicalRecordRepository;
+import com.smarthealth.repository.RecordAttachmentRepository;
+import com.smarthealth.security.UserPrincipal;
+import com.smarthealth.service.AttachmentStore;
+import com.smarthealth.service.AuditLog;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@RestController
+@RequestMapping("/medical-records/{recordId}/attachments")
+@CrossOrigin(origins = "http://localhost:3000")
+public class AttachmentController {
+
+    private static final Pattern CONTENT_TYPE = Pattern.compile("[a-z0-9][a-z0-9.+-]*/[a-z0-9][a-z0-9.+-]*");
+    private static final Pattern SINGLE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    // Tomcat sends the file itself with FileChannel.transferTo when the connector supports it
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Autowired
+    private RecordAttachmentRepository recordAttachmentRepository;
+
+    @Autowired
+    private AttachmentStore attachmentStore;
+
+    @Autowired
+    private AuditLog auditLog;
+
+    // Browser form upload; the container spools the part to disk before this runs
+    @PostMapping(consumes = "multipart/form-data")
+    @PreAuthorize("hasRole('DOCTOR')")
+    public ResponseEntity<?> uploadMultipart(@PathVariable Long recordId,
+                                             @RequestParam("file") MultipartFile file,
+                                             Authentication auth) {
+        try (InputStream input = file.getInputStream()) {
+            return upload(recordId, input, file.getOriginalFilename(), file.getContentType(), auth);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to store attachment: " + e.getMessage()));
+        }
+    }
+
+    // Raw request body, streamed straight from the socket into the store; name the file with ?filename=
+    @PostMapping(consumes = "!multipart/form-data")
+    @PreAuthorize("hasRole('DOCTOR')")
+    public ResponseEntity<?> uploadRaw(@PathVariable Long recordId,
+                                       @RequestParam(required = false) String filename,
+                                       HttpServletRequest request,
+                                       Authentication auth) {
+        if (request.getContentLengthLong() > attachmentStore.maxBytes()) {
+            return ResponseEntity.status(413).body(Map.of("error", "Attachment exceeds the limit of "
+                    + attachmentStore.maxBytes() + " bytes"));
+        }
+        try (InputStream input = request.getInputStream()) {
+            return upload(recordId, input, filename, request.getContentType(), auth);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to store attachment: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<?> listAttachments(@PathVariable Long recordId, Authentication auth) {
+        try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            Optional<MedicalRecord> record = medicalRecordRepository.findWithPartiesById(recordId);
+            if (record.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (!canRead(user, record.get())) {
+                return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
+            }
+
+            List<RecordAttachment> attachments = recordAttachmentRepository.findByRecord(recordId);
+            auditLog.record(user.getId(), user.getRole(), record.get().getPatient().getId(),
+                    AuditAction.VIEW_ATTACHMENTS, "/medical-records/" + recordId + "/attachments", attachments.size());
+            return ResponseEntity.ok(Map.of(
+                "attachments", attachments.stream().map(this::mapAttachmentToResponse).toList(),
+                "count", attachments.size()
+            ));
+        } catch (AuditLog.SaturatedException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch attachments: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Sends the file. The ETag is the content hash, so conditional GETs and
+     * If-Range need no file access; a single byte range is honoured, multiple
+     * ranges are answered with the whole file.
+     */
+    @GetMapping("/{attachmentId}/content")
+    public ResponseEntity<?> downloadAttachment(@PathVariable Long recordId,
+                                                @PathVariable Long attachmentId,
+                                                HttpServletRequest request,
+                                                HttpServletResponse response,
+                                                Authentication auth) {
+        try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            Optional<MedicalRecord> record = medicalRecordRepository.findWithPartiesById(recordId);
+            Optional<RecordAttachment> found = recordAttachmentRepository.findByIdAndRecord(attachmentId, recordId);
+            if (record.isEmpty() || found.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (!canRead(user, record.get())) {
+                return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
+            }
+
+            RecordAttachment attachment = found.get();
+            Path file = attachmentStore.path(attachment.getSha256());
+            String etag = "\"" + attachment.getSha256() + "\"";
+            long lastModified = attachment.getCreatedAt().atZone(ZoneId.systemDefault()).toEpochSecond() * 1000;
+            HttpHeaders headers = new HttpHeaders();
+            headers.setETag(etag);
+            headers.setLastModified(lastModified);
+            headers.setCacheControl("private, no-cache");
+
+            if (notModified(request, etag, lastModified)) {
+                return ResponseEntity.status(304).headers(headers).build();
+            }
+
+            auditLog.record(user.getId(), user.getRole(), record.get().getPatient().getId(),
+                    AuditAction.DOWNLOAD_ATTACHMENT,
+                    "/medical-records/" + recordId + "/attachments/" + attachmentId + "/content", 1);
+
+            long size = attachment.getSizeBytes();
+            long start = 0;
+            long end = size;
+            String range = request.getHeader(HttpHeaders.RANGE);
+            String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+            if (range != null && (ifRange == null || ifRange.trim().equals(etag))) {
+                Matcher single = SINGLE_RANGE.matcher(range.trim());
+                if (single.matches() && !(single.group(1).isEmpty() && single.group(2).isEmpty())) {
+                    if (single.group(1).isEmpty()) {
+                        // Suffix range: the last n bytes
+                        start = Math.max(0, size - parseLength(single.group(2)));
+                    } else {
+                        start = parseLength(single.group(1));
+                        if (!single.group(2).isEmpty()) {
+                            end = Math.min(size, parseLength(single.group(2)) + 1);
+                        }
+                    }
+                    if (start >= size || start >= end) {
+                        return ResponseEntity.status(416).header(HttpHeaders.CONTENT_RANGE, "bytes */" + size).build();
+                    }
+                }
+            }
+            boolean partial = start > 0 || end < size;
+
+            if (!Files.isRegularFile(file)) {
+                return ResponseEntity.status(500).body(Map.of("error", "Attachment content is missing"));
+            }
+            response.setStatus(partial ? 206 : 200);
+            headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setContentType(attachment.getContentType());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''"
+                    + URLEncoder.encode(attachment.getFilename(), StandardCharsets.UTF_8).replace("+", "%20"));
+            response.setHeader("X-Content-Type-Options", "nosniff");
+            if (partial) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + size);
+            }
+            response.setContentLengthLong(end - start);
+            if ("HEAD".equals(request.getMethod())) {
+                return null;
+            }
+
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, end);
+                return null;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+                long position = start;
+                while (position < end) {
+                    position += channel.transferTo(position, end - position, out);
+                }
+            }
+            return null;
+        } catch (AuditLog.SaturatedException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            if (response.isCommitted()) {
+                // Headers are out; the client sees a short body against Content-Length
+                return null;
+            }
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to download attachment: " + e.getMessage()));
+        }
+    }
+
+    // Removes the attachment; the stored file goes with the next sweep once nothing refers to it
+    @DeleteMapping("/{attachmentId}")
+    @PreAuthorize("hasRole('DOCTOR')")
+    public ResponseEntity<?> deleteAttachment(@PathVariable Long recordId,
+                                              @PathVariable Long attachmentId,
+                                              Authentication auth) {
+        try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            Optional<MedicalRecord> record = medicalRecordRepository.findWithPartiesById(recordId);
+            Optional<RecordAttachment> found = recordAttachmentRepository.findByIdAndRecord(attachmentId, recordId);
+            if (record.isEmpty() || found.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (!record.get().getDoctor().getId().equals(user.getId())) {
+                return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
+            }
+
+            recordAttachmentRepository.delete(found.get());
+            return ResponseEntity.ok(Map.of("message", "Attachment deleted successfully"));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to delete attachment: " + e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<?> upload(Long recordId, InputStream input, String filename, String contentType,
+                                     Authentication auth) throws IOException {
+        UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+        Optional<MedicalRecord> record = medicalRecordRepository.findWithPartiesById(recordId);
+        if (record.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        // Only the record's author may attach files, as with edits
+        if (!record.get().getDoctor().getId().equals(user.getId())) {
+            return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
+        }
+
+        AttachmentStore.Blob blob;
+        try {
+            blob = attachmentStore.store(input);
+        } catch (AttachmentStore.TooLargeException e) {
+            return ResponseEntity.status(413).body(Map.of("error", e.getMessage()));
+        }
+        if (blob.size() == 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Attachment is empty"));
+        }
+
+        RecordAttachment attachment = new RecordAttachment();
+        attachment.setRecord(record.get());
+        attachment.setSha256(blob.sha256());
+        attachment.setSizeBytes(blob.size());
+        attachment.setContentType(normalizeContentType(contentType));
+        attachment.setFilename(normalizeFilename(filename));
+        attachment.setUploadedBy(user.getId());
+        RecordAttachment saved = recordAttachmentRepository.save(attachment);
+
+        return ResponseEntity.ok(Map.of(
+            "message", "Attachment uploaded successfully",
+            "attachment", mapAttachmentToResponse(saved)
+        ));
+    }
+
+    // Same rule as record reads: parties to the record, or staff for non-confidential records
+    private boolean canRead(UserPrincipal user, MedicalRecord record) {
+        if (record.getPatient().getId().equals(user.getId()) || record.getDoctor().getId().equals(user.getId())) {
+            return true;
+        }
+        return (user.getRole() == User.Role.DOCTOR || user.getRole() == User.Role.ADMIN)
+                && !Boolean.TRUE.equals(record.getIsConfidential());
+    }
+
+    // If-None-Match wins over If-Modified-Since when both are sent
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static long parseLength(String digits) {
+        // Longer than any stored file can be; also avoids overflow
+        return digits.length() > 18 ? Long.MAX_VALUE : Long.parseLong(digits);
+    }
+
+    private static String normalizeContentType(String contentType) {
+        if (contentType == null) {
+            return "application/octet-stream";
+        }
+        String type = contentType.split(";")[0].trim().toLowerCase();
+        return type.length() <= 100 && CONTENT_TYPE.matcher(type).matches() && !type.startsWith("multipart/")
+                ? type : "application/octet-stream";
+    }
+
+    private static String normalizeFilename(String filename) {
+        if (filename == null || filename.isBlank()) {
+            return "attachment";
+        }
+        // Browsers may send a full client path
+        String name = filename.substring(Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\')) + 1)
+                .replaceAll("[\\p{Cntrl}\"]", "").trim();
+        if (name.isEmpty()) {
+            return "attachment";
+        }
+        return name.length() > 255 ? name.substring(0, 255) : name;
+    }
+
+    private Map<String, Object> mapAttachmentToResponse(RecordAttachment attachment) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", attachment.getId());
+        response.put("filename", attachment.getFilename());
+        response.put("contentType", attachment.getContentType());
+        response.put("size", attachment.getSizeBytes());
+        response.put("sha256", attachment.getSha256());
+        response.put("uploadedBy", attachment.getUploadedBy());
+        response.put("createdAt", attachment.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        return response;
+    }
+}
@@ -0,0 +1,126 @@
+package com.smarthealth.controller;
+
+import com.smarthealth.audit.AuditEvent;
+import com.smarthealth.entity.User;
+import com.smarthealth.security.UserPrincipal;
+import com.smarthealth.service.AuditLog;
+import com.smarthealth.util.PageCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/audit")
+@CrossOrigin(origins = "http://localhost:3000")
+public class AuditController {
+
+    @Autowired
+    private AuditLog auditLog;
+
+    @Value("${app.pagination.defaultLimit:200}")
+    private int defaultPageSize;
+
+    @Value("${app.pagination.maxLimit:500}")
+    private int maxPageSize;
+
+    // Who accessed the patient's data, newest first; patients may see their own trail
+    @GetMapping("/patient/{patientId}")
+    public ResponseEntity<?> getPatientTrail(@PathVariable Long patientId,
+                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) Integer limit,
+                                             Authentication auth) {
+        try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            if (user.getRole() != User.Role.ADMIN && !user.getId().equals(patientId)) {
+                return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
+            }
+
+            int pageSize = PageCursor.limit(limit, defaultPageSize, maxPageSize);
+            PageCursor.Position after = cursor != null ? PageCursor.decode(cursor) : null;
+            return ResponseEntity.ok(toPage(auditLog.byPatient(patientId, from, to, after, pageSize + 1), pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch audit trail: " + e.getMessage()));
+        }
+    }
+
+    // Whose data the user accessed, newest first
+    @GetMapping("/actor/{actorId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getActorTrail(@PathVariable Long actorId,
+                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(required = false) Integer limit) {
+        try {
+            int pageSize = PageCursor.limit(limit, defaultPageSize, maxPageSize);
+            PageCursor.Position after = cursor != null ? PageCursor.decode(cursor) : null;
+            return ResponseEntity.ok(toPage(auditLog.byActor(actorId, from, to, after, pageSize + 1), pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch audit trail: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/status")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getStatus() {
+        try {
+            AuditLog.Status status = auditLog.status();
+            Map<String, Object> response = new HashMap<>();
+            response.put("overflowPolicy", status.overflowPolicy().name());
+            response.put("buffered", status.buffered());
+            response.put("capacity", status.capacity());
+            response.put("appended", status.appended());
+            response.put("inserted", status.inserted());
+            response.put("dropped", status.dropped());
+            response.put("rejected", status.rejected());
+            response.put("segments", status.segments());
+            response.put("lastError", status.lastError());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch audit status: " + e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> toPage(List<AuditLog.StoredEvent> rows, int pageSize) {
+        boolean hasMore = rows.size() > pageSize;
+        List<AuditLog.StoredEvent> page = hasMore ? rows.subList(0, pageSize) : rows;
+        AuditLog.StoredEvent last = page.isEmpty() ? null : page.get(page.size() - 1);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("events", page.stream().map(this::mapEventToResponse).toList());
+        response.put("count", page.size());
+        response.put("hasMore", hasMore);
+        response.put("nextCursor", hasMore ? PageCursor.encode(last.event().occurredAt(), last.id()) : null);
+        return response;
+    }
+
+    private Map<String, Object> mapEventToResponse(AuditLog.StoredEvent stored) {
+        AuditEvent event = stored.event();
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", stored.id());
+        response.put("occurredAt", event.occurredAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        response.put("actorId", event.actorId());
+        response.put("actorRole", event.actorRole());
+        response.put("patientId", event.patientId());
+        response.put("action", event.action().name());
+        response.put("resource", event.resource());
+        response.put("itemCount", event.itemCount());
+        return response;
+    }
+}
@@ -3,6 +3,13 @@ package com.smarthealth.controller;
 import com.smarthealth.entity.User;
 import com.smarthealth.repository.UserRepository;
 import com.smarthealth.security.JwtUtils;
+import com.smarthealth.security.RateLimitFilter;
+import com.smarthealth.security.TokenRevocationService;
+import com.smarthealth.service.PasswordHashingService;
+import com.smarthealth.service.RefreshTokenService;
+import com.smarthealth.service.UserAvailabilityIndex;
+import com.smarthealth.security.UserPrincipal;
+import io.jsonwebtoken.Claims;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -10,11 +17,11 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/auth")
@@ -28,15 +35,40 @@ public class AuthController {
     UserRepository userRepository;
 
     @Autowired
-    PasswordEncoder encoder;
+    PasswordHashingService passwordHashingService;
 
     @Autowired
     JwtUtils jwtUtils;
 
+    @Autowired
+    TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    RefreshTokenService refreshTokenService;
+
+    @Autowired
+    RateLimitFilter rateLimitFilter;
+
+    @Autowired
+    UserAvailabilityIndex userAvailabilityIndex;
+
     @PostMapping("/login")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
+        long retryAfter = rateLimitFilter.tryAcquireForUsername(loginRequest.getUsername());
+        if (retryAfter > 0) {
+            return ResponseEntity.status(429)
+                    .header("Retry-After", String.valueOf(retryAfter))
+                    .body(Map.of("message", "Error: Too many login attempts, retry in " + retryAfter + "s"));
+        }
+
+        Authentication authentication;
+        try {
+            // BCrypt verification runs on the bounded hashing pool, not on the request thread
+            authentication = passwordHashingService.execute(() -> authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword())));
+        } catch (PasswordHashingService.SaturatedException e) {
+            return ResponseEntity.status(503).body(Map.of("message", "Error: " + e.getMessage()));
+        }
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
         String jwt = jwtUtils.generateJwtToken(authentication);
@@ -46,6 +78,8 @@ public class AuthController {
         Map<String, Object> response = new HashMap<>();
         response.put("token", jwt);
         response.put("type", "Bearer");
+        response.put("expiresIn", jwtUtils.getJwtExpirationMs() / 1000);
+        response.put("refreshToken", refreshTokenService.issue(user));
         
         // User object for frontend
         Map<String, Object> userInfo = new HashMap<>();
@@ -64,22 +98,52 @@ public class AuthController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@RequestBody RefreshRequest refreshRequest) {
+        if (refreshRequest.getRefreshToken() == null || refreshRequest.getRefreshToken().isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Error: Refresh token is required!"));
+        }
+
+        try {
+            RefreshTokenService.IssuedToken issued = refreshTokenService.rotate(refreshRequest.getRefreshToken());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("token", jwtUtils.generateTokenForUser(issued.user()));
+            response.put("type", "Bearer");
+            response.put("expiresIn", jwtUtils.getJwtExpirationMs() / 1000);
+            response.put("refreshToken", issued.token());
+            return ResponseEntity.ok(response);
+        } catch (RefreshTokenService.RefreshTokenException e) {
+            return ResponseEntity.status(401).body(Map.of("message", "Error: " + e.getMessage()));
+        }
+    }
+
     @PostMapping("/register")
     public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
-        if (userRepository.existsByUsername(signUpRequest.getUsername())) {
+        // The availability index answers "definitely not taken" without a query
+        if (userAvailabilityIndex.mightContainUsername(signUpRequest.getUsername())
+                && userRepository.existsByUsername(signUpRequest.getUsername())) {
             return ResponseEntity.badRequest()
                     .body(Map.of("message", "Error: Username is already taken!"));
         }
 
-        if (userRepository.existsByEmail(signUpRequest.getEmail())) {
+        if (userAvailabilityIndex.mightContainEmail(signUpRequest.getEmail())
+                && userRepository.existsByEmail(signUpRequest.getEmail())) {
             return ResponseEntity.badRequest()
                     .body(Map.of("message", "Error: Email is already in use!"));
         }
 
+        String encodedPassword;
+        try {
+            encodedPassword = passwordHashingService.encode(signUpRequest.getPassword());
+        } catch (PasswordHashingService.SaturatedException e) {
+            return ResponseEntity.status(503).body(Map.of("message", "Error: " + e.getMessage()));
+        }
+
         // Create new user's account
         User user = new User(signUpRequest.getUsername(),
                            signUpRequest.getEmail(),
-                           encoder.encode(signUpRequest.getPassword()),
+                           encodedPassword,
                            signUpRequest.getFirstName(),
                            signUpRequest.getLastName(),
                            User.Role.valueOf(signUpRequest.getRole().toUpperCase()));
@@ -93,10 +157,33 @@ public class AuthController {
         return ResponseEntity.ok(Map.of("message", "User registered successfully!", "userId", user.getId()));
     }
 
+    @GetMapping("/availability")
+    public ResponseEntity<?> checkAvailability(@RequestParam(required = false) String username,
+                                               @RequestParam(required = false) String email) {
+        if ((username == null || username.isBlank()) && (email == null || email.isBlank())) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Error: username or email is required!"));
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        if (username != null && !username.isBlank()) {
+            response.put("username", Map.of("value", username, "available", userAvailabilityIndex.isUsernameAvailable(username)));
+        }
+        if (email != null && !email.isBlank()) {
+            response.put("email", Map.of("value", email, "available", userAvailabilityIndex.isEmailAvailable(email)));
+        }
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/me")
     public ResponseEntity<?> getCurrentUser(Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
+            UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
+            Optional<User> userOpt = userRepository.findById(principal.getId());
+            if (userOpt.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            
+            User user = userOpt.get();
             
             Map<String, Object> userInfo = new HashMap<>();
             userInfo.put("id", user.getId());
@@ -116,7 +203,18 @@ public class AuthController {
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<?> logout() {
+    public ResponseEntity<?> logout(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                    @RequestBody(required = false) RefreshRequest refreshRequest) {
+        // Revoke the presented token so it cannot be replayed until it expires
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            Claims claims = jwtUtils.verifyJwtToken(authorization.substring(7));
+            if (claims != null) {
+                tokenRevocationService.revoke(claims.getId(), claims.getExpiration());
+            }
+        }
+        if (refreshRequest != null && refreshRequest.getRefreshToken() != null) {
+            refreshTokenService.revoke(refreshRequest.getRefreshToken());
+        }
         return ResponseEntity.ok(Map.of("message", "Logged out successfully"));
     }
     
@@ -136,6 +234,13 @@ public class AuthController {
         public void setPassword(String password) { this.password = password; }
     }
 
+    public static class RefreshRequest {
+        private String refreshToken;
+
+        public String getRefreshToken() { return refreshToken; }
+        public void setRefreshToken(String refreshToken) { this.refreshToken = refreshToken; }
+    }
+
     public static class SignupRequest {
         private String username;
         private String email;
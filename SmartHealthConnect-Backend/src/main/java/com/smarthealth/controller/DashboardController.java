@@ -1,11 +1,16 @@
 package com.smarthealth.controller;
 
 import com.smarthealth.entity.Appointment;
+import com.smarthealth.entity.Notification;
 import com.smarthealth.entity.User;
 import com.smarthealth.repository.AppointmentRepository;
 import com.smarthealth.repository.MedicalRecordRepository;
+import com.smarthealth.repository.NotificationRepository;
 import com.smarthealth.repository.UserRepository;
+import com.smarthealth.security.UserPrincipal;
+import com.smarthealth.service.UserCounterService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -31,11 +36,17 @@ public class DashboardController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UserCounterService userCounterService;
+
     @GetMapping("/patient")
     @PreAuthorize("hasRole('PATIENT')")
     public ResponseEntity<?> getPatientDashboard(Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
             Map<String, Object> dashboard = new HashMap<>();
             
             // Upcoming appointments
@@ -46,26 +57,25 @@ public class DashboardController {
                 .toList());
             
             // Recent medical records
-            List<com.smarthealth.entity.MedicalRecord> recentRecords = medicalRecordRepository.findPatientRecordsOrderByDate(user.getId());
+            List<com.smarthealth.entity.MedicalRecord> recentRecords = medicalRecordRepository.findPatientPage(user.getId(), PageRequest.of(0, 5));
             dashboard.put("recentRecords", recentRecords.stream()
-                .limit(5)
                 .map(this::mapRecordToSimpleResponse)
                 .toList());
             
             // Health stats
+            UserCounterService.UserCounters counters = userCounterService.get(user.getId());
             Map<String, Object> healthStats = new HashMap<>();
-            healthStats.put("totalAppointments", appointmentRepository.countAppointmentsByPatientAndStatus(user.getId(), null));
-            healthStats.put("completedAppointments", appointmentRepository.countAppointmentsByPatientAndStatus(user.getId(), Appointment.Status.COMPLETED));
-            healthStats.put("totalRecords", medicalRecordRepository.countRecordsByPatient(user.getId()));
+            healthStats.put("totalAppointments", counters.appointments());
+            healthStats.put("completedAppointments", counters.appointments(Appointment.Status.COMPLETED));
+            healthStats.put("totalRecords", counters.records());
             healthStats.put("upcomingCount", upcomingAppointments.size());
             dashboard.put("healthStats", healthStats);
             
-            // Notifications (mock data for now)
-            dashboard.put("notifications", List.of(
-                Map.of("id", 1, "message", "Appointment reminder: Tomorrow at 2:00 PM", "type", "reminder", "read", false),
-                Map.of("id", 2, "message", "New test results available", "type", "info", "read", false),
-                Map.of("id", 3, "message", "Prescription refill due", "type", "warning", "read", true)
-            ));
+            // Notifications
+            dashboard.put("notifications", notificationRepository.findRecentByUser(user.getId(), PageRequest.of(0, 10))
+                .stream()
+                .map(this::mapNotificationToResponse)
+                .toList());
             
             return ResponseEntity.ok(dashboard);
         } catch (Exception e) {
@@ -77,7 +87,7 @@ public class DashboardController {
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<?> getDoctorDashboard(Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
             Map<String, Object> dashboard = new HashMap<>();
             
             // Today's appointments
@@ -96,9 +106,8 @@ public class DashboardController {
                 .toList());
             
             // Recent patients (from recent appointments)
-            List<Appointment> recentAppointments = appointmentRepository.findByDoctorId(user.getId());
+            List<Appointment> recentAppointments = appointmentRepository.findDoctorPage(user.getId(), PageRequest.of(0, 5));
             dashboard.put("recentPatients", recentAppointments.stream()
-                .limit(5)
                 .map(appointment -> {
                     Map<String, Object> patient = new HashMap<>();
                     patient.put("id", appointment.getPatient().getId());
@@ -110,20 +119,20 @@ public class DashboardController {
                 .toList());
             
             // Consultation stats
+            UserCounterService.UserCounters counters = userCounterService.get(user.getId());
             Map<String, Object> consultationStats = new HashMap<>();
-            consultationStats.put("totalAppointments", appointmentRepository.countAppointmentsByDoctorAndStatus(user.getId(), null));
-            consultationStats.put("completedAppointments", appointmentRepository.countAppointmentsByDoctorAndStatus(user.getId(), Appointment.Status.COMPLETED));
+            consultationStats.put("totalAppointments", counters.appointments());
+            consultationStats.put("completedAppointments", counters.appointments(Appointment.Status.COMPLETED));
             consultationStats.put("todayCount", todayAppointments.size());
             consultationStats.put("upcomingCount", upcomingAppointments.size());
-            consultationStats.put("totalRecords", medicalRecordRepository.countRecordsByDoctor(user.getId()));
+            consultationStats.put("totalRecords", counters.records());
             dashboard.put("consultationStats", consultationStats);
             
-            // Notifications (mock data for now)
-            dashboard.put("notifications", List.of(
-                Map.of("id", 1, "message", "New patient registration", "type", "info", "read", false),
-                Map.of("id", 2, "message", "Appointment cancellation", "type", "warning", "read", false),
-                Map.of("id", 3, "message", "Lab results ready for review", "type", "info", "read", true)
-            ));
+            // Notifications
+            dashboard.put("notifications", notificationRepository.findRecentByUser(user.getId(), PageRequest.of(0, 10))
+                .stream()
+                .map(this::mapNotificationToResponse)
+                .toList());
             
             return ResponseEntity.ok(dashboard);
         } catch (Exception e) {
@@ -146,8 +155,8 @@ public class DashboardController {
             
             LocalDateTime startOfDay = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0).withNano(0);
             LocalDateTime endOfDay = startOfDay.plusDays(1);
-            systemStats.put("todayAppointments", appointmentRepository.findDoctorAppointmentsByDateRange(null, startOfDay, endOfDay).size());
-            systemStats.put("activeConsultations", appointmentRepository.findByDoctorIdAndStatus(null, Appointment.Status.IN_PROGRESS).size());
+            systemStats.put("todayAppointments", appointmentRepository.countByDateRange(startOfDay, endOfDay));
+            systemStats.put("activeConsultations", appointmentRepository.countByStatus(Appointment.Status.IN_PROGRESS));
             systemStats.put("totalRecords", medicalRecordRepository.count());
             dashboard.put("dashboardStats", systemStats);
             
@@ -175,17 +184,15 @@ public class DashboardController {
     @GetMapping("/stats")
     public ResponseEntity<?> getDashboardStats(Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
             Map<String, Object> stats = new HashMap<>();
             
             switch (user.getRole()) {
                 case PATIENT:
-                    stats.put("appointments", appointmentRepository.countAppointmentsByPatientAndStatus(user.getId(), null));
-                    stats.put("records", medicalRecordRepository.countRecordsByPatient(user.getId()));
-                    break;
                 case DOCTOR:
-                    stats.put("appointments", appointmentRepository.countAppointmentsByDoctorAndStatus(user.getId(), null));
-                    stats.put("records", medicalRecordRepository.countRecordsByDoctor(user.getId()));
+                    UserCounterService.UserCounters counters = userCounterService.get(user.getId());
+                    stats.put("appointments", counters.appointments());
+                    stats.put("records", counters.records());
                     break;
                 case ADMIN:
                     stats.put("totalUsers", userRepository.count());
@@ -200,6 +207,16 @@ public class DashboardController {
         }
     }
 
+    private Map<String, Object> mapNotificationToResponse(Notification notification) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", notification.getId());
+        response.put("message", notification.getMessage());
+        response.put("type", notification.getType().name().toLowerCase());
+        response.put("read", notification.isRead());
+        response.put("createdAt", notification.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        return response;
+    }
+
     private Map<String, Object> mapAppointmentToSimpleResponse(Appointment appointment) {
         Map<String, Object> response = new HashMap<>();
         response.put("id", appointment.getId());
@@ -0,0 +1,53 @@
+package com.smarthealth.controller;
+
+import com.smarthealth.event.OutboxEvent;
+import com.smarthealth.service.OutboxService;
+import com.smarthealth.util.PageCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/events")
+@CrossOrigin(origins = "http://localhost:3000")
+public class EventController {
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Value("${app.pagination.defaultLimit:200}")
+    private int defaultPageSize;
+
+    @Value("${app.pagination.maxLimit:500}")
+    private int maxPageSize;
+
+    // Change feed for catch-up; start without a cursor and keep passing back nextCursor, even on empty pages
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getEvents(@RequestParam(required = false) String cursor,
+                                       @RequestParam(required = false) Integer limit) {
+        try {
+            int pageSize = PageCursor.limit(limit, defaultPageSize, maxPageSize);
+            long after = cursor != null ? PageCursor.decodeId(cursor) : 0L;
+            List<OutboxEvent> events = outboxService.readAfter(after, pageSize);
+
+            long position = events.isEmpty() ? after : events.get(events.size() - 1).sequence();
+            Map<String, Object> response = new HashMap<>();
+            response.put("events", events);
+            response.put("count", events.size());
+            response.put("hasMore", events.size() == pageSize);
+            response.put("nextCursor", PageCursor.encode(position));
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch events: " + e.getMessage()));
+        }
+    }
+}
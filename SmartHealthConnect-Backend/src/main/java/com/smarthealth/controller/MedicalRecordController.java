@@ -1,10 +1,18 @@
 package com.smarthealth.controller;
 
+import com.smarthealth.audit.AuditAction;
 import com.smarthealth.entity.MedicalRecord;
 import com.smarthealth.entity.User;
 import com.smarthealth.repository.MedicalRecordRepository;
 import com.smarthealth.repository.UserRepository;
+import com.smarthealth.security.UserPrincipal;
+import com.smarthealth.service.AuditLog;
+import com.smarthealth.service.RecordSearchIndex;
+import com.smarthealth.service.UserCounterService;
+import com.smarthealth.util.PageCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -13,6 +21,7 @@ import org.springframework.web.bind.annotation.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -25,22 +34,50 @@ public class MedicalRecordController {
     @Autowired
     private MedicalRecordRepository medicalRecordRepository;
 
+    // Page size when a cursor is sent without a limit
+    @Value("${app.pagination.defaultLimit:200}")
+    private int defaultPageSize;
+
+    @Value("${app.pagination.maxLimit:500}")
+    private int maxPageSize;
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserCounterService userCounterService;
+
+    @Autowired
+    private RecordSearchIndex recordSearchIndex;
+
+    @Autowired
+    private AuditLog auditLog;
+
     @GetMapping("/patient")
     @PreAuthorize("hasRole('PATIENT')")
-    public ResponseEntity<?> getPatientRecords(Authentication auth) {
+    public ResponseEntity<?> getPatientRecords(@RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) Integer limit,
+                                              Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
-            List<MedicalRecord> records = medicalRecordRepository.findPatientRecordsOrderByDate(user.getId());
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            Pageable page = PageCursor.window(cursor, limit, defaultPageSize, maxPageSize);
+            int pageSize = PageCursor.pageSize(page);
             
-            List<Map<String, Object>> recordList = records.stream().map(this::mapRecordToResponse).toList();
+            List<MedicalRecord> records;
+            if (cursor == null) {
+                records = medicalRecordRepository.findPatientPage(user.getId(), page);
+            } else {
+                PageCursor.Position after = PageCursor.decode(cursor);
+                records = medicalRecordRepository.findPatientPageAfter(user.getId(), after.time(), after.id(), page);
+            }
             
-            return ResponseEntity.ok(Map.of(
-                "records", recordList,
-                "count", records.size()
-            ));
+            auditRecords(user, records.subList(0, Math.min(records.size(), pageSize)), AuditAction.VIEW_RECORDS,
+                    "/medical-records/patient");
+            return ResponseEntity.ok(toRecordPage(records, pageSize));
+        } catch (AuditLog.SaturatedException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch medical records: " + e.getMessage()));
         }
@@ -48,17 +85,29 @@ public class MedicalRecordController {
 
     @GetMapping("/doctor")
     @PreAuthorize("hasRole('DOCTOR')")
-    public ResponseEntity<?> getDoctorRecords(Authentication auth) {
+    public ResponseEntity<?> getDoctorRecords(@RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) Integer limit,
+                                              Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
-            List<MedicalRecord> records = medicalRecordRepository.findDoctorRecordsOrderByDate(user.getId());
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            Pageable page = PageCursor.window(cursor, limit, defaultPageSize, maxPageSize);
+            int pageSize = PageCursor.pageSize(page);
             
-            List<Map<String, Object>> recordList = records.stream().map(this::mapRecordToResponse).toList();
+            List<MedicalRecord> records;
+            if (cursor == null) {
+                records = medicalRecordRepository.findDoctorPage(user.getId(), page);
+            } else {
+                PageCursor.Position after = PageCursor.decode(cursor);
+                records = medicalRecordRepository.findDoctorPageAfter(user.getId(), after.time(), after.id(), page);
+            }
             
-            return ResponseEntity.ok(Map.of(
-                "records", recordList,
-                "count", records.size()
-            ));
+            auditRecords(user, records.subList(0, Math.min(records.size(), pageSize)), AuditAction.VIEW_RECORDS,
+                    "/medical-records/doctor");
+            return ResponseEntity.ok(toRecordPage(records, pageSize));
+        } catch (AuditLog.SaturatedException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch medical records: " + e.getMessage()));
         }
@@ -68,14 +117,20 @@ public class MedicalRecordController {
     @PreAuthorize("hasRole('DOCTOR') or hasRole('ADMIN')")
     public ResponseEntity<?> getPatientRecordsByDoctor(@PathVariable Long patientId, Authentication auth) {
         try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
             List<MedicalRecord> records = medicalRecordRepository.findNonConfidentialRecordsByPatient(patientId);
             
+            // Recorded even when nothing is returned; looking is access too
+            auditLog.record(user.getId(), user.getRole(), patientId, AuditAction.VIEW_RECORDS,
+                    "/medical-records/patient/" + patientId, records.size());
             List<Map<String, Object>> recordList = records.stream().map(this::mapRecordToResponse).toList();
             
             return ResponseEntity.ok(Map.of(
                 "records", recordList,
                 "count", records.size()
             ));
+        } catch (AuditLog.SaturatedException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch patient records: " + e.getMessage()));
         }
@@ -85,7 +140,14 @@ public class MedicalRecordController {
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<?> createMedicalRecord(@RequestBody MedicalRecordRequest request, Authentication auth) {
         try {
-            User doctor = (User) auth.getPrincipal();
+            UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
+            
+            Optional<User> doctorOpt = userRepository.findById(principal.getId());
+            if (doctorOpt.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Doctor not found"));
+            }
+            
+            User doctor = doctorOpt.get();
             
             Optional<User> patientOpt = userRepository.findById(request.getPatientId());
             if (patientOpt.isEmpty()) {
@@ -131,13 +193,13 @@ public class MedicalRecordController {
                                                @RequestBody MedicalRecordRequest request, 
                                                Authentication auth) {
         try {
-            Optional<MedicalRecord> recordOpt = medicalRecordRepository.findById(id);
+            Optional<MedicalRecord> recordOpt = medicalRecordRepository.findWithPartiesById(id);
             if (recordOpt.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
             
             MedicalRecord record = recordOpt.get();
-            User user = (User) auth.getPrincipal();
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
             
             // Check if user has permission to update this record
             if (!record.getDoctor().getId().equals(user.getId())) {
@@ -169,17 +231,40 @@ public class MedicalRecordController {
     }
 
     @GetMapping("/search")
-    public ResponseEntity<?> searchRecords(@RequestParam String query, Authentication auth) {
+    public ResponseEntity<?> searchRecords(@RequestParam String query,
+                                           @RequestParam(required = false) Integer limit,
+                                           Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
             List<MedicalRecord> records;
             
-            if (user.getRole() == User.Role.PATIENT) {
+            if (user.getRole() != User.Role.PATIENT && user.getRole() != User.Role.DOCTOR) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Search not available for this role"));
+            }
+            
+            if (recordSearchIndex.isReady()) {
+                // Patients search their own records, doctors the records they wrote
+                boolean patient = user.getRole() == User.Role.PATIENT;
+                List<RecordSearchIndex.Hit> hits = recordSearchIndex.search(query,
+                        patient ? user.getId() : null, patient ? null : user.getId(),
+                        PageCursor.limit(limit, defaultPageSize, maxPageSize));
+                Map<Long, MedicalRecord> byId = new HashMap<>();
+                medicalRecordRepository.findWithPartiesByIdIn(hits.stream().map(RecordSearchIndex.Hit::recordId).toList())
+                        .forEach(record -> byId.put(record.getId(), record));
+                records = hits.stream()
+                        .map(hit -> byId.get(hit.recordId()))
+                        .filter(record -> record != null && (patient
+                                ? record.getPatient().getId().equals(user.getId())
+                                : record.getDoctor().getId().equals(user.getId())))
+                        .toList();
+            } else if (user.getRole() == User.Role.PATIENT) {
+                // Index still loading after a restart
                 records = medicalRecordRepository.searchPatientRecords(user.getId(), query);
             } else {
-                return ResponseEntity.badRequest().body(Map.of("error", "Search not available for this role"));
+                return ResponseEntity.status(503).body(Map.of("error", "Record search is starting up, please retry shortly"));
             }
             
+            auditRecords(user, records, AuditAction.SEARCH_RECORDS, "/medical-records/search");
             List<Map<String, Object>> recordList = records.stream().map(this::mapRecordToResponse).toList();
             
             return ResponseEntity.ok(Map.of(
@@ -187,6 +272,8 @@ public class MedicalRecordController {
                 "count", records.size(),
                 "query", query
             ));
+        } catch (AuditLog.SaturatedException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Failed to search records: " + e.getMessage()));
         }
@@ -195,13 +282,11 @@ public class MedicalRecordController {
     @GetMapping("/stats")
     public ResponseEntity<?> getRecordStats(Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
             Map<String, Object> stats = new HashMap<>();
             
-            if (user.getRole() == User.Role.PATIENT) {
-                stats.put("totalRecords", medicalRecordRepository.countRecordsByPatient(user.getId()));
-            } else if (user.getRole() == User.Role.DOCTOR) {
-                stats.put("totalRecords", medicalRecordRepository.countRecordsByDoctor(user.getId()));
+            if (user.getRole() == User.Role.PATIENT || user.getRole() == User.Role.DOCTOR) {
+                stats.put("totalRecords", userCounterService.get(user.getId()).records());
             }
             
             return ResponseEntity.ok(stats);
@@ -210,6 +295,28 @@ public class MedicalRecordController {
         }
     }
 
+    // One audit event per patient whose records are in the response
+    private void auditRecords(UserPrincipal user, List<MedicalRecord> records, AuditAction action, String resource) {
+        Map<Long, Integer> perPatient = new LinkedHashMap<>();
+        records.forEach(record -> perPatient.merge(record.getPatient().getId(), 1, Integer::sum));
+        perPatient.forEach((patientId, count) ->
+                auditLog.record(user.getId(), user.getRole(), patientId, action, resource, count));
+    }
+
+    // Same keys as the old unpaged listing, plus the cursor for the next page
+    private Map<String, Object> toRecordPage(List<MedicalRecord> rows, int pageSize) {
+        boolean hasMore = rows.size() > pageSize;
+        List<MedicalRecord> page = hasMore ? rows.subList(0, pageSize) : rows;
+        MedicalRecord last = page.isEmpty() ? null : page.get(page.size() - 1);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("records", page.stream().map(this::mapRecordToResponse).toList());
+        response.put("count", page.size());
+        response.put("hasMore", hasMore);
+        response.put("nextCursor", hasMore ? PageCursor.encode(last.getCreatedAt(), last.getId()) : null);
+        return response;
+    }
+
     private Map<String, Object> mapRecordToResponse(MedicalRecord record) {
         Map<String, Object> response = new HashMap<>();
         response.put("id", record.getId());
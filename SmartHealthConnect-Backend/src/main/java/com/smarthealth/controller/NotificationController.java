@@ -0,0 +1,70 @@
+package com.smarthealth.controller;
+
+import com.smarthealth.entity.Notification;
+import com.smarthealth.repository.NotificationRepository;
+import com.smarthealth.security.UserPrincipal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/notifications")
+@CrossOrigin(origins = "http://localhost:3000")
+public class NotificationController {
+
+    private static final int MAX_NOTIFICATIONS = 100;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @GetMapping
+    public ResponseEntity<?> getNotifications(@RequestParam(defaultValue = "20") int limit, Authentication auth) {
+        try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            int size = Math.max(1, Math.min(limit, MAX_NOTIFICATIONS));
+            List<Map<String, Object>> notifications = notificationRepository
+                .findRecentByUser(user.getId(), PageRequest.of(0, size))
+                .stream()
+                .map(this::mapNotificationToResponse)
+                .toList();
+
+            return ResponseEntity.ok(Map.of(
+                "notifications", notifications,
+                "unread", notificationRepository.countUnreadByUser(user.getId())
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch notifications: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{id}/read")
+    public ResponseEntity<?> markRead(@PathVariable Long id, Authentication auth) {
+        try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            // Already-read and foreign notifications are left alone
+            int updated = notificationRepository.markRead(id, user.getId(), LocalDateTime.now());
+            return ResponseEntity.ok(Map.of("message", updated > 0 ? "Notification marked as read" : "No change"));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to update notification: " + e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> mapNotificationToResponse(Notification notification) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", notification.getId());
+        response.put("message", notification.getMessage());
+        response.put("type", notification.getType().name().toLowerCase());
+        response.put("read", notification.isRead());
+        response.put("appointmentId", notification.getAppointmentId());
+        response.put("createdAt", notification.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        return response;
+    }
+}
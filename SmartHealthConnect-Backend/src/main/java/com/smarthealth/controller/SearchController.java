@@ -0,0 +1,83 @@
+package com.smarthealth.controller;
+
+import com.smarthealth.entity.User;
+import com.smarthealth.security.UserPrincipal;
+import com.smarthealth.service.DirectoryIndex;
+import com.smarthealth.util.PageCursor;
+import com.smarthealth.util.TypeaheadIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/search")
+@CrossOrigin(origins = "http://localhost:3000")
+public class SearchController {
+
+    @Autowired
+    private DirectoryIndex directoryIndex;
+
+    @Value("${app.directory.suggestLimit:10}")
+    private int defaultLimit;
+
+    // Kept at or below app.directory.cacheSize so suggestions never scan
+    @Value("${app.directory.maxSuggestLimit:25}")
+    private int maxLimit;
+
+    // Typeahead over the directory; each requested type gets its own ranked list
+    @GetMapping("/suggest")
+    public ResponseEntity<?> suggest(@RequestParam("q") String query,
+                                     @RequestParam(defaultValue = "doctors,departments") String types,
+                                     @RequestParam(required = false) Integer limit,
+                                     Authentication auth) {
+        try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            if (!directoryIndex.isReady()) {
+                return ResponseEntity.status(503).body(Map.of("error", "Search is starting up, please retry shortly"));
+            }
+            int size = PageCursor.limit(limit, defaultLimit, maxLimit);
+            boolean staff = user.getRole() == User.Role.DOCTOR || user.getRole() == User.Role.ADMIN;
+            
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("query", query);
+            for (String type : StringUtils.commaDelimitedListToSet(types.toLowerCase())) {
+                switch (type.trim()) {
+                    case "doctors" -> response.put("doctors", toResponse(directoryIndex.doctors(query, size)));
+                    case "departments" -> response.put("departments", toResponse(directoryIndex.departments(query, size)));
+                    case "patients" -> {
+                        // Patients are only discoverable by staff
+                        if (!staff) {
+                            return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
+                        }
+                        response.put("patients", toResponse(directoryIndex.users(query, User.Role.PATIENT, size)));
+                    }
+                    default -> {
+                        return ResponseEntity.badRequest().body(Map.of("error", "Unknown suggestion type: " + type.trim()));
+                    }
+                }
+            }
+            
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch suggestions: " + e.getMessage()));
+        }
+    }
+
+    private List<Map<String, Object>> toResponse(List<TypeaheadIndex.Suggestion> suggestions) {
+        return suggestions.stream().map(suggestion -> {
+            Map<String, Object> response = new HashMap<>();
+            response.put("id", suggestion.id());
+            response.put("label", suggestion.label());
+            response.put("detail", suggestion.detail());
+            return response;
+        }).toList();
+    }
+}
@@ -2,7 +2,15 @@ package com.smarthealth.controller;
 
 import com.smarthealth.entity.User;
 import com.smarthealth.repository.UserRepository;
+import com.smarthealth.security.TokenVersionCache;
+import com.smarthealth.security.UserPrincipal;
+import com.smarthealth.service.DirectoryIndex;
+import com.smarthealth.service.RefreshTokenService;
+import com.smarthealth.util.PageCursor;
+import com.smarthealth.util.TypeaheadIndex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -22,11 +30,32 @@ public class UserController {
     @Autowired
     private UserRepository userRepository;
 
+    // Page size when a cursor is sent without a limit
+    @Value("${app.pagination.defaultLimit:200}")
+    private int defaultPageSize;
+
+    @Value("${app.pagination.maxLimit:500}")
+    private int maxPageSize;
+
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private DirectoryIndex directoryIndex;
+
     @GetMapping("/profile")
     public ResponseEntity<?> getUserProfile(Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
-            return ResponseEntity.ok(mapUserToResponse(user));
+            UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
+            Optional<User> userOpt = userRepository.findById(principal.getId());
+            if (userOpt.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            
+            return ResponseEntity.ok(mapUserToResponse(userOpt.get()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch profile: " + e.getMessage()));
         }
@@ -35,7 +64,13 @@ public class UserController {
     @PutMapping("/profile")
     public ResponseEntity<?> updateUserProfile(@RequestBody UserUpdateRequest request, Authentication auth) {
         try {
-            User user = (User) auth.getPrincipal();
+            UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
+            Optional<User> userOpt = userRepository.findById(principal.getId());
+            if (userOpt.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            
+            User user = userOpt.get();
             
             // Update allowed fields
             if (request.getFirstName() != null) user.setFirstName(request.getFirstName());
@@ -73,41 +108,58 @@ public class UserController {
 
     @GetMapping("/patients")
     @PreAuthorize("hasRole('DOCTOR') or hasRole('ADMIN')")
-    public ResponseEntity<?> getAllPatients() {
+    public ResponseEntity<?> getAllPatients(@RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer limit) {
         try {
-            List<User> patients = userRepository.findActiveUsersByRole(User.Role.PATIENT);
+            Pageable page = PageCursor.window(cursor, limit, defaultPageSize, maxPageSize);
+            int pageSize = PageCursor.pageSize(page);
+            long afterId = cursor != null ? PageCursor.decodeId(cursor) : 0L;
+            List<User> rows = userRepository.findActiveUsersByRoleAfter(User.Role.PATIENT, afterId, page);
             
+            boolean hasMore = rows.size() > pageSize;
+            List<User> patients = hasMore ? rows.subList(0, pageSize) : rows;
             List<Map<String, Object>> patientList = patients.stream()
                 .map(this::mapUserToPublicResponse)
                 .toList();
             
-            return ResponseEntity.ok(Map.of(
-                "patients", patientList,
-                "count", patients.size()
-            ));
+            Map<String, Object> response = new HashMap<>();
+            response.put("patients", patientList);
+            response.put("count", patients.size());
+            response.put("hasMore", hasMore);
+            response.put("nextCursor", hasMore ? PageCursor.encode(patients.get(patients.size() - 1).getId()) : null);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch patients: " + e.getMessage()));
         }
     }
 
     @GetMapping("/search")
-    public ResponseEntity<?> searchUsers(@RequestParam String query, @RequestParam(required = false) String role) {
+    public ResponseEntity<?> searchUsers(@RequestParam String query,
+                                         @RequestParam(required = false) String role,
+                                         @RequestParam(required = false) Integer limit) {
         try {
+            User.Role userRole = role != null && !role.isEmpty() ? User.Role.valueOf(role.toUpperCase()) : null;
             List<User> users;
             
-            if (role != null && !role.isEmpty()) {
-                User.Role userRole = User.Role.valueOf(role.toUpperCase());
-                users = userRepository.findActiveUsersByRole(userRole);
-                users = users.stream()
-                    .filter(user -> 
-                        user.getFirstName().toLowerCase().contains(query.toLowerCase()) ||
-                        user.getLastName().toLowerCase().contains(query.toLowerCase()) ||
-                        user.getUsername().toLowerCase().contains(query.toLowerCase()) ||
-                        user.getEmail().toLowerCase().contains(query.toLowerCase())
-                    )
+            if (directoryIndex.isReady()) {
+                List<Long> ids = directoryIndex.users(query, userRole, PageCursor.limit(limit, defaultPageSize, maxPageSize))
+                    .stream()
+                    .map(TypeaheadIndex.Suggestion::id)
+                    .toList();
+                Map<Long, User> byId = new HashMap<>();
+                userRepository.findAllById(ids).forEach(user -> byId.put(user.getId(), user));
+                // Keep the index's ranking; rows deactivated since are dropped
+                users = ids.stream()
+                    .map(byId::get)
+                    .filter(user -> user != null && Boolean.TRUE.equals(user.getIsActive()))
                     .toList();
             } else {
-                users = userRepository.searchActiveUsers(query);
+                // Directory still loading after a restart
+                users = userRepository.searchActiveUsers(query).stream()
+                    .filter(user -> userRole == null || user.getRole() == userRole)
+                    .toList();
             }
             
             List<Map<String, Object>> userList = users.stream()
@@ -119,6 +171,8 @@ public class UserController {
                 "count", users.size(),
                 "query", query
             ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid role: " + role));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Failed to search users: " + e.getMessage()));
         }
@@ -173,7 +227,16 @@ public class UserController {
             if (isActive != null) user.setIsActive(isActive);
             if (enabled != null) user.setEnabled(enabled);
             
+            // Invalidate outstanding tokens when an account is switched off
+            if (Boolean.FALSE.equals(isActive) || Boolean.FALSE.equals(enabled)) {
+                user.bumpTokenVersion();
+            }
+            
             User updated = userRepository.save(user);
+            tokenVersionCache.evict(updated.getId());
+            if (Boolean.FALSE.equals(isActive) || Boolean.FALSE.equals(enabled)) {
+                refreshTokenService.revokeAllForUser(updated.getId());
+            }
             
             return ResponseEntity.ok(Map.of(
                 "message", "User status updated successfully",
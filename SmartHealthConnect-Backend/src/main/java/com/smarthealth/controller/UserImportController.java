@@ -0,0 +1,42 @@
+package com.smarthealth.controller;
+
+import com.smarthealth.service.UserImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/users/import")
+@CrossOrigin(origins = "http://localhost:3000")
+public class UserImportController {
+
+    @Autowired
+    private UserImportService userImportService;
+
+    // Streams the request body; send Content-Type text/csv (with a header row) or application/x-ndjson
+    @PostMapping(consumes = {"application/x-ndjson", "text/csv"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> importUsers(HttpServletRequest request) {
+        try {
+            UserImportService.Format format = request.getContentType().startsWith("text/csv")
+                    ? UserImportService.Format.CSV
+                    : UserImportService.Format.NDJSON;
+
+            UserImportService.ImportResult result = userImportService.importUsers(request.getInputStream(), format);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("processed", result.getProcessed());
+            response.put("imported", result.getImported());
+            response.put("conflicts", result.getConflicts());
+            response.put("errors", result.getErrors());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to import users: " + e.getMessage()));
+        }
+    }
+}
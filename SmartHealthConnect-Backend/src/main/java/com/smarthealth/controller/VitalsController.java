@@ -0,0 +1,184 @@
+package com.smarthealth.controller;
+
+import com.smarthealth.audit.AuditAction;
+import com.smarthealth.entity.User;
+import com.smarthealth.security.UserPrincipal;
+import com.smarthealth.service.AuditLog;
+import com.smarthealth.service.VitalsStore;
+import com.smarthealth.vitals.VitalSignsParser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/vitals")
+@CrossOrigin(origins = "http://localhost:3000")
+public class VitalsController {
+
+    @Autowired
+    private VitalsStore vitalsStore;
+
+    @Autowired
+    private AuditLog auditLog;
+
+    @GetMapping("/patient/{patientId}/metrics")
+    public ResponseEntity<?> getMetrics(@PathVariable Long patientId, Authentication auth) {
+        try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            if (!canRead(user, patientId)) {
+                return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
+            }
+
+            List<Map<String, Object>> metrics = vitalsStore.metrics(patientId, user.getRole() == User.Role.PATIENT).stream()
+                    .map(m -> Map.<String, Object>of(
+                            "metric", m.metric(),
+                            "count", m.count(),
+                            "firstAt", m.firstAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+                            "lastAt", m.lastAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)))
+                    .toList();
+
+            auditLog.record(user.getId(), user.getRole(), patientId, AuditAction.VIEW_VITALS,
+                    "/vitals/patient/" + patientId + "/metrics", metrics.size());
+            return ResponseEntity.ok(Map.of("patientId", patientId, "metrics", metrics));
+        } catch (AuditLog.SaturatedException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch vitals: " + e.getMessage()));
+        }
+    }
+
+    // Raw readings, or min/max/avg buckets when a resolution (HOUR, DAY, WEEK, MONTH) is given; "bp" returns both pressures
+    @GetMapping("/patient/{patientId}/{metric}")
+    public ResponseEntity<?> getSeries(@PathVariable Long patientId,
+                                       @PathVariable String metric,
+                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                       @RequestParam(required = false) String resolution,
+                                       Authentication auth) {
+        try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            if (!canRead(user, patientId)) {
+                return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
+            }
+
+            String[] metrics = VitalSignsParser.queryMetrics(metric);
+            if (metrics == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid metric: " + metric));
+            }
+            VitalsStore.Resolution bucketing = null;
+            if (resolution != null && !resolution.equalsIgnoreCase("raw")) {
+                try {
+                    bucketing = VitalsStore.Resolution.valueOf(resolution.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.badRequest().body(Map.of("error", "Invalid resolution: " + resolution));
+                }
+            }
+            LocalDateTime end = to != null ? to : LocalDateTime.now();
+            LocalDateTime start = from != null ? from : end.minusYears(1);
+            if (!start.isBefore(end)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "from must be before to"));
+            }
+
+            // Patients see all of their own readings; staff do not see those from confidential records
+            boolean includeConfidential = user.getRole() == User.Role.PATIENT;
+            Map<String, Object> series = new LinkedHashMap<>();
+            boolean truncated = false;
+            int items = 0;
+            for (String name : metrics) {
+                if (bucketing == null) {
+                    VitalsStore.Series raw = vitalsStore.range(patientId, name, start, end, includeConfidential);
+                    truncated |= raw.truncated();
+                    items += raw.points().size();
+                    series.put(name, raw.points().stream()
+                            .map(p -> Map.<String, Object>of(
+                                    "at", p.at().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+                                    "value", p.value(),
+                                    "recordId", p.recordId()))
+                            .toList());
+                } else {
+                    List<VitalsStore.Bucket> buckets = vitalsStore.downsample(patientId, name, start, end, bucketing,
+                            includeConfidential);
+                    items += buckets.size();
+                    series.put(name, buckets.stream()
+                            .map(b -> Map.<String, Object>of(
+                                    "start", b.start().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+                                    "count", b.count(),
+                                    "min", b.min(),
+                                    "max", b.max(),
+                                    "avg", b.avg()))
+                            .toList());
+                }
+            }
+
+            auditLog.record(user.getId(), user.getRole(), patientId, AuditAction.VIEW_VITALS,
+                    "/vitals/patient/" + patientId + "/" + metric, items);
+            Map<String, Object> response = new HashMap<>();
+            response.put("patientId", patientId);
+            response.put("metric", metric);
+            response.put("resolution", bucketing != null ? bucketing.name() : "RAW");
+            response.put("from", start.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            response.put("to", end.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            response.put("series", series);
+            response.put("truncated", truncated);
+            return ResponseEntity.ok(response);
+        } catch (AuditLog.SaturatedException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch vitals: " + e.getMessage()));
+        }
+    }
+
+    // Rebuilds the store from existing medical records; progress is reported by GET
+    @PostMapping("/backfill")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> startBackfill() {
+        try {
+            if (!vitalsStore.startBackfill()) {
+                return ResponseEntity.status(409).body(Map.of("error", "A vitals backfill is already running"));
+            }
+            return ResponseEntity.accepted().body(toResponse(vitalsStore.backfillStatus()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to start vitals backfill: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/backfill")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getBackfillStatus() {
+        try {
+            VitalsStore.BackfillStatus status = vitalsStore.backfillStatus();
+            if (status == null) {
+                return ResponseEntity.ok(Map.of("running", false));
+            }
+            return ResponseEntity.ok(toResponse(status));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch vitals backfill status: " + e.getMessage()));
+        }
+    }
+
+    private boolean canRead(UserPrincipal user, Long patientId) {
+        return user.getRole() == User.Role.DOCTOR || user.getRole() == User.Role.ADMIN || user.getId().equals(patientId);
+    }
+
+    private Map<String, Object> toResponse(VitalsStore.BackfillStatus status) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("running", status.running());
+        response.put("patients", status.patients());
+        response.put("points", status.points());
+        response.put("failures", status.failures());
+        response.put("startedAt", status.startedAt() != null ? status.startedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) : null);
+        response.put("finishedAt", status.finishedAt() != null ? status.finishedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) : null);
+        return response;
+    }
+}
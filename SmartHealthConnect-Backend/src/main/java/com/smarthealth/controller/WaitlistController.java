@@ -0,0 +1,186 @@
+package com.smarthealth.controller;
+
+import com.smarthealth.entity.Appointment;
+import com.smarthealth.entity.WaitlistEntry;
+import com.smarthealth.security.UserPrincipal;
+import com.smarthealth.service.AppointmentBookingService;
+import com.smarthealth.service.WaitlistService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/waitlist")
+@CrossOrigin(origins = "http://localhost:3000")
+@PreAuthorize("hasRole('PATIENT')")
+public class WaitlistController {
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @PostMapping
+    public ResponseEntity<?> joinWaitlist(@RequestBody WaitlistRequest request, Authentication auth) {
+        try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            WaitlistEntry.Urgency urgency = request.getUrgency() != null
+                    ? WaitlistEntry.Urgency.valueOf(request.getUrgency().toUpperCase()) : null;
+
+            WaitlistEntry entry = waitlistService.join(user.getId(), request.getDoctorId(), request.getSpecialization(),
+                request.getEarliest(), request.getLatest(), request.getDurationMinutes(), urgency,
+                request.getType(), request.getReason());
+
+            return ResponseEntity.ok(Map.of(
+                "message", "Added to the waitlist",
+                "entryId", entry.getId()
+            ));
+        } catch (WaitlistService.WaitlistException e) {
+            return rejection(e);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid urgency"));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to join waitlist: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getMyEntries(Authentication auth) {
+        try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            List<Map<String, Object>> entries = waitlistService.liveEntries(user.getId()).stream()
+                .map(this::mapEntryToResponse)
+                .toList();
+
+            return ResponseEntity.ok(Map.of(
+                "entries", entries,
+                "count", entries.size()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch waitlist: " + e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> leaveWaitlist(@PathVariable Long id, Authentication auth) {
+        try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            waitlistService.leave(id, user.getId());
+            return ResponseEntity.ok(Map.of("message", "Removed from the waitlist"));
+        } catch (WaitlistService.WaitlistException e) {
+            return rejection(e);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to leave waitlist: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{id}/claim")
+    public ResponseEntity<?> claimOffer(@PathVariable Long id, Authentication auth) {
+        try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            Appointment appointment = waitlistService.claim(id, user.getId());
+
+            return ResponseEntity.ok(Map.of(
+                "message", "Appointment booked successfully",
+                "appointmentId", appointment.getId(),
+                "appointmentDate", appointment.getAppointmentDate().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+            ));
+        } catch (WaitlistService.WaitlistException e) {
+            return rejection(e);
+        } catch (AppointmentBookingService.SlotUnavailableException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (AppointmentBookingService.BookingBusyException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to claim slot: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{id}/decline")
+    public ResponseEntity<?> declineOffer(@PathVariable Long id, Authentication auth) {
+        try {
+            UserPrincipal user = (UserPrincipal) auth.getPrincipal();
+            waitlistService.decline(id, user.getId());
+            return ResponseEntity.ok(Map.of("message", "Offer declined, you stay on the waitlist"));
+        } catch (WaitlistService.WaitlistException e) {
+            return rejection(e);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to decline offer: " + e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<?> rejection(WaitlistService.WaitlistException e) {
+        return switch (e.getRejection()) {
+            case NOT_FOUND -> ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
+            case ACCESS_DENIED -> ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
+            case NO_OFFER, LIMIT_REACHED -> ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+            case INVALID -> ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        };
+    }
+
+    private Map<String, Object> mapEntryToResponse(WaitlistEntry entry) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", entry.getId());
+        response.put("specialization", entry.getSpecialization());
+        response.put("earliest", entry.getEarliest().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        response.put("latest", entry.getLatest().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        response.put("durationMinutes", entry.getDurationMinutes());
+        response.put("urgency", entry.getUrgency());
+        response.put("status", entry.getStatus());
+        response.put("createdAt", entry.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+
+        if (entry.getDoctor() != null) {
+            Map<String, Object> doctorInfo = new HashMap<>();
+            doctorInfo.put("id", entry.getDoctor().getId());
+            doctorInfo.put("name", entry.getDoctor().getFirstName() + " " + entry.getDoctor().getLastName());
+            response.put("doctor", doctorInfo);
+        }
+
+        // Slot currently held for the patient
+        if (entry.getStatus() == WaitlistEntry.Status.OFFERED) {
+            Map<String, Object> offer = new HashMap<>();
+            offer.put("doctorId", entry.getOfferDoctorId());
+            offer.put("start", entry.getOfferStart().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            offer.put("durationMinutes", entry.getOfferDurationMinutes());
+            offer.put("expiresAt", entry.getOfferExpiresAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            response.put("offer", offer);
+        }
+        return response;
+    }
+
+    // Request DTOs
+    public static class WaitlistRequest {
+        private Long doctorId;
+        private String specialization;
+        private LocalDateTime earliest;
+        private LocalDateTime latest;
+        private Integer durationMinutes;
+        private String urgency;
+        private String type;
+        private String reason;
+
+        // Getters and setters
+        public Long getDoctorId() { return doctorId; }
+        public void setDoctorId(Long doctorId) { this.doctorId = doctorId; }
+        public String getSpecialization() { return specialization; }
+        public void setSpecialization(String specialization) { this.specialization = specialization; }
+        public LocalDateTime getEarliest() { return earliest; }
+        public void setEarliest(LocalDateTime earliest) { this.earliest = earliest; }
+        public LocalDateTime getLatest() { return latest; }
+        public void setLatest(LocalDateTime latest) { this.latest = latest; }
+        public Integer getDurationMinutes() { return durationMinutes; }
+        public void setDurationMinutes(Integer durationMinutes) { this.durationMinutes = durationMinutes; }
+        public String getUrgency() { return urgency; }
+        public void setUrgency(String urgency) { this.urgency = urgency; }
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+        public String getReason() { return reason; }
+        public void setReason(String reason) { this.reason = reason; }
+    }
+}
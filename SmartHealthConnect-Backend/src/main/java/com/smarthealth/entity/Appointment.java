@@ -2,11 +2,17 @@ package com.smarthealth.entity;
 
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
 
 @Entity
+@EntityListeners(AppointmentEntityListener.class)
 @Table(name = "appointments")
 public class Appointment {
 
+    public static final int DEFAULT_DURATION_MINUTES = 30;
+    public static final int MAX_DURATION_MINUTES = 480;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -36,7 +42,7 @@ public class Appointment {
     private Status status = Status.SCHEDULED;
 
     @Column(name = "duration_minutes")
-    private Integer durationMinutes = 30;
+    private Integer durationMinutes = DEFAULT_DURATION_MINUTES;
 
     @Column(name = "is_video_consultation")
     private Boolean isVideoConsultation = false;
@@ -47,6 +53,15 @@ public class Appointment {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Optimistic lock; also bumped by the single-statement status transition
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version = 0L;
+
+    // Status as last read from the database, so change events can report the transition
+    @Transient
+    private Status previousStatus;
+
     // Constructors
     public Appointment() {
         this.createdAt = LocalDateTime.now();
@@ -136,6 +151,15 @@ public class Appointment {
         this.durationMinutes = durationMinutes;
     }
 
+    // Legacy rows may have a null duration; they have always been treated as 30 minutes
+    public int getEffectiveDurationMinutes() {
+        return durationMinutes != null ? durationMinutes : DEFAULT_DURATION_MINUTES;
+    }
+
+    public LocalDateTime getEndTime() {
+        return appointmentDate.plusMinutes(getEffectiveDurationMinutes());
+    }
+
     public Boolean getIsVideoConsultation() {
         return isVideoConsultation;
     }
@@ -160,18 +184,58 @@ public class Appointment {
         this.updatedAt = updatedAt;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Status getPreviousStatus() {
+        return previousStatus;
+    }
+
+    public void setPreviousStatus(Status previousStatus) {
+        this.previousStatus = previousStatus;
+    }
+
     @PreUpdate
     protected void onUpdate() {
         this.updatedAt = LocalDateTime.now();
     }
 
+    @PostLoad
+    protected void onLoad() {
+        this.previousStatus = status;
+    }
+
+    // Whether an appointment in this status still occupies the doctor's time
+    public static boolean holdsSlot(Status status) {
+        return status != Status.CANCELLED && status != Status.NO_SHOW;
+    }
+
     // Status enum
+    // SCHEDULED -> CONFIRMED -> IN_PROGRESS -> COMPLETED; cancellation and no-show only before the visit starts
     public enum Status {
         SCHEDULED,
         CONFIRMED,
         IN_PROGRESS,
         COMPLETED,
         CANCELLED,
-        NO_SHOW
+        NO_SHOW;
+
+        public boolean canTransitionTo(Status next) {
+            return switch (this) {
+                case SCHEDULED -> next == CONFIRMED || next == CANCELLED || next == NO_SHOW;
+                case CONFIRMED -> next == IN_PROGRESS || next == CANCELLED || next == NO_SHOW;
+                case IN_PROGRESS -> next == COMPLETED;
+                case COMPLETED, CANCELLED, NO_SHOW -> false;
+            };
+        }
+
+        public static List<Status> predecessorsOf(Status next) {
+            return Arrays.stream(values()).filter(s -> s.canTransitionTo(next)).toList();
+        }
     }
 }
\ No newline at end of file
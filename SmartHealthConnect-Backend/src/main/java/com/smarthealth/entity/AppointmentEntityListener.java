@@ -0,0 +1,34 @@
+package com.smarthealth.entity;
+
+import com.smarthealth.event.AppointmentChangedEvent;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+// Turns appointment writes into AppointmentChangedEvents for the schedule indexes
+@Component
+public class AppointmentEntityListener {
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    public void afterInsert(Appointment appointment) {
+        eventPublisher.publishEvent(AppointmentChangedEvent.of(AppointmentChangedEvent.Kind.CREATED, appointment));
+        appointment.setPreviousStatus(appointment.getStatus());
+    }
+
+    @PostUpdate
+    public void afterUpdate(Appointment appointment) {
+        eventPublisher.publishEvent(AppointmentChangedEvent.of(AppointmentChangedEvent.Kind.UPDATED, appointment));
+        appointment.setPreviousStatus(appointment.getStatus());
+    }
+
+    @PostRemove
+    public void afterDelete(Appointment appointment) {
+        eventPublisher.publishEvent(AppointmentChangedEvent.of(AppointmentChangedEvent.Kind.DELETED, appointment));
+    }
+}
@@ -6,6 +6,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
+@EntityListeners(DirectoryEntityListener.class)
 @Table(name = "departments")
 public class Department {
     
@@ -0,0 +1,30 @@
+package com.smarthealth.entity;
+
+import com.smarthealth.event.DirectoryChangedEvent;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+// Turns user, doctor and department writes into DirectoryChangedEvents, still inside the writing transaction
+@Component
+public class DirectoryEntityListener {
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void afterWrite(Object entity) {
+        if (entity instanceof User user) {
+            eventPublisher.publishEvent(new DirectoryChangedEvent(DirectoryChangedEvent.Type.USER, user.getId()));
+        } else if (entity instanceof Doctor doctor) {
+            eventPublisher.publishEvent(new DirectoryChangedEvent(DirectoryChangedEvent.Type.DOCTOR, doctor.getId()));
+        } else if (entity instanceof Department department) {
+            eventPublisher.publishEvent(new DirectoryChangedEvent(DirectoryChangedEvent.Type.DEPARTMENT, department.getId()));
+        }
+    }
+}
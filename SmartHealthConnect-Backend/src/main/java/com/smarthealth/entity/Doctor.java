@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import java.time.LocalDateTime;
 @Entity
+@EntityListeners(DirectoryEntityListener.class)
 @Table(name = "doctors")
 public class Doctor {
     
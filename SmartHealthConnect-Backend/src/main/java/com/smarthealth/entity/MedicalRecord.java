@@ -7,6 +7,7 @@ import jakarta.validation.constraints.Size;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(MedicalRecordEntityListener.class)
 @Table(name = "medical_records")
 public class MedicalRecord {
     
@@ -64,7 +65,7 @@ public class MedicalRecord {
     @Column(name = "follow_up_date")
     private LocalDateTime followUpDate;
     
-    @Column(name = "created_at")
+    @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
     
     @Column(name = "updated_at")
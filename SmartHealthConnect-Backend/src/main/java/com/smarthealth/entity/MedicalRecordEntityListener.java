@@ -0,0 +1,32 @@
+package com.smarthealth.entity;
+
+import com.smarthealth.event.MedicalRecordChangedEvent;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+// Turns medical record writes into MedicalRecordChangedEvents, still inside the writing transaction
+@Component
+public class MedicalRecordEntityListener {
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    public void afterInsert(MedicalRecord record) {
+        eventPublisher.publishEvent(MedicalRecordChangedEvent.of(MedicalRecordChangedEvent.Kind.CREATED, record));
+    }
+
+    @PostUpdate
+    public void afterUpdate(MedicalRecord record) {
+        eventPublisher.publishEvent(MedicalRecordChangedEvent.of(MedicalRecordChangedEvent.Kind.UPDATED, record));
+    }
+
+    @PostRemove
+    public void afterDelete(MedicalRecord record) {
+        eventPublisher.publishEvent(MedicalRecordChangedEvent.of(MedicalRecordChangedEvent.Kind.DELETED, record));
+    }
+}
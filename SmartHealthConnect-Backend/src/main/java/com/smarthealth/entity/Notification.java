@@ -0,0 +1,77 @@
+package com.smarthealth.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "notifications",
+       indexes = @Index(name = "idx_notifications_user_created", columnList = "user_id, created_at"))
+public class Notification {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 30)
+    private Type type;
+
+    @Column(name = "message", nullable = false, length = 500)
+    private String message;
+
+    // Source appointment for reminders; with offset_minutes it makes reminder inserts idempotent
+    @Column(name = "appointment_id")
+    private Long appointmentId;
+
+    @Column(name = "offset_minutes")
+    private Integer offsetMinutes;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "read_at")
+    private LocalDateTime readAt;
+
+    // Constructors
+    public Notification() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public User getUser() { return user; }
+    public void setUser(User user) { this.user = user; }
+
+    public Type getType() { return type; }
+    public void setType(Type type) { this.type = type; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+
+    public Long getAppointmentId() { return appointmentId; }
+    public void setAppointmentId(Long appointmentId) { this.appointmentId = appointmentId; }
+
+    public Integer getOffsetMinutes() { return offsetMinutes; }
+    public void setOffsetMinutes(Integer offsetMinutes) { this.offsetMinutes = offsetMinutes; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getReadAt() { return readAt; }
+    public void setReadAt(LocalDateTime readAt) { this.readAt = readAt; }
+
+    public boolean isRead() { return readAt != null; }
+
+    // Type enum
+    public enum Type {
+        REMINDER,
+        INFO,
+        WARNING
+    }
+}
@@ -0,0 +1,80 @@
+package com.smarthealth.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "refresh_tokens",
+       indexes = {
+           @Index(name = "idx_refresh_tokens_token_hash", columnList = "token_hash", unique = true),
+           @Index(name = "idx_refresh_tokens_family_id", columnList = "family_id")
+       })
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    // SHA-256 (hex) of the opaque token handed to the client; the raw value is never stored
+    @Column(name = "token_hash", nullable = false, length = 64)
+    private String tokenHash;
+
+    // All tokens produced by rotating one login share a family
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // Set when the token has been exchanged; presenting it again means it was stolen
+    @Column(name = "used_at")
+    private LocalDateTime usedAt;
+
+    @Column(name = "revoked", nullable = false)
+    private Boolean revoked = false;
+
+    // Constructors
+    public RefreshToken() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public RefreshToken(User user, String tokenHash, String familyId, LocalDateTime expiresAt) {
+        this();
+        this.user = user;
+        this.tokenHash = tokenHash;
+        this.familyId = familyId;
+        this.expiresAt = expiresAt;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public User getUser() { return user; }
+    public void setUser(User user) { this.user = user; }
+
+    public String getTokenHash() { return tokenHash; }
+    public void setTokenHash(String tokenHash) { this.tokenHash = tokenHash; }
+
+    public String getFamilyId() { return familyId; }
+    public void setFamilyId(String familyId) { this.familyId = familyId; }
+
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getUsedAt() { return usedAt; }
+    public void setUsedAt(LocalDateTime usedAt) { this.usedAt = usedAt; }
+
+    public Boolean getRevoked() { return revoked; }
+    public void setRevoked(Boolean revoked) { this.revoked = revoked; }
+}
@@ -0,0 +1,45 @@
+package com.smarthealth.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "revoked_tokens",
+       indexes = {
+           @Index(name = "idx_revoked_tokens_expires_at", columnList = "expires_at"),
+           @Index(name = "idx_revoked_tokens_revoked_at", columnList = "revoked_at")
+       })
+public class RevokedToken {
+
+    // JWT id (jti) of the revoked token
+    @Id
+    @Column(name = "jti", length = 64)
+    private String jti;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "revoked_at", nullable = false)
+    private LocalDateTime revokedAt;
+
+    // Constructors
+    public RevokedToken() {
+        this.revokedAt = LocalDateTime.now();
+    }
+
+    public RevokedToken(String jti, LocalDateTime expiresAt) {
+        this();
+        this.jti = jti;
+        this.expiresAt = expiresAt;
+    }
+
+    // Getters and Setters
+    public String getJti() { return jti; }
+    public void setJti(String jti) { this.jti = jti; }
+
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+
+    public LocalDateTime getRevokedAt() { return revokedAt; }
+    public void setRevokedAt(LocalDateTime revokedAt) { this.revokedAt = revokedAt; }
+}
@@ -13,6 +13,7 @@ import java.util.Collection;
 import java.util.Collections;
 
 @Entity
+@EntityListeners({UserEntityListener.class, DirectoryEntityListener.class})
 @Table(name = "users", 
        uniqueConstraints = {
            @UniqueConstraint(columnNames = "username"),
@@ -69,6 +70,10 @@ public class User implements UserDetails {
     @Column(name = "enabled")
     private Boolean enabled = true;
     
+    // Bumped whenever previously issued tokens must stop being accepted
+    @Column(name = "token_version")
+    private Integer tokenVersion = 0;
+    
     public enum Role {
         PATIENT, DOCTOR, ADMIN
     }
@@ -158,6 +163,11 @@ public class User implements UserDetails {
     public Boolean getEnabled() { return enabled; }
     public void setEnabled(Boolean enabled) { this.enabled = enabled; }
     
+    public Integer getTokenVersion() { return tokenVersion != null ? tokenVersion : 0; }
+    public void setTokenVersion(Integer tokenVersion) { this.tokenVersion = tokenVersion; }
+    
+    public void bumpTokenVersion() { this.tokenVersion = getTokenVersion() + 1; }
+    
     @PreUpdate
     public void preUpdate() {
         this.updatedAt = LocalDateTime.now();
@@ -0,0 +1,21 @@
+package com.smarthealth.entity;
+
+import com.smarthealth.service.UserAvailabilityIndex;
+import jakarta.persistence.PostPersist;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+// Keeps in-memory user indexes current as users are inserted through JPA
+@Component
+public class UserEntityListener {
+
+    @Autowired
+    @Lazy
+    private UserAvailabilityIndex userAvailabilityIndex;
+
+    @PostPersist
+    public void afterInsert(User user) {
+        userAvailabilityIndex.add(user.getUsername(), user.getEmail());
+    }
+}
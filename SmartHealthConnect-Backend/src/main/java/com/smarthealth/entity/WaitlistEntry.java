@@ -0,0 +1,151 @@
+package com.smarthealth.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "waitlist_entries")
+public class WaitlistEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "patient_id", nullable = false)
+    private User patient;
+
+    // Exactly one of doctor and specialization is set
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "doctor_id")
+    private User doctor;
+
+    @Column(name = "specialization", length = 100)
+    private String specialization;
+
+    // Window in which the patient can attend
+    @Column(name = "earliest", nullable = false)
+    private LocalDateTime earliest;
+
+    @Column(name = "latest", nullable = false)
+    private LocalDateTime latest;
+
+    @Column(name = "duration_minutes", nullable = false)
+    private Integer durationMinutes = Appointment.DEFAULT_DURATION_MINUTES;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "urgency", nullable = false, length = 20)
+    private Urgency urgency = Urgency.NORMAL;
+
+    private String type;
+
+    private String reason;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status = Status.WAITING;
+
+    @Column(name = "offer_doctor_id")
+    private Long offerDoctorId;
+
+    @Column(name = "offer_start")
+    private LocalDateTime offerStart;
+
+    @Column(name = "offer_duration_minutes")
+    private Integer offerDurationMinutes;
+
+    @Column(name = "offer_expires_at")
+    private LocalDateTime offerExpiresAt;
+
+    @Column(name = "appointment_id")
+    private Long appointmentId;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public WaitlistEntry() {
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    public void preUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public User getPatient() { return patient; }
+    public void setPatient(User patient) { this.patient = patient; }
+
+    public User getDoctor() { return doctor; }
+    public void setDoctor(User doctor) { this.doctor = doctor; }
+
+    public String getSpecialization() { return specialization; }
+    public void setSpecialization(String specialization) { this.specialization = specialization; }
+
+    public LocalDateTime getEarliest() { return earliest; }
+    public void setEarliest(LocalDateTime earliest) { this.earliest = earliest; }
+
+    public LocalDateTime getLatest() { return latest; }
+    public void setLatest(LocalDateTime latest) { this.latest = latest; }
+
+    public Integer getDurationMinutes() { return durationMinutes; }
+    public void setDurationMinutes(Integer durationMinutes) { this.durationMinutes = durationMinutes; }
+
+    public Urgency getUrgency() { return urgency; }
+    public void setUrgency(Urgency urgency) { this.urgency = urgency; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public String getReason() { return reason; }
+    public void setReason(String reason) { this.reason = reason; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public Long getOfferDoctorId() { return offerDoctorId; }
+    public void setOfferDoctorId(Long offerDoctorId) { this.offerDoctorId = offerDoctorId; }
+
+    public LocalDateTime getOfferStart() { return offerStart; }
+    public void setOfferStart(LocalDateTime offerStart) { this.offerStart = offerStart; }
+
+    public Integer getOfferDurationMinutes() { return offerDurationMinutes; }
+    public void setOfferDurationMinutes(Integer offerDurationMinutes) { this.offerDurationMinutes = offerDurationMinutes; }
+
+    public LocalDateTime getOfferExpiresAt() { return offerExpiresAt; }
+    public void setOfferExpiresAt(LocalDateTime offerExpiresAt) { this.offerExpiresAt = offerExpiresAt; }
+
+    public Long getAppointmentId() { return appointmentId; }
+    public void setAppointmentId(Long appointmentId) { this.appointmentId = appointmentId; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    // Urgency enum, least urgent first
+    public enum Urgency {
+        LOW,
+        NORMAL,
+        HIGH,
+        URGENT
+    }
+
+    // Status enum
+    public enum Status {
+        WAITING,
+        OFFERED,
+        BOOKED,
+        CANCELLED,
+        EXPIRED
+    }
+}
@@ -0,0 +1,42 @@
+package com.smarthealth.event;
+
+import com.smarthealth.entity.Appointment;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published whenever an appointment row is inserted, updated or deleted so the
+ * in-memory schedule indexes can follow the table without polling it, and so
+ * the change lands in the outbox within the writing transaction.
+ */
+public record AppointmentChangedEvent(Kind kind,
+                                      Long appointmentId,
+                                      Long patientId,
+                                      Long doctorId,
+                                      LocalDateTime appointmentDate,
+                                      int durationMinutes,
+                                      Appointment.Status status,
+                                      Appointment.Status previousStatus) {
+
+    public enum Kind {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public static AppointmentChangedEvent of(Kind kind, Appointment appointment) {
+        return new AppointmentChangedEvent(kind,
+                appointment.getId(),
+                appointment.getPatient().getId(),
+                appointment.getDoctor().getId(),
+                appointment.getAppointmentDate(),
+                appointment.getEffectiveDurationMinutes(),
+                appointment.getStatus(),
+                kind == Kind.CREATED ? null : appointment.getPreviousStatus());
+    }
+
+    // Cancelled and no-show appointments no longer hold their slot
+    public boolean isActive() {
+        return kind != Kind.DELETED && Appointment.holdsSlot(status);
+    }
+}
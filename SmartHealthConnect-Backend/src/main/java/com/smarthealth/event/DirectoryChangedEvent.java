@@ -0,0 +1,14 @@
+package com.smarthealth.event;
+
+/**
+ * Published whenever a user, doctor or department row is inserted, updated or
+ * deleted. Carries the identity only; consumers re-read the row after commit.
+ */
+public record DirectoryChangedEvent(Type type, Long id) {
+
+    public enum Type {
+        USER,
+        DOCTOR,
+        DEPARTMENT
+    }
+}
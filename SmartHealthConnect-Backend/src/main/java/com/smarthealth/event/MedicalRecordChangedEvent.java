@@ -0,0 +1,30 @@
+package com.smarthealth.event;
+
+import com.smarthealth.entity.MedicalRecord;
+
+/**
+ * Published whenever a medical record row is inserted, updated or deleted.
+ * Carries identifiers only; consumers read the record itself through the API.
+ */
+public record MedicalRecordChangedEvent(Kind kind,
+                                        Long recordId,
+                                        Long patientId,
+                                        Long doctorId,
+                                        Long appointmentId,
+                                        MedicalRecord.RecordType type) {
+
+    public enum Kind {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public static MedicalRecordChangedEvent of(Kind kind, MedicalRecord record) {
+        return new MedicalRecordChangedEvent(kind,
+                record.getId(),
+                record.getPatient().getId(),
+                record.getDoctor().getId(),
+                record.getAppointment() != null ? record.getAppointment().getId() : null,
+                record.getType());
+    }
+}
@@ -0,0 +1,17 @@
+package com.smarthealth.event;
+
+import java.util.List;
+
+/**
+ * Receives outbox events in sequence order, at least once. Any Spring bean
+ * implementing this interface is registered with the relay; webhooks are
+ * added from configuration.
+ */
+public interface OutboxConsumer {
+
+    // Stable across restarts; the delivery position is stored under this name
+    String name();
+
+    // Throwing leaves the position unchanged, so the whole batch is retried later
+    void deliver(List<OutboxEvent> batch) throws Exception;
+}
@@ -0,0 +1,17 @@
+package com.smarthealth.event;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.LocalDateTime;
+
+/**
+ * A committed change as stored in the outbox. The sequence is global and
+ * follows commit order, so it doubles as the consumer and feed cursor.
+ */
+public record OutboxEvent(long sequence,
+                          String aggregateType,
+                          long aggregateId,
+                          String type,
+                          @JsonRawValue String payload,
+                          LocalDateTime createdAt) {
+}
@@ -1,6 +1,8 @@
 package com.smarthealth.repository;
 
 import com.smarthealth.entity.Appointment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -8,42 +10,86 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
 
+    // Single appointment with both parties, for endpoints that render it
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    Optional<Appointment> findWithPartiesById(Long id);
+
     // Find appointments by patient ID
+    @EntityGraph(attributePaths = {"patient", "doctor"})
     List<Appointment> findByPatientId(Long patientId);
 
     // Find appointments by doctor ID
+    @EntityGraph(attributePaths = {"patient", "doctor"})
     List<Appointment> findByDoctorId(Long doctorId);
 
+    // Keyset pages, newest first: seek past (appointmentDate, id) of the previous page's last row instead of OFFSET
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    @Query("SELECT a FROM Appointment a WHERE a.patient.id = :patientId ORDER BY a.appointmentDate DESC, a.id DESC")
+    List<Appointment> findPatientPage(@Param("patientId") Long patientId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    @Query("SELECT a FROM Appointment a WHERE a.patient.id = :patientId AND " +
+           "(a.appointmentDate < :afterDate OR (a.appointmentDate = :afterDate AND a.id < :afterId)) " +
+           "ORDER BY a.appointmentDate DESC, a.id DESC")
+    List<Appointment> findPatientPageAfter(@Param("patientId") Long patientId, @Param("afterDate") LocalDateTime afterDate,
+                                           @Param("afterId") Long afterId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    @Query("SELECT a FROM Appointment a WHERE a.doctor.id = :doctorId ORDER BY a.appointmentDate DESC, a.id DESC")
+    List<Appointment> findDoctorPage(@Param("doctorId") Long doctorId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    @Query("SELECT a FROM Appointment a WHERE a.doctor.id = :doctorId AND " +
+           "(a.appointmentDate < :afterDate OR (a.appointmentDate = :afterDate AND a.id < :afterId)) " +
+           "ORDER BY a.appointmentDate DESC, a.id DESC")
+    List<Appointment> findDoctorPageAfter(@Param("doctorId") Long doctorId, @Param("afterDate") LocalDateTime afterDate,
+                                          @Param("afterId") Long afterId, Pageable pageable);
+
     // Find by doctor ID and status
     List<Appointment> findByDoctorIdAndStatus(Long doctorId, Appointment.Status status);
 
     // Find upcoming appointments by patient
+    @EntityGraph(attributePaths = {"patient", "doctor"})
     @Query("SELECT a FROM Appointment a WHERE a.patient.id = :patientId AND a.appointmentDate > :currentDate ORDER BY a.appointmentDate")
     List<Appointment> findUpcomingAppointmentsByPatient(@Param("patientId") Long patientId, @Param("currentDate") LocalDateTime currentDate);
 
     // Find upcoming appointments by doctor
+    @EntityGraph(attributePaths = {"patient", "doctor"})
     @Query("SELECT a FROM Appointment a WHERE a.doctor.id = :doctorId AND a.appointmentDate > :currentDate ORDER BY a.appointmentDate")
     List<Appointment> findUpcomingAppointmentsByDoctor(@Param("doctorId") Long doctorId, @Param("currentDate") LocalDateTime currentDate);
 
     // Find today appointments by doctor
+    @EntityGraph(attributePaths = {"patient", "doctor"})
     @Query("SELECT a FROM Appointment a WHERE a.doctor.id = :doctorId AND a.appointmentDate BETWEEN :startDate AND :endDate ORDER BY a.appointmentDate")
     List<Appointment> findTodayAppointmentsByDoctor(@Param("doctorId") Long doctorId, @Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
 
-    // Find conflicting appointments - simplified version without INTERVAL
-    @Query("SELECT a FROM Appointment a WHERE a.doctor.id = :doctorId AND a.appointmentDate BETWEEN :startTime AND :endTime AND a.status NOT IN ('CANCELLED', 'NO_SHOW')")
-    List<Appointment> findConflictingAppointments(@Param("doctorId") Long doctorId, @Param("startTime") LocalDateTime startTime, @Param("endTime") LocalDateTime endTime);
+    // True range overlap: [appointment_date, appointment_date + duration) intersects [startTime, endTime)
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM appointments a WHERE a.doctor_id = :doctorId " +
+            "AND a.status NOT IN ('CANCELLED', 'NO_SHOW') AND a.id <> :excludeId " +
+            "AND a.appointment_date < :endTime " +
+            "AND a.appointment_date + make_interval(mins => COALESCE(a.duration_minutes, 30)) > :startTime)",
+            nativeQuery = true)
+    boolean existsOverlappingAppointment(@Param("doctorId") Long doctorId, @Param("startTime") LocalDateTime startTime,
+                                         @Param("endTime") LocalDateTime endTime, @Param("excludeId") Long excludeId);
+
+    // Slot-holding appointments of one doctor from a point in time, as (id, appointment_date, duration_minutes)
+    @Query(value = "SELECT a.id, a.appointment_date, COALESCE(a.duration_minutes, 30) FROM appointments a " +
+            "WHERE a.doctor_id = :doctorId AND a.status NOT IN ('CANCELLED', 'NO_SHOW') " +
+            "AND a.appointment_date + make_interval(mins => COALESCE(a.duration_minutes, 30)) > :from",
+            nativeQuery = true)
+    List<Object[]> findActiveIntervalsByDoctor(@Param("doctorId") Long doctorId, @Param("from") LocalDateTime from);
 
-    // Count appointments by patient and status (handles null status)
-    @Query("SELECT COUNT(a) FROM Appointment a WHERE a.patient.id = :patientId AND (:status IS NULL OR a.status = :status)")
-    Long countAppointmentsByPatientAndStatus(@Param("patientId") Long patientId, @Param("status") Appointment.Status status);
+    // Count appointments in a status across all doctors
+    long countByStatus(Appointment.Status status);
 
-    // Count appointments by doctor and status (handles null status)
-    @Query("SELECT COUNT(a) FROM Appointment a WHERE a.doctor.id = :doctorId AND (:status IS NULL OR a.status = :status)")
-    Long countAppointmentsByDoctorAndStatus(@Param("doctorId") Long doctorId, @Param("status") Appointment.Status status);
+    // Count appointments in a date range across all doctors
+    @Query("SELECT COUNT(a) FROM Appointment a WHERE a.appointmentDate BETWEEN :startDate AND :endDate")
+    long countByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
 
     // Find doctor appointments by date range
     @Query("SELECT a FROM Appointment a WHERE (:status IS NULL OR a.status = :status) AND a.appointmentDate BETWEEN :startDate AND :endDate ORDER BY a.appointmentDate")
@@ -90,6 +90,16 @@ public interface DoctorRepository extends JpaRepository<Doctor, Long> {
     // Count available doctors
     Long countByAvailabilityAndIsActiveTrue(AvailabilityStatus availability);
     
+    // Login accounts (users with the DOCTOR role) of active doctors in a specialization, matched by email
+    @Query("SELECT u.id FROM User u, Doctor d WHERE LOWER(u.email) = LOWER(d.email) " +
+           "AND LOWER(d.specialization) = LOWER(:specialization) AND d.isActive = true " +
+           "AND u.role = com.smarthealth.entity.User$Role.DOCTOR AND u.isActive = true AND u.enabled = true")
+    List<Long> findActiveDoctorUserIdsBySpecialization(@Param("specialization") String specialization);
+    
+    // Specialization of the doctor profile behind a login account, matched by email
+    @Query("SELECT d.specialization FROM Doctor d, User u WHERE u.id = :userId AND LOWER(u.email) = LOWER(d.email)")
+    Optional<String> findSpecializationByUserId(@Param("userId") Long userId);
+    
     // Get all specializations
     @Query("SELECT DISTINCT d.specialization FROM Doctor d WHERE d.isActive = true ORDER BY d.specialization")
     List<String> findAllSpecializations();
@@ -1,43 +1,80 @@
 package com.smarthealth.repository;
 
 import com.smarthealth.entity.MedicalRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MedicalRecordRepository extends JpaRepository<MedicalRecord, Long> {
     
+    // Single record with both parties, for endpoints that render it
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    Optional<MedicalRecord> findWithPartiesById(Long id);
+    
+    // Search hits in one query; callers restore the ranking
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    List<MedicalRecord> findWithPartiesByIdIn(Collection<Long> ids);
+    
+    @EntityGraph(attributePaths = {"patient", "doctor"})
     List<MedicalRecord> findByPatientId(Long patientId);
     
+    @EntityGraph(attributePaths = {"patient", "doctor"})
     List<MedicalRecord> findByDoctorId(Long doctorId);
     
+    @EntityGraph(attributePaths = {"patient", "doctor"})
     List<MedicalRecord> findByPatientIdAndType(Long patientId, MedicalRecord.RecordType type);
     
+    @EntityGraph(attributePaths = {"patient", "doctor"})
     @Query("SELECT mr FROM MedicalRecord mr WHERE mr.patient.id = :patientId ORDER BY mr.createdAt DESC")
     List<MedicalRecord> findPatientRecordsOrderByDate(@Param("patientId") Long patientId);
     
+    // Keyset pages, newest first: seek past (createdAt, id) of the previous page's last row instead of OFFSET
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    @Query("SELECT mr FROM MedicalRecord mr WHERE mr.patient.id = :patientId ORDER BY mr.createdAt DESC, mr.id DESC")
+    List<MedicalRecord> findPatientPage(@Param("patientId") Long patientId, Pageable pageable);
+    
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    @Query("SELECT mr FROM MedicalRecord mr WHERE mr.patient.id = :patientId AND " +
+           "(mr.createdAt < :afterDate OR (mr.createdAt = :afterDate AND mr.id < :afterId)) " +
+           "ORDER BY mr.createdAt DESC, mr.id DESC")
+    List<MedicalRecord> findPatientPageAfter(@Param("patientId") Long patientId, @Param("afterDate") LocalDateTime afterDate,
+                                             @Param("afterId") Long afterId, Pageable pageable);
+    
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    @Query("SELECT mr FROM MedicalRecord mr WHERE mr.doctor.id = :doctorId ORDER BY mr.createdAt DESC, mr.id DESC")
+    List<MedicalRecord> findDoctorPage(@Param("doctorId") Long doctorId, Pageable pageable);
+    
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    @Query("SELECT mr FROM MedicalRecord mr WHERE mr.doctor.id = :doctorId AND " +
+           "(mr.createdAt < :afterDate OR (mr.createdAt = :afterDate AND mr.id < :afterId)) " +
+           "ORDER BY mr.createdAt DESC, mr.id DESC")
+    List<MedicalRecord> findDoctorPageAfter(@Param("doctorId") Long doctorId, @Param("afterDate") LocalDateTime afterDate,
+                                            @Param("afterId") Long afterId, Pageable pageable);
+    
+    @EntityGraph(attributePaths = {"patient", "doctor"})
     @Query("SELECT mr FROM MedicalRecord mr WHERE mr.patient.id = :patientId AND mr.createdAt >= :startDate AND mr.createdAt <= :endDate ORDER BY mr.createdAt DESC")
     List<MedicalRecord> findPatientRecordsByDateRange(@Param("patientId") Long patientId, 
                                                      @Param("startDate") LocalDateTime startDate, 
                                                      @Param("endDate") LocalDateTime endDate);
     
+    @EntityGraph(attributePaths = {"patient", "doctor"})
     @Query("SELECT mr FROM MedicalRecord mr WHERE mr.doctor.id = :doctorId ORDER BY mr.createdAt DESC")
     List<MedicalRecord> findDoctorRecordsOrderByDate(@Param("doctorId") Long doctorId);
     
+    @EntityGraph(attributePaths = {"patient", "doctor"})
     @Query("SELECT mr FROM MedicalRecord mr WHERE mr.patient.id = :patientId AND mr.isConfidential = false ORDER BY mr.createdAt DESC")
     List<MedicalRecord> findNonConfidentialRecordsByPatient(@Param("patientId") Long patientId);
     
-    @Query("SELECT COUNT(mr) FROM MedicalRecord mr WHERE mr.patient.id = :patientId")
-    Long countRecordsByPatient(@Param("patientId") Long patientId);
-    
-    @Query("SELECT COUNT(mr) FROM MedicalRecord mr WHERE mr.doctor.id = :doctorId")
-    Long countRecordsByDoctor(@Param("doctorId") Long doctorId);
-    
+    @EntityGraph(attributePaths = {"patient", "doctor"})
     @Query("SELECT mr FROM MedicalRecord mr WHERE mr.patient.id = :patientId AND " +
            "(LOWER(mr.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
            "LOWER(mr.diagnosis) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
@@ -0,0 +1,40 @@
+package com.smarthealth.repository;
+
+import com.smarthealth.entity.Notification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface NotificationRepository extends JpaRepository<Notification, Long> {
+
+    // Latest notifications of a user, newest first
+    @Query("SELECT n FROM Notification n WHERE n.user.id = :userId ORDER BY n.createdAt DESC, n.id DESC")
+    List<Notification> findRecentByUser(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT COUNT(n) FROM Notification n WHERE n.user.id = :userId AND n.readAt IS NULL")
+    long countUnreadByUser(@Param("userId") Long userId);
+
+    // Idempotent reminder insert; returns 0 when this reminder was already delivered
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO notifications (user_id, type, message, appointment_id, offset_minutes, created_at) " +
+            "VALUES (:userId, 'REMINDER', :message, :appointmentId, :offsetMinutes, :now) " +
+            "ON CONFLICT (appointment_id, user_id, offset_minutes) WHERE appointment_id IS NOT NULL DO NOTHING",
+            nativeQuery = true)
+    int insertReminder(@Param("userId") Long userId, @Param("appointmentId") Long appointmentId,
+                       @Param("offsetMinutes") int offsetMinutes, @Param("message") String message,
+                       @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Notification n SET n.readAt = :now WHERE n.id = :id AND n.user.id = :userId AND n.readAt IS NULL")
+    int markRead(@Param("id") Long id, @Param("userId") Long userId, @Param("now") LocalDateTime now);
+}
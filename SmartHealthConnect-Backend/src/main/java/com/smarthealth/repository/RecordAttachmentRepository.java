@@ -0,0 +1,22 @@
+package com.smarthealth.repository;
+
+import com.smarthealth.entity.RecordAttachment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RecordAttachmentRepository extends JpaRepository<RecordAttachment, Long> {
+
+    @Query("SELECT a FROM RecordAttachment a WHERE a.record.id = :recordId ORDER BY a.createdAt, a.id")
+    List<RecordAttachment> findByRecord(@Param("recordId") Long recordId);
+
+    @Query("SELECT a FROM RecordAttachment a WHERE a.id = :id AND a.record.id = :recordId")
+    Optional<RecordAttachment> findByIdAndRecord(@Param("id") Long id, @Param("recordId") Long recordId);
+
+    boolean existsBySha256(String sha256);
+}
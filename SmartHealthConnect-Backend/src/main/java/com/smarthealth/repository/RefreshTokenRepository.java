@@ -0,0 +1,39 @@
+package com.smarthealth.repository;
+
+import com.smarthealth.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    // Single indexed lookup that also brings the owning user along
+    @Query("SELECT r FROM RefreshToken r JOIN FETCH r.user WHERE r.tokenHash = :tokenHash")
+    Optional<RefreshToken> findByTokenHashWithUser(@Param("tokenHash") String tokenHash);
+
+    // Marks a token as exchanged; returns 0 if it was already used or revoked
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.usedAt = :now WHERE r.id = :id AND r.usedAt IS NULL AND r.revoked = false")
+    int markUsed(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    // Revoke every token in a family (logout or detected reuse)
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.revoked = true WHERE r.familyId = :familyId AND r.revoked = false")
+    int revokeFamily(@Param("familyId") String familyId);
+
+    // Revoke all of a user's sessions
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.revoked = true WHERE r.user.id = :userId AND r.revoked = false")
+    int revokeAllForUser(@Param("userId") Long userId);
+
+    // Drop tokens that can no longer be exchanged
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,29 @@
+package com.smarthealth.repository;
+
+import com.smarthealth.entity.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    // Revocations that still matter (token not yet expired)
+    List<RevokedToken> findByExpiresAtAfter(LocalDateTime now);
+
+    // Revocations recorded since the given time, including those made by other instances
+    @Query("SELECT r FROM RevokedToken r WHERE r.revokedAt > :since AND r.expiresAt > :now")
+    List<RevokedToken> findRevokedSince(@Param("since") LocalDateTime since, @Param("now") LocalDateTime now);
+
+    // Remove revocations whose tokens have expired anyway
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RevokedToken r WHERE r.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -1,6 +1,7 @@
 package com.smarthealth.repository;
 
 import com.smarthealth.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -24,10 +25,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // Check if email exists
     boolean existsByEmail(String email);
 
+    // Case-insensitive existence checks used by the availability endpoint
+    boolean existsByUsernameIgnoreCase(String username);
+
+    boolean existsByEmailIgnoreCase(String email);
+
     // Find by username or email
     @Query("SELECT u FROM User u WHERE u.username = :usernameOrEmail OR u.email = :usernameOrEmail")
     Optional<User> findByUsernameOrEmail(@Param("usernameOrEmail") String usernameOrEmail, @Param("usernameOrEmail") String usernameOrEmail2);
 
+    // Current token version of an active, enabled user (no row materialisation)
+    @Query("SELECT COALESCE(u.tokenVersion, 0) FROM User u WHERE u.id = :id AND u.isActive = true AND (u.enabled IS NULL OR u.enabled = true)")
+    Optional<Integer> findActiveTokenVersionById(@Param("id") Long id);
+
     // Find by role
     List<User> findByRole(User.Role role);
 
@@ -38,6 +48,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.role = :role AND u.isActive = true")
     List<User> findActiveUsersByRole(@Param("role") User.Role role);
 
+    // Keyset page of active users of a role in id order
+    @Query("SELECT u FROM User u WHERE u.role = :role AND u.isActive = true AND u.id > :afterId ORDER BY u.id")
+    List<User> findActiveUsersByRoleAfter(@Param("role") User.Role role, @Param("afterId") Long afterId, Pageable pageable);
+
     // Count active users by role
     @Query("SELECT COUNT(u) FROM User u WHERE u.role = :role AND u.isActive = true")
     Long countActiveUsersByRole(@Param("role") User.Role role);
@@ -0,0 +1,97 @@
+package com.smarthealth.repository;
+
+import com.smarthealth.entity.WaitlistEntry;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+
+    // Live entries for the in-memory queues
+    @Query("SELECT w FROM WaitlistEntry w WHERE w.status IN :statuses")
+    List<WaitlistEntry> findByStatusIn(@Param("statuses") Collection<WaitlistEntry.Status> statuses);
+
+    @EntityGraph(attributePaths = {"doctor"})
+    @Query("SELECT w FROM WaitlistEntry w WHERE w.patient.id = :patientId AND w.status IN :statuses ORDER BY w.createdAt")
+    List<WaitlistEntry> findByPatientAndStatusIn(@Param("patientId") Long patientId,
+                                                 @Param("statuses") Collection<WaitlistEntry.Status> statuses);
+
+    @Query("SELECT COUNT(w) FROM WaitlistEntry w WHERE w.patient.id = :patientId AND w.status IN :statuses")
+    long countByPatientAndStatusIn(@Param("patientId") Long patientId,
+                                   @Param("statuses") Collection<WaitlistEntry.Status> statuses);
+
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    Optional<WaitlistEntry> findWithPartiesById(Long id);
+
+    // Waiting entries a slot freed at start could go to, whichever instance they joined through
+    @Query("SELECT w FROM WaitlistEntry w WHERE w.status = com.smarthealth.entity.WaitlistEntry$Status.WAITING " +
+           "AND (w.doctor.id = :doctorId OR LOWER(w.specialization) = :specialization) " +
+           "AND w.earliest <= :start AND w.latest > :start AND w.durationMinutes <= :duration")
+    List<WaitlistEntry> findWaitingFor(@Param("doctorId") Long doctorId, @Param("specialization") String specialization,
+                                       @Param("start") LocalDateTime start, @Param("duration") int duration);
+
+    // Slots held for waitlisted patients overlapping [from, to), as doctor id, start and length in minutes
+    @Query(value = "SELECT offer_doctor_id, offer_start, offer_duration_minutes FROM waitlist_entries " +
+            "WHERE status = 'OFFERED' AND offer_doctor_id IN (:doctorIds) AND offer_expires_at > :now " +
+            "AND offer_start < :to AND offer_start + make_interval(mins => offer_duration_minutes) > :from",
+            nativeQuery = true)
+    List<Object[]> findActiveHolds(@Param("doctorIds") Collection<Long> doctorIds, @Param("from") LocalDateTime from,
+                                   @Param("to") LocalDateTime to, @Param("now") LocalDateTime now);
+
+    // Whether a slot overlapping [startTime, endTime) is held for another patient
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM waitlist_entries WHERE status = 'OFFERED' " +
+            "AND offer_doctor_id = :doctorId AND offer_expires_at > :now AND patient_id <> :patientId " +
+            "AND offer_start < :endTime " +
+            "AND offer_start + make_interval(mins => offer_duration_minutes) > :startTime)",
+            nativeQuery = true)
+    boolean existsHoldForOtherPatient(@Param("doctorId") Long doctorId, @Param("startTime") LocalDateTime startTime,
+                                      @Param("endTime") LocalDateTime endTime, @Param("patientId") Long patientId,
+                                      @Param("now") LocalDateTime now);
+
+    // The conditional status checks keep instances and retries from acting twice on one entry
+    @Modifying
+    @Transactional
+    @Query("UPDATE WaitlistEntry w SET w.status = com.smarthealth.entity.WaitlistEntry$Status.OFFERED, " +
+           "w.offerDoctorId = :doctorId, w.offerStart = :start, w.offerDurationMinutes = :duration, " +
+           "w.offerExpiresAt = :expiresAt, w.updatedAt = :now " +
+           "WHERE w.id = :id AND w.status = com.smarthealth.entity.WaitlistEntry$Status.WAITING")
+    int offer(@Param("id") Long id, @Param("doctorId") Long doctorId, @Param("start") LocalDateTime start,
+              @Param("duration") int duration, @Param("expiresAt") LocalDateTime expiresAt,
+              @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE WaitlistEntry w SET w.status = com.smarthealth.entity.WaitlistEntry$Status.WAITING, " +
+           "w.offerDoctorId = NULL, w.offerStart = NULL, w.offerDurationMinutes = NULL, w.offerExpiresAt = NULL, " +
+           "w.updatedAt = :now " +
+           "WHERE w.id = :id AND w.status = com.smarthealth.entity.WaitlistEntry$Status.OFFERED")
+    int releaseOffer(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE WaitlistEntry w SET w.status = com.smarthealth.entity.WaitlistEntry$Status.BOOKED, " +
+           "w.appointmentId = :appointmentId, w.offerExpiresAt = NULL, w.updatedAt = :now " +
+           "WHERE w.id = :id AND w.status = com.smarthealth.entity.WaitlistEntry$Status.OFFERED " +
+           "AND w.offerDoctorId = :doctorId AND w.offerStart = :start AND w.offerExpiresAt > :now")
+    int markBooked(@Param("id") Long id, @Param("doctorId") Long doctorId, @Param("start") LocalDateTime start,
+                   @Param("appointmentId") Long appointmentId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE WaitlistEntry w SET w.status = com.smarthealth.entity.WaitlistEntry$Status.CANCELLED, " +
+           "w.offerExpiresAt = NULL, w.updatedAt = :now " +
+           "WHERE w.id = :id AND w.patient.id = :patientId " +
+           "AND w.status IN (com.smarthealth.entity.WaitlistEntry$Status.WAITING, " +
+           "com.smarthealth.entity.WaitlistEntry$Status.OFFERED)")
+    int leave(@Param("id") Long id, @Param("patientId") Long patientId, @Param("now") LocalDateTime now);
+}
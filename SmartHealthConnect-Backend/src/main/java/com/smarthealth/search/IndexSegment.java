@@ -0,0 +1,51 @@
+package com.smarthealth.search;
+
+/**
+ * One generation of the record index: a table of documents (record id, the
+ * two parties used for scoping, and the document length in terms) plus a
+ * postings list per term. Document ordinals are dense and only meaningful
+ * within the segment; postings are sorted by ordinal. A tombstone document
+ * marks a record deleted as of this segment and has no postings.
+ */
+public abstract class IndexSegment {
+
+    @FunctionalInterface
+    public interface PostingVisitor {
+        void visit(int doc, int termFrequency);
+    }
+
+    @FunctionalInterface
+    public interface TermVisitor {
+        // Postings as (doc, termFrequency) pairs
+        void visit(String term, int[] postings);
+    }
+
+    private final int id;
+
+    protected IndexSegment(int id) {
+        this.id = id;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public abstract int docCount();
+
+    public abstract int termCount();
+
+    public abstract long recordId(int doc);
+
+    public abstract long patientId(int doc);
+
+    public abstract long doctorId(int doc);
+
+    public abstract int length(int doc);
+
+    public abstract boolean isTombstone(int doc);
+
+    public abstract void postings(String term, PostingVisitor visitor);
+
+    // In term byte order for persisted segments, unspecified for live ones
+    public abstract void forEachTerm(TermVisitor visitor);
+}
@@ -0,0 +1,111 @@
+package com.smarthealth.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The in-memory segment new and updated records are appended to until it is
+ * flushed to disk. Not thread-safe; the index guards it with its own lock.
+ */
+public class LiveSegment extends IndexSegment {
+
+    private record Doc(long recordId, long patientId, long doctorId, int length, boolean tombstone) {
+    }
+
+    private final List<Doc> docs = new ArrayList<>();
+    private final Map<String, IntList> postings = new HashMap<>();
+
+    public LiveSegment(int id) {
+        super(id);
+    }
+
+    // Adds a document with its term frequencies and returns its ordinal
+    public int add(long recordId, long patientId, long doctorId, Map<String, Integer> termFrequencies) {
+        int doc = addDoc(recordId, patientId, doctorId,
+                termFrequencies.values().stream().mapToInt(Integer::intValue).sum(), false);
+        termFrequencies.forEach((term, tf) -> addPosting(term, doc, tf));
+        return doc;
+    }
+
+    public int addTombstone(long recordId) {
+        return addDoc(recordId, 0, 0, 0, true);
+    }
+
+    // Low-level append used when merging; postings must be added in ordinal order
+    public int addDoc(long recordId, long patientId, long doctorId, int length, boolean tombstone) {
+        docs.add(new Doc(recordId, patientId, doctorId, length, tombstone));
+        return docs.size() - 1;
+    }
+
+    public void addPosting(String term, int doc, int termFrequency) {
+        IntList list = postings.computeIfAbsent(term, t -> new IntList());
+        list.add(doc);
+        list.add(termFrequency);
+    }
+
+    @Override
+    public int docCount() {
+        return docs.size();
+    }
+
+    @Override
+    public int termCount() {
+        return postings.size();
+    }
+
+    @Override
+    public long recordId(int doc) {
+        return docs.get(doc).recordId();
+    }
+
+    @Override
+    public long patientId(int doc) {
+        return docs.get(doc).patientId();
+    }
+
+    @Override
+    public long doctorId(int doc) {
+        return docs.get(doc).doctorId();
+    }
+
+    @Override
+    public int length(int doc) {
+        return docs.get(doc).length();
+    }
+
+    @Override
+    public boolean isTombstone(int doc) {
+        return docs.get(doc).tombstone();
+    }
+
+    @Override
+    public void postings(String term, PostingVisitor visitor) {
+        IntList list = postings.get(term);
+        if (list == null) {
+            return;
+        }
+        for (int i = 0; i < list.size; i += 2) {
+            visitor.visit(list.values[i], list.values[i + 1]);
+        }
+    }
+
+    @Override
+    public void forEachTerm(TermVisitor visitor) {
+        postings.forEach((term, list) -> visitor.visit(term, Arrays.copyOf(list.values, list.size)));
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
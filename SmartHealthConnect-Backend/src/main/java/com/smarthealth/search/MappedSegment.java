@@ -0,0 +1,159 @@
+package com.smarthealth.search;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A persisted segment read straight from a read-only memory mapping; see
+ * {@link SegmentFiles} for the layout. Term lookup is a binary search over the
+ * sorted term table comparing raw UTF-8 bytes. Only absolute reads are used,
+ * so any number of threads can search one instance.
+ */
+public class MappedSegment extends IndexSegment {
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int docCount;
+    private final int termCount;
+    private final int termsStart;
+
+    private MappedSegment(int id, Path path, MappedByteBuffer buffer) throws IOException {
+        super(id);
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < SegmentFiles.HEADER_BYTES + Long.BYTES
+                || buffer.getInt(0) != SegmentFiles.MAGIC || buffer.getInt(4) != SegmentFiles.VERSION) {
+            throw new IOException("Not a record index segment: " + path);
+        }
+        this.docCount = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        this.termsStart = SegmentFiles.HEADER_BYTES + SegmentFiles.DOC_BYTES * docCount;
+    }
+
+    // Maps the file and verifies its checksum before anything reads from it
+    public static MappedSegment open(int id, Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int bodyLength = buffer.capacity() - Long.BYTES;
+        if (bodyLength < 0) {
+            throw new IOException("Truncated segment: " + path);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, bodyLength));
+        if (crc.getValue() != buffer.getLong(bodyLength)) {
+            throw new IOException("Checksum mismatch in segment: " + path);
+        }
+        return new MappedSegment(id, path, buffer);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    @Override
+    public int docCount() {
+        return docCount;
+    }
+
+    @Override
+    public int termCount() {
+        return termCount;
+    }
+
+    @Override
+    public long recordId(int doc) {
+        return buffer.getLong(docOffset(doc));
+    }
+
+    @Override
+    public long patientId(int doc) {
+        return buffer.getLong(docOffset(doc) + 8);
+    }
+
+    @Override
+    public long doctorId(int doc) {
+        return buffer.getLong(docOffset(doc) + 16);
+    }
+
+    @Override
+    public int length(int doc) {
+        return buffer.getInt(docOffset(doc) + 24);
+    }
+
+    @Override
+    public boolean isTombstone(int doc) {
+        return (buffer.getInt(docOffset(doc) + 28) & SegmentFiles.FLAG_TOMBSTONE) != 0;
+    }
+
+    @Override
+    public void postings(String term, PostingVisitor visitor) {
+        int index = find(term.getBytes(StandardCharsets.UTF_8));
+        if (index < 0) {
+            return;
+        }
+        int entry = termsStart + index * SegmentFiles.TERM_BYTES;
+        int offset = buffer.getInt(entry + 8);
+        int docFreq = buffer.getInt(entry + 12);
+        for (int i = 0; i < docFreq; i++, offset += 8) {
+            visitor.visit(buffer.getInt(offset), buffer.getInt(offset + 4));
+        }
+    }
+
+    @Override
+    public void forEachTerm(TermVisitor visitor) {
+        for (int index = 0; index < termCount; index++) {
+            int entry = termsStart + index * SegmentFiles.TERM_BYTES;
+            byte[] key = new byte[buffer.getInt(entry + 4)];
+            buffer.get(buffer.getInt(entry), key);
+            int offset = buffer.getInt(entry + 8);
+            int[] postings = new int[buffer.getInt(entry + 12) * 2];
+            for (int i = 0; i < postings.length; i++, offset += 4) {
+                postings[i] = buffer.getInt(offset);
+            }
+            visitor.visit(new String(key, StandardCharsets.UTF_8), postings);
+        }
+    }
+
+    private int docOffset(int doc) {
+        return SegmentFiles.HEADER_BYTES + doc * SegmentFiles.DOC_BYTES;
+    }
+
+    private int find(byte[] key) {
+        int lo = 0;
+        int hi = termCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareKey(mid, key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // Unsigned byte order, matching how SegmentFiles sorts the term table
+    private int compareKey(int index, byte[] key) {
+        int entry = termsStart + index * SegmentFiles.TERM_BYTES;
+        int offset = buffer.getInt(entry);
+        int length = buffer.getInt(entry + 4);
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Integer.compare(buffer.get(offset + i) & 0xff, key[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+}
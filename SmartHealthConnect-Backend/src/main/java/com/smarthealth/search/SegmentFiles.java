@@ -0,0 +1,101 @@
+package com.smarthealth.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes segments in the layout {@link MappedSegment} reads, all big-endian:
+ * <pre>
+ * header   magic, version, docCount, termCount             (4 ints)
+ * docs     recordId, patientId, doctorId, length, flags    (3 longs, 2 ints each)
+ * terms    keyOffset, keyLength, postingsOffset, docFreq   (4 ints each, sorted by key bytes)
+ * keys     UTF-8 term bytes
+ * postings doc, termFrequency                              (2 ints each)
+ * footer   CRC32 of everything above                       (1 long)
+ * </pre>
+ * Files are written beside the target, fsynced and renamed into place, so a
+ * crash never leaves a half-written segment under its final name.
+ */
+public final class SegmentFiles {
+
+    static final int MAGIC = 0x52494458;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int DOC_BYTES = 32;
+    static final int TERM_BYTES = 16;
+    static final int FLAG_TOMBSTONE = 1;
+
+    private SegmentFiles() {
+    }
+
+    private record Term(byte[] key, int[] postings) {
+    }
+
+    public static void write(IndexSegment segment, Path target) throws IOException {
+        List<Term> terms = new ArrayList<>(segment.termCount());
+        segment.forEachTerm((term, postings) -> terms.add(new Term(term.getBytes(StandardCharsets.UTF_8), postings)));
+        terms.sort((a, b) -> Arrays.compareUnsigned(a.key(), b.key()));
+
+        int docCount = segment.docCount();
+        long keysStart = HEADER_BYTES + (long) DOC_BYTES * docCount + (long) TERM_BYTES * terms.size();
+        long keyBytes = terms.stream().mapToLong(t -> t.key().length).sum();
+        long postingsStart = keysStart + keyBytes;
+        long postingBytes = terms.stream().mapToLong(t -> (long) t.postings().length * 4).sum();
+        if (postingsStart + postingBytes > Integer.MAX_VALUE) {
+            throw new IOException("Segment too large: " + (postingsStart + postingBytes) + " bytes");
+        }
+
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(docCount);
+            out.writeInt(terms.size());
+
+            for (int doc = 0; doc < docCount; doc++) {
+                out.writeLong(segment.recordId(doc));
+                out.writeLong(segment.patientId(doc));
+                out.writeLong(segment.doctorId(doc));
+                out.writeInt(segment.length(doc));
+                out.writeInt(segment.isTombstone(doc) ? FLAG_TOMBSTONE : 0);
+            }
+
+            long keyOffset = keysStart;
+            long postingsOffset = postingsStart;
+            for (Term term : terms) {
+                out.writeInt((int) keyOffset);
+                out.writeInt(term.key().length);
+                out.writeInt((int) postingsOffset);
+                out.writeInt(term.postings().length / 2);
+                keyOffset += term.key().length;
+                postingsOffset += (long) term.postings().length * 4;
+            }
+            for (Term term : terms) {
+                out.write(term.key());
+            }
+            for (Term term : terms) {
+                for (int value : term.postings()) {
+                    out.writeInt(value);
+                }
+            }
+            out.flush();
+            // The footer is not part of its own checksum
+            new DataOutputStream(file).writeLong(crc.getValue());
+            file.getFD().sync();
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
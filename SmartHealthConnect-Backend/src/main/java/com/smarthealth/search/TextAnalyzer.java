@@ -0,0 +1,116 @@
+package com.smarthealth.search;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns record text and queries into index terms: lower-cased letter/digit
+ * runs, minus stop words, through a light English suffix stemmer. Synonym
+ * groups are stemmed the same way and only applied to queries, so changing
+ * the synonym file never requires a reindex.
+ */
+public class TextAnalyzer {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "have", "in", "is", "it",
+            "its", "of", "on", "or", "that", "the", "this", "to", "was", "were", "with");
+
+    private final Map<String, Set<String>> synonyms = new HashMap<>();
+
+    public TextAnalyzer() {
+    }
+
+    // Synonym file format: one comma separated group per line, '#' starts a comment
+    public TextAnalyzer(InputStream synonymGroups) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(synonymGroups, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                Set<String> group = new LinkedHashSet<>();
+                for (String word : line.split(",")) {
+                    group.addAll(analyze(word));
+                }
+                for (String term : group) {
+                    synonyms.computeIfAbsent(term, t -> new LinkedHashSet<>()).addAll(group);
+                }
+            }
+        }
+    }
+
+    public List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                String token = text.substring(start, i).toLowerCase();
+                if ((token.length() > 1 || Character.isDigit(token.charAt(0))) && !STOP_WORDS.contains(token)) {
+                    terms.add(stem(token));
+                }
+            }
+        }
+        return terms;
+    }
+
+    // The term itself plus every synonym of it
+    public Set<String> expand(String term) {
+        Set<String> group = synonyms.get(term);
+        return group != null ? group : Set.of(term);
+    }
+
+    static String stem(String token) {
+        if (token.length() <= 3 || !Character.isLetter(token.charAt(0))) {
+            return token;
+        }
+        String t = token;
+        if (t.endsWith("ies") && t.length() > 4) {
+            t = t.substring(0, t.length() - 3) + "y";
+        } else if (t.endsWith("sses")) {
+            t = t.substring(0, t.length() - 2);
+        } else if (t.endsWith("ing") && t.length() > 5) {
+            t = undouble(t.substring(0, t.length() - 3));
+        } else if (t.endsWith("ed") && t.length() > 4) {
+            t = undouble(t.substring(0, t.length() - 2));
+        } else if (t.endsWith("ly") && t.length() > 5) {
+            t = t.substring(0, t.length() - 2);
+        } else if (t.endsWith("s") && !t.endsWith("ss") && !t.endsWith("us") && !t.endsWith("is")) {
+            t = t.substring(0, t.length() - 1);
+        }
+        // fracture, fractured and fractures all end up as fractur
+        if (t.endsWith("e") && t.length() > 3) {
+            t = t.substring(0, t.length() - 1);
+        }
+        return t;
+    }
+
+    private static String undouble(String t) {
+        int n = t.length();
+        if (n > 3 && t.charAt(n - 1) == t.charAt(n - 2) && "lsz".indexOf(t.charAt(n - 1)) < 0
+                && "aeiou".indexOf(t.charAt(n - 1)) < 0) {
+            return t.substring(0, n - 1);
+        }
+        return t;
+    }
+}
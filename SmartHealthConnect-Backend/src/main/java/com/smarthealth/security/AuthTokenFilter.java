@@ -1,6 +1,9 @@
 package com.smarthealth.security;
 
+import com.smarthealth.entity.User;
+import com.smarthealth.repository.UserRepository;
 import com.smarthealth.service.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,22 +11,39 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Objects;
 
 public class AuthTokenFilter extends OncePerRequestFilter {
+    // The one endpoint that takes a scoped token from the query string
+    private static final String BOARD_STREAM_PATH = "/appointments/doctor/today/stream";
+
     @Autowired
     private JwtUtils jwtUtils;
 
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    // When true the principal is built from token claims instead of loading the user row
+    @Value("${app.jwtStatelessPrincipal:true}")
+    private boolean statelessPrincipal;
+
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
     @Override
@@ -31,17 +51,26 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
+            String scope = null;
+            if (jwt == null) {
+                jwt = parseStreamToken(request);
+                scope = JwtUtils.SCOPE_BOARD_STREAM;
+            }
+            Claims claims = jwt != null ? jwtUtils.verifyJwtToken(jwt) : null;
+            // A scoped token only works where it was meant for, and an access token never goes in a URL
+            if (claims != null && Objects.equals(claims.get(JwtUtils.CLAIM_SCOPE, String.class), scope)
+                    && !tokenRevocationService.isRevoked(claims.getId())) {
+                UserPrincipal principal = resolvePrincipal(claims);
 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(userDetails,
-                                null,
-                                userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                if (principal != null) {
+                    UsernamePasswordAuthenticationToken authentication =
+                            new UsernamePasswordAuthenticationToken(principal,
+                                    null,
+                                    principal.getAuthorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
             }
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e);
@@ -50,6 +79,31 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private UserPrincipal resolvePrincipal(Claims claims) {
+        UserPrincipal principal = jwtUtils.principalFromClaims(claims);
+
+        // Tokens issued before id/role/version claims existed still go through the user lookup
+        if (principal == null) {
+            User user = (User) userDetailsService.loadUserByUsername(claims.getSubject());
+            return UserPrincipal.from(user);
+        }
+
+        if (statelessPrincipal) {
+            if (!tokenVersionCache.isCurrent(principal.getId(), principal.getTokenVersion())) {
+                logger.warn("Rejected stale token for user id {}", principal.getId());
+                return null;
+            }
+            return principal;
+        }
+
+        User user = userRepository.findById(principal.getId()).orElse(null);
+        if (user == null || !user.isEnabled() || !Boolean.TRUE.equals(user.getIsActive())
+                || user.getTokenVersion() != principal.getTokenVersion()) {
+            return null;
+        }
+        return UserPrincipal.from(user);
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
 
@@ -59,4 +113,13 @@ public class AuthTokenFilter extends OncePerRequestFilter {
 
         return null;
     }
+
+    private String parseStreamToken(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if ("GET".equals(request.getMethod()) && BOARD_STREAM_PATH.equals(path)) {
+            String token = request.getParameter("token");
+            return StringUtils.hasText(token) ? token : null;
+        }
+        return null;
+    }
 }
@@ -0,0 +1,31 @@
+package com.smarthealth.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * BCrypt encoder that asks for a rehash whenever the stored cost differs from
+ * the configured one (the stock encoder only upgrades weaker hashes), so the
+ * cost factor can be tuned in either direction and converges on login.
+ */
+public class CostAwareBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private final int strength;
+
+    public CostAwareBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // Format: $2a$10$<salt+hash>
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6)) != strength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
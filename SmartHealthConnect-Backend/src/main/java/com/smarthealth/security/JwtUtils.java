@@ -1,52 +1,116 @@
 package com.smarthealth.security;
 
+import com.smarthealth.entity.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.util.Date;
+import java.util.UUID;
 
 @Component
 public class JwtUtils {
     private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+    // Set only on tokens limited to one use; access tokens carry no scope
+    public static final String CLAIM_SCOPE = "scope";
+    public static final String SCOPE_BOARD_STREAM = "board-stream";
+
     @Value("${app.jwtSecret}")
     private String jwtSecret;
 
     @Value("${app.jwtExpirationMs}")
     private int jwtExpirationMs;
 
+    @Value("${app.jwtStreamExpirationMs:60000}")
+    private int streamExpirationMs;
+
+    @Value("${app.jwtVerifiedCacheSize:10000}")
+    private int verifiedCacheSize;
+
+    // Built once: decoding the secret and building a parser per call is measurable per request
+    private Key signingKey;
+    private JwtParser parser;
+    private VerifiedTokenCache verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        verifiedTokens = new VerifiedTokenCache(verifiedCacheSize);
+    }
+
     public String generateJwtToken(Authentication authentication) {
-        UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
+        return generateTokenForUser((User) authentication.getPrincipal());
+    }
 
+    // Short-lived access token; sessions are extended through refresh tokens
+    public String generateTokenForUser(User user) {
         return Jwts.builder()
-                .setSubject((userPrincipal.getUsername()))
+                .setSubject((user.getUsername()))
+                .setId(UUID.randomUUID().toString())
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_ROLE, user.getRole().name())
+                .claim(CLAIM_TOKEN_VERSION, user.getTokenVersion())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    private Key key() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+    public long getJwtExpirationMs() {
+        return jwtExpirationMs;
+    }
+
+    // Opens the doctor board stream only; EventSource cannot send an Authorization header, so it goes in the URL
+    public String generateStreamToken(UserPrincipal principal) {
+        return Jwts.builder()
+                .setSubject(principal.getUsername())
+                .setId(UUID.randomUUID().toString())
+                .claim(CLAIM_USER_ID, principal.getId())
+                .claim(CLAIM_ROLE, principal.getRole().name())
+                .claim(CLAIM_TOKEN_VERSION, principal.getTokenVersion())
+                .claim(CLAIM_SCOPE, SCOPE_BOARD_STREAM)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date((new Date()).getTime() + streamExpirationMs))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    public long getStreamExpirationMs() {
+        return streamExpirationMs;
     }
 
     public String getUserNameFromJwtToken(String token) {
-        return Jwts.parserBuilder().setSigningKey(key()).build()
-                .parseClaimsJws(token).getBody().getSubject();
+        return parser.parseClaimsJws(token).getBody().getSubject();
     }
 
-    public boolean validateJwtToken(String authToken) {
+    /**
+     * Verifies the token once and returns its claims, or null when the token is
+     * invalid. Recently verified tokens are served from a digest-keyed cache
+     * until they expire.
+     */
+    public Claims verifyJwtToken(String authToken) {
+        long now = System.currentTimeMillis();
+        Claims cached = verifiedTokens.get(authToken, now);
+        if (cached != null) {
+            return cached;
+        }
+
         try {
-            Jwts.parserBuilder().setSigningKey(key()).build().parse(authToken);
-            return true;
+            Claims claims = parser.parseClaimsJws(authToken).getBody();
+            verifiedTokens.put(authToken, claims, now);
+            return claims;
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -55,8 +119,25 @@ public class JwtUtils {
             logger.error("JWT token is unsupported: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
+        } catch (JwtException e) {
+            logger.error("JWT signature is invalid: {}", e.getMessage());
         }
 
-        return false;
+        return null;
+    }
+
+    // Builds a principal from verified claims; null for tokens issued before claims were embedded
+    public UserPrincipal principalFromClaims(Claims claims) {
+        Number userId = claims.get(CLAIM_USER_ID, Number.class);
+        String role = claims.get(CLAIM_ROLE, String.class);
+        Number tokenVersion = claims.get(CLAIM_TOKEN_VERSION, Number.class);
+        if (userId == null || role == null || tokenVersion == null) {
+            return null;
+        }
+        return new UserPrincipal(userId.longValue(), claims.getSubject(), User.Role.valueOf(role), tokenVersion.intValue());
+    }
+
+    public boolean validateJwtToken(String authToken) {
+        return verifyJwtToken(authToken) != null;
     }
 }
@@ -0,0 +1,138 @@
+package com.smarthealth.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-client throttling for the public endpoints. Runs ahead of
+ * {@link AuthTokenFilter} and applies the first rule in
+ * {@code app.rateLimit.rules} whose path pattern matches, keyed by client IP.
+ * Per-username limits on login are enforced in the auth controller through
+ * {@link #tryAcquireForUsername(String)} once the body has been parsed.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private record Rule(String pattern, TokenBucketLimiter.Limit limit) {
+    }
+
+    // Format: pattern:capacity:periodSeconds, comma separated, first match wins
+    @Value("${app.rateLimit.rules:/auth/login:10:60,/auth/**:60:60,/symptom-checker/**:30:60}")
+    private String rulesSpec;
+
+    // Format: capacity:periodSeconds
+    @Value("${app.rateLimit.usernameRule:5:60}")
+    private String usernameRuleSpec;
+
+    @Value("${app.rateLimit.maxBuckets:100000}")
+    private int maxBuckets;
+
+    @Value("${app.rateLimit.trustForwardedFor:false}")
+    private boolean trustForwardedFor;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<Rule> rules = new ArrayList<>();
+    private TokenBucketLimiter.Limit usernameLimit;
+    private TokenBucketLimiter limiter;
+
+    @PostConstruct
+    void init() {
+        limiter = new TokenBucketLimiter(maxBuckets);
+        for (String spec : StringUtils.commaDelimitedListToStringArray(rulesSpec)) {
+            String[] parts = spec.trim().split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid rate limit rule: " + spec);
+            }
+            rules.add(new Rule(parts[0], parseLimit(parts[1], parts[2])));
+        }
+        String[] parts = usernameRuleSpec.trim().split(":");
+        usernameLimit = parseLimit(parts[0], parts[1]);
+        logger.info("Rate limiting {} path rule(s)", rules.size());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String path = request.getServletPath();
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            if (pathMatcher.match(rule.pattern(), path)) {
+                long waitNanos = limiter.tryAcquire(rule.pattern() + '|' + clientIp(request), rule.limit());
+                if (waitNanos > 0) {
+                    reject(request, response, waitNanos);
+                    return;
+                }
+                break;
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Takes a token from the bucket of a login username. Returns 0 when allowed,
+     * otherwise the number of seconds to wait.
+     */
+    public long tryAcquireForUsername(String username) {
+        if (username == null) {
+            return 0;
+        }
+        long waitNanos = limiter.tryAcquire("user|" + username.trim().toLowerCase(Locale.ROOT), usernameLimit);
+        return waitNanos > 0 ? toRetryAfterSeconds(waitNanos) : 0;
+    }
+
+    private String clientIp(HttpServletRequest request) {
+        if (trustForwardedFor) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (StringUtils.hasText(forwarded)) {
+                int comma = forwarded.indexOf(',');
+                return (comma > 0 ? forwarded.substring(0, comma) : forwarded).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfter = toRetryAfterSeconds(waitNanos);
+        response.setStatus(429);
+        response.setHeader("Retry-After", String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+        final Map<String, Object> body = new HashMap<>();
+        body.put("status", 429);
+        body.put("error", "Too Many Requests");
+        body.put("message", "Rate limit exceeded, retry in " + retryAfter + "s");
+        body.put("path", request.getServletPath());
+        mapper.writeValue(response.getOutputStream(), body);
+    }
+
+    private static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    private static TokenBucketLimiter.Limit parseLimit(String capacity, String periodSeconds) {
+        return new TokenBucketLimiter.Limit(Integer.parseInt(capacity.trim()),
+                TimeUnit.SECONDS.toNanos(Long.parseLong(periodSeconds.trim())));
+    }
+}
@@ -0,0 +1,85 @@
+package com.smarthealth.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token buckets keyed by an arbitrary client key. Each bucket is a
+ * single "theoretical arrival time" updated by CAS (the GCRA formulation of a
+ * token bucket), so refill is pure timestamp arithmetic and needs no scheduler.
+ * Buckets that have fully refilled carry no state and are swept when the map
+ * reaches its size bound.
+ */
+public class TokenBucketLimiter {
+
+    public record Limit(int capacity, long periodNanos) {
+        long emissionIntervalNanos() {
+            return Math.max(1, periodNanos / capacity);
+        }
+
+        long burstToleranceNanos() {
+            return periodNanos - emissionIntervalNanos();
+        }
+    }
+
+    private final int maxBuckets;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    public TokenBucketLimiter(int maxBuckets) {
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Takes one token for the key. Returns 0 when allowed, otherwise the number
+     * of nanoseconds until a token becomes available.
+     */
+    public long tryAcquire(String key, Limit limit) {
+        long now = System.nanoTime();
+        AtomicLong tat = buckets.get(key);
+        if (tat == null) {
+            if (buckets.size() >= maxBuckets) {
+                sweep(now);
+            }
+            tat = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+
+        long interval = limit.emissionIntervalNanos();
+        long tolerance = limit.burstToleranceNanos();
+        while (true) {
+            long current = tat.get();
+            long base = Math.max(current, now);
+            long waitNanos = base - tolerance - now;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (tat.compareAndSet(current, base + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    // Full buckets are indistinguishable from new ones, so dropping them loses nothing
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            buckets.values().removeIf(tat -> tat.get() <= now);
+            // Still over the bound: shed arbitrary buckets rather than grow without limit
+            int excess = buckets.size() - maxBuckets + maxBuckets / 10;
+            var it = buckets.keySet().iterator();
+            while (excess-- > 0 && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
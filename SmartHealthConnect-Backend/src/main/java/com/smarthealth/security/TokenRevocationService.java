@@ -0,0 +1,100 @@
+package com.smarthealth.security;
+
+import com.smarthealth.entity.RevokedToken;
+import com.smarthealth.repository.RevokedTokenRepository;
+import com.smarthealth.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks revoked token ids (jti) until the tokens expire. Lookups go through a
+ * Bloom filter first and only touch the exact set on a positive hit; neither
+ * step allocates. Revocations are persisted so they survive restarts, and
+ * each instance picks up the ones made elsewhere on its purge schedule, so a
+ * logout reaches every instance within one purge interval.
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    // Re-read a little before the last check, for rows committed late or stamped by a clock running behind
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Value("${app.jwtRevocationExpectedTokens:100000}")
+    private long expectedTokens;
+
+    @Value("${app.jwtRevocationFalsePositiveRate:0.001}")
+    private double falsePositiveRate;
+
+    // jti -> token expiry (epoch millis)
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter filter;
+    // Guarded by this
+    private LocalDateTime lastSync;
+
+    @PostConstruct
+    synchronized void load() {
+        filter = new BloomFilter(expectedTokens, falsePositiveRate);
+        lastSync = LocalDateTime.now();
+        revokedTokenRepository.findByExpiresAtAfter(lastSync).forEach(this::track);
+        logger.info("Loaded {} active token revocations", revoked.size());
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null || !filter.mightContain(jti)) {
+            return false;
+        }
+        Long expiresAt = revoked.get(jti);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    public synchronized void revoke(String jti, Date expiresAt) {
+        if (jti == null || expiresAt == null || expiresAt.getTime() <= System.currentTimeMillis()) {
+            return;
+        }
+        revokedTokenRepository.save(new RevokedToken(jti,
+                LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault())));
+        revoked.put(jti, expiresAt.getTime());
+        filter.put(jti);
+    }
+
+    // Bloom filters cannot delete, so the filter is rebuilt from the live set after expired ids drop out
+    @Scheduled(fixedDelayString = "${app.jwtRevocationPurgeMs:60000}")
+    public synchronized void purgeExpired() {
+        LocalDateTime syncedAt = LocalDateTime.now();
+        revokedTokenRepository.findRevokedSince(lastSync.minus(SYNC_OVERLAP), syncedAt).forEach(this::track);
+        lastSync = syncedAt;
+
+        long now = System.currentTimeMillis();
+        boolean removed = revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        if (removed) {
+            BloomFilter rebuilt = new BloomFilter(expectedTokens, falsePositiveRate);
+            revoked.keySet().forEach(rebuilt::put);
+            filter = rebuilt;
+            revokedTokenRepository.deleteExpired(LocalDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneId.systemDefault()));
+        }
+    }
+
+    private void track(RevokedToken token) {
+        long expiresAt = token.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        revoked.put(token.getJti(), expiresAt);
+        filter.put(token.getJti());
+    }
+}
@@ -0,0 +1,69 @@
+package com.smarthealth.security;
+
+import com.smarthealth.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the current token version per user so that the per-request check
+ * is a map lookup. A miss costs one single-column primary key lookup.
+ * Entries expire after a short TTL: {@link #evict} only reaches the instance
+ * that made the change, so on every other instance a deactivation or version
+ * bump takes effect within the TTL. The cache is bounded in size.
+ */
+@Component
+public class TokenVersionCache {
+
+    // Sentinel for users that are missing, inactive or disabled
+    private static final int INVALID = -1;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${app.jwtTokenVersionTtlMs:30000}")
+    private long ttlMs;
+
+    @Value("${app.jwtTokenVersionCacheSize:10000}")
+    private int maxEntries;
+
+    private record Entry(int version, long loadedAtMs) {
+    }
+
+    private final ConcurrentHashMap<Long, Entry> versions = new ConcurrentHashMap<>();
+
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        long now = System.currentTimeMillis();
+        Entry entry = versions.get(userId);
+        if (entry == null || now - entry.loadedAtMs() >= ttlMs) {
+            entry = new Entry(userRepository.findActiveTokenVersionById(userId).orElse(INVALID), now);
+            if (maxEntries > 0) {
+                if (versions.size() >= maxEntries) {
+                    evictExpired(now);
+                }
+                versions.put(userId, entry);
+            }
+        }
+        return entry.version() != INVALID && entry.version() == tokenVersion;
+    }
+
+    // Must be called after any change to a user's token version, active or enabled flags
+    public void evict(Long userId) {
+        versions.remove(userId);
+    }
+
+    // Drops expired entries first; if still full, drops an arbitrary quarter of the cache
+    private void evictExpired(long now) {
+        versions.values().removeIf(entry -> now - entry.loadedAtMs() >= ttlMs);
+        int excess = versions.size() - (maxEntries * 3 / 4);
+        Iterator<Map.Entry<Long, Entry>> it = versions.entrySet().iterator();
+        while (excess-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
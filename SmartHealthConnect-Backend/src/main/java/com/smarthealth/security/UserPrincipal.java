@@ -0,0 +1,76 @@
+package com.smarthealth.security;
+
+import com.smarthealth.entity.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lightweight authenticated principal built from verified JWT claims.
+ * Controllers that need the full {@link User} entity load it by id on demand.
+ */
+public class UserPrincipal implements UserDetails {
+
+    private final Long id;
+    private final String username;
+    private final User.Role role;
+    private final int tokenVersion;
+    private final List<GrantedAuthority> authorities;
+
+    public UserPrincipal(Long id, String username, User.Role role, int tokenVersion) {
+        this.id = id;
+        this.username = username;
+        this.role = role;
+        this.tokenVersion = tokenVersion;
+        this.authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    public static UserPrincipal from(User user) {
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getRole(), user.getTokenVersion());
+    }
+
+    public Long getId() { return id; }
+
+    public User.Role getRole() { return role; }
+
+    public int getTokenVersion() { return tokenVersion; }
+
+    // UserDetails implementation
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+package com.smarthealth.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded cache of recently verified tokens keyed by a SHA-256 digest of the
+ * compact token. Entries are dropped once the token's expiry has passed, so a
+ * hit never extends a token's lifetime.
+ */
+class VerifiedTokenCache {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private record TokenDigest(long hi, long lo) {
+    }
+
+    private record Entry(Claims claims, long expiresAtMs) {
+    }
+
+    private final int maxEntries;
+    private final ConcurrentHashMap<TokenDigest, Entry> entries = new ConcurrentHashMap<>();
+
+    VerifiedTokenCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    Claims get(String token, long nowMs) {
+        if (maxEntries <= 0) {
+            return null;
+        }
+        TokenDigest digest = digest(token);
+        Entry entry = entries.get(digest);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMs() <= nowMs) {
+            entries.remove(digest, entry);
+            return null;
+        }
+        return entry.claims();
+    }
+
+    void put(String token, Claims claims, long nowMs) {
+        if (maxEntries <= 0 || claims.getExpiration() == null) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            evict(nowMs);
+        }
+        entries.put(digest(token), new Entry(claims, claims.getExpiration().getTime()));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    // Drops expired entries first; if still full, drops an arbitrary quarter of the cache
+    private void evict(long nowMs) {
+        entries.values().removeIf(entry -> entry.expiresAtMs() <= nowMs);
+        int excess = entries.size() - (maxEntries * 3 / 4);
+        Iterator<Map.Entry<TokenDigest, Entry>> it = entries.entrySet().iterator();
+        while (excess-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static TokenDigest digest(String token) {
+        MessageDigest md = SHA256.get();
+        ByteBuffer hash = ByteBuffer.wrap(md.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        return new TokenDigest(hash.getLong(), hash.getLong());
+    }
+}
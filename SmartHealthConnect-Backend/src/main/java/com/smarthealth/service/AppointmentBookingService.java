@@ -0,0 +1,136 @@
+package com.smarthealth.service;
+
+import com.smarthealth.entity.Appointment;
+import com.smarthealth.repository.AppointmentRepository;
+import com.smarthealth.repository.WaitlistEntryRepository;
+import com.smarthealth.util.KeyedLocks;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Makes "check the slot, then insert" atomic per doctor. Bookings for the same
+ * doctor are serialized twice: by an in-process lock taken before a database
+ * connection is borrowed (so a hot doctor cannot drain the pool), and by a
+ * transaction-scoped Postgres advisory lock keyed by doctor id (so several
+ * application instances agree). Different doctors never share a lock. The
+ * {@code appointments_no_overlap} exclusion constraint is the final backstop.
+ */
+@Service
+public class AppointmentBookingService {
+
+    private static final String OVERLAP_CONSTRAINT = "appointments_no_overlap";
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private AppointmentConflictIndex appointmentConflictIndex;
+
+    @Autowired
+    private WaitlistEntryRepository waitlistEntryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.appointments.booking.lockTimeoutMs:2000}")
+    private long lockTimeoutMs;
+
+    private final KeyedLocks<Long> doctorLocks = new KeyedLocks<>();
+
+    public static class SlotUnavailableException extends RuntimeException {
+        public SlotUnavailableException() {
+            super("Doctor is not available at this time");
+        }
+    }
+
+    public static class BookingBusyException extends RuntimeException {
+        public BookingBusyException() {
+            super("Too many concurrent bookings for this doctor, please retry shortly");
+        }
+    }
+
+    public Appointment book(Appointment appointment) {
+        return book(appointment, saved -> { });
+    }
+
+    /**
+     * Books the appointment and then runs {@code andThen} with it in the same
+     * transaction, still under the doctor's lock. Anything it throws rolls the
+     * booking back.
+     */
+    public Appointment book(Appointment appointment, Consumer<Appointment> andThen) {
+        Long doctorId = appointment.getDoctor().getId();
+
+        // Rejection before taking any lock; the index confirms its hits against the table
+        if (appointmentConflictIndex.hasConflict(doctorId, appointment.getAppointmentDate(),
+                appointment.getEffectiveDurationMinutes())) {
+            throw new SlotUnavailableException();
+        }
+
+        return withDoctorLock(doctorId, () -> {
+            // The index may not have seen a booking that committed a moment ago; the table has
+            if (appointmentRepository.existsOverlappingAppointment(doctorId, appointment.getAppointmentDate(),
+                    appointment.getEndTime(), -1L)) {
+                throw new SlotUnavailableException();
+            }
+            // Freed slots held for a waitlisted patient can only be booked by that patient
+            if (waitlistEntryRepository.existsHoldForOtherPatient(doctorId, appointment.getAppointmentDate(),
+                    appointment.getEndTime(), appointment.getPatient().getId(), LocalDateTime.now())) {
+                throw new SlotUnavailableException();
+            }
+            Appointment saved = appointmentRepository.save(appointment);
+            andThen.accept(saved);
+            return saved;
+        });
+    }
+
+    /**
+     * Runs the action in a new transaction while holding the doctor's booking
+     * lock. Anything that makes an appointment hold a slot should go through here.
+     */
+    public <T> T withDoctorLock(Long doctorId, Supplier<T> action) {
+        boolean locked;
+        try {
+            locked = doctorLocks.tryLock(doctorId, lockTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BookingBusyException();
+        }
+        if (!locked) {
+            throw new BookingBusyException();
+        }
+
+        try {
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            return tx.execute(status -> {
+                jdbcTemplate.query("SELECT pg_advisory_xact_lock(?)", rs -> { }, doctorId);
+                T result = action.get();
+                // Flush inside the lock so a constraint violation surfaces here
+                appointmentRepository.flush();
+                return result;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // appointments_no_overlap rejected a booking that raced past the locks
+            String cause = e.getMostSpecificCause().getMessage();
+            if (cause != null && cause.contains(OVERLAP_CONSTRAINT)) {
+                throw new SlotUnavailableException();
+            }
+            throw e;
+        } finally {
+            doctorLocks.unlock(doctorId);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.smarthealth.service;
+
+import com.smarthealth.event.AppointmentChangedEvent;
+import com.smarthealth.repository.AppointmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-doctor interval index over slot-holding appointments. Each doctor's
+ * appointments are kept sorted by start; since no interval is longer than the
+ * longest one indexed, an overlap check only has to look at starts in
+ * [start - maxLength, end), which is an O(log n) seek plus the few neighbours.
+ * A doctor is loaded from the database on first use and then follows
+ * {@link AppointmentChangedEvent}s once the writing transaction commits.
+ * Windows before the indexed horizon go to the range-overlap query instead.
+ * <p>
+ * Events only reach the index in the JVM that raised them, so a change made
+ * by another instance can leave it stale. A conflict it reports is therefore
+ * confirmed with the range-overlap query; when the table disagrees the doctor
+ * is dropped and reloaded on next use. A missed booking only means the
+ * booking's own locked check is the one that refuses the slot.
+ */
+@Service
+public class AppointmentConflictIndex {
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    // How far back the index covers when a doctor is loaded
+    @Value("${app.appointments.conflictIndex.lookbackDays:1}")
+    private int lookbackDays;
+
+    private final ConcurrentHashMap<Long, DoctorIntervals> doctors = new ConcurrentHashMap<>();
+
+    public boolean hasConflict(Long doctorId, LocalDateTime start, int durationMinutes) {
+        return hasConflict(doctorId, start, durationMinutes, null);
+    }
+
+    // excludeAppointmentId lets an appointment be checked against everything but itself
+    public boolean hasConflict(Long doctorId, LocalDateTime start, int durationMinutes, Long excludeAppointmentId) {
+        LocalDateTime end = start.plusMinutes(durationMinutes);
+        long excludeId = excludeAppointmentId != null ? excludeAppointmentId : -1L;
+        DoctorIntervals intervals = intervals(doctorId);
+        if (start.isBefore(intervals.horizon)) {
+            return appointmentRepository.existsOverlappingAppointment(doctorId, start, end, excludeId);
+        }
+        if (!intervals.overlaps(toMinutes(start), toMinutes(end), excludeId)) {
+            return false;
+        }
+        // A hit may be a slot another instance has since freed
+        if (appointmentRepository.existsOverlappingAppointment(doctorId, start, end, excludeId)) {
+            return true;
+        }
+        doctors.remove(doctorId, intervals);
+        return false;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        // Doctors that were never queried are loaded fresh from the table later. A change that
+        // commits while the doctor is loading can be missed, which the confirming query covers
+        doctors.computeIfPresent(event.doctorId(), (id, intervals) -> {
+            if (event.isActive()) {
+                long start = toMinutes(event.appointmentDate());
+                intervals.put(event.appointmentId(), start, start + event.durationMinutes());
+            } else {
+                intervals.remove(event.appointmentId());
+            }
+            return intervals;
+        });
+    }
+
+    // Drops a doctor so the next check reloads from the database
+    public void evict(Long doctorId) {
+        doctors.remove(doctorId);
+    }
+
+    // Loads outside the map so a slow query does not hold up other doctors in the same bin
+    private DoctorIntervals intervals(Long doctorId) {
+        DoctorIntervals intervals = doctors.get(doctorId);
+        if (intervals != null) {
+            return intervals;
+        }
+        DoctorIntervals loaded = load(doctorId);
+        DoctorIntervals raced = doctors.putIfAbsent(doctorId, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    private DoctorIntervals load(Long doctorId) {
+        LocalDateTime horizon = LocalDateTime.now().minusDays(lookbackDays);
+        DoctorIntervals intervals = new DoctorIntervals(horizon);
+        for (Object[] row : appointmentRepository.findActiveIntervalsByDoctor(doctorId, horizon)) {
+            long start = toMinutes(toLocalDateTime(row[1]));
+            intervals.put(((Number) row[0]).longValue(), start, start + ((Number) row[2]).longValue());
+        }
+        return intervals;
+    }
+
+    static long toMinutes(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    static LocalDateTime toLocalDateTime(Object value) {
+        return value instanceof Timestamp ts ? ts.toLocalDateTime() : (LocalDateTime) value;
+    }
+
+    private static final class DoctorIntervals {
+
+        private record Interval(long start, long end, long id) implements Comparable<Interval> {
+            @Override
+            public int compareTo(Interval o) {
+                int c = Long.compare(start, o.start);
+                return c != 0 ? c : Long.compare(id, o.id);
+            }
+        }
+
+        private final LocalDateTime horizon;
+        private final TreeSet<Interval> byStart = new TreeSet<>();
+        private final Map<Long, Interval> byId = new HashMap<>();
+        // Never shrinks; a stale maximum only widens the scan window slightly
+        private long maxLength;
+
+        DoctorIntervals(LocalDateTime horizon) {
+            this.horizon = horizon;
+        }
+
+        synchronized void put(long id, long start, long end) {
+            Interval previous = byId.put(id, new Interval(start, end, id));
+            if (previous != null) {
+                byStart.remove(previous);
+            }
+            byStart.add(byId.get(id));
+            maxLength = Math.max(maxLength, end - start);
+        }
+
+        synchronized void remove(long id) {
+            Interval previous = byId.remove(id);
+            if (previous != null) {
+                byStart.remove(previous);
+            }
+        }
+
+        synchronized boolean overlaps(long start, long end, long excludeId) {
+            Interval from = new Interval(start - maxLength, Long.MIN_VALUE, Long.MIN_VALUE);
+            for (Interval interval : byStart.tailSet(from, true)) {
+                if (interval.start >= end) {
+                    return false;
+                }
+                if (interval.end > start && interval.id != excludeId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
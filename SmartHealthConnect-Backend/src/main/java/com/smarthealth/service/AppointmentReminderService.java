@@ -0,0 +1,198 @@
+package com.smarthealth.service;
+
+import com.smarthealth.entity.Appointment;
+import com.smarthealth.event.AppointmentChangedEvent;
+import com.smarthealth.repository.AppointmentRepository;
+import com.smarthealth.repository.NotificationRepository;
+import com.smarthealth.util.HierarchicalTimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires appointment reminders at fixed offsets before the visit into the
+ * notification store. Pending reminders live in a hierarchical timing wheel,
+ * fed by {@link AppointmentChangedEvent}s as appointments are booked, moved or
+ * cancelled, so nothing polls the appointments table. On startup one scan of
+ * upcoming appointments refills the wheel and delivers the latest reminder
+ * that fell due while the application was down.
+ */
+@Service
+public class AppointmentReminderService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AppointmentReminderService.class);
+    private static final DateTimeFormatter WHEN = DateTimeFormatter.ofPattern("EEE d MMM 'at' HH:mm");
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Minutes before the appointment, comma separated
+    @Value("${app.reminders.offsetsMinutes:1440,60,10}")
+    private String offsetsSpec;
+
+    @Value("${app.reminders.tickMs:1000}")
+    private long tickMs;
+
+    private int[] offsets;
+    private HierarchicalTimingWheel<Reminder> wheel;
+    private ScheduledExecutorService ticker;
+    private final ConcurrentHashMap<Long, List<HierarchicalTimingWheel<Reminder>.Timeout>> pending = new ConcurrentHashMap<>();
+
+    private record Reminder(long appointmentId, LocalDateTime appointmentDate, int offsetMinutes) {
+    }
+
+    @PostConstruct
+    void start() {
+        offsets = Arrays.stream(StringUtils.commaDelimitedListToStringArray(offsetsSpec))
+                .mapToInt(s -> Integer.parseInt(s.trim()))
+                .sorted()
+                .toArray();
+        wheel = new HierarchicalTimingWheel<>(tickMs, System.currentTimeMillis());
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "appointment-reminders");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        ticker.shutdownNow();
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUp() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Reminder> missed = new ArrayList<>();
+        long[] count = {0};
+
+        // Cursor-based read needs a transaction; deliveries happen after it closes
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+            streaming.setFetchSize(10_000);
+            streaming.query("SELECT id, appointment_date, created_at FROM appointments " +
+                            "WHERE status IN ('SCHEDULED', 'CONFIRMED') AND appointment_date > ?",
+                    rs -> {
+                        long id = rs.getLong(1);
+                        LocalDateTime date = rs.getObject(2, LocalDateTime.class);
+                        LocalDateTime createdAt = rs.getObject(3, LocalDateTime.class);
+                        // Changes that arrived while scanning already scheduled this appointment
+                        pending.computeIfAbsent(id, k -> schedule(id, date, now));
+                        // Deliver only the most recent reminder missed during downtime, and only if it was ever due
+                        for (int offset : offsets) {
+                            LocalDateTime fireAt = date.minusMinutes(offset);
+                            if (!fireAt.isAfter(now)) {
+                                if (createdAt == null || !fireAt.isBefore(createdAt)) {
+                                    missed.add(new Reminder(id, date, offset));
+                                }
+                                break;
+                            }
+                        }
+                        count[0]++;
+                    }, now);
+        });
+        missed.forEach(this::deliver);
+        logger.info("Reminder wheel loaded for {} upcoming appointments ({} timers)", count[0], wheel.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean wantsReminders = event.kind() != AppointmentChangedEvent.Kind.DELETED
+                && (event.status() == Appointment.Status.SCHEDULED || event.status() == Appointment.Status.CONFIRMED)
+                && event.appointmentDate().isAfter(now);
+
+        pending.compute(event.appointmentId(), (id, timers) -> {
+            if (timers != null) {
+                timers.forEach(HierarchicalTimingWheel.Timeout::cancel);
+            }
+            return wantsReminders ? schedule(id, event.appointmentDate(), now) : null;
+        });
+    }
+
+    public int pendingTimers() {
+        return wheel.size();
+    }
+
+    // Null when every reminder is already past, so pending keeps no entry that no delivery would remove
+    private List<HierarchicalTimingWheel<Reminder>.Timeout> schedule(long appointmentId, LocalDateTime date,
+                                                                    LocalDateTime now) {
+        List<HierarchicalTimingWheel<Reminder>.Timeout> timers = new ArrayList<>(offsets.length);
+        for (int offset : offsets) {
+            LocalDateTime fireAt = date.minusMinutes(offset);
+            if (fireAt.isAfter(now)) {
+                timers.add(wheel.schedule(toMillis(fireAt), new Reminder(appointmentId, date, offset)));
+            }
+        }
+        return timers.isEmpty() ? null : timers;
+    }
+
+    private void tick() {
+        try {
+            wheel.advanceTo(System.currentTimeMillis(), this::deliver);
+        } catch (RuntimeException e) {
+            logger.error("Reminder tick failed", e);
+        }
+    }
+
+    private void deliver(Reminder reminder) {
+        try {
+            // Re-read so a reminder that raced a cancellation or reschedule is dropped
+            appointmentRepository.findWithPartiesById(reminder.appointmentId())
+                    .filter(a -> a.getStatus() == Appointment.Status.SCHEDULED || a.getStatus() == Appointment.Status.CONFIRMED)
+                    .filter(a -> a.getAppointmentDate().equals(reminder.appointmentDate()))
+                    .ifPresent(a -> notificationRepository.insertReminder(a.getPatient().getId(), a.getId(),
+                            reminder.offsetMinutes(), message(a), LocalDateTime.now()));
+            if (reminder.offsetMinutes() == offsets[0]) {
+                pending.remove(reminder.appointmentId());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to deliver reminder for appointment {}", reminder.appointmentId(), e);
+        }
+    }
+
+    private static String message(Appointment appointment) {
+        return "Appointment reminder: Dr. " + appointment.getDoctor().getFirstName() + " "
+                + appointment.getDoctor().getLastName() + ", " + appointment.getAppointmentDate().format(WHEN);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
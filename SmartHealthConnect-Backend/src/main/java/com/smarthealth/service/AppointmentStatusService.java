@@ -0,0 +1,164 @@
+package com.smarthealth.service;
+
+import com.smarthealth.entity.Appointment;
+import com.smarthealth.entity.User;
+import com.smarthealth.event.AppointmentChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies appointment status changes as one statement that locks the row
+ * and updates it conditionally. The WHERE clause carries the state machine
+ * (current status must be a legal predecessor of the target), the access
+ * check (caller is the patient or the doctor) and optionally the version the caller last saw; the RETURNING
+ * clause hands back everything the response needs, so a successful transition
+ * costs a single round trip. Only a rejected transition pays for a second
+ * query to explain why.
+ */
+@Service
+public class AppointmentStatusService {
+
+    // The prev CTE locks the row first, so the checks and previous_status see the latest committed
+    // state rather than the statement snapshot, which a concurrent transition may already have replaced
+    private static final String TRANSITION_SQL =
+            "WITH prev AS (" +
+            "  SELECT id, status, patient_id, doctor_id, version FROM appointments WHERE id = ? FOR UPDATE" +
+            "), updated AS (" +
+            "  UPDATE appointments a" +
+            "     SET status = ?, notes = COALESCE(?, a.notes), updated_at = ?, version = prev.version + 1" +
+            "    FROM prev" +
+            "   WHERE a.id = prev.id" +
+            "     AND prev.status = ANY (?)" +
+            "     AND (prev.patient_id = ? OR prev.doctor_id = ?)" +
+            "     AND (?::bigint IS NULL OR prev.version = ?::bigint)" +
+            "  RETURNING a.*, prev.status AS previous_status" +
+            ")" +
+            " SELECT u.*, p.first_name AS p_first_name, p.last_name AS p_last_name, p.email AS p_email," +
+            "        d.first_name AS d_first_name, d.last_name AS d_last_name, d.email AS d_email" +
+            "   FROM updated u" +
+            "   JOIN users p ON p.id = u.patient_id" +
+            "   JOIN users d ON d.id = u.doctor_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    public enum Rejection {
+        NOT_FOUND,
+        ACCESS_DENIED,
+        STALE_VERSION,
+        INVALID_TRANSITION
+    }
+
+    public static class TransitionException extends RuntimeException {
+        private final Rejection rejection;
+
+        public TransitionException(Rejection rejection, String message) {
+            super(message);
+            this.rejection = rejection;
+        }
+
+        public Rejection getRejection() {
+            return rejection;
+        }
+    }
+
+    /**
+     * Moves the appointment to the target status on behalf of a party to it.
+     * Returns the updated appointment (detached, with patient and doctor names
+     * filled in) or throws {@link TransitionException} describing the rejection.
+     * Runs in a transaction so the outbox event commits with the update.
+     */
+    @Transactional
+    public Appointment transition(Long appointmentId, Long userId, Appointment.Status target,
+                                  String notes, Long expectedVersion) {
+        List<String> from = Appointment.Status.predecessorsOf(target).stream().map(Enum::name).toList();
+
+        List<Appointment> updated = jdbcTemplate.execute(TRANSITION_SQL, (PreparedStatement ps) -> {
+            Array fromArray = ps.getConnection().createArrayOf("varchar", from.toArray());
+            ps.setLong(1, appointmentId);
+            ps.setString(2, target.name());
+            ps.setString(3, notes);
+            ps.setObject(4, LocalDateTime.now());
+            ps.setArray(5, fromArray);
+            ps.setLong(6, userId);
+            ps.setLong(7, userId);
+            ps.setObject(8, expectedVersion, Types.BIGINT);
+            ps.setObject(9, expectedVersion, Types.BIGINT);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? List.of(mapRow(rs)) : List.of();
+            }
+        });
+
+        if (updated.isEmpty()) {
+            throw explainRejection(appointmentId, userId, target, expectedVersion);
+        }
+
+        Appointment appointment = updated.get(0);
+        eventPublisher.publishEvent(AppointmentChangedEvent.of(AppointmentChangedEvent.Kind.UPDATED, appointment));
+        return appointment;
+    }
+
+    // Only runs when the UPDATE matched nothing
+    private TransitionException explainRejection(Long appointmentId, Long userId, Appointment.Status target,
+                                                 Long expectedVersion) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT status, patient_id, doctor_id, version FROM appointments WHERE id = ?", appointmentId);
+        if (rows.isEmpty()) {
+            return new TransitionException(Rejection.NOT_FOUND, "Appointment not found");
+        }
+        Map<String, Object> row = rows.get(0);
+        long patientId = ((Number) row.get("patient_id")).longValue();
+        long doctorId = ((Number) row.get("doctor_id")).longValue();
+        if (patientId != userId && doctorId != userId) {
+            return new TransitionException(Rejection.ACCESS_DENIED, "Access denied");
+        }
+        if (expectedVersion != null && ((Number) row.get("version")).longValue() != expectedVersion) {
+            return new TransitionException(Rejection.STALE_VERSION,
+                    "Appointment was modified by someone else, reload and retry");
+        }
+        return new TransitionException(Rejection.INVALID_TRANSITION,
+                "Cannot change status from " + row.get("status") + " to " + target);
+    }
+
+    private static Appointment mapRow(ResultSet rs) throws SQLException {
+        User patient = new User();
+        patient.setId(rs.getLong("patient_id"));
+        patient.setFirstName(rs.getString("p_first_name"));
+        patient.setLastName(rs.getString("p_last_name"));
+        patient.setEmail(rs.getString("p_email"));
+
+        User doctor = new User();
+        doctor.setId(rs.getLong("doctor_id"));
+        doctor.setFirstName(rs.getString("d_first_name"));
+        doctor.setLastName(rs.getString("d_last_name"));
+        doctor.setEmail(rs.getString("d_email"));
+
+        Appointment appointment = new Appointment(patient, doctor, rs.getObject("appointment_date", LocalDateTime.class),
+                rs.getString("type"), rs.getString("reason"));
+        appointment.setId(rs.getLong("id"));
+        appointment.setNotes(rs.getString("notes"));
+        appointment.setStatus(Appointment.Status.valueOf(rs.getString("status")));
+        appointment.setPreviousStatus(Appointment.Status.valueOf(rs.getString("previous_status")));
+        appointment.setDurationMinutes((Integer) rs.getObject("duration_minutes"));
+        appointment.setIsVideoConsultation((Boolean) rs.getObject("is_video_consultation"));
+        appointment.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        appointment.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+        appointment.setVersion(rs.getLong("version"));
+        return appointment;
+    }
+}
@@ -0,0 +1,232 @@
+package com.smarthealth.service;
+
+import com.smarthealth.repository.RecordAttachmentRepository;
+import com.smarthealth.util.KeyedLocks;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed file store for record attachments. A file is kept once,
+ * under the hex SHA-256 of its bytes ({@code ab/cd/abcd...}), however many
+ * attachments refer to it. Uploads are copied from the request stream to a
+ * temporary file through one small buffer while being hashed, fsynced and
+ * then renamed into place, so no upload is ever held in memory and a crash
+ * never leaves a partial file under a content name. Files no attachment
+ * refers to any more are removed by a periodic sweep once they have been
+ * untouched for a grace period. An upload deduplicating against a stored
+ * file and the sweep deleting it hold the same per-hash lock, so the sweep
+ * never removes a file an upload has just claimed.
+ */
+@Service
+public class AttachmentStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentStore.class);
+
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final long LOCK_TIMEOUT_SECONDS = 30;
+
+    @Autowired
+    private RecordAttachmentRepository recordAttachmentRepository;
+
+    @Value("${app.attachments.dir:./data/attachments}")
+    private String dir;
+
+    @Value("${app.attachments.maxBytes:10485760}")
+    private long maxBytes;
+
+    // Stored files younger than this are never swept, covering uploads whose row is not yet committed
+    @Value("${app.attachments.orphanGraceHours:24}")
+    private long orphanGraceHours;
+
+    private final KeyedLocks<String> hashLocks = new KeyedLocks<>();
+    private Path root;
+    private Path tmp;
+
+    public static class TooLargeException extends RuntimeException {
+        public TooLargeException(long maxBytes) {
+            super("Attachment exceeds the limit of " + maxBytes + " bytes");
+        }
+    }
+
+    public record Blob(String sha256, long size) {
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        root = Path.of(dir);
+        tmp = root.resolve("tmp");
+        Files.createDirectories(tmp);
+        // Left behind by uploads interrupted by a crash
+        try (Stream<Path> files = Files.list(tmp)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Streams the input into the store and returns its content address.
+     * Throws {@link TooLargeException} as soon as the input passes the limit;
+     * nothing is kept in that case.
+     */
+    public Blob store(InputStream input) throws IOException {
+        MessageDigest digest = sha256();
+        Path part = tmp.resolve(UUID.randomUUID() + ".part");
+        long size = 0;
+        try {
+            try (FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_BYTES];
+                int n;
+                while ((n = input.read(buffer)) >= 0) {
+                    size += n;
+                    if (size > maxBytes) {
+                        throw new TooLargeException(maxBytes);
+                    }
+                    digest.update(buffer, 0, n);
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, n);
+                    while (chunk.hasRemaining()) {
+                        out.write(chunk);
+                    }
+                }
+                out.force(true);
+            }
+
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            Path target = path(sha256);
+            lockHash(sha256);
+            try {
+                // Already stored: refresh its age so the sweep leaves it alone until the new row commits
+                if (!touch(target)) {
+                    Files.createDirectories(target.getParent());
+                    try {
+                        Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (FileAlreadyExistsException e) {
+                        // An identical upload finished first
+                    }
+                }
+            } finally {
+                hashLocks.unlock(sha256);
+            }
+            return new Blob(sha256, size);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    // Path of a stored file; throws IllegalArgumentException for anything that is not a SHA-256
+    public Path path(String sha256) {
+        if (sha256 == null || !SHA256.matcher(sha256).matches()) {
+            throw new IllegalArgumentException("Invalid content address");
+        }
+        return root.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    /**
+     * Deletes stored files that no attachment refers to and that have not been
+     * written or deduplicated against within the grace period.
+     */
+    @Scheduled(cron = "${app.attachments.sweepCron:0 15 4 * * *}")
+    public void sweep() {
+        Instant cutoff = Instant.now().minus(orphanGraceHours, ChronoUnit.HOURS);
+        int removed = 0;
+        try (Stream<Path> files = Files.find(root, 3, (path, attrs) -> attrs.isRegularFile()
+                && SHA256.matcher(path.getFileName().toString()).matches()
+                && attrs.lastModifiedTime().toInstant().isBefore(cutoff))) {
+            List<Path> candidates = files.toList();
+            for (Path file : candidates) {
+                String sha256 = file.getFileName().toString();
+                if (!recordAttachmentRepository.existsBySha256(sha256) && deleteIfStillOlderThan(file, sha256, cutoff)) {
+                    removed++;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Attachment sweep failed after removing {} files", removed, e);
+            return;
+        }
+        if (removed > 0) {
+            logger.info("Attachment sweep removed {} unreferenced files", removed);
+        }
+    }
+
+    // An upload may have deduplicated against the file since the walk read its age;
+    // a file an upload is claiming right now is left for the next sweep
+    private boolean deleteIfStillOlderThan(Path file, String sha256, Instant cutoff) throws IOException {
+        try {
+            if (!hashLocks.tryLock(sha256, 0, TimeUnit.SECONDS)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sweeping attachments");
+        }
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && Files.deleteIfExists(file);
+        } catch (NoSuchFileException e) {
+            return false;
+        } finally {
+            hashLocks.unlock(sha256);
+        }
+    }
+
+    private void lockHash(String sha256) throws IOException {
+        try {
+            if (!hashLocks.tryLock(sha256, LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("Timed out waiting to store attachment " + sha256);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while storing attachment " + sha256);
+        }
+    }
+
+    // False when the file is not there, including when it was deleted since it was last seen
+    private static boolean touch(Path file) throws IOException {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.smarthealth.service;
+
+import com.smarthealth.audit.AuditAction;
+import com.smarthealth.audit.AuditEvent;
+import com.smarthealth.audit.AuditSegmentLog;
+import com.smarthealth.entity.User;
+import com.smarthealth.util.MpscRingBuffer;
+import com.smarthealth.util.PageCursor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Trail of who read which patient's data. Controllers call
+ * {@link #record} on the request thread, which only places the event in a
+ * lock-free ring buffer. A single writer thread drains the buffer in batches,
+ * appends each batch to fsynced local segment files and then ships it to the
+ * {@code audit_events} table in one multi-row insert. While the database is
+ * unreachable the segments hold the backlog, which is shipped from disk once
+ * it is back; rows are keyed by their segment position so nothing is stored
+ * twice. When the buffer is full the configured overflow policy decides
+ * whether events are dropped, the caller waits, or the request is refused.
+ */
+@Service
+public class AuditLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+
+    private static final int MAX_RESOURCE_LENGTH = 255;
+    private static final long DROP_WARNING_INTERVAL_MS = 60_000;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO audit_events (occurred_at, actor_id, actor_role, patient_id, action, resource, item_count, " +
+            "node_id, segment_no, segment_offset) " +
+            "SELECT e.occurred_at, e.actor_id, e.actor_role, e.patient_id, e.action, e.resource, e.item_count, " +
+            "?, e.segment_no, e.segment_offset " +
+            "FROM unnest(?::timestamp[], ?::bigint[], ?::varchar[], ?::bigint[], ?::varchar[], ?::varchar[], " +
+            "?::integer[], ?::bigint[], ?::bigint[]) " +
+            "AS e(occurred_at, actor_id, actor_role, patient_id, action, resource, item_count, segment_no, segment_offset) " +
+            "ON CONFLICT DO NOTHING";
+    private static final String SELECT_SQL =
+            "SELECT id, occurred_at, actor_id, actor_role, patient_id, action, resource, item_count FROM audit_events";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.audit.dir:./data/audit}")
+    private String dir;
+
+    // Rounded up to a power of two
+    @Value("${app.audit.bufferCapacity:65536}")
+    private int bufferCapacity;
+
+    @Value("${app.audit.batchSize:1000}")
+    private int batchSize;
+
+    @Value("${app.audit.flushIntervalMs:200}")
+    private long flushIntervalMs;
+
+    @Value("${app.audit.segmentBytes:67108864}")
+    private long segmentBytes;
+
+    // Shipped segments kept on disk as a local copy of the trail
+    @Value("${app.audit.retainSegments:16}")
+    private int retainSegments;
+
+    @Value("${app.audit.overflowPolicy:BLOCK}")
+    private OverflowPolicy overflowPolicy;
+
+    // Longest a BLOCK or REJECT caller waits for buffer space
+    @Value("${app.audit.offerTimeoutMs:20}")
+    private long offerTimeoutMs;
+
+    @Value("${app.audit.maxRetryBackoffMs:30000}")
+    private long maxRetryBackoffMs;
+
+    private MpscRingBuffer<AuditEvent> buffer;
+    private AuditSegmentLog segments;
+    private Thread writer;
+    private volatile boolean running;
+
+    // Writer thread only: next frame not yet in the database, or null until the checkpoint is read
+    private AuditSegmentLog.Position shipped;
+    private long retryAt;
+    private long retryBackoffMs;
+    private volatile String lastError;
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong lastDropWarning = new AtomicLong();
+    private Counter dropped;
+    private Counter rejected;
+
+    public enum OverflowPolicy {
+        // Lose the event and count it
+        DROP,
+        // Wait up to offerTimeoutMs for space, then drop
+        BLOCK,
+        // Wait up to offerTimeoutMs for space, then fail the request
+        REJECT
+    }
+
+    public static class SaturatedException extends RuntimeException {
+        public SaturatedException(String message) {
+            super(message);
+        }
+    }
+
+    public record StoredEvent(long id, AuditEvent event) {
+    }
+
+    public record Status(OverflowPolicy overflowPolicy, int buffered, int capacity, long appended, long inserted,
+                         long dropped, long rejected, int segments, String lastError) {
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        buffer = new MpscRingBuffer<>(bufferCapacity);
+        segments = AuditSegmentLog.open(Path.of(dir), segmentBytes);
+
+        Gauge.builder("audit.buffer.depth", buffer, MpscRingBuffer::size)
+                .description("Audit events waiting for the writer")
+                .register(meterRegistry);
+        dropped = Counter.builder("audit.events.dropped")
+                .description("Audit events lost because the buffer was full")
+                .register(meterRegistry);
+        rejected = Counter.builder("audit.events.rejected")
+                .description("Requests refused because their audit event could not be buffered")
+                .register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::runWriter, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws IOException, InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        // The writer drains what is buffered; anything it cannot ship stays in the segments for next start
+        writer.join(10_000);
+        segments.close();
+    }
+
+    /**
+     * Records that the actor accessed the patient's data. Never touches the
+     * disk or the database; throws {@link SaturatedException} only under the
+     * REJECT policy when the buffer stays full.
+     */
+    public void record(Long actorId, User.Role actorRole, Long patientId, AuditAction action, String resource,
+                       int itemCount) {
+        String path = resource.length() > MAX_RESOURCE_LENGTH ? resource.substring(0, MAX_RESOURCE_LENGTH) : resource;
+        AuditEvent event = new AuditEvent(LocalDateTime.now(), actorId, actorRole.name(), patientId, action, path,
+                itemCount);
+        if (offer(event)) {
+            return;
+        }
+        if (overflowPolicy != OverflowPolicy.DROP) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+            while (System.nanoTime() < deadline) {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(100_000);
+                if (offer(event)) {
+                    return;
+                }
+            }
+        }
+        if (overflowPolicy == OverflowPolicy.REJECT) {
+            rejected.increment();
+            throw new SaturatedException("Audit log is saturated, please retry shortly");
+        }
+        dropped.increment();
+        long now = System.currentTimeMillis();
+        long last = lastDropWarning.get();
+        if (now - last >= DROP_WARNING_INTERVAL_MS && lastDropWarning.compareAndSet(last, now)) {
+            logger.warn("Audit buffer full, dropping events ({} dropped so far)", (long) dropped.count());
+        }
+    }
+
+    public List<StoredEvent> byPatient(Long patientId, LocalDateTime from, LocalDateTime to,
+                                       PageCursor.Position after, int limit) {
+        return query("patient_id", patientId, from, to, after, limit);
+    }
+
+    public List<StoredEvent> byActor(Long actorId, LocalDateTime from, LocalDateTime to,
+                                     PageCursor.Position after, int limit) {
+        return query("actor_id", actorId, from, to, after, limit);
+    }
+
+    public Status status() {
+        return new Status(overflowPolicy, buffer.size(), buffer.capacity(), appended.get(), inserted.get(),
+                (long) dropped.count(), (long) rejected.count(), segments.segmentCount(), lastError);
+    }
+
+    private boolean offer(AuditEvent event) {
+        if (!buffer.offer(event)) {
+            return false;
+        }
+        // Wake the writer early once a full batch is waiting
+        if (buffer.size() == batchSize) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    private void runWriter() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        while (true) {
+            if (batch.isEmpty()) {
+                buffer.drain(batch::add, batchSize);
+            }
+            if (batch.isEmpty() && !running) {
+                break;
+            }
+
+            List<AuditSegmentLog.Entry> entries = null;
+            AuditSegmentLog.Position before = segments.end();
+            if (!batch.isEmpty()) {
+                try {
+                    entries = segments.append(batch);
+                    appended.addAndGet(batch.size());
+                    batch.clear();
+                } catch (IOException | RuntimeException e) {
+                    // Kept for the next round; the buffer fills behind it and the overflow policy applies
+                    lastError = "Segment append failed: " + e.getMessage();
+                    logger.error("Failed to append {} audit events", batch.size(), e);
+                    if (!running) {
+                        break;
+                    }
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Math.max(flushIntervalMs, 1000)));
+                    continue;
+                }
+            }
+
+            ship(before, entries);
+
+            if (running && buffer.size() < batchSize) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMs));
+            }
+        }
+        if (!batch.isEmpty()) {
+            logger.error("Audit writer stopped with {} events it could not append", batch.size());
+        }
+    }
+
+    // Inserts everything from the shipped position up to the end of the segments
+    private void ship(AuditSegmentLog.Position before, List<AuditSegmentLog.Entry> appendedNow) {
+        if (System.currentTimeMillis() < retryAt) {
+            return;
+        }
+        try {
+            if (shipped == null) {
+                shipped = loadCheckpoint();
+            }
+            if (appendedNow != null && shipped.equals(before)) {
+                // Caught up: the batch just written is all that is missing
+                insert(appendedNow);
+                shipped = appendedNow.get(appendedNow.size() - 1).next();
+            } else {
+                AuditSegmentLog.Position end = segments.end();
+                while (shipped.compareTo(end) < 0) {
+                    List<AuditSegmentLog.Entry> backlog = segments.read(shipped, batchSize);
+                    if (backlog.isEmpty()) {
+                        // Only empty files remain up to the end
+                        shipped = end;
+                        break;
+                    }
+                    insert(backlog);
+                    shipped = backlog.get(backlog.size() - 1).next();
+                }
+            }
+            segments.deleteBefore(shipped.segment(), retainSegments);
+            retryBackoffMs = 0;
+            lastError = null;
+        } catch (IOException | RuntimeException e) {
+            retryBackoffMs = Math.min(maxRetryBackoffMs, Math.max(1000, retryBackoffMs * 2));
+            retryAt = System.currentTimeMillis() + retryBackoffMs;
+            lastError = "Shipping failed: " + e.getMessage();
+            logger.warn("Failed to ship audit events, retrying in {} ms", retryBackoffMs, e);
+        }
+    }
+
+    // Resumes at the last row this node shipped; shipping it again is a no-op
+    private AuditSegmentLog.Position loadCheckpoint() {
+        List<AuditSegmentLog.Position> last = jdbcTemplate.query(
+                "SELECT segment_no, segment_offset FROM audit_events WHERE node_id = ? " +
+                "ORDER BY segment_no DESC, segment_offset DESC LIMIT 1",
+                (rs, rowNum) -> new AuditSegmentLog.Position(rs.getLong("segment_no"), rs.getLong("segment_offset")),
+                segments.nodeId());
+        return last.isEmpty() ? segments.start() : last.get(0);
+    }
+
+    private void insert(List<AuditSegmentLog.Entry> entries) {
+        int n = entries.size();
+        Timestamp[] occurredAt = new Timestamp[n];
+        Long[] actorIds = new Long[n];
+        String[] actorRoles = new String[n];
+        Long[] patientIds = new Long[n];
+        String[] actions = new String[n];
+        String[] resources = new String[n];
+        Integer[] itemCounts = new Integer[n];
+        Long[] segmentNos = new Long[n];
+        Long[] segmentOffsets = new Long[n];
+        for (int i = 0; i < n; i++) {
+            AuditEvent event = entries.get(i).event();
+            occurredAt[i] = Timestamp.valueOf(event.occurredAt());
+            actorIds[i] = event.actorId();
+            actorRoles[i] = event.actorRole();
+            patientIds[i] = event.patientId();
+            actions[i] = event.action().name();
+            resources[i] = event.resource();
+            itemCounts[i] = event.itemCount();
+            segmentNos[i] = entries.get(i).position().segment();
+            segmentOffsets[i] = entries.get(i).position().offset();
+        }
+
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_SQL);
+            ps.setString(1, segments.nodeId());
+            Object[][] columns = {occurredAt, actorIds, actorRoles, patientIds, actions, resources, itemCounts,
+                    segmentNos, segmentOffsets};
+            String[] types = {"timestamp", "bigint", "varchar", "bigint", "varchar", "varchar", "integer",
+                    "bigint", "bigint"};
+            for (int c = 0; c < columns.length; c++) {
+                Array array = con.createArrayOf(types[c], columns[c]);
+                ps.setArray(c + 2, array);
+            }
+            return ps;
+        });
+        inserted.addAndGet(n);
+    }
+
+    private List<StoredEvent> query(String column, Long id, LocalDateTime from, LocalDateTime to,
+                                    PageCursor.Position after, int limit) {
+        StringBuilder sql = new StringBuilder(SELECT_SQL).append(" WHERE ").append(column).append(" = ?");
+        List<Object> args = new ArrayList<>(List.of(id));
+        if (from != null) {
+            sql.append(" AND occurred_at >= ?");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND occurred_at < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+        if (after != null) {
+            sql.append(" AND (occurred_at, id) < (?, ?)");
+            args.add(Timestamp.valueOf(after.time()));
+            args.add(after.id());
+        }
+        sql.append(" ORDER BY occurred_at DESC, id DESC LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new StoredEvent(rs.getLong("id"),
+                new AuditEvent(rs.getTimestamp("occurred_at").toLocalDateTime(), rs.getLong("actor_id"),
+                        rs.getString("actor_role"), rs.getLong("patient_id"),
+                        AuditAction.valueOf(rs.getString("action")), rs.getString("resource"),
+                        rs.getInt("item_count"))), args.toArray());
+    }
+}
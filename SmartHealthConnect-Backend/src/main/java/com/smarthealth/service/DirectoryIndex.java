@@ -0,0 +1,216 @@
+package com.smarthealth.service;
+
+import com.smarthealth.entity.User;
+import com.smarthealth.event.DirectoryChangedEvent;
+import com.smarthealth.util.TypeaheadIndex;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory name directory over active users (one index per role), doctors
+ * and departments, for typeahead and name search without LIKE scans. Loaded
+ * once on startup and kept current from {@link DirectoryChangedEvent}s, which
+ * re-read the changed row after commit. Changes that commit while the load is
+ * still streaming are held back and applied once it finishes, so a row read
+ * early in the load cannot overwrite a newer change.
+ */
+@Service
+public class DirectoryIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryIndex.class);
+
+    private static final String USER_SQL =
+            "SELECT id, username, email, first_name, last_name, role, is_active FROM users";
+    private static final String DOCTOR_SQL =
+            "SELECT id, first_name, last_name, specialization, department, rating, is_active FROM doctors";
+    private static final String DEPARTMENT_SQL =
+            "SELECT id, name, head, total_doctors, is_active FROM departments";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Best entries cached per busy prefix; suggestion limits up to this are served from the cache
+    @Value("${app.directory.cacheSize:32}")
+    private int cacheSize;
+
+    @Value("${app.directory.maxScan:20000}")
+    private int maxScan;
+
+    @Value("${app.directory.maxFuzzyScan:2000}")
+    private int maxFuzzyScan;
+
+    @Value("${app.directory.minSimilarity:0.35}")
+    private double minSimilarity;
+
+    private final Map<User.Role, TypeaheadIndex> users = new EnumMap<>(User.Role.class);
+    private TypeaheadIndex doctors;
+    private TypeaheadIndex departments;
+
+    // Guarded by itself; null once the load has finished
+    private List<DirectoryChangedEvent> deferred = new ArrayList<>();
+    private volatile boolean ready;
+
+    @PostConstruct
+    void init() {
+        for (User.Role role : User.Role.values()) {
+            users.put(role, newIndex());
+        }
+        doctors = newIndex();
+        departments = newIndex();
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        // Cursor-based reads (fetch size inside a transaction) so no table is materialised
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(10_000);
+        streaming.query(USER_SQL + " WHERE is_active = true", rs -> {
+            putUser(rs);
+        });
+        streaming.query(DOCTOR_SQL + " WHERE is_active = true", rs -> {
+            putDoctor(rs);
+        });
+        streaming.query(DEPARTMENT_SQL + " WHERE is_active = true", rs -> {
+            putDepartment(rs);
+        });
+
+        List<DirectoryChangedEvent> held;
+        synchronized (this) {
+            held = deferred;
+            deferred = null;
+        }
+        held.forEach(this::refresh);
+        ready = true;
+        logger.info("Directory index loaded: {} users, {} doctors, {} departments",
+                users.values().stream().mapToInt(TypeaheadIndex::size).sum(), doctors.size(), departments.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDirectoryChanged(DirectoryChangedEvent event) {
+        synchronized (this) {
+            if (deferred != null) {
+                deferred.add(event);
+                return;
+            }
+        }
+        refresh(event);
+    }
+
+    // For users inserted without JPA (bulk import); the row is known to be committed and active
+    public void addUser(long id, String username, String email, String firstName, String lastName, User.Role role) {
+        synchronized (this) {
+            if (deferred != null) {
+                deferred.add(new DirectoryChangedEvent(DirectoryChangedEvent.Type.USER, id));
+                return;
+            }
+        }
+        putUser(id, username, email, firstName, lastName, role);
+    }
+
+    // False until the startup load has finished; callers fall back to the database
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Active users matching the query, best first. A null role searches all
+     * roles and interleaves them by match score.
+     */
+    public List<TypeaheadIndex.Suggestion> users(String query, User.Role role, int limit) {
+        if (role != null) {
+            return users.get(role).suggest(query, limit);
+        }
+        List<TypeaheadIndex.Suggestion> merged = new ArrayList<>();
+        users.values().forEach(index -> merged.addAll(index.suggest(query, limit)));
+        merged.sort(Comparator.comparingDouble(TypeaheadIndex.Suggestion::score).reversed()
+                .thenComparing(TypeaheadIndex.Suggestion::label, String.CASE_INSENSITIVE_ORDER));
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    public List<TypeaheadIndex.Suggestion> doctors(String query, int limit) {
+        return doctors.suggest(query, limit);
+    }
+
+    public List<TypeaheadIndex.Suggestion> departments(String query, int limit) {
+        return departments.suggest(query, limit);
+    }
+
+    // Re-reads the row; gone or inactive rows leave the index
+    private void refresh(DirectoryChangedEvent event) {
+        try {
+            switch (event.type()) {
+                case USER -> {
+                    users.values().forEach(index -> index.remove(event.id()));
+                    jdbcTemplate.query(USER_SQL + " WHERE id = ? AND is_active = true", rs -> {
+                        putUser(rs);
+                    }, event.id());
+                }
+                case DOCTOR -> {
+                    doctors.remove(event.id());
+                    jdbcTemplate.query(DOCTOR_SQL + " WHERE id = ? AND is_active = true", rs -> {
+                        putDoctor(rs);
+                    }, event.id());
+                }
+                case DEPARTMENT -> {
+                    departments.remove(event.id());
+                    jdbcTemplate.query(DEPARTMENT_SQL + " WHERE id = ? AND is_active = true", rs -> {
+                        putDepartment(rs);
+                    }, event.id());
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to refresh directory entry {} {}", event.type(), event.id(), e);
+        }
+    }
+
+    private void putUser(ResultSet rs) throws SQLException {
+        String role = rs.getString("role");
+        putUser(rs.getLong("id"), rs.getString("username"), rs.getString("email"), rs.getString("first_name"),
+                rs.getString("last_name"), role != null ? User.Role.valueOf(role) : User.Role.PATIENT);
+    }
+
+    private void putUser(long id, String username, String email, String firstName, String lastName, User.Role role) {
+        // Only the local part of the email; domains would match everyone
+        String mailbox = email != null && email.indexOf('@') > 0 ? email.substring(0, email.indexOf('@')) : email;
+        users.get(role).put(id, firstName + " " + lastName, null, 0, firstName, lastName, username, mailbox);
+    }
+
+    private void putDoctor(ResultSet rs) throws SQLException {
+        String firstName = rs.getString("first_name");
+        String lastName = rs.getString("last_name");
+        String specialization = rs.getString("specialization");
+        String department = rs.getString("department");
+        doctors.put(rs.getLong("id"), "Dr. " + firstName + " " + lastName, specialization, rs.getDouble("rating"),
+                firstName, lastName, specialization, department);
+    }
+
+    private void putDepartment(ResultSet rs) throws SQLException {
+        String name = rs.getString("name");
+        String head = rs.getString("head");
+        departments.put(rs.getLong("id"), name, head, rs.getInt("total_doctors"), name, head);
+    }
+
+    private TypeaheadIndex newIndex() {
+        return new TypeaheadIndex(cacheSize, maxScan, maxFuzzyScan, minSimilarity);
+    }
+}
@@ -0,0 +1,376 @@
+package com.smarthealth.service;
+
+import com.smarthealth.entity.Appointment;
+import com.smarthealth.event.AppointmentChangedEvent;
+import com.smarthealth.repository.AppointmentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live day-board for doctors over Server-Sent Events. A new connection gets a
+ * {@code snapshot} of today's appointments, then {@code upsert} and
+ * {@code remove} events as that doctor's appointments change, plus comment
+ * heartbeats. Changes are looked up once per commit and fanned out to every
+ * connection of the doctor. Each connection has a bounded queue drained by a
+ * shared writer pool; a connection whose queue overflows is closed so one
+ * slow client cannot hold memory, and its EventSource reconnects to a fresh
+ * snapshot. Closing cannot interrupt a write that is already blocked on a
+ * client that stopped reading, so a watchdog drops any connection whose write
+ * has been blocked past the write timeout and adds a writer thread in place of
+ * the stuck one until the container's socket timeout releases it. Other
+ * connections therefore always keep the configured number of writers. At
+ * midnight every open connection gets a new {@code snapshot} for the new day.
+ * <p>
+ * Browsers open the stream with a short-lived token in the URL, since
+ * EventSource cannot send an Authorization header.
+ */
+@Service
+public class DoctorBoardService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DoctorBoardService.class);
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Value("${app.board.bufferSize:256}")
+    private int bufferSize;
+
+    @Value("${app.board.emitterTimeoutMs:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${app.board.writerThreads:4}")
+    private int writerThreads;
+
+    @Value("${app.board.writeTimeoutMs:10000}")
+    private long writeTimeoutMs;
+
+    private final ConcurrentHashMap<Long, Set<Subscriber>> boards = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    // Subscribers with a send in progress, watched for writes that never return
+    private final Set<Subscriber> sending = ConcurrentHashMap.newKeySet();
+
+    // Single thread keeps diffs in commit order
+    private ExecutorService differ;
+    private ThreadPoolExecutor writers;
+
+    @PostConstruct
+    void start() {
+        differ = Executors.newSingleThreadExecutor(daemon("doctor-board"));
+        writers = new ThreadPoolExecutor(writerThreads, writerThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), daemon("doctor-board-writer"));
+    }
+
+    @PreDestroy
+    void stop() {
+        differ.shutdownNow();
+        writers.shutdownNow();
+        boards.values().forEach(subscribers -> subscribers.forEach(Subscriber::close));
+    }
+
+    /**
+     * Opens a board stream for the doctor. The subscriber is registered before
+     * the snapshot is read, and changes that arrive meanwhile are replayed
+     * after it, so nothing committed around the snapshot is lost.
+     */
+    public SseEmitter subscribe(Long doctorId) {
+        Subscriber subscriber = new Subscriber(doctorId, new SseEmitter(emitterTimeoutMs));
+        boards.computeIfAbsent(doctorId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        connections.incrementAndGet();
+
+        try {
+            subscriber.start(snapshot(doctorId, LocalDate.now()));
+        } catch (RuntimeException e) {
+            subscriber.close();
+            throw e;
+        }
+        return subscriber.emitter;
+    }
+
+    public int connectionCount() {
+        return connections.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        if (boards.containsKey(event.doctorId())) {
+            differ.execute(() -> push(event));
+        }
+    }
+
+    @Scheduled(fixedRateString = "${app.board.heartbeatMs:15000}")
+    public void heartbeat() {
+        boards.values().forEach(subscribers -> subscribers.forEach(
+                subscriber -> subscriber.publish(SseEmitter.event().comment("heartbeat").build())));
+    }
+
+    // On the differ thread, so later diffs are judged against the new day and reach clients after its snapshot
+    @Scheduled(cron = "${app.board.rolloverCron:0 0 0 * * *}")
+    public void rollover() {
+        differ.execute(() -> {
+            LocalDate today = LocalDate.now();
+            boards.forEach((doctorId, subscribers) -> {
+                try {
+                    Set<ResponseBodyEmitter.DataWithMediaType> snapshot = snapshot(doctorId, today);
+                    subscribers.forEach(subscriber -> subscriber.publish(snapshot));
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to roll the board of doctor {} over to {}", doctorId, today, e);
+                }
+            });
+        });
+    }
+
+    @Scheduled(fixedRateString = "${app.board.writeCheckMs:1000}")
+    public void expireStalledWrites() {
+        long now = System.nanoTime();
+        sending.forEach(subscriber -> subscriber.checkWrite(now, TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs)));
+    }
+
+    private void push(AppointmentChangedEvent event) {
+        Set<Subscriber> subscribers = boards.get(event.doctorId());
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+        try {
+            Set<ResponseBodyEmitter.DataWithMediaType> diff = diff(event);
+            subscribers.forEach(subscriber -> subscriber.publish(diff));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to push board change for appointment {}", event.appointmentId(), e);
+        }
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> snapshot(Long doctorId, LocalDate day) {
+        List<Map<String, Object>> appointments = appointmentRepository
+                .findTodayAppointmentsByDoctor(doctorId, day.atStartOfDay(), day.plusDays(1).atStartOfDay())
+                .stream()
+                .map(DoctorBoardService::toBoardEntry)
+                .toList();
+        return SseEmitter.event().name("snapshot")
+                .data(Map.of("date", day.toString(), "appointments", appointments)).build();
+    }
+
+    // Today's appointments are upserted with their current state; anything else is removed from the board
+    private Set<ResponseBodyEmitter.DataWithMediaType> diff(AppointmentChangedEvent event) {
+        boolean onBoard = event.kind() != AppointmentChangedEvent.Kind.DELETED
+                && event.appointmentDate().toLocalDate().equals(LocalDate.now());
+        if (onBoard) {
+            Appointment appointment = appointmentRepository.findWithPartiesById(event.appointmentId())
+                    .filter(a -> a.getDoctor().getId().equals(event.doctorId()))
+                    .orElse(null);
+            if (appointment != null) {
+                return SseEmitter.event().name("upsert").data(toBoardEntry(appointment)).build();
+            }
+        }
+        return SseEmitter.event().name("remove").data(Map.of("id", event.appointmentId())).build();
+    }
+
+    private void unregister(Subscriber subscriber) {
+        boards.computeIfPresent(subscriber.doctorId, (id, subscribers) -> {
+            if (subscribers.remove(subscriber)) {
+                connections.decrementAndGet();
+            }
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    // Grows the pool while a writer is stuck on a stalled client and shrinks it once that write returns
+    private synchronized void resizeWriters(int delta) {
+        int size = writers.getCorePoolSize() + delta;
+        if (delta > 0) {
+            writers.setMaximumPoolSize(size);
+            writers.setCorePoolSize(size);
+        } else {
+            writers.setCorePoolSize(size);
+            writers.setMaximumPoolSize(size);
+        }
+    }
+
+    // Same shape as the /appointments/doctor/today entries
+    private static Map<String, Object> toBoardEntry(Appointment appointment) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("id", appointment.getId());
+        entry.put("appointmentDate", appointment.getAppointmentDate().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        entry.put("type", appointment.getType());
+        entry.put("status", appointment.getStatus());
+        entry.put("reason", appointment.getReason());
+        entry.put("notes", appointment.getNotes());
+        entry.put("durationMinutes", appointment.getDurationMinutes());
+        entry.put("isVideoConsultation", appointment.getIsVideoConsultation());
+        entry.put("version", appointment.getVersion());
+
+        Map<String, Object> patientInfo = new HashMap<>();
+        patientInfo.put("id", appointment.getPatient().getId());
+        patientInfo.put("name", appointment.getPatient().getFirstName() + " " + appointment.getPatient().getLastName());
+        patientInfo.put("email", appointment.getPatient().getEmail());
+        entry.put("patient", patientInfo);
+        return entry;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private final class Subscriber {
+
+        private static final long IDLE = Long.MIN_VALUE;
+        private static final long STALLED = Long.MIN_VALUE + 1;
+
+        private final Long doctorId;
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // System.nanoTime() when the current send started, IDLE between sends, STALLED once the watchdog gave up on it
+        private final AtomicLong sendingSince = new AtomicLong(IDLE);
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile boolean closed;
+        private volatile boolean evicted;
+
+        // Changes seen before the snapshot went out; guarded by this
+        private List<Set<ResponseBodyEmitter.DataWithMediaType>> held = new ArrayList<>();
+
+        Subscriber(Long doctorId, SseEmitter emitter) {
+            this.doctorId = doctorId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+            emitter.onCompletion(this::close);
+            emitter.onTimeout(this::close);
+            emitter.onError(e -> close());
+        }
+
+        synchronized void start(Set<ResponseBodyEmitter.DataWithMediaType> snapshot) {
+            offer(snapshot);
+            held.forEach(this::offer);
+            held = null;
+        }
+
+        void publish(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            synchronized (this) {
+                if (held != null) {
+                    if (held.size() >= bufferSize) {
+                        evict();
+                    } else {
+                        held.add(event);
+                    }
+                    return;
+                }
+            }
+            offer(event);
+        }
+
+        void close() {
+            closed = true;
+            unregister(this);
+        }
+
+        private void offer(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                evict();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                writers.execute(this::drain);
+            }
+        }
+
+        // The client fell a whole buffer behind; drop it and let it reconnect
+        private void evict() {
+            if (!closed) {
+                logger.info("Evicting slow doctor board client for doctor {}", doctorId);
+                drop();
+            }
+        }
+
+        // The watchdog runs this for subscribers in the middle of a send
+        void checkWrite(long now, long timeoutNanos) {
+            long since = sendingSince.get();
+            if (since != IDLE && since != STALLED && now - since > timeoutNanos
+                    && sendingSince.compareAndSet(since, STALLED)) {
+                logger.warn("Doctor board write for doctor {} blocked for over {} ms; dropping the client",
+                        doctorId, TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+                resizeWriters(1);
+                drop();
+            }
+        }
+
+        // The emitter is completed by the writer: complete() waits for the emitter's lock, which a blocked send holds
+        private void drop() {
+            evicted = true;
+            close();
+            queue.clear();
+            if (draining.compareAndSet(false, true)) {
+                writers.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Set<ResponseBodyEmitter.DataWithMediaType> event;
+                while (!closed && (event = queue.poll()) != null) {
+                    send(event);
+                }
+                if (evicted && completed.compareAndSet(false, true)) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // Something was queued, or the client dropped, after the checks above but before the flag was cleared
+            boolean pending = closed ? evicted && !completed.get() : !queue.isEmpty();
+            if (pending && draining.compareAndSet(false, true)) {
+                writers.execute(this::drain);
+            }
+        }
+
+        private void send(Set<ResponseBodyEmitter.DataWithMediaType> event) throws IOException {
+            sendingSince.set(System.nanoTime());
+            sending.add(this);
+            try {
+                emitter.send(event);
+            } finally {
+                sending.remove(this);
+                // The watchdog already replaced this thread in the pool; retire the extra one
+                if (sendingSince.getAndSet(IDLE) == STALLED) {
+                    resizeWriters(-1);
+                }
+            }
+        }
+    }
+}
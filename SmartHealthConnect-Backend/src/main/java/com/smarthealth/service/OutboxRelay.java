@@ -0,0 +1,185 @@
+package com.smarthealth.service;
+
+import com.smarthealth.event.OutboxConsumer;
+import com.smarthealth.event.OutboxEvent;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves committed outbox rows to consumers. Each pass first stamps new rows
+ * with a global sequence under an advisory lock, so sequences follow commit
+ * order even with several instances; ids alone do not, because a transaction
+ * can commit after one that started later. Every consumer then pulls batches
+ * past its own stored position, holding its row lock while delivering, and
+ * only advances the position once the batch was accepted. Delivery is at
+ * least once and in sequence order, which keeps each aggregate's events in
+ * order; a failing consumer backs off without holding up the others.
+ */
+@Service
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    // Arbitrary advisory lock key reserved for sequencing the outbox
+    private static final long SEQUENCER_LOCK = 0x6f7574626f78L;
+
+    // Numbers come from outbox_events_sequence_seq, drawn in id order, so they never repeat after a prune
+    private static final String SEQUENCE_SQL =
+            "UPDATE outbox_events o SET sequence = b.sequence" +
+            "  FROM (SELECT id, nextval('outbox_events_sequence_seq') AS sequence" +
+            "          FROM (SELECT id FROM outbox_events WHERE sequence IS NULL ORDER BY id LIMIT ?) pending) b" +
+            " WHERE o.id = b.id";
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    private List<OutboxConsumer> localConsumers = List.of();
+
+    // Comma separated webhook URLs that receive every event
+    @Value("${app.outbox.webhooks:}")
+    private String webhooksSpec;
+
+    @Value("${app.outbox.webhookSecret:}")
+    private String webhookSecret;
+
+    @Value("${app.outbox.webhookTimeoutMs:5000}")
+    private long webhookTimeoutMs;
+
+    @Value("${app.outbox.batchSize:200}")
+    private int batchSize;
+
+    @Value("${app.outbox.pollMs:500}")
+    private long pollMs;
+
+    @Value("${app.outbox.maxBackoffMs:60000}")
+    private long maxBackoffMs;
+
+    @Value("${app.outbox.retentionDays:7}")
+    private int retentionDays;
+
+    private final List<OutboxConsumer> consumers = new ArrayList<>();
+
+    @PostConstruct
+    void init() {
+        consumers.addAll(localConsumers);
+        for (String url : StringUtils.commaDelimitedListToStringArray(webhooksSpec)) {
+            if (!url.isBlank()) {
+                consumers.add(new WebhookOutboxConsumer(url.trim(), webhookSecret, Duration.ofMillis(webhookTimeoutMs)));
+            }
+        }
+        logger.info("Outbox relay started with {} consumers", consumers.size());
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.pollMs:500}")
+    public void relay() {
+        try {
+            sequence();
+            for (OutboxConsumer consumer : consumers) {
+                while (dispatch(consumer)) {
+                    // Keep draining while full batches are accepted
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Outbox relay pass failed", e);
+        }
+    }
+
+    // Drops delivered events past the retention window; positions of current consumers are never overtaken
+    @Scheduled(cron = "${app.outbox.pruneCron:0 30 3 * * *}")
+    public void prune() {
+        String[] names = consumers.stream().map(OutboxConsumer::name).toArray(String[]::new);
+        int removed = jdbcTemplate.update(connection -> {
+            var ps = connection.prepareStatement(
+                    "DELETE FROM outbox_events WHERE sequence IS NOT NULL AND created_at < ? AND sequence <= " +
+                    "COALESCE((SELECT MIN(last_sequence) FROM outbox_consumers WHERE name = ANY (?)), 9223372036854775807)");
+            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now().minusDays(retentionDays)));
+            ps.setArray(2, connection.createArrayOf("varchar", names));
+            return ps;
+        });
+        logger.info("Pruned {} outbox events", removed);
+    }
+
+    private void sequence() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class,
+                    SEQUENCER_LOCK);
+            // Another instance is sequencing right now
+            if (Boolean.TRUE.equals(locked)) {
+                jdbcTemplate.update(SEQUENCE_SQL, batchSize * 10);
+            }
+        });
+    }
+
+    // Returns true when a full batch went out and more may be waiting
+    private boolean dispatch(OutboxConsumer consumer) {
+        Boolean more = new TransactionTemplate(transactionManager).execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            jdbcTemplate.update("INSERT INTO outbox_consumers (name, updated_at) VALUES (?, ?) ON CONFLICT DO NOTHING",
+                    consumer.name(), now);
+            // Another instance is delivering to this consumer
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT last_sequence, failures, updated_at FROM outbox_consumers WHERE name = ? FOR UPDATE SKIP LOCKED",
+                    consumer.name());
+            if (rows.isEmpty()) {
+                return false;
+            }
+            Map<String, Object> row = rows.get(0);
+            long position = ((Number) row.get("last_sequence")).longValue();
+            int failures = ((Number) row.get("failures")).intValue();
+            LocalDateTime lastAttempt = AppointmentConflictIndex.toLocalDateTime(row.get("updated_at"));
+            if (failures > 0 && now.isBefore(lastAttempt.plus(backoff(failures)))) {
+                return false;
+            }
+
+            List<OutboxEvent> batch = outboxService.readAfter(position, batchSize);
+            if (batch.isEmpty()) {
+                return false;
+            }
+            try {
+                consumer.deliver(batch);
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                logger.warn("Outbox consumer {} failed at sequence {} (attempt {})", consumer.name(),
+                        batch.get(0).sequence(), failures + 1, e);
+                String error = String.valueOf(e.getMessage());
+                jdbcTemplate.update("UPDATE outbox_consumers SET failures = failures + 1, last_error = ?, updated_at = ? " +
+                        "WHERE name = ?", error.substring(0, Math.min(500, error.length())), now, consumer.name());
+                return false;
+            }
+            jdbcTemplate.update("UPDATE outbox_consumers SET last_sequence = ?, failures = 0, last_error = NULL, " +
+                    "updated_at = ? WHERE name = ?", batch.get(batch.size() - 1).sequence(), now, consumer.name());
+            return batch.size() == batchSize;
+        });
+        return Boolean.TRUE.equals(more);
+    }
+
+    private Duration backoff(int failures) {
+        long delay = pollMs << Math.min(failures, 20);
+        return Duration.ofMillis(Math.min(delay, maxBackoffMs));
+    }
+}
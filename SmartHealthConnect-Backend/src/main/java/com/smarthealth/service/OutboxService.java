@@ -0,0 +1,87 @@
+package com.smarthealth.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smarthealth.event.AppointmentChangedEvent;
+import com.smarthealth.event.MedicalRecordChangedEvent;
+import com.smarthealth.event.OutboxEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes appointment and medical record changes to the outbox table. The
+ * listeners run synchronously inside the transaction that changed the row, so
+ * the event is committed or rolled back together with it; publishing to
+ * consumers is left to {@link OutboxRelay}.
+ */
+@Service
+public class OutboxService {
+
+    public static final String APPOINTMENT = "appointment";
+    public static final String MEDICAL_RECORD = "medical_record";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @EventListener
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("appointmentId", event.appointmentId());
+        payload.put("patientId", event.patientId());
+        payload.put("doctorId", event.doctorId());
+        payload.put("appointmentDate", event.appointmentDate() != null ? event.appointmentDate().toString() : null);
+        payload.put("durationMinutes", event.durationMinutes());
+        payload.put("status", event.status());
+        payload.put("previousStatus", event.previousStatus());
+        append(APPOINTMENT, event.appointmentId(), APPOINTMENT + "." + event.kind().name().toLowerCase(), payload);
+    }
+
+    @EventListener
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onMedicalRecordChanged(MedicalRecordChangedEvent event) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("recordId", event.recordId());
+        payload.put("patientId", event.patientId());
+        payload.put("doctorId", event.doctorId());
+        payload.put("appointmentId", event.appointmentId());
+        payload.put("type", event.type());
+        append(MEDICAL_RECORD, event.recordId(), MEDICAL_RECORD + "." + event.kind().name().toLowerCase(), payload);
+    }
+
+    /**
+     * Adds an event to the outbox. Must be called inside the transaction that
+     * made the change it describes.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String aggregateType, long aggregateId, String eventType, Map<String, Object> payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Outbox payload is not serializable", e);
+        }
+        jdbcTemplate.update("INSERT INTO outbox_events (aggregate_type, aggregate_id, event_type, payload, created_at) " +
+                "VALUES (?, ?, ?, ?::jsonb, ?)", aggregateType, aggregateId, eventType, json, LocalDateTime.now());
+    }
+
+    // Sequenced events after the given position, oldest first
+    public List<OutboxEvent> readAfter(long sequence, int limit) {
+        return jdbcTemplate.query("SELECT sequence, aggregate_type, aggregate_id, event_type, payload::text, created_at " +
+                        "FROM outbox_events WHERE sequence > ? ORDER BY sequence LIMIT ?",
+                (rs, rowNum) -> new OutboxEvent(rs.getLong(1), rs.getString(2), rs.getLong(3), rs.getString(4),
+                        rs.getString(5), rs.getObject(6, LocalDateTime.class)),
+                sequence, limit);
+    }
+}
@@ -0,0 +1,121 @@
+package com.smarthealth.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs BCrypt work (login verification and hashing new passwords) on a small
+ * dedicated pool with a bounded queue. When the queue is full callers get a
+ * {@link SaturatedException} straight away instead of tying up a Tomcat worker,
+ * so a login storm cannot starve unrelated endpoints.
+ */
+@Service
+public class PasswordHashingService {
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.passwordHashing.threads:0}")
+    private int threads;
+
+    @Value("${app.passwordHashing.queueCapacity:64}")
+    private int queueCapacity;
+
+    @Value("${app.passwordHashing.timeoutMs:5000}")
+    private long timeoutMs;
+
+    private ThreadPoolExecutor executor;
+    private Timer latency;
+    private Counter rejections;
+
+    public static class SaturatedException extends RuntimeException {
+        public SaturatedException(String message) {
+            super(message);
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-hashing-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("auth.password.hashing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Password hashing tasks waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashing tasks currently running")
+                .register(meterRegistry);
+        latency = Timer.builder("auth.password.hashing.latency")
+                .description("Time spent hashing or verifying a password, excluding queue wait")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        rejections = Counter.builder("auth.password.hashing.rejected")
+                .description("Password hashing tasks rejected because the queue was full")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdown();
+    }
+
+    public String encode(String rawPassword) {
+        return execute(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    // Runs an arbitrary BCrypt-bound task (e.g. AuthenticationManager.authenticate) on the hashing pool
+    public <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> latency.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            throw new SaturatedException("Authentication service is busy, please retry shortly");
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new SaturatedException("Authentication service timed out, please retry shortly");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SaturatedException("Interrupted while waiting for password hashing");
+        } catch (ExecutionException e) {
+            // Surface the task's own exception (e.g. BadCredentialsException) unchanged
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
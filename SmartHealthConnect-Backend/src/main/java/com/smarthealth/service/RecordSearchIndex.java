@@ -0,0 +1,548 @@
+package com.smarthealth.service;
+
+import com.smarthealth.event.MedicalRecordChangedEvent;
+import com.smarthealth.search.IndexSegment;
+import com.smarthealth.search.LiveSegment;
+import com.smarthealth.search.MappedSegment;
+import com.smarthealth.search.SegmentFiles;
+import com.smarthealth.search.TextAnalyzer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * BM25-ranked full-text search over the text fields of medical records. New
+ * and updated records go into an in-memory live segment that is periodically
+ * flushed to an immutable, memory-mapped segment file; a record's newest copy
+ * supersedes older ones through the record-to-document map, and segments are
+ * merged once there are too many. A manifest lists the persisted segments and
+ * the newest {@code updated_at} they cover, so a restart maps the files and
+ * only re-reads records changed since then. All writes run on one index
+ * thread fed by {@link MedicalRecordChangedEvent}s; searches only take the
+ * read lock.
+ */
+@Service
+public class RecordSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordSearchIndex.class);
+
+    private static final String RECORD_SQL =
+            "SELECT id, patient_id, doctor_id, title, diagnosis, symptoms, treatment, prescription, notes, updated_at " +
+            "FROM medical_records";
+    private static final String MANIFEST = "manifest";
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MAX_QUERY_TERMS = 16;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.search.indexDir:./data/record-index}")
+    private String indexDirSpec;
+
+    // Live segment size that triggers a flush between the periodic ones
+    @Value("${app.search.flushDocs:5000}")
+    private int flushDocs;
+
+    @Value("${app.search.flushIntervalMs:60000}")
+    private long flushIntervalMs;
+
+    @Value("${app.search.maxSegments:8}")
+    private int maxSegments;
+
+    // Synonym matches score at this fraction of a match on the word itself
+    @Value("${app.search.synonymWeight:0.7}")
+    private double synonymWeight;
+
+    // Records updated this long before the manifest watermark are re-read on startup, for late commits
+    @Value("${app.search.catchUpSlackMinutes:10}")
+    private long catchUpSlackMinutes;
+
+    public record Hit(long recordId, double score) {
+    }
+
+    private record RecordRow(long id, long patientId, long doctorId, LocalDateTime updatedAt, List<String> titleTerms,
+                             List<String> bodyTerms) {
+    }
+
+    private TextAnalyzer analyzer;
+    private Path indexDir;
+    private ScheduledExecutorService writer;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Guarded by lock; only the writer thread modifies them
+    private final List<IndexSegment> segments = new ArrayList<>();
+    private final Map<Long, Long> current = new HashMap<>();
+    private LiveSegment live;
+    private long totalLength;
+
+    // Writer thread only
+    private final Map<Integer, IndexSegment> segmentsById = new HashMap<>();
+    private int nextSegmentId;
+    private LocalDateTime indexedWatermark;
+    private volatile boolean ready;
+
+    @PostConstruct
+    void start() throws IOException {
+        try (InputStream synonyms = new ClassPathResource("search/medical-synonyms.txt").getInputStream()) {
+            analyzer = new TextAnalyzer(synonyms);
+        }
+        indexDir = Paths.get(indexDirSpec);
+        Files.createDirectories(indexDir);
+        live = newLiveSegment();
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "record-index");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.scheduleWithFixedDelay(() -> {
+            if (ready) {
+                flush();
+            }
+        }, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        try {
+            if (ready) {
+                // Queued after any pending updates, so they reach disk too
+                writer.submit(this::flush).get(30, TimeUnit.SECONDS);
+            }
+        } catch (Exception e) {
+            logger.warn("Final record index flush failed", e);
+        }
+        writer.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void open() {
+        writer.execute(() -> {
+            try {
+                if (loadSegments()) {
+                    streamRecords(indexedWatermark != null ? indexedWatermark.minusMinutes(catchUpSlackMinutes) : null);
+                } else {
+                    rebuild();
+                }
+                flush();
+                ready = true;
+                logger.info("Record index ready: {} records in {} segments", current.size(), segments.size());
+            } catch (RuntimeException e) {
+                logger.error("Record index failed to open", e);
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMedicalRecordChanged(MedicalRecordChangedEvent event) {
+        writer.execute(() -> {
+            try {
+                if (event.kind() == MedicalRecordChangedEvent.Kind.DELETED) {
+                    remove(event.recordId());
+                } else {
+                    reindex(event.recordId());
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Failed to index medical record {}", event.recordId(), e);
+            }
+        });
+    }
+
+    // False until the persisted segments are loaded and caught up with the table
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Best matches for the query among records of the given patient, or of
+     * the given treating doctor when patientId is null, highest score first.
+     * Every query word contributes the best BM25 score among itself and its
+     * synonyms; word scores add up.
+     */
+    public List<Hit> search(String query, Long patientId, Long doctorId, int limit) {
+        List<String> words = analyzer.analyze(query).stream().distinct().limit(MAX_QUERY_TERMS).toList();
+        if (words.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int docCount = current.size();
+            if (docCount == 0) {
+                return List.of();
+            }
+            double avgLength = Math.max(1.0, (double) totalLength / docCount);
+            List<IndexSegment> all = new ArrayList<>(segments);
+            all.add(live);
+
+            for (String word : words) {
+                Map<Long, Double> best = new HashMap<>();
+                for (String term : analyzer.expand(word)) {
+                    double weight = term.equals(word) ? 1.0 : synonymWeight;
+                    List<long[]> matches = new ArrayList<>();
+                    int[] docFreq = {0};
+                    for (IndexSegment segment : all) {
+                        segment.postings(term, (doc, tf) -> {
+                            long recordId = segment.recordId(doc);
+                            if (!isCurrent(recordId, segment.id(), doc)) {
+                                return;
+                            }
+                            docFreq[0]++;
+                            boolean inScope = patientId != null
+                                    ? segment.patientId(doc) == patientId
+                                    : segment.doctorId(doc) == doctorId;
+                            if (inScope) {
+                                matches.add(new long[]{recordId, tf, segment.length(doc)});
+                            }
+                        });
+                    }
+                    double idf = Math.log(1 + (docCount - docFreq[0] + 0.5) / (docFreq[0] + 0.5));
+                    for (long[] match : matches) {
+                        double tf = match[1];
+                        double norm = K1 * (1 - B + B * match[2] / avgLength);
+                        best.merge(match[0], weight * idf * tf * (K1 + 1) / (tf + norm), Math::max);
+                    }
+                }
+                best.forEach((recordId, score) -> scores.merge(recordId, score, Double::sum));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Ties go to the newer record
+        Comparator<Hit> ranking = Comparator.comparingDouble(Hit::score).thenComparingLong(Hit::recordId);
+        PriorityQueue<Hit> top = new PriorityQueue<>(ranking);
+        scores.forEach((recordId, score) -> {
+            top.add(new Hit(recordId, score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        });
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(ranking.reversed());
+        return hits;
+    }
+
+    private boolean isCurrent(long recordId, int segmentId, int doc) {
+        Long ref = current.get(recordId);
+        return ref != null && ref == ref(segmentId, doc);
+    }
+
+    private void reindex(long recordId) {
+        List<RecordRow> rows = jdbcTemplate.query(RECORD_SQL + " WHERE id = ?", (rs, n) -> toRow(rs), recordId);
+        if (rows.isEmpty()) {
+            remove(recordId);
+        } else {
+            index(rows.get(0));
+        }
+    }
+
+    private void index(RecordRow row) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        // Title words count twice
+        Stream.concat(Stream.concat(row.titleTerms().stream(), row.titleTerms().stream()), row.bodyTerms().stream())
+                .forEach(term -> termFrequencies.merge(term, 1, Integer::sum));
+
+        lock.writeLock().lock();
+        try {
+            supersede(row.id());
+            int doc = live.add(row.id(), row.patientId(), row.doctorId(), termFrequencies);
+            current.put(row.id(), ref(live.id(), doc));
+            totalLength += live.length(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (row.updatedAt() != null && (indexedWatermark == null || row.updatedAt().isAfter(indexedWatermark))) {
+            indexedWatermark = row.updatedAt();
+        }
+        if (live.docCount() >= flushDocs) {
+            flush();
+        }
+    }
+
+    private void remove(long recordId) {
+        lock.writeLock().lock();
+        try {
+            supersede(recordId);
+            // Hides copies in persisted segments once this one is flushed too
+            live.addTombstone(recordId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void supersede(long recordId) {
+        Long previous = current.remove(recordId);
+        if (previous != null) {
+            totalLength -= segmentsById.get((int) (previous >>> 32)).length((int) (long) previous);
+        }
+    }
+
+    /**
+     * Seals the live segment and persists every sealed segment still held in
+     * memory. The manifest, and with it the watermark, only moves forward
+     * once nothing indexed is left unpersisted.
+     */
+    private void flush() {
+        lock.writeLock().lock();
+        try {
+            if (live.docCount() > 0) {
+                segments.add(live);
+                live = newLiveSegment();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        boolean persisted = true;
+        boolean changed = false;
+        for (IndexSegment segment : List.copyOf(segments)) {
+            if (segment instanceof LiveSegment sealed) {
+                try {
+                    Path file = segmentPath(sealed.id());
+                    SegmentFiles.write(sealed, file);
+                    replace(List.of(sealed), MappedSegment.open(sealed.id(), file));
+                    changed = true;
+                } catch (IOException e) {
+                    persisted = false;
+                    logger.error("Failed to persist record index segment {}, keeping it in memory", sealed.id(), e);
+                }
+            }
+        }
+        if (persisted && changed) {
+            writeManifest();
+            if (segments.size() > maxSegments) {
+                merge();
+            }
+        }
+    }
+
+    // Rewrites all persisted segments as one, dropping superseded documents and tombstones
+    private void merge() {
+        List<IndexSegment> inputs = List.copyOf(segments);
+        LiveSegment merged = newLiveSegment();
+        Map<Integer, int[]> ordinals = new HashMap<>();
+        for (IndexSegment segment : inputs) {
+            int[] mapping = new int[segment.docCount()];
+            for (int doc = 0; doc < mapping.length; doc++) {
+                long recordId = segment.recordId(doc);
+                mapping[doc] = !segment.isTombstone(doc) && isCurrent(recordId, segment.id(), doc)
+                        ? merged.addDoc(recordId, segment.patientId(doc), segment.doctorId(doc), segment.length(doc), false)
+                        : -1;
+            }
+            ordinals.put(segment.id(), mapping);
+        }
+        // Segments are visited oldest first, so each postings list stays in ordinal order
+        for (IndexSegment segment : inputs) {
+            int[] mapping = ordinals.get(segment.id());
+            segment.forEachTerm((term, postings) -> {
+                for (int i = 0; i < postings.length; i += 2) {
+                    if (mapping[postings[i]] >= 0) {
+                        merged.addPosting(term, mapping[postings[i]], postings[i + 1]);
+                    }
+                }
+            });
+        }
+
+        try {
+            Path file = segmentPath(merged.id());
+            SegmentFiles.write(merged, file);
+            replace(inputs, MappedSegment.open(merged.id(), file));
+        } catch (IOException e) {
+            logger.error("Failed to merge record index segments", e);
+            return;
+        }
+        writeManifest();
+        for (IndexSegment input : inputs) {
+            try {
+                Files.deleteIfExists(segmentPath(input.id()));
+            } catch (IOException e) {
+                logger.warn("Could not delete merged record index segment {}", input.id(), e);
+            }
+        }
+        logger.info("Merged {} record index segments into segment {}", inputs.size(), merged.id());
+    }
+
+    // Swaps the given segments for their persisted replacement and repoints the documents it holds
+    private void replace(List<IndexSegment> replaced, MappedSegment replacement) {
+        lock.writeLock().lock();
+        try {
+            int position = segments.indexOf(replaced.get(0));
+            segments.removeAll(replaced);
+            replaced.forEach(segment -> segmentsById.remove(segment.id()));
+            segments.add(position, replacement);
+            segmentsById.put(replacement.id(), replacement);
+            if (replaced.size() > 1 || replaced.get(0).id() != replacement.id()) {
+                for (int doc = 0; doc < replacement.docCount(); doc++) {
+                    current.put(replacement.recordId(doc), ref(replacement.id(), doc));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void writeManifest() {
+        StringBuilder manifest = new StringBuilder();
+        if (indexedWatermark != null) {
+            manifest.append("watermark ").append(indexedWatermark).append('\n');
+        }
+        for (IndexSegment segment : segments) {
+            manifest.append("segment ").append(segment.id()).append('\n');
+        }
+        try {
+            Path tmp = indexDir.resolve(MANIFEST + ".tmp");
+            Files.writeString(tmp, manifest);
+            Files.move(tmp, indexDir.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("Failed to write record index manifest", e);
+        }
+    }
+
+    // Maps the segments the manifest lists; false when there is nothing usable on disk
+    private boolean loadSegments() {
+        resetState();
+        Path manifest = indexDir.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            return false;
+        }
+        try {
+            for (String line : Files.readAllLines(manifest)) {
+                if (line.startsWith("watermark ")) {
+                    indexedWatermark = LocalDateTime.parse(line.substring("watermark ".length()));
+                } else if (line.startsWith("segment ")) {
+                    int id = Integer.parseInt(line.substring("segment ".length()));
+                    MappedSegment segment = MappedSegment.open(id, segmentPath(id));
+                    segments.add(segment);
+                    segmentsById.put(id, segment);
+                    nextSegmentId = Math.max(nextSegmentId, id + 1);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Record index on disk is unusable, rebuilding it", e);
+            resetState();
+            return false;
+        }
+        live = newLiveSegment();
+
+        // Later segments win; a tombstone removes the record
+        for (IndexSegment segment : segments) {
+            for (int doc = 0; doc < segment.docCount(); doc++) {
+                if (segment.isTombstone(doc)) {
+                    current.remove(segment.recordId(doc));
+                } else {
+                    current.put(segment.recordId(doc), ref(segment.id(), doc));
+                }
+            }
+        }
+        current.values().forEach(ref -> totalLength += segmentsById.get((int) (ref >>> 32)).length((int) (long) ref));
+        return true;
+    }
+
+    private void rebuild() {
+        resetState();
+        live = newLiveSegment();
+        try (Stream<Path> files = Files.list(indexDir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not clear record index directory {}", indexDir, e);
+        }
+        streamRecords(null);
+    }
+
+    // Indexes every record updated at or after the given time, or all of them
+    private void streamRecords(LocalDateTime since) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+            streaming.setFetchSize(1_000);
+            if (since == null) {
+                streaming.query(RECORD_SQL, rs -> {
+                    index(toRow(rs));
+                });
+            } else {
+                streaming.query(RECORD_SQL + " WHERE updated_at >= ?", rs -> {
+                    index(toRow(rs));
+                }, since);
+            }
+        });
+    }
+
+    private RecordRow toRow(ResultSet rs) throws SQLException {
+        List<String> body = new ArrayList<>();
+        for (String column : new String[]{"diagnosis", "symptoms", "treatment", "prescription", "notes"}) {
+            body.addAll(analyzer.analyze(rs.getString(column)));
+        }
+        return new RecordRow(rs.getLong("id"), rs.getLong("patient_id"), rs.getLong("doctor_id"),
+                rs.getObject("updated_at", LocalDateTime.class), analyzer.analyze(rs.getString("title")), body);
+    }
+
+    private void resetState() {
+        lock.writeLock().lock();
+        try {
+            segments.clear();
+            segmentsById.clear();
+            current.clear();
+            totalLength = 0;
+            nextSegmentId = 0;
+            indexedWatermark = null;
+            live = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private LiveSegment newLiveSegment() {
+        LiveSegment segment = new LiveSegment(nextSegmentId++);
+        segmentsById.put(segment.id(), segment);
+        return segment;
+    }
+
+    private Path segmentPath(int id) {
+        return indexDir.resolve("segment-" + id + ".idx");
+    }
+
+    // Segment id in the high half, document ordinal in the low half
+    private static long ref(int segmentId, int doc) {
+        return ((long) segmentId << 32) | (doc & 0xffffffffL);
+    }
+}
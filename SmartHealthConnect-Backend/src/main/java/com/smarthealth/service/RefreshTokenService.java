@@ -0,0 +1,126 @@
+package com.smarthealth.service;
+
+import com.smarthealth.entity.RefreshToken;
+import com.smarthealth.entity.User;
+import com.smarthealth.repository.RefreshTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Issues and rotates opaque refresh tokens. Only a SHA-256 hash of each token
+ * is stored, so a renewal is one indexed lookup rather than a BCrypt check.
+ * Presenting an already rotated token revokes the whole token family.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Value("${app.jwtRefreshExpirationMs:1209600000}")
+    private long refreshExpirationMs;
+
+    public record IssuedToken(String token, User user) {
+    }
+
+    public static class RefreshTokenException extends RuntimeException {
+        public RefreshTokenException(String message) {
+            super(message);
+        }
+    }
+
+    // Starts a new token family, e.g. after a password login
+    @Transactional
+    public String issue(User user) {
+        return createToken(user, UUID.randomUUID().toString());
+    }
+
+    // Exchanges a refresh token for a new one in the same family
+    @Transactional(noRollbackFor = RefreshTokenException.class)
+    public IssuedToken rotate(String rawToken) {
+        RefreshToken current = refreshTokenRepository.findByTokenHashWithUser(hash(rawToken))
+                .orElseThrow(() -> new RefreshTokenException("Invalid refresh token"));
+
+        if (Boolean.TRUE.equals(current.getRevoked()) || current.getUsedAt() != null) {
+            // Either the legitimate client or an attacker is replaying a rotated token; end the session for both
+            refreshTokenRepository.revokeFamily(current.getFamilyId());
+            logger.warn("Refresh token reuse detected for user id {}, family {} revoked",
+                    current.getUser().getId(), current.getFamilyId());
+            throw new RefreshTokenException("Refresh token has already been used");
+        }
+
+        if (current.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new RefreshTokenException("Refresh token has expired");
+        }
+
+        User user = current.getUser();
+        if (!user.isEnabled() || !Boolean.TRUE.equals(user.getIsActive())) {
+            refreshTokenRepository.revokeFamily(current.getFamilyId());
+            throw new RefreshTokenException("User account is disabled");
+        }
+
+        // Conditional update so two concurrent exchanges of the same token cannot both succeed
+        if (refreshTokenRepository.markUsed(current.getId(), LocalDateTime.now()) == 0) {
+            refreshTokenRepository.revokeFamily(current.getFamilyId());
+            throw new RefreshTokenException("Refresh token has already been used");
+        }
+        return new IssuedToken(createToken(user, current.getFamilyId()), user);
+    }
+
+    // Ends the session the token belongs to; unknown tokens are ignored
+    @Transactional
+    public void revoke(String rawToken) {
+        refreshTokenRepository.findByTokenHashWithUser(hash(rawToken))
+                .ifPresent(token -> refreshTokenRepository.revokeFamily(token.getFamilyId()));
+    }
+
+    @Transactional
+    public void revokeAllForUser(Long userId) {
+        refreshTokenRepository.revokeAllForUser(userId);
+    }
+
+    @Scheduled(cron = "${app.jwtRefreshPurgeCron:0 30 3 * * *}")
+    @Transactional
+    public void purgeExpired() {
+        int removed = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        logger.info("Purged {} expired refresh tokens", removed);
+    }
+
+    private String createToken(User user, String familyId) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        LocalDateTime expiresAt = LocalDateTime.now().plus(Duration.ofMillis(refreshExpirationMs));
+        refreshTokenRepository.save(new RefreshToken(user, hash(rawToken), familyId, expiresAt));
+        return rawToken;
+    }
+
+    private static String hash(String rawToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(rawToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
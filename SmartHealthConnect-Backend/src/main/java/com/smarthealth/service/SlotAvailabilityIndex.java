@@ -0,0 +1,243 @@
+package com.smarthealth.service;
+
+import com.smarthealth.event.AppointmentChangedEvent;
+import com.smarthealth.repository.AppointmentRepository;
+import com.smarthealth.repository.WaitlistEntryRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Free-slot search over a per-doctor, per-day bitmap of fixed-size slots
+ * within working hours. A set bit means some slot-holding appointment touches
+ * that slot. A doctor's future appointments are read once, on the first query
+ * for that doctor, and kept current from {@link AppointmentChangedEvent}s, so
+ * searches never scan the appointments table. Slots held for a waitlisted
+ * patient are short-lived and can be made by any instance, so they are read
+ * from the table on every search and skipped.
+ */
+@Service
+public class SlotAvailabilityIndex {
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private WaitlistEntryRepository waitlistEntryRepository;
+
+    @Value("${app.appointments.slotMinutes:15}")
+    private int slotMinutes;
+
+    @Value("${app.appointments.dayStart:08:00}")
+    private String dayStartSpec;
+
+    @Value("${app.appointments.dayEnd:18:00}")
+    private String dayEndSpec;
+
+    private LocalTime dayStart;
+    private int slotsPerDay;
+
+    private final ConcurrentHashMap<Long, DoctorSlots> doctors = new ConcurrentHashMap<>();
+
+    public record FreeSlot(Long doctorId, LocalDateTime start, LocalDateTime end) {
+    }
+
+    @PostConstruct
+    void init() {
+        dayStart = LocalTime.parse(dayStartSpec);
+        LocalTime dayEnd = LocalTime.parse(dayEndSpec);
+        slotsPerDay = (int) (Duration.between(dayStart, dayEnd).toMinutes() / slotMinutes);
+        if (slotsPerDay <= 0) {
+            throw new IllegalArgumentException("app.appointments.dayEnd must be after dayStart");
+        }
+    }
+
+    /**
+     * Earliest free windows of the given length for each doctor in [from, to),
+     * merged by start time and cut to the limit.
+     */
+    public List<FreeSlot> findFreeSlots(Collection<Long> doctorIds, LocalDateTime from, LocalDateTime to,
+                                        int durationMinutes, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        if (from.isBefore(now)) {
+            from = now;
+        }
+        int slotsNeeded = Math.max(1, (durationMinutes + slotMinutes - 1) / slotMinutes);
+        if (doctorIds.isEmpty() || !to.isAfter(from)) {
+            return new ArrayList<>();
+        }
+
+        // Booking them would be refused for everyone but the patient they are held for
+        Map<Long, List<Hold>> holds = new HashMap<>();
+        for (Object[] row : waitlistEntryRepository.findActiveHolds(doctorIds, from, to, now)) {
+            LocalDateTime start = AppointmentConflictIndex.toLocalDateTime(row[1]);
+            holds.computeIfAbsent(((Number) row[0]).longValue(), id -> new ArrayList<>())
+                    .add(new Hold(start, start.plusMinutes(((Number) row[2]).longValue())));
+        }
+
+        List<FreeSlot> result = new ArrayList<>();
+        for (Long doctorId : doctorIds) {
+            DoctorSlots slots = doctors.computeIfAbsent(doctorId, this::load);
+            slots.collectFree(doctorId, from, to, slotsNeeded, limit, holds.getOrDefault(doctorId, List.of()), result);
+        }
+        result.sort(Comparator.comparing(FreeSlot::start).thenComparing(FreeSlot::doctorId));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        doctors.computeIfPresent(event.doctorId(), (id, slots) -> {
+            if (event.isActive()) {
+                slots.put(event.appointmentId(), event.appointmentDate(),
+                        event.appointmentDate().plusMinutes(event.durationMinutes()));
+            } else {
+                slots.remove(event.appointmentId());
+            }
+            return slots;
+        });
+    }
+
+    @Scheduled(cron = "${app.appointments.slotIndexPruneCron:0 15 0 * * *}")
+    public void prune() {
+        LocalDate today = LocalDate.now();
+        doctors.values().forEach(slots -> slots.prune(today));
+    }
+
+    private DoctorSlots load(Long doctorId) {
+        DoctorSlots slots = new DoctorSlots();
+        LocalDateTime from = LocalDate.now().atStartOfDay();
+        for (Object[] row : appointmentRepository.findActiveIntervalsByDoctor(doctorId, from)) {
+            LocalDateTime start = AppointmentConflictIndex.toLocalDateTime(row[1]);
+            slots.put(((Number) row[0]).longValue(), start, start.plusMinutes(((Number) row[2]).longValue()));
+        }
+        return slots;
+    }
+
+    private record Hold(LocalDateTime start, LocalDateTime end) {
+        boolean overlaps(LocalDateTime from, LocalDateTime to) {
+            return start.isBefore(to) && end.isAfter(from);
+        }
+    }
+
+    private final class DoctorSlots {
+
+        private record Interval(LocalDateTime start, LocalDateTime end) {
+        }
+
+        private final Map<Long, Interval> appointments = new HashMap<>();
+        private final Map<LocalDate, BitSet> busyByDay = new HashMap<>();
+
+        synchronized void put(long id, LocalDateTime start, LocalDateTime end) {
+            Interval previous = appointments.put(id, new Interval(start, end));
+            if (previous != null) {
+                rebuild(previous);
+            }
+            for (LocalDate day = start.toLocalDate(); !day.isAfter(end.toLocalDate()); day = day.plusDays(1)) {
+                mark(start, end, busyBits(day), day);
+            }
+        }
+
+        synchronized void remove(long id) {
+            Interval previous = appointments.remove(id);
+            if (previous != null) {
+                rebuild(previous);
+            }
+        }
+
+        synchronized void collectFree(Long doctorId, LocalDateTime from, LocalDateTime to, int slotsNeeded,
+                                      int limit, List<Hold> holds, List<FreeSlot> out) {
+            int found = 0;
+            for (LocalDate day = from.toLocalDate(); day.atTime(dayStart).isBefore(to) && found < limit;
+                 day = day.plusDays(1)) {
+                LocalDateTime base = day.atTime(dayStart);
+                int first = Math.max(0, slotIndexCeil(base, from));
+                int last = Math.min(slotsPerDay, slotIndexFloor(base, to));
+                BitSet busy = busyByDay.get(day);
+
+                int slot = first;
+                while (slot + slotsNeeded <= last && found < limit) {
+                    int freeStart = busy == null ? slot : busy.nextClearBit(slot);
+                    int nextBusy = busy == null ? -1 : busy.nextSetBit(freeStart);
+                    int freeEnd = nextBusy < 0 ? last : Math.min(nextBusy, last);
+                    // Every aligned window inside this free run is bookable
+                    for (int s = freeStart; s + slotsNeeded <= freeEnd && found < limit; s++) {
+                        LocalDateTime start = base.plusMinutes((long) s * slotMinutes);
+                        LocalDateTime end = start.plusMinutes((long) slotsNeeded * slotMinutes);
+                        if (holds.stream().anyMatch(hold -> hold.overlaps(start, end))) {
+                            continue;
+                        }
+                        out.add(new FreeSlot(doctorId, start, end));
+                        found++;
+                    }
+                    if (nextBusy < 0) {
+                        break;
+                    }
+                    slot = nextBusy + 1;
+                }
+            }
+        }
+
+        // Past days can no longer be booked
+        synchronized void prune(LocalDate today) {
+            appointments.values().removeIf(interval -> interval.end().toLocalDate().isBefore(today));
+            busyByDay.keySet().removeIf(day -> day.isBefore(today));
+        }
+
+        private BitSet busyBits(LocalDate day) {
+            return busyByDay.computeIfAbsent(day, d -> new BitSet(slotsPerDay));
+        }
+
+        // Recomputes every day the interval touched from the remaining appointments
+        private void rebuild(Interval changed) {
+            for (LocalDate day = changed.start().toLocalDate(); !day.isAfter(changed.end().toLocalDate());
+                 day = day.plusDays(1)) {
+                BitSet bits = new BitSet(slotsPerDay);
+                for (Interval interval : appointments.values()) {
+                    mark(interval.start(), interval.end(), bits, day);
+                }
+                if (bits.isEmpty()) {
+                    busyByDay.remove(day);
+                } else {
+                    busyByDay.put(day, bits);
+                }
+            }
+        }
+
+        // Sets the slots of the given day that [start, end) touches
+        private void mark(LocalDateTime start, LocalDateTime end, BitSet bits, LocalDate day) {
+            LocalDateTime base = day.atTime(dayStart);
+            int first = Math.max(0, slotIndexFloor(base, start));
+            int last = Math.min(slotsPerDay, slotIndexCeil(base, end));
+            if (first < last) {
+                bits.set(first, last);
+            }
+        }
+
+        private int slotIndexFloor(LocalDateTime base, LocalDateTime time) {
+            return (int) Math.max(Integer.MIN_VALUE / 2, Math.min(Integer.MAX_VALUE / 2,
+                    Math.floorDiv(Duration.between(base, time).toMinutes(), slotMinutes)));
+        }
+
+        private int slotIndexCeil(LocalDateTime base, LocalDateTime time) {
+            long minutes = Duration.between(base, time).toMinutes();
+            return (int) Math.max(Integer.MIN_VALUE / 2, Math.min(Integer.MAX_VALUE / 2,
+                    -Math.floorDiv(-minutes, slotMinutes)));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.smarthealth.service;
+
+import com.smarthealth.repository.UserRepository;
+import com.smarthealth.util.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Locale;
+
+/**
+ * Bloom filters over normalized usernames and emails. A negative answer means
+ * the value is definitely free and no query is issued; only "maybe present"
+ * answers fall through to the database. Until the startup load completes every
+ * check goes to the database.
+ */
+@Service
+public class UserAvailabilityIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserAvailabilityIndex.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${app.availability.expectedUsers:2000000}")
+    private long expectedUsers;
+
+    @Value("${app.availability.falsePositiveRate:0.01}")
+    private double falsePositiveRate;
+
+    private volatile BloomFilter usernames;
+    private volatile BloomFilter emails;
+    private volatile boolean ready;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        BloomFilter loadedUsernames = new BloomFilter(expectedUsers, falsePositiveRate);
+        BloomFilter loadedEmails = new BloomFilter(expectedUsers, falsePositiveRate);
+        // Inserts that happen while loading land in these filters too
+        usernames = loadedUsernames;
+        emails = loadedEmails;
+
+        // Cursor-based read (fetch size inside a transaction) so the table is never materialised
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(10_000);
+        long[] count = {0};
+        streaming.query("SELECT username, email FROM users", rs -> {
+            loadedUsernames.put(normalize(rs.getString(1)));
+            loadedEmails.put(normalize(rs.getString(2)));
+            count[0]++;
+        });
+        ready = true;
+        logger.info("Availability index loaded with {} users", count[0]);
+    }
+
+    // Called for every inserted user (entity listener and bulk import)
+    public void add(String username, String email) {
+        BloomFilter u = usernames;
+        BloomFilter e = emails;
+        if (u != null && username != null) {
+            u.put(normalize(username));
+        }
+        if (e != null && email != null) {
+            e.put(normalize(email));
+        }
+    }
+
+    public boolean isUsernameAvailable(String username) {
+        if (ready && !usernames.mightContain(normalize(username))) {
+            return true;
+        }
+        return !userRepository.existsByUsernameIgnoreCase(username.trim());
+    }
+
+    public boolean isEmailAvailable(String email) {
+        if (ready && !emails.mightContain(normalize(email))) {
+            return true;
+        }
+        return !userRepository.existsByEmailIgnoreCase(email.trim());
+    }
+
+    // Fast negative for exact-match checks such as registration; false means "definitely absent"
+    public boolean mightContainUsername(String username) {
+        return !ready || usernames.mightContain(normalize(username));
+    }
+
+    public boolean mightContainEmail(String email) {
+        return !ready || emails.mightContain(normalize(email));
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
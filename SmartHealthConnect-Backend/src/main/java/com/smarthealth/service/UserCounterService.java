@@ -0,0 +1,198 @@
+package com.smarthealth.service;
+
+import com.smarthealth.entity.Appointment;
+import com.smarthealth.event.AppointmentChangedEvent;
+import com.smarthealth.event.MedicalRecordChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Appointment and medical record counts per user, kept in one
+ * {@code user_counters} row per user so stats are a primary-key lookup
+ * however much history the user has. Counters move in the same transaction
+ * as the row that changed them; a nightly job recounts from the source tables
+ * and fixes any drift.
+ */
+@Service
+public class UserCounterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserCounterService.class);
+
+    private static final String TOTAL = "appointments_total";
+    private static final String RECORDS = "records_total";
+    private static final Map<Appointment.Status, String> STATUS_COLUMNS = new EnumMap<>(Appointment.Status.class);
+    private static final String RECONCILE_SQL;
+
+    static {
+        for (Appointment.Status status : Appointment.Status.values()) {
+            STATUS_COLUMNS.put(status, "appointments_" + status.name().toLowerCase());
+        }
+        List<String> columns = new ArrayList<>(List.of(TOTAL));
+        columns.addAll(STATUS_COLUMNS.values());
+        columns.add(RECORDS);
+
+        String actual = "COALESCE(a." + TOTAL + ", 0), "
+                + STATUS_COLUMNS.values().stream().map(c -> "COALESCE(a." + c + ", 0)").collect(Collectors.joining(", "))
+                + ", COALESCE(r." + RECORDS + ", 0)";
+        RECONCILE_SQL =
+                "UPDATE user_counters c SET (" + String.join(", ", columns) + ", updated_at) = (" + actual + ", ?)" +
+                "  FROM user_counters k" +
+                "  LEFT JOIN (SELECT user_id, count(*) AS " + TOTAL + ", " +
+                STATUS_COLUMNS.entrySet().stream()
+                        .map(e -> "count(*) FILTER (WHERE status = '" + e.getKey().name() + "') AS " + e.getValue())
+                        .collect(Collectors.joining(", ")) +
+                "               FROM (SELECT patient_id AS user_id, status FROM appointments WHERE patient_id > ? AND patient_id <= ?" +
+                "                     UNION ALL" +
+                "                     SELECT doctor_id, status FROM appointments WHERE doctor_id > ? AND doctor_id <= ?) sides" +
+                "              GROUP BY user_id) a ON a.user_id = k.user_id" +
+                "  LEFT JOIN (SELECT user_id, count(*) AS " + RECORDS +
+                "               FROM (SELECT patient_id AS user_id FROM medical_records WHERE patient_id > ? AND patient_id <= ?" +
+                "                     UNION ALL" +
+                "                     SELECT doctor_id FROM medical_records WHERE doctor_id > ? AND doctor_id <= ?) sides" +
+                "              GROUP BY user_id) r ON r.user_id = k.user_id" +
+                " WHERE c.user_id = k.user_id AND k.user_id > ? AND k.user_id <= ?" +
+                "   AND (" + columns.stream().map(col -> "c." + col).collect(Collectors.joining(", ")) + ")" +
+                "       IS DISTINCT FROM (" + actual + ")";
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.counters.reconcileBatchSize:1000}")
+    private int reconcileBatchSize;
+
+    public record UserCounters(long appointments, Map<Appointment.Status, Long> appointmentsByStatus, long records) {
+
+        public long appointments(Appointment.Status status) {
+            return appointmentsByStatus.getOrDefault(status, 0L);
+        }
+    }
+
+    // Single-row read; users with no history get zeros
+    public UserCounters get(Long userId) {
+        List<UserCounters> rows = jdbcTemplate.query("SELECT * FROM user_counters WHERE user_id = ?", (rs, rowNum) -> {
+            Map<Appointment.Status, Long> byStatus = new EnumMap<>(Appointment.Status.class);
+            for (Map.Entry<Appointment.Status, String> e : STATUS_COLUMNS.entrySet()) {
+                byStatus.put(e.getKey(), rs.getLong(e.getValue()));
+            }
+            return new UserCounters(rs.getLong(TOTAL), byStatus, rs.getLong(RECORDS));
+        }, userId);
+        return rows.isEmpty() ? new UserCounters(0, Map.of(), 0) : rows.get(0);
+    }
+
+    @EventListener
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        Map<String, Integer> deltas = new LinkedHashMap<>();
+        switch (event.kind()) {
+            case CREATED -> {
+                deltas.put(TOTAL, 1);
+                deltas.merge(STATUS_COLUMNS.get(event.status()), 1, Integer::sum);
+            }
+            case UPDATED -> {
+                if (event.previousStatus() == null || event.previousStatus() == event.status()) {
+                    return;
+                }
+                deltas.put(STATUS_COLUMNS.get(event.previousStatus()), -1);
+                deltas.put(STATUS_COLUMNS.get(event.status()), 1);
+            }
+            case DELETED -> {
+                deltas.put(TOTAL, -1);
+                deltas.merge(STATUS_COLUMNS.get(event.status()), -1, Integer::sum);
+            }
+        }
+        adjust(deltas, event.patientId(), event.doctorId());
+    }
+
+    @EventListener
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onMedicalRecordChanged(MedicalRecordChangedEvent event) {
+        switch (event.kind()) {
+            case CREATED -> adjust(Map.of(RECORDS, 1), event.patientId(), event.doctorId());
+            case DELETED -> adjust(Map.of(RECORDS, -1), event.patientId(), event.doctorId());
+            case UPDATED -> { }
+        }
+    }
+
+    /**
+     * Recounts every user's row from the source tables, one batch of users per
+     * transaction. The batch's counter rows are locked first, so writers that
+     * commit meanwhile either are already visible to the recount or apply their
+     * increment after it.
+     */
+    @Scheduled(cron = "${app.counters.reconcileCron:0 45 2 * * *}")
+    public void reconcile() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        long from = 0;
+        int corrected = 0;
+        while (true) {
+            Long to = jdbcTemplate.queryForObject(
+                    "SELECT MAX(id) FROM (SELECT id FROM users WHERE id > ? ORDER BY id LIMIT ?) batch",
+                    Long.class, from, reconcileBatchSize);
+            if (to == null) {
+                break;
+            }
+            long lo = from;
+            Integer fixed = tx.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                jdbcTemplate.update("INSERT INTO user_counters (user_id, updated_at) " +
+                        "SELECT id, ? FROM users WHERE id > ? AND id <= ? ON CONFLICT DO NOTHING", now, lo, to);
+                jdbcTemplate.query("SELECT user_id FROM user_counters WHERE user_id > ? AND user_id <= ? " +
+                        "ORDER BY user_id FOR UPDATE", rs -> { }, lo, to);
+                return jdbcTemplate.update(RECONCILE_SQL, now, lo, to, lo, to, lo, to, lo, to, lo, to);
+            });
+            corrected += fixed != null ? fixed : 0;
+            from = to;
+        }
+        if (corrected > 0) {
+            logger.warn("Counter reconciliation corrected {} users", corrected);
+        } else {
+            logger.info("Counter reconciliation found no drift");
+        }
+    }
+
+    // Rows are touched in user id order so concurrent writers cannot deadlock on them
+    private void adjust(Map<String, Integer> deltas, Long... userIds) {
+        Map<Long, Integer> weights = new TreeMap<>();
+        Arrays.stream(userIds).forEach(id -> weights.merge(id, 1, Integer::sum));
+
+        List<String> columns = new ArrayList<>(deltas.keySet());
+        String sql = "INSERT INTO user_counters (user_id, " + String.join(", ", columns) + ", updated_at) " +
+                "VALUES (?, " + "?, ".repeat(columns.size()) + "?) ON CONFLICT (user_id) DO UPDATE SET " +
+                columns.stream().map(c -> c + " = user_counters." + c + " + EXCLUDED." + c)
+                        .collect(Collectors.joining(", ")) +
+                ", updated_at = EXCLUDED.updated_at";
+
+        LocalDateTime now = LocalDateTime.now();
+        weights.forEach((userId, weight) -> {
+            List<Object> args = new ArrayList<>();
+            args.add(userId);
+            columns.forEach(c -> args.add(deltas.get(c) * weight));
+            args.add(now);
+            jdbcTemplate.update(sql, args.toArray());
+        });
+    }
+}
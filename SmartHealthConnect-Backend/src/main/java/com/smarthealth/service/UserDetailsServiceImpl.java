@@ -4,13 +4,14 @@ import com.smarthealth.entity.User;
 import com.smarthealth.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
     @Autowired
     UserRepository userRepository;
 
@@ -22,4 +23,14 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 
         return user;
     }
+
+    // Called by DaoAuthenticationProvider after a successful login that needs a rehash
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User Not Found: " + userDetails.getUsername()));
+        user.setPassword(newPassword);
+        return userRepository.save(user);
+    }
 }
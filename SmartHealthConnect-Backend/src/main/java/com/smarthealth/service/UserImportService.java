@@ -0,0 +1,399 @@
+package com.smarthealth.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smarthealth.entity.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams users from NDJSON or CSV into the users table. Rows are read in
+ * batches, passwords are hashed in parallel, and each batch is written with a
+ * single multi-row {@code INSERT ... SELECT FROM unnest(...) ON CONFLICT DO NOTHING
+ * RETURNING}. Rows that hit the username/email unique constraints are reported
+ * individually and never abort the rest of the batch.
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO users (username, email, password, first_name, last_name, phone_number, role, " +
+            "created_at, updated_at, is_active, email_verified, enabled, token_version) " +
+            "SELECT u.username, u.email, u.password, u.first_name, u.last_name, u.phone_number, u.role, " +
+            "?, ?, true, false, true, 0 " +
+            "FROM unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[]) " +
+            "AS u(username, email, password, first_name, last_name, phone_number, role) " +
+            "ON CONFLICT DO NOTHING RETURNING id, username";
+
+    public enum Format { NDJSON, CSV }
+
+    public static class ImportRow {
+        private String username;
+        private String email;
+        private String password;
+        // Pre-hashed BCrypt value, e.g. when migrating from another system
+        private String passwordHash;
+        private String firstName;
+        private String lastName;
+        private String phoneNumber;
+        private String role;
+
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+        public String getEmail() { return email; }
+        public void setEmail(String email) { this.email = email; }
+        public String getPassword() { return password; }
+        public void setPassword(String password) { this.password = password; }
+        public String getPasswordHash() { return passwordHash; }
+        public void setPasswordHash(String passwordHash) { this.passwordHash = passwordHash; }
+        public String getFirstName() { return firstName; }
+        public void setFirstName(String firstName) { this.firstName = firstName; }
+        public String getLastName() { return lastName; }
+        public void setLastName(String lastName) { this.lastName = lastName; }
+        public String getPhoneNumber() { return phoneNumber; }
+        public void setPhoneNumber(String phoneNumber) { this.phoneNumber = phoneNumber; }
+        public String getRole() { return role; }
+        public void setRole(String role) { this.role = role; }
+    }
+
+    public record RowIssue(long line, String field, String value, String reason) {
+    }
+
+    public static class ImportResult {
+        private long processed;
+        private long imported;
+        private final List<RowIssue> conflicts = new ArrayList<>();
+        private final List<RowIssue> errors = new ArrayList<>();
+
+        public long getProcessed() { return processed; }
+        public long getImported() { return imported; }
+        public List<RowIssue> getConflicts() { return conflicts; }
+        public List<RowIssue> getErrors() { return errors; }
+    }
+
+    private record PendingRow(long line, ImportRow row, User.Role role) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private UserAvailabilityIndex userAvailabilityIndex;
+
+    @Autowired
+    private DirectoryIndex directoryIndex;
+
+    @Value("${app.userImport.batchSize:1000}")
+    private int batchSize;
+
+    @Value("${app.userImport.hashThreads:0}")
+    private int hashThreads;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private ExecutorService hashPool;
+
+    @PostConstruct
+    void start() {
+        int threads = hashThreads > 0 ? hashThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        hashPool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "user-import-hash-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        hashPool.shutdown();
+    }
+
+    public ImportResult importUsers(InputStream input, Format format) throws IOException {
+        ImportResult result = new ImportResult();
+        List<PendingRow> batch = new ArrayList<>(batchSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String[] header = null;
+            String line;
+            long lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (format == Format.CSV && header == null) {
+                    header = parseCsvLine(line).toArray(new String[0]);
+                    continue;
+                }
+
+                result.processed++;
+                ImportRow row;
+                try {
+                    row = format == Format.CSV ? csvRow(header, parseCsvLine(line)) : objectMapper.readValue(line, ImportRow.class);
+                } catch (Exception e) {
+                    result.errors.add(new RowIssue(lineNo, null, null, "Unparseable row: " + e.getMessage()));
+                    continue;
+                }
+
+                PendingRow pending = validate(lineNo, row, result);
+                if (pending != null) {
+                    batch.add(pending);
+                }
+                if (batch.size() >= batchSize) {
+                    flush(batch, result);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch, result);
+        }
+
+        logger.info("User import finished: {} processed, {} imported, {} conflicts, {} errors",
+                result.processed, result.imported, result.conflicts.size(), result.errors.size());
+        return result;
+    }
+
+    private PendingRow validate(long line, ImportRow row, ImportResult result) {
+        String problem = null;
+        String field = null;
+        if (isBlank(row.getUsername()) || row.getUsername().length() > 50) {
+            field = "username"; problem = "Username is required and must not exceed 50 characters";
+        } else if (isBlank(row.getEmail()) || row.getEmail().length() > 100 || !row.getEmail().contains("@")) {
+            field = "email"; problem = "A valid email of at most 100 characters is required";
+        } else if (isBlank(row.getPassword()) && isBlank(row.getPasswordHash())) {
+            field = "password"; problem = "Either password or passwordHash is required";
+        } else if (!isBlank(row.getPasswordHash()) && !row.getPasswordHash().startsWith("$2")) {
+            field = "passwordHash"; problem = "passwordHash must be a BCrypt hash";
+        } else if (isBlank(row.getFirstName()) || row.getFirstName().length() > 50) {
+            field = "firstName"; problem = "First name is required and must not exceed 50 characters";
+        } else if (isBlank(row.getLastName()) || row.getLastName().length() > 50) {
+            field = "lastName"; problem = "Last name is required and must not exceed 50 characters";
+        } else if (row.getPhoneNumber() != null && row.getPhoneNumber().length() > 15) {
+            field = "phoneNumber"; problem = "Phone number must not exceed 15 characters";
+        }
+
+        User.Role role = User.Role.PATIENT;
+        if (problem == null && !isBlank(row.getRole())) {
+            try {
+                role = User.Role.valueOf(row.getRole().trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                field = "role"; problem = "Unknown role";
+            }
+        }
+
+        if (problem != null) {
+            result.errors.add(new RowIssue(line, field, null, problem));
+            return null;
+        }
+        return new PendingRow(line, row, role);
+    }
+
+    private void flush(List<PendingRow> batch, ImportResult result) {
+        // Conflicts inside the batch itself, then against existing rows
+        Map<String, PendingRow> byUsername = new LinkedHashMap<>();
+        Set<String> emails = new HashSet<>();
+        for (PendingRow pending : batch) {
+            if (byUsername.containsKey(pending.row().getUsername())) {
+                result.conflicts.add(new RowIssue(pending.line(), "username", pending.row().getUsername(), "Duplicate username in import"));
+            } else if (!emails.add(pending.row().getEmail())) {
+                result.conflicts.add(new RowIssue(pending.line(), "email", pending.row().getEmail(), "Duplicate email in import"));
+            } else {
+                byUsername.put(pending.row().getUsername(), pending);
+            }
+        }
+
+        Set<String> takenUsernames = existing("username", byUsername.keySet());
+        Set<String> takenEmails = existing("email", emails);
+        List<PendingRow> insertable = new ArrayList<>(byUsername.size());
+        for (PendingRow pending : byUsername.values()) {
+            if (takenUsernames.contains(pending.row().getUsername())) {
+                result.conflicts.add(new RowIssue(pending.line(), "username", pending.row().getUsername(), "Username is already taken"));
+            } else if (takenEmails.contains(pending.row().getEmail())) {
+                result.conflicts.add(new RowIssue(pending.line(), "email", pending.row().getEmail(), "Email is already in use"));
+            } else {
+                insertable.add(pending);
+            }
+        }
+        if (insertable.isEmpty()) {
+            return;
+        }
+
+        String[] hashes = hashAll(insertable);
+        Map<String, Long> inserted = insert(insertable, hashes);
+
+        for (PendingRow pending : insertable) {
+            Long id = inserted.get(pending.row().getUsername());
+            if (id != null) {
+                ImportRow row = pending.row();
+                result.imported++;
+                userAvailabilityIndex.add(row.getUsername(), row.getEmail());
+                directoryIndex.addUser(id, row.getUsername(), row.getEmail(), row.getFirstName(), row.getLastName(),
+                        pending.role());
+            } else {
+                // Lost a race with a concurrent registration between the pre-check and the insert
+                result.conflicts.add(new RowIssue(pending.line(), "username/email", pending.row().getUsername(),
+                        "Username or email was registered concurrently"));
+            }
+        }
+    }
+
+    private Set<String> existing(String column, Set<String> values) {
+        if (values.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT " + column + " FROM users WHERE " + column + " = ANY (?)");
+            ps.setArray(1, con.createArrayOf("varchar", values.toArray()));
+            return ps;
+        }, (rs, i) -> rs.getString(1)));
+    }
+
+    private String[] hashAll(List<PendingRow> rows) {
+        List<Callable<String>> tasks = new ArrayList<>(rows.size());
+        for (PendingRow pending : rows) {
+            ImportRow row = pending.row();
+            tasks.add(() -> isBlank(row.getPasswordHash()) ? passwordEncoder.encode(row.getPassword()) : row.getPasswordHash());
+        }
+        try {
+            List<Future<String>> futures = hashPool.invokeAll(tasks);
+            String[] hashes = new String[futures.size()];
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = futures.get(i).get();
+            }
+            return hashes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing passwords", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    // Username to id of every row actually inserted
+    private Map<String, Long> insert(List<PendingRow> rows, String[] hashes) {
+        int n = rows.size();
+        Object[] usernames = new Object[n], emails = new Object[n], passwords = new Object[n],
+                firstNames = new Object[n], lastNames = new Object[n], phones = new Object[n], roles = new Object[n];
+        for (int i = 0; i < n; i++) {
+            ImportRow row = rows.get(i).row();
+            usernames[i] = row.getUsername();
+            emails[i] = row.getEmail();
+            passwords[i] = hashes[i];
+            firstNames[i] = row.getFirstName();
+            lastNames[i] = row.getLastName();
+            phones[i] = row.getPhoneNumber();
+            roles[i] = rows.get(i).role().name();
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Map<String, Long> inserted = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_SQL);
+            ps.setTimestamp(1, now);
+            ps.setTimestamp(2, now);
+            Object[][] columns = {usernames, emails, passwords, firstNames, lastNames, phones, roles};
+            for (int c = 0; c < columns.length; c++) {
+                Array array = con.createArrayOf("varchar", columns[c]);
+                ps.setArray(c + 3, array);
+            }
+            return ps;
+        }, (ResultSet rs) -> {
+            inserted.put(rs.getString("username"), rs.getLong("id"));
+        });
+        return inserted;
+    }
+
+    private static ImportRow csvRow(String[] header, List<String> values) {
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.length && i < values.size(); i++) {
+            fields.put(header[i].trim(), values.get(i));
+        }
+        ImportRow row = new ImportRow();
+        row.setUsername(fields.get("username"));
+        row.setEmail(fields.get("email"));
+        row.setPassword(fields.get("password"));
+        row.setPasswordHash(fields.get("passwordHash"));
+        row.setFirstName(fields.get("firstName"));
+        row.setLastName(fields.get("lastName"));
+        row.setPhoneNumber(emptyToNull(fields.get("phoneNumber")));
+        row.setRole(fields.get("role"));
+        return row;
+    }
+
+    // RFC 4180 style: quoted fields may contain commas and doubled quotes (no embedded newlines)
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static String emptyToNull(String value) {
+        return isBlank(value) ? null : value;
+    }
+}
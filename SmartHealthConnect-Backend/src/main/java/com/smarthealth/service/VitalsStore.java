@@ -0,0 +1,420 @@
+package com.smarthealth.service;
+
+import com.smarthealth.event.MedicalRecordChangedEvent;
+import com.smarthealth.vitals.VitalChunk;
+import com.smarthealth.vitals.VitalSignsParser;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-patient time series of the vital signs written into medical records.
+ * Readings are parsed out of {@code vital_signs} when a record is written and
+ * kept in {@code vital_chunks}: one compressed {@link VitalChunk} per patient,
+ * metric and fixed window of days, with the chunk's count, min, max and sum
+ * alongside so coarse downsampling can skip decoding. Chunks move in the same
+ * transaction as the record, under a per-patient advisory lock; the backfill
+ * rebuilds them from the records under the same lock.
+ */
+@Service
+public class VitalsStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(VitalsStore.class);
+
+    // First key of the two-part advisory lock, so patient ids cannot collide with other lock users
+    private static final int LOCK_NAMESPACE = 0x56495441;
+
+    private static final String CHUNK_SQL =
+            "SELECT chunk_start, first_at, last_at, point_count, confidential_count, min_value, max_value, sum_value, data" +
+            "  FROM vital_chunks WHERE patient_id = ? AND metric = ? AND last_at >= ? AND first_at < ?" +
+            " ORDER BY chunk_start";
+    private static final String UPSERT_SQL =
+            "INSERT INTO vital_chunks (patient_id, metric, chunk_start, first_at, last_at, point_count," +
+            " confidential_count, min_value, max_value, sum_value, data, updated_at)" +
+            " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)" +
+            " ON CONFLICT (patient_id, metric, chunk_start) DO UPDATE SET first_at = EXCLUDED.first_at," +
+            " last_at = EXCLUDED.last_at, point_count = EXCLUDED.point_count," +
+            " confidential_count = EXCLUDED.confidential_count, min_value = EXCLUDED.min_value," +
+            " max_value = EXCLUDED.max_value, sum_value = EXCLUDED.sum_value, data = EXCLUDED.data," +
+            " updated_at = EXCLUDED.updated_at";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Width of a chunk's time window; changing it requires a backfill
+    @Value("${app.vitals.chunkDays:90}")
+    private int chunkDays;
+
+    @Value("${app.vitals.maxRawPoints:5000}")
+    private int maxRawPoints;
+
+    @Value("${app.vitals.backfillThreads:4}")
+    private int backfillThreads;
+
+    @Value("${app.vitals.backfillBatchSize:1000}")
+    private int backfillBatchSize;
+
+    private ExecutorService backfillPool;
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+    private volatile BackfillStatus lastBackfill;
+    private final AtomicLong backfillPatients = new AtomicLong();
+    private final AtomicLong backfillPoints = new AtomicLong();
+    private final AtomicLong backfillFailures = new AtomicLong();
+    private volatile LocalDateTime backfillStartedAt;
+
+    public enum Resolution {
+        HOUR,
+        DAY,
+        WEEK,
+        MONTH;
+
+        public LocalDateTime bucket(LocalDateTime at) {
+            return switch (this) {
+                case HOUR -> at.truncatedTo(ChronoUnit.HOURS);
+                case DAY -> at.truncatedTo(ChronoUnit.DAYS);
+                case WEEK -> at.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).atStartOfDay();
+                case MONTH -> at.toLocalDate().withDayOfMonth(1).atStartOfDay();
+            };
+        }
+    }
+
+    public record Point(LocalDateTime at, double value, long recordId) {
+    }
+
+    public record Bucket(LocalDateTime start, long count, double min, double max, double avg) {
+    }
+
+    public record Series(List<Point> points, boolean truncated) {
+    }
+
+    public record MetricSummary(String metric, long count, LocalDateTime firstAt, LocalDateTime lastAt) {
+    }
+
+    public record BackfillStatus(boolean running, long patients, long points, long failures,
+                                 LocalDateTime startedAt, LocalDateTime finishedAt) {
+    }
+
+    @PostConstruct
+    void start() {
+        AtomicInteger counter = new AtomicInteger();
+        backfillPool = Executors.newFixedThreadPool(Math.max(1, backfillThreads), r -> {
+            Thread t = new Thread(r, "vitals-backfill-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        backfillPool.shutdownNow();
+    }
+
+    @EventListener
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onMedicalRecordChanged(MedicalRecordChangedEvent event) {
+        lockPatient(event.patientId());
+
+        // The write has already been flushed, so this sees the row as the transaction leaves it
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT created_at, vital_signs, is_confidential FROM medical_records WHERE id = ?", event.recordId());
+        Map<String, Double> readings = Map.of();
+        LocalDateTime at = null;
+        boolean confidential = false;
+        if (!rows.isEmpty()) {
+            Map<String, Object> row = rows.get(0);
+            readings = VitalSignsParser.parse((String) row.get("vital_signs"));
+            at = row.get("created_at") != null ? ((Timestamp) row.get("created_at")).toLocalDateTime() : null;
+            confidential = Boolean.TRUE.equals(row.get("is_confidential"));
+        }
+        if (at == null) {
+            readings = Map.of();
+        }
+
+        // New records can only appear in their own chunks; edits and deletes may have moved points anywhere
+        Map<ChunkKey, VitalChunk> chunks = new HashMap<>();
+        if (event.kind() == MedicalRecordChangedEvent.Kind.CREATED) {
+            LocalDate chunkStart = at != null ? chunkStart(at) : null;
+            for (String metric : readings.keySet()) {
+                ChunkKey key = new ChunkKey(metric, chunkStart);
+                chunks.put(key, loadChunk(event.patientId(), key));
+            }
+        } else {
+            jdbcTemplate.query("SELECT metric, chunk_start, data FROM vital_chunks WHERE patient_id = ?", rs -> {
+                chunks.put(new ChunkKey(rs.getString("metric"), rs.getDate("chunk_start").toLocalDate()),
+                        VitalChunk.decode(rs.getBytes("data")));
+            }, event.patientId());
+            if (at != null) {
+                for (String metric : readings.keySet()) {
+                    chunks.putIfAbsent(new ChunkKey(metric, chunkStart(at)), VitalChunk.EMPTY);
+                }
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<ChunkKey, VitalChunk> entry : chunks.entrySet()) {
+            ChunkKey key = entry.getKey();
+            VitalChunk before = entry.getValue();
+            VitalChunk after = before.withoutRecord(event.recordId());
+            Double value = readings.get(key.metric());
+            if (value != null && key.chunkStart().equals(chunkStart(at))) {
+                after = after.with(at, value, event.recordId(), confidential);
+            }
+            if (after.samePoints(before)) {
+                continue;
+            }
+            if (after.isEmpty()) {
+                jdbcTemplate.update("DELETE FROM vital_chunks WHERE patient_id = ? AND metric = ? AND chunk_start = ?",
+                        event.patientId(), key.metric(), Date.valueOf(key.chunkStart()));
+            } else {
+                writeChunk(event.patientId(), key, after, now);
+            }
+        }
+    }
+
+    /**
+     * Raw readings in [from, to), oldest first, up to the configured maximum.
+     * Confidential readings are only included when asked for.
+     */
+    public Series range(Long patientId, String metric, LocalDateTime from, LocalDateTime to, boolean includeConfidential) {
+        List<Point> points = new ArrayList<>();
+        boolean[] truncated = {false};
+        jdbcTemplate.query(CHUNK_SQL, rs -> {
+            if (truncated[0]) {
+                return;
+            }
+            VitalChunk chunk = VitalChunk.decode(rs.getBytes("data"));
+            for (int i = 0; i < chunk.size(); i++) {
+                LocalDateTime at = chunk.time(i);
+                if (at.isBefore(from) || !at.isBefore(to) || (!includeConfidential && chunk.isConfidential(i))) {
+                    continue;
+                }
+                if (points.size() == maxRawPoints) {
+                    truncated[0] = true;
+                    return;
+                }
+                points.add(new Point(at, chunk.value(i), chunk.recordId(i)));
+            }
+        }, patientId, metric, Timestamp.valueOf(from), Timestamp.valueOf(to));
+        return new Series(points, truncated[0]);
+    }
+
+    /**
+     * Min, max and average per bucket over [from, to); empty buckets are left
+     * out. A chunk that falls wholly inside one bucket and the range, with
+     * nothing to hide, is answered from its stored summary without decoding.
+     */
+    public List<Bucket> downsample(Long patientId, String metric, LocalDateTime from, LocalDateTime to,
+                                   Resolution resolution, boolean includeConfidential) {
+        // count, min, max, sum
+        TreeMap<LocalDateTime, double[]> buckets = new TreeMap<>();
+        jdbcTemplate.query(CHUNK_SQL, rs -> {
+            LocalDateTime firstAt = rs.getTimestamp("first_at").toLocalDateTime();
+            LocalDateTime lastAt = rs.getTimestamp("last_at").toLocalDateTime();
+            LocalDateTime bucket = resolution.bucket(firstAt);
+            if (!firstAt.isBefore(from) && lastAt.isBefore(to) && bucket.equals(resolution.bucket(lastAt))
+                    && (includeConfidential || rs.getInt("confidential_count") == 0)) {
+                accumulate(buckets.computeIfAbsent(bucket, b -> emptyBucket()), rs.getInt("point_count"),
+                        rs.getDouble("min_value"), rs.getDouble("max_value"), rs.getDouble("sum_value"));
+                return;
+            }
+            VitalChunk chunk = VitalChunk.decode(rs.getBytes("data"));
+            for (int i = 0; i < chunk.size(); i++) {
+                LocalDateTime at = chunk.time(i);
+                if (at.isBefore(from) || !at.isBefore(to) || (!includeConfidential && chunk.isConfidential(i))) {
+                    continue;
+                }
+                double value = chunk.value(i);
+                accumulate(buckets.computeIfAbsent(resolution.bucket(at), b -> emptyBucket()), 1, value, value, value);
+            }
+        }, patientId, metric, Timestamp.valueOf(from), Timestamp.valueOf(to));
+
+        List<Bucket> result = new ArrayList<>(buckets.size());
+        buckets.forEach((start, b) -> result.add(new Bucket(start, (long) b[0], b[1], b[2], b[3] / b[0])));
+        return result;
+    }
+
+    // Metrics recorded for the patient, from the chunk summaries alone
+    public List<MetricSummary> metrics(Long patientId, boolean includeConfidential) {
+        String count = includeConfidential ? "point_count" : "point_count - confidential_count";
+        return jdbcTemplate.query(
+                "SELECT metric, SUM(" + count + ") AS points, MIN(first_at) AS first_at, MAX(last_at) AS last_at" +
+                "  FROM vital_chunks WHERE patient_id = ? GROUP BY metric HAVING SUM(" + count + ") > 0 ORDER BY metric",
+                (rs, rowNum) -> new MetricSummary(rs.getString("metric"), rs.getLong("points"),
+                        rs.getTimestamp("first_at").toLocalDateTime(), rs.getTimestamp("last_at").toLocalDateTime()),
+                patientId);
+    }
+
+    /**
+     * Rebuilds every patient's chunks from their medical records, several
+     * patients at a time. Returns false if a backfill is already running.
+     */
+    public boolean startBackfill() {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        backfillPatients.set(0);
+        backfillPoints.set(0);
+        backfillFailures.set(0);
+        backfillStartedAt = LocalDateTime.now();
+        Thread coordinator = new Thread(this::runBackfill, "vitals-backfill");
+        coordinator.setDaemon(true);
+        coordinator.start();
+        return true;
+    }
+
+    public BackfillStatus backfillStatus() {
+        if (backfillRunning.get()) {
+            return new BackfillStatus(true, backfillPatients.get(), backfillPoints.get(), backfillFailures.get(),
+                    backfillStartedAt, null);
+        }
+        return lastBackfill;
+    }
+
+    private void runBackfill() {
+        int threads = Math.max(1, backfillThreads);
+        // Bounds the patients queued ahead of the workers
+        Semaphore inFlight = new Semaphore(threads * 2);
+        try {
+            long after = 0;
+            while (true) {
+                // Patients with vitals in their records, and any left with chunks but no vitals
+                List<Long> patients = jdbcTemplate.queryForList(
+                        "SELECT patient_id FROM (SELECT patient_id FROM medical_records WHERE vital_signs IS NOT NULL" +
+                        "  UNION SELECT patient_id FROM vital_chunks) p WHERE patient_id > ? ORDER BY patient_id LIMIT ?",
+                        Long.class, after, backfillBatchSize);
+                if (patients.isEmpty()) {
+                    break;
+                }
+                for (Long patientId : patients) {
+                    inFlight.acquire();
+                    backfillPool.execute(() -> {
+                        try {
+                            backfillPoints.addAndGet(rebuildPatient(patientId));
+                            backfillPatients.incrementAndGet();
+                        } catch (RuntimeException e) {
+                            backfillFailures.incrementAndGet();
+                            logger.warn("Failed to rebuild vitals for patient {}", patientId, e);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+                after = patients.get(patients.size() - 1);
+            }
+            inFlight.acquire(threads * 2);
+            inFlight.release(threads * 2);
+            logger.info("Vitals backfill finished: {} patients, {} points, {} failures",
+                    backfillPatients.get(), backfillPoints.get(), backfillFailures.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Vitals backfill stopped", e);
+        } finally {
+            lastBackfill = new BackfillStatus(false, backfillPatients.get(), backfillPoints.get(),
+                    backfillFailures.get(), backfillStartedAt, LocalDateTime.now());
+            backfillRunning.set(false);
+        }
+    }
+
+    private int rebuildPatient(Long patientId) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Integer points = tx.execute(status -> {
+            lockPatient(patientId);
+            Map<ChunkKey, VitalChunk> chunks = new LinkedHashMap<>();
+            jdbcTemplate.query("SELECT id, created_at, vital_signs, is_confidential FROM medical_records" +
+                    " WHERE patient_id = ? AND vital_signs IS NOT NULL AND created_at IS NOT NULL" +
+                    " ORDER BY created_at, id", rs -> {
+                long recordId = rs.getLong("id");
+                LocalDateTime at = rs.getTimestamp("created_at").toLocalDateTime();
+                boolean confidential = rs.getBoolean("is_confidential");
+                VitalSignsParser.parse(rs.getString("vital_signs")).forEach((metric, value) -> {
+                    ChunkKey key = new ChunkKey(metric, chunkStart(at));
+                    chunks.put(key, chunks.getOrDefault(key, VitalChunk.EMPTY).with(at, value, recordId, confidential));
+                });
+            }, patientId);
+
+            jdbcTemplate.update("DELETE FROM vital_chunks WHERE patient_id = ?", patientId);
+            LocalDateTime now = LocalDateTime.now();
+            int written = 0;
+            for (Map.Entry<ChunkKey, VitalChunk> entry : chunks.entrySet()) {
+                writeChunk(patientId, entry.getKey(), entry.getValue(), now);
+                written += entry.getValue().size();
+            }
+            return written;
+        });
+        return points != null ? points : 0;
+    }
+
+    // Serializes chunk rewrites per patient across instances; released at commit
+    private void lockPatient(Long patientId) {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, ?)", rs -> { }, LOCK_NAMESPACE, patientId.intValue());
+    }
+
+    private VitalChunk loadChunk(Long patientId, ChunkKey key) {
+        List<byte[]> data = jdbcTemplate.query(
+                "SELECT data FROM vital_chunks WHERE patient_id = ? AND metric = ? AND chunk_start = ?",
+                (rs, rowNum) -> rs.getBytes("data"), patientId, key.metric(), Date.valueOf(key.chunkStart()));
+        return data.isEmpty() ? VitalChunk.EMPTY : VitalChunk.decode(data.get(0));
+    }
+
+    private void writeChunk(Long patientId, ChunkKey key, VitalChunk chunk, LocalDateTime now) {
+        jdbcTemplate.update(UPSERT_SQL, patientId, key.metric(), Date.valueOf(key.chunkStart()),
+                Timestamp.valueOf(chunk.time(0)), Timestamp.valueOf(chunk.time(chunk.size() - 1)), chunk.size(),
+                chunk.confidentialCount(), chunk.min(), chunk.max(), chunk.sum(), chunk.encode(), Timestamp.valueOf(now));
+    }
+
+    private LocalDate chunkStart(LocalDateTime at) {
+        if (at == null) {
+            return null;
+        }
+        long epochDay = at.toLocalDate().toEpochDay();
+        return LocalDate.ofEpochDay(Math.floorDiv(epochDay, chunkDays) * chunkDays);
+    }
+
+    private static double[] emptyBucket() {
+        return new double[]{0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0};
+    }
+
+    private static void accumulate(double[] bucket, int count, double min, double max, double sum) {
+        bucket[0] += count;
+        bucket[1] = Math.min(bucket[1], min);
+        bucket[2] = Math.max(bucket[2], max);
+        bucket[3] += sum;
+    }
+
+    private record ChunkKey(String metric, LocalDate chunkStart) {
+    }
+}
@@ -0,0 +1,499 @@
+package com.smarthealth.service;
+
+import com.smarthealth.entity.Appointment;
+import com.smarthealth.entity.Notification;
+import com.smarthealth.entity.User;
+import com.smarthealth.entity.WaitlistEntry;
+import com.smarthealth.event.AppointmentChangedEvent;
+import com.smarthealth.repository.AppointmentRepository;
+import com.smarthealth.repository.DoctorRepository;
+import com.smarthealth.repository.NotificationRepository;
+import com.smarthealth.repository.UserRepository;
+import com.smarthealth.repository.WaitlistEntryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancellation waitlist. Patients wait for one doctor or for any doctor of a
+ * specialization; live entries sit in per-doctor and per-specialization
+ * skip-list sets ordered by urgency, then request time. When a future
+ * appointment stops holding its slot, the slot is offered to the first waiter
+ * whose window and duration fit and held for them for a short claim window;
+ * bookings by anyone else that overlap a held slot are refused. An offer that
+ * lapses or is declined moves on to the next waiter. The table is the source
+ * of truth: state changes are conditional UPDATEs, the queues are rebuilt
+ * from it on startup, and a freed slot first re-reads the waiting entries it
+ * could go to, so waiters who joined through another instance are offered it
+ * too.
+ * <p>
+ * Offers, expiries and queue removals all run on one thread, so the per-entry
+ * state in memory needs no further locking.
+ */
+@Service
+public class WaitlistService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WaitlistService.class);
+    private static final DateTimeFormatter WHEN = DateTimeFormatter.ofPattern("EEE d MMM 'at' HH:mm");
+    private static final Set<WaitlistEntry.Status> LIVE = EnumSet.of(WaitlistEntry.Status.WAITING, WaitlistEntry.Status.OFFERED);
+
+    // Most urgent first, then first come first served
+    private static final Comparator<Waiter> PRIORITY = Comparator.comparing((Waiter w) -> w.urgency).reversed()
+            .thenComparing(w -> w.createdAt)
+            .thenComparingLong(w -> w.id);
+
+    @Autowired
+    private WaitlistEntryRepository waitlistEntryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private AppointmentBookingService appointmentBookingService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.waitlist.claimWindowMinutes:15}")
+    private long claimWindowMinutes;
+
+    @Value("${app.waitlist.maxEntriesPerPatient:5}")
+    private int maxEntriesPerPatient;
+
+    private final ConcurrentHashMap<Long, ConcurrentSkipListSet<Waiter>> byDoctor = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentSkipListSet<Waiter>> bySpecialization = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Waiter> waiters = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    public enum Rejection {
+        NOT_FOUND,
+        ACCESS_DENIED,
+        INVALID,
+        LIMIT_REACHED,
+        NO_OFFER
+    }
+
+    public static class WaitlistException extends RuntimeException {
+        private final Rejection rejection;
+
+        public WaitlistException(Rejection rejection, String message) {
+            super(message);
+            this.rejection = rejection;
+        }
+
+        public Rejection getRejection() {
+            return rejection;
+        }
+    }
+
+    // A freed slot; waiters that already let it go are skipped
+    private record Slot(Long doctorId, LocalDateTime start, int durationMinutes, Long freedBy, Set<Long> skipped) {
+
+        Slot skipping(long entryId) {
+            Set<Long> next = new HashSet<>(skipped);
+            next.add(entryId);
+            return new Slot(doctorId, start, durationMinutes, freedBy, next);
+        }
+    }
+
+    private static final class Waiter {
+        final long id;
+        final long patientId;
+        final Long doctorId;
+        final String specialization;
+        final LocalDateTime earliest;
+        final LocalDateTime latest;
+        final int durationMinutes;
+        final WaitlistEntry.Urgency urgency;
+        final LocalDateTime createdAt;
+
+        // Waitlist thread only
+        WaitlistEntry.Status status = WaitlistEntry.Status.WAITING;
+        Slot offer;
+        ScheduledFuture<?> expiry;
+
+        Waiter(WaitlistEntry entry) {
+            this.id = entry.getId();
+            this.patientId = entry.getPatient().getId();
+            this.doctorId = entry.getDoctor() != null ? entry.getDoctor().getId() : null;
+            this.specialization = entry.getSpecialization() != null ? entry.getSpecialization().toLowerCase() : null;
+            this.earliest = entry.getEarliest();
+            this.latest = entry.getLatest();
+            this.durationMinutes = entry.getDurationMinutes();
+            this.urgency = entry.getUrgency();
+            this.createdAt = entry.getCreatedAt();
+        }
+
+        boolean fits(Slot slot) {
+            return status == WaitlistEntry.Status.WAITING
+                    && (slot.freedBy() == null || patientId != slot.freedBy())
+                    && !slot.skipped().contains(id)
+                    && durationMinutes <= slot.durationMinutes()
+                    && !slot.start().isBefore(earliest)
+                    && !slot.start().plusMinutes(durationMinutes).isAfter(latest);
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "waitlist");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        expireClosedWindows();
+        List<WaitlistEntry> entries = waitlistEntryRepository.findByStatusIn(LIVE);
+        executor.execute(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            for (WaitlistEntry entry : entries) {
+                Waiter waiter = new Waiter(entry);
+                if (entry.getStatus() == WaitlistEntry.Status.OFFERED) {
+                    waiter.status = WaitlistEntry.Status.OFFERED;
+                    waiter.offer = new Slot(entry.getOfferDoctorId(), entry.getOfferStart(),
+                            entry.getOfferDurationMinutes(), null, Set.of());
+                    long delayMs = Math.max(0, Duration.between(now, entry.getOfferExpiresAt()).toMillis());
+                    waiter.expiry = executor.schedule(() -> lapse(waiter.id), delayMs, TimeUnit.MILLISECONDS);
+                }
+                index(waiter);
+            }
+            logger.info("Waitlist loaded with {} live entries", entries.size());
+        });
+    }
+
+    /**
+     * Puts the patient on the waitlist for a doctor or, when no doctor is given,
+     * for any doctor of the specialization.
+     */
+    public WaitlistEntry join(Long patientId, Long doctorId, String specialization, LocalDateTime earliest,
+                              LocalDateTime latest, Integer durationMinutes, WaitlistEntry.Urgency urgency,
+                              String type, String reason) {
+        boolean hasSpecialization = specialization != null && !specialization.isBlank();
+        if ((doctorId == null) == !hasSpecialization) {
+            throw new WaitlistException(Rejection.INVALID, "Give either a doctor or a specialization");
+        }
+        if (earliest == null || latest == null || !latest.isAfter(earliest) || !latest.isAfter(LocalDateTime.now())) {
+            throw new WaitlistException(Rejection.INVALID, "The window must end after it starts and in the future");
+        }
+        int duration = durationMinutes != null ? durationMinutes : Appointment.DEFAULT_DURATION_MINUTES;
+        if (duration <= 0 || duration > Appointment.MAX_DURATION_MINUTES) {
+            throw new WaitlistException(Rejection.INVALID, "Duration must be between 1 and " + Appointment.MAX_DURATION_MINUTES + " minutes");
+        }
+        if (waitlistEntryRepository.countByPatientAndStatusIn(patientId, LIVE) >= maxEntriesPerPatient) {
+            throw new WaitlistException(Rejection.LIMIT_REACHED,
+                    "At most " + maxEntriesPerPatient + " waitlist entries can be open at once");
+        }
+
+        WaitlistEntry entry = new WaitlistEntry();
+        entry.setPatient(userRepository.getReferenceById(patientId));
+        if (doctorId != null) {
+            User doctor = userRepository.findById(doctorId)
+                    .filter(u -> u.getRole() == User.Role.DOCTOR)
+                    .orElseThrow(() -> new WaitlistException(Rejection.INVALID, "Doctor not found"));
+            entry.setDoctor(doctor);
+        } else {
+            entry.setSpecialization(specialization.trim());
+        }
+        entry.setEarliest(earliest);
+        entry.setLatest(latest);
+        entry.setDurationMinutes(duration);
+        entry.setUrgency(urgency != null ? urgency : WaitlistEntry.Urgency.NORMAL);
+        entry.setType(type);
+        entry.setReason(reason);
+
+        WaitlistEntry saved = waitlistEntryRepository.save(entry);
+        Waiter waiter = new Waiter(saved);
+        executor.execute(() -> index(waiter));
+        return saved;
+    }
+
+    public List<WaitlistEntry> liveEntries(Long patientId) {
+        return waitlistEntryRepository.findByPatientAndStatusIn(patientId, LIVE);
+    }
+
+    public void leave(Long entryId, Long patientId) {
+        if (waitlistEntryRepository.leave(entryId, patientId, LocalDateTime.now()) == 0) {
+            throw new WaitlistException(Rejection.NOT_FOUND, "No open waitlist entry with this id");
+        }
+        // A slot held for this entry goes to the next waiter
+        executor.execute(() -> {
+            Waiter waiter = forget(entryId);
+            if (waiter != null && waiter.offer != null) {
+                offer(waiter.offer.skipping(entryId));
+            }
+        });
+    }
+
+    /**
+     * Books the slot held for the entry. The hold makes the booking succeed
+     * unless the patient let it lapse. The entry moves to BOOKED under the
+     * doctor's lock and in the booking's transaction, so an offer that lapsed,
+     * was declined or moved on in the meantime leaves no appointment behind.
+     */
+    public Appointment claim(Long entryId, Long patientId) {
+        WaitlistEntry entry = ownedEntry(entryId, patientId);
+        // Cheap rejection before taking any lock; the booking checks again
+        if (entry.getStatus() != WaitlistEntry.Status.OFFERED || !entry.getOfferExpiresAt().isAfter(LocalDateTime.now())) {
+            throw new WaitlistException(Rejection.NO_OFFER, "No slot is currently held for this entry");
+        }
+        User doctor = userRepository.findById(entry.getOfferDoctorId())
+                .orElseThrow(() -> new WaitlistException(Rejection.NOT_FOUND, "Doctor not found"));
+
+        Appointment appointment = new Appointment(entry.getPatient(), doctor, entry.getOfferStart(),
+                entry.getType(), entry.getReason());
+        appointment.setDurationMinutes(entry.getDurationMinutes());
+        Appointment saved = appointmentBookingService.book(appointment, booked -> {
+            if (waitlistEntryRepository.markBooked(entryId, doctor.getId(), entry.getOfferStart(), booked.getId(),
+                    LocalDateTime.now()) == 0) {
+                throw new WaitlistException(Rejection.NO_OFFER, "No slot is currently held for this entry");
+            }
+        });
+        executor.execute(() -> forget(entryId));
+        return saved;
+    }
+
+    public void decline(Long entryId, Long patientId) {
+        WaitlistEntry entry = ownedEntry(entryId, patientId);
+        if (entry.getStatus() != WaitlistEntry.Status.OFFERED) {
+            throw new WaitlistException(Rejection.NO_OFFER, "No slot is currently held for this entry");
+        }
+        Slot slot = new Slot(entry.getOfferDoctorId(), entry.getOfferStart(), entry.getOfferDurationMinutes(),
+                null, Set.of());
+        executor.execute(() -> release(entryId, slot));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        boolean freed = event.kind() == AppointmentChangedEvent.Kind.DELETED
+                ? Appointment.holdsSlot(event.status())
+                : event.previousStatus() != null && Appointment.holdsSlot(event.previousStatus()) && !event.isActive();
+        if (freed && event.appointmentDate().isAfter(LocalDateTime.now())) {
+            Slot slot = new Slot(event.doctorId(), event.appointmentDate(), event.durationMinutes(),
+                    event.patientId(), Set.of());
+            executor.execute(() -> offer(slot));
+        }
+    }
+
+    // Entries whose window has closed can never be served
+    @Scheduled(fixedDelayString = "${app.waitlist.sweepMs:600000}")
+    public void expireClosedWindows() {
+        List<Long> expired = jdbcTemplate.queryForList(
+                "UPDATE waitlist_entries SET status = 'EXPIRED', offer_expires_at = NULL, updated_at = ? " +
+                "WHERE status IN ('WAITING', 'OFFERED') AND latest <= ? RETURNING id",
+                Long.class, LocalDateTime.now(), LocalDateTime.now());
+        if (!expired.isEmpty()) {
+            executor.execute(() -> expired.forEach(this::forget));
+        }
+    }
+
+    private WaitlistEntry ownedEntry(Long entryId, Long patientId) {
+        WaitlistEntry entry = waitlistEntryRepository.findWithPartiesById(entryId)
+                .orElseThrow(() -> new WaitlistException(Rejection.NOT_FOUND, "Waitlist entry not found"));
+        if (!entry.getPatient().getId().equals(patientId)) {
+            throw new WaitlistException(Rejection.ACCESS_DENIED, "Access denied");
+        }
+        return entry;
+    }
+
+    private void offer(Slot slot) {
+        try {
+            offerToFirstFit(slot);
+        } catch (RuntimeException e) {
+            logger.error("Failed to offer slot of doctor {} at {} to the waitlist", slot.doctorId(), slot.start(), e);
+        }
+    }
+
+    // Walks the doctor's and the specialization's queues in merged priority order
+    private void offerToFirstFit(Slot slot) {
+        if (!slot.start().isAfter(LocalDateTime.now())) {
+            return;
+        }
+        String specialization = doctorRepository.findSpecializationByUserId(slot.doctorId())
+                .map(String::toLowerCase)
+                .orElse(null);
+        refreshWaiters(slot, specialization);
+        Iterator<Waiter> forDoctor = iterator(byDoctor.get(slot.doctorId()));
+        Iterator<Waiter> forSpecialization = iterator(specialization != null ? bySpecialization.get(specialization) : null);
+        Waiter a = next(forDoctor);
+        Waiter b = next(forSpecialization);
+
+        while (a != null || b != null) {
+            Waiter candidate;
+            if (b == null || (a != null && PRIORITY.compare(a, b) <= 0)) {
+                candidate = a;
+                a = next(forDoctor);
+            } else {
+                candidate = b;
+                b = next(forSpecialization);
+            }
+            if (!candidate.fits(slot)) {
+                continue;
+            }
+
+            LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(claimWindowMinutes);
+            Offered offered = makeOffer(candidate, slot, expiresAt);
+            if (offered == Offered.SLOT_TAKEN) {
+                // Booked directly since it was freed; a shorter waiter may still fit around it
+                continue;
+            }
+            if (offered == Offered.ENTRY_GONE) {
+                // Left, booked or expired through another path
+                forget(candidate.id);
+                continue;
+            }
+            candidate.status = WaitlistEntry.Status.OFFERED;
+            candidate.offer = slot;
+            candidate.expiry = executor.schedule(() -> lapse(candidate.id), claimWindowMinutes, TimeUnit.MINUTES);
+            notifyOffer(candidate, slot, expiresAt);
+            return;
+        }
+    }
+
+    // Brings the queues in line with the table for the waiters the slot could go to
+    private void refreshWaiters(Slot slot, String specialization) {
+        for (WaitlistEntry entry : waitlistEntryRepository.findWaitingFor(slot.doctorId(), specialization,
+                slot.start(), slot.durationMinutes())) {
+            Waiter known = waiters.get(entry.getId());
+            if (known == null) {
+                index(new Waiter(entry));
+            } else if (known.status != WaitlistEntry.Status.WAITING) {
+                // Its offer was released through another instance
+                if (known.expiry != null) {
+                    known.expiry.cancel(false);
+                }
+                known.status = WaitlistEntry.Status.WAITING;
+                known.offer = null;
+                known.expiry = null;
+            }
+        }
+    }
+
+    private enum Offered { YES, SLOT_TAKEN, ENTRY_GONE }
+
+    // Under the doctor's lock, so a direct booking either sees the hold or is seen here
+    private Offered makeOffer(Waiter candidate, Slot slot, LocalDateTime expiresAt) {
+        return appointmentBookingService.withDoctorLock(slot.doctorId(), () -> {
+            if (appointmentRepository.existsOverlappingAppointment(slot.doctorId(), slot.start(),
+                    slot.start().plusMinutes(candidate.durationMinutes), -1L)) {
+                return Offered.SLOT_TAKEN;
+            }
+            return waitlistEntryRepository.offer(candidate.id, slot.doctorId(), slot.start(), slot.durationMinutes(),
+                    expiresAt, LocalDateTime.now()) > 0 ? Offered.YES : Offered.ENTRY_GONE;
+        });
+    }
+
+    private void lapse(long entryId) {
+        Waiter waiter = waiters.get(entryId);
+        if (waiter != null && waiter.status == WaitlistEntry.Status.OFFERED) {
+            try {
+                release(entryId, waiter.offer);
+            } catch (RuntimeException e) {
+                logger.error("Failed to release lapsed waitlist offer {}", entryId, e);
+            }
+        }
+    }
+
+    // Returns the entry to the queue and offers its slot to the next waiter
+    private void release(long entryId, Slot slot) {
+        Waiter waiter = waiters.get(entryId);
+        if (waiter != null && waiter.expiry != null) {
+            waiter.expiry.cancel(false);
+        }
+        if (waitlistEntryRepository.releaseOffer(entryId, LocalDateTime.now()) == 0) {
+            return;
+        }
+        if (waiter != null) {
+            waiter.status = WaitlistEntry.Status.WAITING;
+            waiter.offer = null;
+            waiter.expiry = null;
+        }
+        offer(slot.skipping(entryId));
+    }
+
+    private void index(Waiter waiter) {
+        waiters.put(waiter.id, waiter);
+        queueOf(waiter).add(waiter);
+    }
+
+    private Waiter forget(long entryId) {
+        Waiter waiter = waiters.remove(entryId);
+        if (waiter != null) {
+            queueOf(waiter).remove(waiter);
+            if (waiter.expiry != null) {
+                waiter.expiry.cancel(false);
+            }
+        }
+        return waiter;
+    }
+
+    private ConcurrentSkipListSet<Waiter> queueOf(Waiter waiter) {
+        return waiter.doctorId != null
+                ? byDoctor.computeIfAbsent(waiter.doctorId, id -> new ConcurrentSkipListSet<>(PRIORITY))
+                : bySpecialization.computeIfAbsent(waiter.specialization, s -> new ConcurrentSkipListSet<>(PRIORITY));
+    }
+
+    private void notifyOffer(Waiter waiter, Slot slot, LocalDateTime expiresAt) {
+        try {
+            Notification notification = new Notification();
+            notification.setUser(userRepository.getReferenceById(waiter.patientId));
+            notification.setType(Notification.Type.INFO);
+            notification.setMessage("A slot opened on " + slot.start().format(WHEN) + " and is held for you until "
+                    + expiresAt.format(DateTimeFormatter.ofPattern("HH:mm")) + ". Claim it from your waitlist.");
+            notificationRepository.save(notification);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to notify patient {} of waitlist offer {}", waiter.patientId, waiter.id, e);
+        }
+    }
+
+    private static Iterator<Waiter> iterator(ConcurrentSkipListSet<Waiter> queue) {
+        return queue != null ? queue.iterator() : null;
+    }
+
+    private static Waiter next(Iterator<Waiter> iterator) {
+        return iterator != null && iterator.hasNext() ? iterator.next() : null;
+    }
+}
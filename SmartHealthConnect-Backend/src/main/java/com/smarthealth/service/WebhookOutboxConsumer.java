@@ -0,0 +1,76 @@
+package com.smarthealth.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.smarthealth.event.OutboxConsumer;
+import com.smarthealth.event.OutboxEvent;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * POSTs each outbox batch as {@code {"events": [...]}} to a configured URL.
+ * Any non-2xx answer fails the batch, which the relay then retries, so the
+ * receiver should deduplicate on the event sequence. When a secret is set the
+ * body is signed with HMAC-SHA256 in the {@code X-Outbox-Signature} header.
+ */
+public class WebhookOutboxConsumer implements OutboxConsumer {
+
+    private final URI uri;
+    private final String secret;
+    private final Duration timeout;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    public WebhookOutboxConsumer(String url, String secret, Duration timeout) {
+        this.uri = URI.create(url);
+        this.secret = secret;
+        this.timeout = timeout;
+        this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public String name() {
+        return "webhook:" + uri;
+    }
+
+    @Override
+    public void deliver(List<OutboxEvent> batch) throws IOException, InterruptedException {
+        byte[] body = objectMapper.writeValueAsBytes(Map.of("events", batch));
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (secret != null && !secret.isBlank()) {
+            request.header("X-Outbox-Signature", "sha256=" + sign(body));
+        }
+
+        HttpResponse<Void> response = client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Webhook " + uri + " answered " + response.statusCode());
+        }
+    }
+
+    private String sign(byte[] body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(body));
+        } catch (Exception e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.smarthealth.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel (Varghese and Lauck). Level 0 has one bucket per
+ * tick; each higher level covers 64 times the span of the one below, so a
+ * 64-bit tick range needs 11 levels of 64 buckets regardless of how many
+ * timers are pending. A timer lives in a doubly linked bucket list, which
+ * makes both {@link #schedule} and {@link Timeout#cancel()} O(1). Timers in
+ * higher levels are cascaded one level down when the wheel below wraps.
+ * <p>
+ * Time only moves when {@link #advanceTo(long)} is called; expired payloads
+ * are handed to the consumer outside the wheel's lock.
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = (Long.SIZE + BITS - 1) / BITS;
+
+    public final class Timeout {
+        private final long deadlineTick;
+        private final T payload;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(long deadlineTick, T payload) {
+            this.deadlineTick = deadlineTick;
+            this.payload = payload;
+        }
+
+        public T payload() {
+            return payload;
+        }
+
+        // Returns false when the timer already fired or was cancelled
+        public boolean cancel() {
+            synchronized (HierarchicalTimingWheel.this) {
+                if (bucket == null) {
+                    return false;
+                }
+                bucket.remove(this);
+                size--;
+                return true;
+            }
+        }
+    }
+
+    private final class Bucket {
+        private Timeout head;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        // Detaches and returns the whole list
+        Timeout drain() {
+            Timeout first = head;
+            head = null;
+            return first;
+        }
+    }
+
+    private final long tickMillis;
+    // Lists rather than arrays: Bucket is an inner class of a generic type, so Bucket[] would be a generic array
+    private final List<List<Bucket>> wheels = new ArrayList<>(LEVELS);
+    private long currentTick;
+    private int size;
+
+    public HierarchicalTimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        for (int level = 0; level < LEVELS; level++) {
+            List<Bucket> buckets = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                buckets.add(new Bucket());
+            }
+            wheels.add(buckets);
+        }
+    }
+
+    /**
+     * Schedules the payload to expire at the given wall-clock time. Deadlines
+     * in the past expire on the next tick.
+     */
+    public synchronized Timeout schedule(long deadlineMillis, T payload) {
+        long deadlineTick = Math.max(currentTick + 1, (deadlineMillis + tickMillis - 1) / tickMillis);
+        Timeout timeout = new Timeout(deadlineTick, payload);
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Advances the wheel to the given wall-clock time and hands every payload
+     * whose deadline has passed to the consumer.
+     */
+    public void advanceTo(long nowMillis, Consumer<T> onExpired) {
+        List<T> expired = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = nowMillis / tickMillis;
+            while (currentTick < targetTick) {
+                currentTick++;
+                cascade();
+                for (Timeout t = wheels.get(0).get((int) (currentTick & MASK)).drain(); t != null; ) {
+                    Timeout next = t.next;
+                    t.bucket = null;
+                    t.prev = null;
+                    t.next = null;
+                    expired.add(t.payload);
+                    size--;
+                    t = next;
+                }
+            }
+        }
+        expired.forEach(onExpired);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Level is the highest 6-bit group in which the deadline differs from the current tick
+    private void place(Timeout timeout) {
+        long diff = timeout.deadlineTick ^ currentTick;
+        int level = diff == 0 ? 0 : (Long.SIZE - 1 - Long.numberOfLeadingZeros(diff)) / BITS;
+        int slot = (int) ((timeout.deadlineTick >>> (level * BITS)) & MASK);
+        wheels.get(level).get(slot).add(timeout);
+    }
+
+    // When the lower levels have just wrapped, redistribute the matching bucket of each higher level
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            long lowerSpanMask = (1L << (level * BITS)) - 1;
+            if ((currentTick & lowerSpanMask) != 0) {
+                return;
+            }
+            int slot = (int) ((currentTick >>> (level * BITS)) & MASK);
+            for (Timeout t = wheels.get(level).get(slot).drain(); t != null; ) {
+                Timeout next = t.next;
+                place(t);
+                t = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.smarthealth.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One lock per key, created on demand and dropped once nobody holds or waits
+ * for it. Unlike lock striping, two different keys never share a lock, so
+ * callers on unrelated keys cannot contend.
+ */
+public class KeyedLocks<K> {
+
+    private static final class Entry {
+        final ReentrantLock lock = new ReentrantLock();
+        // Holders plus waiters; only changed inside ConcurrentHashMap.compute for the key
+        int users;
+    }
+
+    private final ConcurrentHashMap<K, Entry> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Acquires the lock for the key, waiting at most the given time. Returns
+     * false on timeout; on success the caller must call {@link #unlock(Object)}.
+     */
+    public boolean tryLock(K key, long timeout, TimeUnit unit) throws InterruptedException {
+        Entry entry = locks.compute(key, (k, e) -> {
+            Entry result = e != null ? e : new Entry();
+            result.users++;
+            return result;
+        });
+        boolean acquired = false;
+        try {
+            acquired = entry.lock.tryLock(timeout, unit);
+            return acquired;
+        } finally {
+            if (!acquired) {
+                release(key);
+            }
+        }
+    }
+
+    public void unlock(K key) {
+        Entry entry = locks.get(key);
+        if (entry == null) {
+            throw new IllegalMonitorStateException("Lock for " + key + " is not held");
+        }
+        entry.lock.unlock();
+        release(key);
+    }
+
+    public int size() {
+        return locks.size();
+    }
+
+    private void release(K key) {
+        locks.computeIfPresent(key, (k, e) -> --e.users == 0 ? null : e);
+    }
+}
@@ -0,0 +1,88 @@
+package com.smarthealth.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded multi-producer, single-consumer queue over a power-of-two array.
+ * Every slot carries a sequence number saying whose turn it is: producers
+ * claim a slot with one CAS on the tail and publish it by advancing the
+ * slot's sequence, and the consumer hands the slot back the same way. Nobody
+ * blocks; {@link #offer(Object)} returns false when the buffer is full.
+ * {@link #drain(Consumer, int)} must only be called from one thread at a time.
+ */
+public class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // Only written by the consumer
+    private volatile long head;
+
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 2 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 2 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        mask = size - 1;
+        items = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean offer(E item) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items.lazySet(index, item);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The slot still holds an item from one lap ago
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    // Hands up to max items to the consumer, oldest first; returns how many
+    public int drain(Consumer<E> consumer, int max) {
+        long position = head;
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                // Empty, or claimed but not yet published
+                break;
+            }
+            E item = items.get(index);
+            items.lazySet(index, null);
+            sequences.set(index, position + mask + 1);
+            position++;
+            head = position;
+            drained++;
+            consumer.accept(item);
+        }
+        return drained;
+    }
+
+    // Approximate under concurrent offers
+    public int size() {
+        return (int) Math.max(0, Math.min(tail.get() - head, capacity()));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,91 @@
+package com.smarthealth.util;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * Opaque keyset pagination cursors. A cursor is the sort key of the last row
+ * of a page, base64url encoded so clients treat it as a token rather than
+ * building their own. Decoding anything malformed throws
+ * {@link IllegalArgumentException}.
+ */
+public final class PageCursor {
+
+    public record Position(LocalDateTime time, long id) {
+    }
+
+    private PageCursor() {
+    }
+
+    public static String encode(LocalDateTime time, long id) {
+        long micros = time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+        return wrap(micros + ":" + id);
+    }
+
+    public static String encode(long id) {
+        return wrap(Long.toString(id));
+    }
+
+    public static Position decode(String cursor) {
+        String[] parts = unwrap(cursor).split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        try {
+            long micros = Long.parseLong(parts[0]);
+            LocalDateTime time = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                    (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+            return new Position(time, Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    public static long decodeId(String cursor) {
+        try {
+            return Long.parseLong(unwrap(cursor));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    // Requested page size bounded to [1, max]; absent means the default
+    public static int limit(Integer requested, int defaultLimit, int maxLimit) {
+        int limit = requested != null ? requested : defaultLimit;
+        return Math.max(1, Math.min(limit, maxLimit));
+    }
+
+    /**
+     * Rows to fetch for a listing request: the page size plus one, which tells
+     * whether another page follows. Requests with neither a cursor nor a limit
+     * come from clients written before pagination and still get every row.
+     */
+    public static Pageable window(String cursor, Integer limit, int defaultLimit, int maxLimit) {
+        if (cursor == null && limit == null) {
+            return Pageable.unpaged();
+        }
+        return PageRequest.of(0, limit(limit, defaultLimit, maxLimit) + 1);
+    }
+
+    // Page size a window was built for
+    public static int pageSize(Pageable window) {
+        return window.isPaged() ? window.getPageSize() - 1 : Integer.MAX_VALUE;
+    }
+
+    private static String wrap(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String unwrap(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,601 @@
+package com.smarthealth.util;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Typeahead over short labelled entries such as people and department names.
+ * Each entry is split into normalized words. A prefix trie over those words
+ * answers "starts with" queries. Every busy trie node caches the best entries
+ * of its subtree by static rank (weight, then label), so a one-word lookup is
+ * a walk down the prefix plus a copy of that cache. A trigram index over the
+ * distinct words adds substring and typo-tolerant matches when prefixes alone
+ * do not fill the result; words are counted by the entries holding them and
+ * leave that index with the last one. Readers share a read lock; put and remove take the
+ * write lock and drop the caches they touch, which are rebuilt on next use.
+ */
+public class TypeaheadIndex {
+
+    public record Suggestion(long id, String label, String detail, double score) {
+    }
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final char PAD = '\u0001';
+
+    private static final class Entry {
+        final long id;
+        final String label;
+        final String detail;
+        final String sortKey;
+        final double weight;
+        final String[] words;
+
+        Entry(long id, String label, String detail, double weight, String[] words) {
+            this.id = id;
+            this.label = label;
+            this.detail = detail;
+            this.sortKey = label.toLowerCase(Locale.ROOT);
+            this.weight = weight;
+            this.words = words;
+        }
+    }
+
+    private static final Comparator<Entry> RANK = Comparator.comparingDouble((Entry e) -> -e.weight)
+            .thenComparing(e -> e.sortKey)
+            .thenComparingLong(e -> e.id);
+
+    private static final class Word {
+        final int id;
+        // Entries holding the word
+        int refs;
+
+        Word(int id) {
+            this.id = id;
+        }
+    }
+
+    private static final class Node {
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        // Entries having exactly the word this node spells
+        List<Entry> exact;
+        // Entry-word pairs in the subtree
+        int count;
+        // Best entries of the subtree, only kept once count exceeds the cache size; null until computed
+        Entry[] best;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node addChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            Node node = new Node();
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newKeys[at] = c;
+            newChildren[at] = node;
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+
+        void removeChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i < 0) {
+                return;
+            }
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+    }
+
+    private final int cacheSize;
+    private final int maxScan;
+    private final int maxFuzzyScan;
+    private final double minSimilarity;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    // Indexed words by id; the id of a word whose last entry is gone is null here until reused
+    private final List<String> words = new ArrayList<>();
+    private final Map<String, Word> wordIds = new HashMap<>();
+    private final Deque<Integer> freeWordIds = new ArrayDeque<>();
+    private final Map<Long, int[]> trigramWords = new HashMap<>();
+
+    /**
+     * @param cacheSize     entries cached per busy trie node; larger limits fall back to a subtree scan
+     * @param maxScan       entries a prefix scan may visit before it settles for what it has
+     * @param maxFuzzyScan  trigram postings, and then entries, a fuzzy lookup may visit
+     * @param minSimilarity trigram similarity (0..1) a word needs to count as a fuzzy match
+     */
+    public TypeaheadIndex(int cacheSize, int maxScan, int maxFuzzyScan, double minSimilarity) {
+        this.cacheSize = cacheSize;
+        this.maxScan = maxScan;
+        this.maxFuzzyScan = maxFuzzyScan;
+        this.minSimilarity = minSimilarity;
+    }
+
+    // Adds or replaces the entry; texts are split into words, null texts are skipped
+    public void put(long id, String label, String detail, double weight, String... texts) {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String text : texts) {
+            distinct.addAll(normalize(text));
+        }
+        Entry entry = new Entry(id, label, detail, weight, distinct.toArray(new String[0]));
+
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.put(id, entry);
+            // New words first, so the ones both versions share never drop out of the trigram index
+            for (String word : entry.words) {
+                insertWord(word, entry);
+            }
+            if (previous != null) {
+                for (String word : previous.words) {
+                    removeWord(word, previous);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                for (String word : previous.words) {
+                    removeWord(word, previous);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Best entries whose words start with every query word, then, if that
+     * leaves room, entries whose words contain or nearly match them.
+     * Prefix matches score 1, fuzzy ones their mean similarity.
+     */
+    public List<Suggestion> suggest(String query, int limit) {
+        List<String> queryWords = normalize(query);
+        if (queryWords.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Map<Entry, Double> results = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            Node narrowest = null;
+            boolean allFound = true;
+            for (String word : queryWords) {
+                Node node = find(word);
+                if (node == null || node.count == 0) {
+                    allFound = false;
+                    break;
+                }
+                if (narrowest == null || node.count < narrowest.count) {
+                    narrowest = node;
+                }
+            }
+            if (allFound) {
+                List<Entry> prefixMatches = queryWords.size() == 1
+                        ? top(narrowest, limit)
+                        : topMatching(narrowest, limit, entry -> hasPrefixes(entry, queryWords));
+                prefixMatches.forEach(entry -> results.put(entry, 1.0));
+            }
+            if (results.size() < limit) {
+                fuzzy(queryWords, limit - results.size(), results);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Suggestion> suggestions = new ArrayList<>(results.size());
+        results.forEach((entry, score) -> suggestions.add(new Suggestion(entry.id, entry.label, entry.detail, score)));
+        return suggestions;
+    }
+
+    /**
+     * Lower-cased, accent-free runs of letters and digits. Callers can use it
+     * to check a query has anything searchable in it.
+     */
+    public static List<String> normalize(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return out;
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (!word.isEmpty()) {
+                out.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (!word.isEmpty()) {
+            out.add(word.toString());
+        }
+        return out;
+    }
+
+    private void insertWord(String word, Entry entry) {
+        Node node = root;
+        offer(node, entry);
+        for (int i = 0; i < word.length(); i++) {
+            node = node.addChild(word.charAt(i));
+            offer(node, entry);
+        }
+        if (node.exact == null) {
+            node.exact = new ArrayList<>(1);
+        }
+        node.exact.add(entry);
+        wordIds.computeIfAbsent(word, this::indexWord).refs++;
+    }
+
+    private Word indexWord(String word) {
+        Integer free = freeWordIds.poll();
+        int wordId = free != null ? free : words.size();
+        if (free != null) {
+            words.set(wordId, word);
+        } else {
+            words.add(word);
+        }
+        for (long trigram : trigrams(word)) {
+            trigramWords.merge(trigram, new int[]{1, wordId}, TypeaheadIndex::append);
+        }
+        return new Word(wordId);
+    }
+
+    // Drops the word from the trigram index once no entry holds it
+    private void releaseWord(String word) {
+        Word indexed = wordIds.get(word);
+        if (indexed == null || --indexed.refs > 0) {
+            return;
+        }
+        wordIds.remove(word);
+        for (long trigram : trigrams(word)) {
+            trigramWords.computeIfPresent(trigram, (key, postings) -> without(postings, indexed.id));
+        }
+        words.set(indexed.id, null);
+        freeWordIds.push(indexed.id);
+    }
+
+    // Counts the entry into the node and keeps an existing cache exact
+    private void offer(Node node, Entry entry) {
+        node.count++;
+        Entry[] best = node.best;
+        if (best == null) {
+            return;
+        }
+        for (Entry cached : best) {
+            if (cached == entry) {
+                return;
+            }
+        }
+        if (best.length < cacheSize) {
+            Entry[] grown = Arrays.copyOf(best, best.length + 1);
+            grown[best.length] = entry;
+            Arrays.sort(grown, RANK);
+            node.best = grown;
+        } else if (RANK.compare(entry, best[best.length - 1]) < 0) {
+            Entry[] replaced = best.clone();
+            replaced[replaced.length - 1] = entry;
+            Arrays.sort(replaced, RANK);
+            node.best = replaced;
+        }
+    }
+
+    private void removeWord(String word, Entry entry) {
+        releaseWord(word);
+        Node node = root;
+        retract(node, entry);
+        for (int i = 0; i < word.length(); i++) {
+            Node child = node.child(word.charAt(i));
+            if (child == null) {
+                return;
+            }
+            if (child.count == 1) {
+                // Nothing else lives below here
+                node.removeChild(word.charAt(i));
+                return;
+            }
+            retract(child, entry);
+            node = child;
+        }
+        if (node.exact != null) {
+            node.exact.remove(entry);
+        }
+    }
+
+    private void retract(Node node, Entry entry) {
+        node.count--;
+        if (node.best != null) {
+            for (Entry cached : node.best) {
+                if (cached == entry) {
+                    node.best = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    private Node find(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    private List<Entry> top(Node node, int limit) {
+        if (limit > cacheSize || node.count <= cacheSize) {
+            return collect(node, limit, null);
+        }
+        // Readers share the lock, so the lazily built cache needs its own guard
+        synchronized (node) {
+            if (node.best == null) {
+                node.best = collect(node, cacheSize, null).toArray(new Entry[0]);
+            }
+            Entry[] best = node.best;
+            return Arrays.asList(best).subList(0, Math.min(limit, best.length));
+        }
+    }
+
+    // When the node's cache already holds enough matches they are the best ones; otherwise scan the subtree
+    private List<Entry> topMatching(Node node, int limit, Predicate<Entry> filter) {
+        if (node.count > cacheSize) {
+            List<Entry> cached = top(node, cacheSize).stream().filter(filter).limit(limit).toList();
+            if (cached.size() == limit) {
+                return cached;
+            }
+        }
+        return collect(node, limit, filter);
+    }
+
+    // Best entries of the subtree passing the filter, visiting at most maxScan entries
+    private List<Entry> collect(Node start, int limit, Predicate<Entry> filter) {
+        PriorityQueue<Entry> worstFirst = new PriorityQueue<>(RANK.reversed());
+        Set<Entry> seen = new HashSet<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(start);
+        int scanned = 0;
+        while (!stack.isEmpty() && scanned < maxScan) {
+            Node node = stack.pop();
+            if (node.exact != null) {
+                for (Entry entry : node.exact) {
+                    scanned++;
+                    if (!seen.add(entry) || (filter != null && !filter.test(entry))) {
+                        continue;
+                    }
+                    worstFirst.add(entry);
+                    if (worstFirst.size() > limit) {
+                        worstFirst.poll();
+                    }
+                }
+            }
+            for (Node child : node.children) {
+                stack.push(child);
+            }
+        }
+        List<Entry> result = new ArrayList<>(worstFirst);
+        result.sort(RANK);
+        return result;
+    }
+
+    /**
+     * Candidate words share a trigram with the longest query word, rarest
+     * trigrams first until the scan budget is spent; each candidate's entries
+     * must then match every query word by prefix or similarity.
+     */
+    private void fuzzy(List<String> queryWords, int needed, Map<Entry, Double> results) {
+        String longest = queryWords.stream().max(Comparator.comparingInt(String::length)).orElseThrow();
+        if (longest.length() < 3) {
+            return;
+        }
+        long[] queryTrigrams = trigrams(longest);
+        List<int[]> postingLists = new ArrayList<>();
+        for (long trigram : queryTrigrams) {
+            int[] postings = trigramWords.get(trigram);
+            if (postings != null) {
+                postingLists.add(postings);
+            }
+        }
+        postingLists.sort(Comparator.comparingInt(postings -> postings[0]));
+        Set<Integer> candidateIds = new HashSet<>();
+        int budget = maxFuzzyScan;
+        for (int[] postings : postingLists) {
+            for (int i = 1; i <= postings[0] && budget > 0; i++, budget--) {
+                candidateIds.add(postings[i]);
+            }
+        }
+
+        record Candidate(String word, double similarity) {
+        }
+        List<Candidate> candidates = new ArrayList<>();
+        for (int wordId : candidateIds) {
+            String word = words.get(wordId);
+            double similarity = word.contains(longest) ? 1.0 : similarity(queryTrigrams, trigrams(word));
+            if (similarity >= minSimilarity) {
+                candidates.add(new Candidate(word, similarity));
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::similarity).reversed());
+
+        Map<Entry, Double> found = new HashMap<>();
+        int scanned = 0;
+        for (Candidate candidate : candidates) {
+            Node node = find(candidate.word());
+            if (node == null || node.exact == null) {
+                continue;
+            }
+            for (Entry entry : node.exact) {
+                if (++scanned > maxFuzzyScan) {
+                    break;
+                }
+                if (results.containsKey(entry) || found.containsKey(entry)) {
+                    continue;
+                }
+                double total = 0;
+                for (String queryWord : queryWords) {
+                    double best = queryWord.equals(candidate.word()) ? 1.0 : bestSimilarity(queryWord, entry);
+                    if (best < minSimilarity) {
+                        total = -1;
+                        break;
+                    }
+                    total += best;
+                }
+                if (total > 0) {
+                    found.put(entry, total / queryWords.size());
+                }
+            }
+        }
+        found.entrySet().stream()
+                .sorted(Map.Entry.<Entry, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey(RANK)))
+                .limit(needed)
+                .forEach(e -> results.put(e.getKey(), e.getValue()));
+    }
+
+    // Every query word starts some word of the entry
+    private static boolean hasPrefixes(Entry entry, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            boolean matched = false;
+            for (String word : entry.words) {
+                if (word.startsWith(prefix)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double bestSimilarity(String queryWord, Entry entry) {
+        double best = 0;
+        long[] queryTrigrams = null;
+        for (String word : entry.words) {
+            if (word.startsWith(queryWord) || word.contains(queryWord)) {
+                return 1.0;
+            }
+            if (queryTrigrams == null) {
+                queryTrigrams = trigrams(queryWord);
+            }
+            best = Math.max(best, similarity(queryTrigrams, trigrams(word)));
+        }
+        return best;
+    }
+
+    // Jaccard similarity of two sorted trigram sets
+    private static double similarity(long[] a, long[] b) {
+        int common = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = a.length + b.length - common;
+        return union == 0 ? 0 : (double) common / union;
+    }
+
+    // Distinct trigrams of the word behind one pad character, so the leading letters count too
+    private static long[] trigrams(String word) {
+        String padded = PAD + word;
+        int n = Math.max(0, padded.length() - 2);
+        long[] out = new long[n];
+        for (int i = 0; i < n; i++) {
+            out[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        Arrays.sort(out);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || out[i] != out[distinct - 1]) {
+                out[distinct++] = out[i];
+            }
+        }
+        return distinct == n ? out : Arrays.copyOf(out, distinct);
+    }
+
+    // Postings arrays keep their length in slot 0 and grow by doubling
+    private static int[] append(int[] postings, int[] single) {
+        int size = postings[0];
+        if (postings.length == 1 + size) {
+            postings = Arrays.copyOf(postings, Math.max(4, postings.length * 2));
+        }
+        postings[++size] = single[1];
+        postings[0] = size;
+        return postings;
+    }
+
+    // Removes by moving the last posting into the gap; null once empty, which drops the trigram
+    private static int[] without(int[] postings, int wordId) {
+        int size = postings[0];
+        for (int i = 1; i <= size; i++) {
+            if (postings[i] == wordId) {
+                postings[i] = postings[size];
+                postings[0] = --size;
+                break;
+            }
+        }
+        return size == 0 ? null : postings;
+    }
+}
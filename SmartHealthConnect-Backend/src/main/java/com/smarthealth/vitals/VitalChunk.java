@@ -0,0 +1,375 @@
+package com.smarthealth.vitals;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An immutable run of readings of one vital sign, ordered by time. Stored
+ * column by column: timestamps as delta-of-delta codes, values XOR-ed with
+ * their predecessor (the Gorilla scheme, so a patient's steady pulse costs a
+ * few bits per reading), source record ids as zigzag varint deltas and the
+ * confidential flags as a sparse list of positions.
+ */
+public final class VitalChunk {
+
+    private static final byte FORMAT = 1;
+
+    public static final VitalChunk EMPTY = new VitalChunk(new long[0], new double[0], new long[0], new BitSet());
+
+    private final long[] times;
+    private final double[] values;
+    private final long[] recordIds;
+    private final BitSet confidential;
+
+    private VitalChunk(long[] times, double[] values, long[] recordIds, BitSet confidential) {
+        this.times = times;
+        this.values = values;
+        this.recordIds = recordIds;
+        this.confidential = confidential;
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    public boolean isEmpty() {
+        return times.length == 0;
+    }
+
+    public LocalDateTime time(int i) {
+        return LocalDateTime.ofEpochSecond(times[i], 0, ZoneOffset.UTC);
+    }
+
+    public double value(int i) {
+        return values[i];
+    }
+
+    public long recordId(int i) {
+        return recordIds[i];
+    }
+
+    public boolean isConfidential(int i) {
+        return confidential.get(i);
+    }
+
+    public int confidentialCount() {
+        return confidential.cardinality();
+    }
+
+    public double min() {
+        return Arrays.stream(values).min().orElse(Double.NaN);
+    }
+
+    public double max() {
+        return Arrays.stream(values).max().orElse(Double.NaN);
+    }
+
+    public double sum() {
+        return Arrays.stream(values).sum();
+    }
+
+    public VitalChunk withoutRecord(long recordId) {
+        int keep = 0;
+        for (long id : recordIds) {
+            if (id != recordId) {
+                keep++;
+            }
+        }
+        if (keep == recordIds.length) {
+            return this;
+        }
+        long[] t = new long[keep];
+        double[] v = new double[keep];
+        long[] r = new long[keep];
+        BitSet c = new BitSet();
+        for (int i = 0, j = 0; i < recordIds.length; i++) {
+            if (recordIds[i] != recordId) {
+                t[j] = times[i];
+                v[j] = values[i];
+                r[j] = recordIds[i];
+                c.set(j, confidential.get(i));
+                j++;
+            }
+        }
+        return new VitalChunk(t, v, r, c);
+    }
+
+    // Inserts the reading after any others taken at the same second
+    public VitalChunk with(LocalDateTime at, double value, long recordId, boolean isConfidential) {
+        long time = at.toEpochSecond(ZoneOffset.UTC);
+        int position = times.length;
+        while (position > 0 && times[position - 1] > time) {
+            position--;
+        }
+        int n = times.length + 1;
+        long[] t = new long[n];
+        double[] v = new double[n];
+        long[] r = new long[n];
+        BitSet c = new BitSet();
+        for (int i = 0, j = 0; j < n; j++) {
+            if (j == position) {
+                t[j] = time;
+                v[j] = value;
+                r[j] = recordId;
+                c.set(j, isConfidential);
+            } else {
+                t[j] = times[i];
+                v[j] = values[i];
+                r[j] = recordIds[i];
+                c.set(j, confidential.get(i));
+                i++;
+            }
+        }
+        return new VitalChunk(t, v, r, c);
+    }
+
+    public boolean samePoints(VitalChunk other) {
+        return Arrays.equals(times, other.times) && Arrays.equals(values, other.values)
+                && Arrays.equals(recordIds, other.recordIds) && confidential.equals(other.confidential);
+    }
+
+    public byte[] encode() {
+        int n = times.length;
+        BitWriter timeBits = new BitWriter();
+        long previousDelta = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0) {
+                timeBits.write(times[0], 64);
+                continue;
+            }
+            long delta = times[i] - times[i - 1];
+            long dod = delta - previousDelta;
+            previousDelta = delta;
+            if (dod == 0) {
+                timeBits.write(0, 1);
+            } else if (fits(dod, 7)) {
+                timeBits.write(0b10, 2);
+                timeBits.write(dod, 7);
+            } else if (fits(dod, 12)) {
+                timeBits.write(0b110, 3);
+                timeBits.write(dod, 12);
+            } else if (fits(dod, 20)) {
+                timeBits.write(0b1110, 4);
+                timeBits.write(dod, 20);
+            } else {
+                timeBits.write(0b1111, 4);
+                timeBits.write(dod, 64);
+            }
+        }
+
+        BitWriter valueBits = new BitWriter();
+        long previous = 0;
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 0; i < n; i++) {
+            long bits = Double.doubleToLongBits(values[i]);
+            if (i == 0) {
+                valueBits.write(bits, 64);
+                previous = bits;
+                continue;
+            }
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                valueBits.write(0, 1);
+                continue;
+            }
+            valueBits.write(1, 1);
+            int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                // Meaningful bits fit in the previous window
+                valueBits.write(0, 1);
+                valueBits.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int significant = 64 - leading - trailing;
+                valueBits.write(1, 1);
+                valueBits.write(leading, 5);
+                valueBits.write(significant - 1, 6);
+                valueBits.write(xor >>> trailing, significant);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        long previousId = 0;
+        for (long id : recordIds) {
+            writeVarint(recordBytes, zigzag(id - previousId));
+            previousId = id;
+        }
+
+        ByteArrayOutputStream flagBytes = new ByteArrayOutputStream();
+        writeVarint(flagBytes, confidential.cardinality());
+        for (int i = confidential.nextSetBit(0), last = 0; i >= 0; last = i, i = confidential.nextSetBit(i + 1)) {
+            writeVarint(flagBytes, i - last);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(FORMAT);
+        writeVarint(out, n);
+        for (byte[] column : new byte[][]{timeBits.toByteArray(), valueBits.toByteArray(),
+                recordBytes.toByteArray(), flagBytes.toByteArray()}) {
+            writeVarint(out, column.length);
+            out.writeBytes(column);
+        }
+        return out.toByteArray();
+    }
+
+    public static VitalChunk decode(byte[] data) {
+        int[] position = {0};
+        if (data.length == 0 || data[position[0]++] != FORMAT) {
+            throw new IllegalArgumentException("Unknown vital chunk format");
+        }
+        int n = (int) readVarint(data, position);
+        long[] times = new long[n];
+        double[] values = new double[n];
+        long[] recordIds = new long[n];
+        BitSet confidential = new BitSet();
+
+        int length = (int) readVarint(data, position);
+        BitReader timeBits = new BitReader(data, position[0]);
+        position[0] += length;
+        long previousDelta = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0) {
+                times[0] = timeBits.read(64);
+                continue;
+            }
+            long dod;
+            if (timeBits.read(1) == 0) {
+                dod = 0;
+            } else if (timeBits.read(1) == 0) {
+                dod = signExtend(timeBits.read(7), 7);
+            } else if (timeBits.read(1) == 0) {
+                dod = signExtend(timeBits.read(12), 12);
+            } else if (timeBits.read(1) == 0) {
+                dod = signExtend(timeBits.read(20), 20);
+            } else {
+                dod = timeBits.read(64);
+            }
+            previousDelta += dod;
+            times[i] = times[i - 1] + previousDelta;
+        }
+
+        length = (int) readVarint(data, position);
+        BitReader valueBits = new BitReader(data, position[0]);
+        position[0] += length;
+        long previous = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0) {
+                previous = valueBits.read(64);
+            } else if (valueBits.read(1) == 1) {
+                if (valueBits.read(1) == 1) {
+                    leading = (int) valueBits.read(5);
+                    int significant = (int) valueBits.read(6) + 1;
+                    trailing = 64 - leading - significant;
+                }
+                previous ^= valueBits.read(64 - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(previous);
+        }
+
+        length = (int) readVarint(data, position);
+        long previousId = 0;
+        for (int i = 0; i < n; i++) {
+            previousId += unzigzag(readVarint(data, position));
+            recordIds[i] = previousId;
+        }
+
+        length = (int) readVarint(data, position);
+        int flagged = (int) readVarint(data, position);
+        for (int i = 0, at = 0; i < flagged; i++) {
+            at += (int) readVarint(data, position);
+            confidential.set(at);
+        }
+        return new VitalChunk(times, values, recordIds, confidential);
+    }
+
+    private static boolean fits(long value, int bits) {
+        long limit = 1L << (bits - 1);
+        return value >= -limit && value < limit;
+    }
+
+    private static long signExtend(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] data, int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static final class BitWriter {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int current;
+        private int used;
+
+        // Low-order bits of value, most significant first
+        void write(long value, int bits) {
+            for (int i = bits - 1; i >= 0; i--) {
+                current = (current << 1) | (int) ((value >>> i) & 1);
+                if (++used == 8) {
+                    out.write(current);
+                    current = 0;
+                    used = 0;
+                }
+            }
+        }
+
+        byte[] toByteArray() {
+            if (used > 0) {
+                out.write(current << (8 - used));
+                current = 0;
+                used = 0;
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] data;
+        private long bitPosition;
+
+        BitReader(byte[] data, int offset) {
+            this.data = data;
+            this.bitPosition = (long) offset * 8;
+        }
+
+        long read(int bits) {
+            long value = 0;
+            for (int i = 0; i < bits; i++, bitPosition++) {
+                int bit = (data[(int) (bitPosition >>> 3)] >>> (7 - (bitPosition & 7))) & 1;
+                value = (value << 1) | bit;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.smarthealth.vitals;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the free-form vital signs JSON of a medical record, for example
+ * {@code {"bp": "120/80", "temp": "98.6", "pulse": "72"}}, into numeric
+ * metrics. Common spellings map to one metric name and blood pressure splits
+ * into systolic and diastolic. Other keys keep a normalized form of their own
+ * name; values without a number in them are skipped, as is unparseable JSON.
+ */
+public final class VitalSignsParser {
+
+    public static final String BP_SYSTOLIC = "bp_systolic";
+    public static final String BP_DIASTOLIC = "bp_diastolic";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(?:\\.\\d+)?");
+    private static final Pattern PRESSURE = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*/\\s*(\\d+(?:\\.\\d+)?)");
+    private static final int MAX_METRIC_LENGTH = 40;
+
+    private static final Map<String, String> ALIASES = Map.ofEntries(
+            Map.entry("bp", "bp"),
+            Map.entry("bloodpressure", "bp"),
+            Map.entry("temp", "temperature"),
+            Map.entry("temperature", "temperature"),
+            Map.entry("pulse", "pulse"),
+            Map.entry("hr", "pulse"),
+            Map.entry("heartrate", "pulse"),
+            Map.entry("spo2", "spo2"),
+            Map.entry("o2sat", "spo2"),
+            Map.entry("oxygensaturation", "spo2"),
+            Map.entry("rr", "respiratory_rate"),
+            Map.entry("resp", "respiratory_rate"),
+            Map.entry("respiratoryrate", "respiratory_rate"),
+            Map.entry("weight", "weight"),
+            Map.entry("height", "height"),
+            Map.entry("bmi", "bmi"),
+            Map.entry("glucose", "glucose"),
+            Map.entry("bloodsugar", "glucose"));
+
+    private VitalSignsParser() {
+    }
+
+    public static Map<String, Double> parse(String json) {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        if (json == null || json.isBlank()) {
+            return metrics;
+        }
+        JsonNode root;
+        try {
+            root = MAPPER.readTree(json);
+        } catch (Exception e) {
+            return metrics;
+        }
+        if (root == null || !root.isObject()) {
+            return metrics;
+        }
+        for (Iterator<Map.Entry<String, JsonNode>> fields = root.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String metric = metricName(field.getKey());
+            String text = field.getValue().isValueNode() ? field.getValue().asText() : null;
+            if (metric == null || text == null) {
+                continue;
+            }
+            if (metric.equals("bp")) {
+                Matcher pressure = PRESSURE.matcher(text);
+                if (pressure.find()) {
+                    metrics.put(BP_SYSTOLIC, Double.parseDouble(pressure.group(1)));
+                    metrics.put(BP_DIASTOLIC, Double.parseDouble(pressure.group(2)));
+                }
+                continue;
+            }
+            Matcher number = NUMBER.matcher(text);
+            if (number.find()) {
+                metrics.put(metric, Double.parseDouble(number.group()));
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Metric names a query may ask for; "bp" stands for both pressures. Null
+     * when the name could not be a metric.
+     */
+    public static String[] queryMetrics(String name) {
+        String metric = metricName(name);
+        if (metric == null) {
+            return null;
+        }
+        return metric.equals("bp") ? new String[]{BP_SYSTOLIC, BP_DIASTOLIC} : new String[]{metric};
+    }
+
+    private static String metricName(String key) {
+        String compact = key.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+        String alias = ALIASES.get(compact);
+        if (alias != null) {
+            return alias;
+        }
+        String normalized = key.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_").replaceAll("^_|_$", "");
+        return normalized.isEmpty() || normalized.length() > MAX_METRIC_LENGTH ? null : normalized;
+    }
+}
@@ -0,0 +1,20 @@
+-- Vital signs extracted from medical records, one compressed chunk per patient, metric and time window
+CREATE TABLE vital_chunks (
+    patient_id          BIGINT           NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    metric              VARCHAR(40)      NOT NULL,
+    chunk_start         DATE             NOT NULL,
+    first_at            TIMESTAMP(6)     NOT NULL,
+    last_at             TIMESTAMP(6)     NOT NULL,
+    point_count         INTEGER          NOT NULL,
+    confidential_count  INTEGER          NOT NULL,
+    min_value           DOUBLE PRECISION NOT NULL,
+    max_value           DOUBLE PRECISION NOT NULL,
+    sum_value           DOUBLE PRECISION NOT NULL,
+    data                BYTEA            NOT NULL,
+    updated_at          TIMESTAMP(6)     NOT NULL,
+    PRIMARY KEY (patient_id, metric, chunk_start)
+);
+
+-- Backfill walks the patients that have vitals recorded
+CREATE INDEX IF NOT EXISTS idx_medical_records_vitals_patient
+    ON medical_records (patient_id) WHERE vital_signs IS NOT NULL;
@@ -0,0 +1,20 @@
+-- Who accessed which patient's data; shipped in batches from each instance's local audit segments.
+-- No foreign keys: the trail must outlive the users it mentions.
+CREATE TABLE audit_events (
+    id                      BIGSERIAL PRIMARY KEY,
+    occurred_at             TIMESTAMP(6) NOT NULL,
+    actor_id                BIGINT NOT NULL,
+    actor_role              VARCHAR(20) NOT NULL,
+    patient_id              BIGINT NOT NULL,
+    action                  VARCHAR(30) NOT NULL,
+    resource                VARCHAR(255) NOT NULL,
+    item_count              INTEGER NOT NULL,
+    -- Position in the writing instance's segment files; makes re-shipping after a crash idempotent
+    node_id                 VARCHAR(36) NOT NULL,
+    segment_no              BIGINT NOT NULL,
+    segment_offset          BIGINT NOT NULL,
+    CONSTRAINT audit_events_position UNIQUE (node_id, segment_no, segment_offset)
+);
+
+CREATE INDEX idx_audit_events_patient ON audit_events (patient_id, occurred_at DESC, id DESC);
+CREATE INDEX idx_audit_events_actor ON audit_events (actor_id, occurred_at DESC, id DESC);
@@ -0,0 +1,15 @@
+-- Files attached to medical records; the bytes live in the content-addressed store under app.attachments.dir
+CREATE TABLE record_attachments (
+    id                      BIGSERIAL PRIMARY KEY,
+    record_id               BIGINT NOT NULL REFERENCES medical_records (id) ON DELETE CASCADE,
+    sha256                  VARCHAR(64) NOT NULL,
+    size_bytes              BIGINT NOT NULL,
+    content_type            VARCHAR(100) NOT NULL,
+    filename                VARCHAR(255) NOT NULL,
+    uploaded_by             BIGINT NOT NULL REFERENCES users (id),
+    created_at              TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX idx_record_attachments_record ON record_attachments (record_id, created_at);
+-- Orphan sweep checks whether any attachment still points at a stored file
+CREATE INDEX idx_record_attachments_sha256 ON record_attachments (sha256);
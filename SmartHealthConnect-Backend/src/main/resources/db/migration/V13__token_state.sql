@@ -0,0 +1,31 @@
+-- Token revocation state added after the baseline. Databases baselined at version 1
+-- may already have some of it from ddl-auto, so every statement uses IF NOT EXISTS.
+ALTER TABLE users ADD COLUMN IF NOT EXISTS token_version INTEGER;
+
+CREATE TABLE IF NOT EXISTS revoked_tokens (
+    jti         VARCHAR(64) PRIMARY KEY,
+    expires_at  TIMESTAMP(6) NOT NULL,
+    revoked_at  TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_expires_at ON revoked_tokens (expires_at);
+
+CREATE TABLE IF NOT EXISTS refresh_tokens (
+    id          BIGSERIAL PRIMARY KEY,
+    user_id     BIGINT NOT NULL REFERENCES users (id),
+    token_hash  VARCHAR(64) NOT NULL,
+    family_id   VARCHAR(36) NOT NULL,
+    expires_at  TIMESTAMP(6) NOT NULL,
+    created_at  TIMESTAMP(6) NOT NULL,
+    used_at     TIMESTAMP(6),
+    revoked     BOOLEAN NOT NULL
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_refresh_tokens_token_hash ON refresh_tokens (token_hash);
+CREATE INDEX IF NOT EXISTS idx_refresh_tokens_family_id ON refresh_tokens (family_id);
+
+-- Refresh tokens are revoked per user
+CREATE INDEX IF NOT EXISTS idx_refresh_tokens_user ON refresh_tokens (user_id);
+
+-- Expired tokens are deleted on a schedule
+CREATE INDEX IF NOT EXISTS idx_refresh_tokens_expires_at ON refresh_tokens (expires_at);
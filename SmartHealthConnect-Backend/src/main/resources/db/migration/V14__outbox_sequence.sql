@@ -0,0 +1,8 @@
+-- Outbox sequence numbers come from a database sequence, so they keep growing after pruning empties the table.
+-- Start past every number already handed out, including positions of consumers whose events were pruned.
+CREATE SEQUENCE IF NOT EXISTS outbox_events_sequence_seq;
+
+SELECT setval('outbox_events_sequence_seq',
+              GREATEST((SELECT COALESCE(MAX(sequence), 0) FROM outbox_events),
+                       (SELECT COALESCE(MAX(last_sequence), 0) FROM outbox_consumers)) + 1,
+              false);
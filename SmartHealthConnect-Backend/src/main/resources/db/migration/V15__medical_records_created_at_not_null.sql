@@ -0,0 +1,5 @@
+-- Record listings page newest first on created_at, which V1 left nullable. Rows without it sorted first
+-- and could not be turned into a cursor, so give them the best time known and require it from now on.
+UPDATE medical_records SET created_at = COALESCE(updated_at, CURRENT_TIMESTAMP) WHERE created_at IS NULL;
+
+ALTER TABLE medical_records ALTER COLUMN created_at SET NOT NULL;
@@ -0,0 +1,2 @@
+-- Instances poll for revocations made elsewhere since their last check
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_revoked_at ON revoked_tokens (revoked_at);
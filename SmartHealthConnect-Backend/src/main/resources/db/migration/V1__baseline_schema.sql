@@ -0,0 +1,98 @@
+-- Baseline schema matching the JPA entities as previously created by ddl-auto.
+-- Databases that already have these tables are baselined at version 1 and skip this script.
+
+CREATE TABLE users (
+    id              BIGSERIAL PRIMARY KEY,
+    username        VARCHAR(50)  NOT NULL,
+    email           VARCHAR(100) NOT NULL,
+    password        VARCHAR(120) NOT NULL,
+    first_name      VARCHAR(50)  NOT NULL,
+    last_name       VARCHAR(50)  NOT NULL,
+    phone_number    VARCHAR(15),
+    role            VARCHAR(20),
+    created_at      TIMESTAMP(6),
+    updated_at      TIMESTAMP(6),
+    is_active       BOOLEAN,
+    email_verified  BOOLEAN,
+    enabled         BOOLEAN,
+    CONSTRAINT uk_users_username UNIQUE (username),
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE departments (
+    id               BIGSERIAL PRIMARY KEY,
+    name             VARCHAR(100) NOT NULL,
+    description      VARCHAR(500),
+    head             VARCHAR(100),
+    location         VARCHAR(200),
+    phone            VARCHAR(20),
+    email            VARCHAR(100),
+    capacity         INTEGER,
+    services         VARCHAR(1000),
+    operating_hours  VARCHAR(100),
+    is_active        BOOLEAN NOT NULL,
+    total_doctors    INTEGER,
+    total_patients   INTEGER,
+    created_at       TIMESTAMP(6) NOT NULL,
+    updated_at       TIMESTAMP(6),
+    CONSTRAINT uk_departments_name UNIQUE (name)
+);
+
+CREATE TABLE doctors (
+    id                BIGSERIAL PRIMARY KEY,
+    first_name        VARCHAR(50)  NOT NULL,
+    last_name         VARCHAR(50)  NOT NULL,
+    email             VARCHAR(100) NOT NULL,
+    phone_number      VARCHAR(20)  NOT NULL,
+    specialization    VARCHAR(100) NOT NULL,
+    department        VARCHAR(100),
+    license_number    VARCHAR(50)  NOT NULL,
+    experience        VARCHAR(50),
+    education         VARCHAR(200),
+    consultation_fee  DOUBLE PRECISION,
+    availability      VARCHAR(255) NOT NULL,
+    bio               VARCHAR(1000),
+    rating            DOUBLE PRECISION,
+    total_patients    INTEGER,
+    is_active         BOOLEAN NOT NULL,
+    created_at        TIMESTAMP(6) NOT NULL,
+    updated_at        TIMESTAMP(6),
+    CONSTRAINT uk_doctors_email UNIQUE (email),
+    CONSTRAINT uk_doctors_license_number UNIQUE (license_number)
+);
+
+CREATE TABLE appointments (
+    id                     BIGSERIAL PRIMARY KEY,
+    patient_id             BIGINT NOT NULL REFERENCES users (id),
+    doctor_id              BIGINT NOT NULL REFERENCES users (id),
+    appointment_date       TIMESTAMP(6) NOT NULL,
+    type                   VARCHAR(255),
+    reason                 VARCHAR(255),
+    notes                  VARCHAR(1000),
+    status                 VARCHAR(255) NOT NULL,
+    duration_minutes       INTEGER,
+    is_video_consultation  BOOLEAN,
+    created_at             TIMESTAMP(6) NOT NULL,
+    updated_at             TIMESTAMP(6)
+);
+
+CREATE TABLE medical_records (
+    id               BIGSERIAL PRIMARY KEY,
+    patient_id       BIGINT NOT NULL REFERENCES users (id),
+    doctor_id        BIGINT NOT NULL REFERENCES users (id),
+    appointment_id   BIGINT REFERENCES appointments (id),
+    title            VARCHAR(100) NOT NULL,
+    type             VARCHAR(30),
+    diagnosis        VARCHAR(2000),
+    symptoms         VARCHAR(2000),
+    treatment        VARCHAR(2000),
+    prescription     VARCHAR(2000),
+    notes            VARCHAR(1000),
+    vital_signs      VARCHAR(500),
+    test_results     VARCHAR(500),
+    allergies        VARCHAR(500),
+    follow_up_date   TIMESTAMP(6),
+    created_at       TIMESTAMP(6),
+    updated_at       TIMESTAMP(6),
+    is_confidential  BOOLEAN
+);
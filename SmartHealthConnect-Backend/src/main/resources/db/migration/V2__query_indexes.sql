@@ -0,0 +1,49 @@
+-- Indexes derived from the predicates and sort orders the repositories actually issue.
+-- IF NOT EXISTS keeps this safe on databases where some were created by hand.
+
+-- Appointments: per-party listings and keyset pages seek on (party, appointment_date, id)
+CREATE INDEX IF NOT EXISTS idx_appointments_doctor_date ON appointments (doctor_id, appointment_date, id);
+CREATE INDEX IF NOT EXISTS idx_appointments_patient_date ON appointments (patient_id, appointment_date, id);
+-- Date-range counts across all doctors (admin dashboard)
+CREATE INDEX IF NOT EXISTS idx_appointments_date ON appointments (appointment_date);
+-- Status counts only ever ask about a handful of statuses; keep the index to the live ones
+CREATE INDEX IF NOT EXISTS idx_appointments_status_active ON appointments (status)
+    WHERE status IN ('SCHEDULED', 'CONFIRMED', 'IN_PROGRESS');
+-- Slot-holding appointments per doctor (conflict index and slot bitmap loads)
+CREATE INDEX IF NOT EXISTS idx_appointments_doctor_holding ON appointments (doctor_id, appointment_date)
+    WHERE status NOT IN ('CANCELLED', 'NO_SHOW');
+
+-- Medical records: listings and keyset pages seek on (party, created_at, id)
+CREATE INDEX IF NOT EXISTS idx_medical_records_patient_created ON medical_records (patient_id, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_medical_records_doctor_created ON medical_records (doctor_id, created_at, id);
+-- Records a doctor may see for a patient
+CREATE INDEX IF NOT EXISTS idx_medical_records_patient_shared ON medical_records (patient_id, created_at)
+    WHERE is_confidential = false;
+
+-- Users: derived IgnoreCase queries compare upper(column)
+CREATE INDEX IF NOT EXISTS idx_users_upper_username ON users (upper(username));
+CREATE INDEX IF NOT EXISTS idx_users_upper_email ON users (upper(email));
+-- Doctor profiles are joined to login accounts on lower(email)
+CREATE INDEX IF NOT EXISTS idx_users_lower_email ON users (lower(email));
+-- Active users of a role in id order (patient listing keyset)
+CREATE INDEX IF NOT EXISTS idx_users_role_active ON users (role, id) WHERE is_active = true;
+
+-- Doctors: @Query filters use LOWER(...), derived IgnoreCase methods use upper(...)
+CREATE INDEX IF NOT EXISTS idx_doctors_lower_specialization ON doctors (lower(specialization)) WHERE is_active = true;
+CREATE INDEX IF NOT EXISTS idx_doctors_lower_department ON doctors (lower(department)) WHERE is_active = true;
+CREATE INDEX IF NOT EXISTS idx_doctors_upper_specialization ON doctors (upper(specialization));
+CREATE INDEX IF NOT EXISTS idx_doctors_upper_department ON doctors (upper(department));
+CREATE INDEX IF NOT EXISTS idx_doctors_lower_email ON doctors (lower(email));
+CREATE INDEX IF NOT EXISTS idx_doctors_rating_active ON doctors (rating DESC) WHERE is_active = true;
+
+-- Departments: name lookups are case-insensitive
+CREATE INDEX IF NOT EXISTS idx_departments_upper_name ON departments (upper(name));
+CREATE INDEX IF NOT EXISTS idx_departments_upper_head ON departments (upper(head)) WHERE is_active = true;
+
+-- Substring searches (LOWER(x) LIKE '%term%') can only use trigram indexes
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_users_search_trgm ON users
+    USING gin (lower(first_name) gin_trgm_ops, lower(last_name) gin_trgm_ops, lower(username) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_doctors_search_trgm ON doctors
+    USING gin (lower(first_name) gin_trgm_ops, lower(last_name) gin_trgm_ops,
+               lower(specialization) gin_trgm_ops, lower(department) gin_trgm_ops);
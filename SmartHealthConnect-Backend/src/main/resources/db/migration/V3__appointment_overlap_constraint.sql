@@ -0,0 +1,19 @@
+-- No two slot-holding appointments of the same doctor may overlap.
+-- Backstop for the per-doctor booking locks; fails if overlapping rows already exist,
+-- so resolve those (e.g. cancel the later booking) before upgrading.
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+DO $$
+BEGIN
+    -- May already exist on databases where database-fix.sql added it by hand
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'appointments_no_overlap') THEN
+        ALTER TABLE appointments
+            ADD CONSTRAINT appointments_no_overlap
+            EXCLUDE USING gist (
+                doctor_id WITH =,
+                tsrange(appointment_date,
+                        appointment_date + make_interval(mins => COALESCE(duration_minutes, 30))) WITH &&
+            )
+            WHERE (status NOT IN ('CANCELLED', 'NO_SHOW'));
+    END IF;
+END $$;
@@ -0,0 +1,2 @@
+-- Optimistic locking for appointments; existing rows start at version 0
+ALTER TABLE appointments ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,16 @@
+-- Persistent notification store (appointment reminders and other user messages)
+CREATE TABLE notifications (
+    id              BIGSERIAL PRIMARY KEY,
+    user_id         BIGINT NOT NULL REFERENCES users (id),
+    type            VARCHAR(30) NOT NULL,
+    message         VARCHAR(500) NOT NULL,
+    appointment_id  BIGINT REFERENCES appointments (id) ON DELETE CASCADE,
+    offset_minutes  INTEGER,
+    created_at      TIMESTAMP(6) NOT NULL,
+    read_at         TIMESTAMP(6)
+);
+
+CREATE INDEX idx_notifications_user_created ON notifications (user_id, created_at);
+-- One reminder per appointment, recipient and offset, however often the scheduler retries
+CREATE UNIQUE INDEX uk_notifications_reminder ON notifications (appointment_id, user_id, offset_minutes)
+    WHERE appointment_id IS NOT NULL;
@@ -0,0 +1,22 @@
+-- Transactional outbox: change events written in the same transaction as the rows they describe
+CREATE TABLE outbox_events (
+    id              BIGSERIAL PRIMARY KEY,
+    aggregate_type  VARCHAR(40) NOT NULL,
+    aggregate_id    BIGINT NOT NULL,
+    event_type      VARCHAR(60) NOT NULL,
+    payload         JSONB NOT NULL,
+    created_at      TIMESTAMP(6) NOT NULL,
+    -- Assigned by the relay in commit order; consumers and the /events feed only see sequenced rows
+    sequence        BIGINT UNIQUE
+);
+
+CREATE INDEX idx_outbox_events_unsequenced ON outbox_events (id) WHERE sequence IS NULL;
+
+-- Delivery position of each outbox consumer
+CREATE TABLE outbox_consumers (
+    name           VARCHAR(255) PRIMARY KEY,
+    last_sequence  BIGINT NOT NULL DEFAULT 0,
+    failures       INTEGER NOT NULL DEFAULT 0,
+    last_error     VARCHAR(500),
+    updated_at     TIMESTAMP(6) NOT NULL
+);
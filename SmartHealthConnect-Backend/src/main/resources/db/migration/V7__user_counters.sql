@@ -0,0 +1,41 @@
+-- Per-user appointment and record counters, maintained in the writing transaction.
+-- A user is only ever the patient or the doctor of an appointment, so one row covers both sides.
+CREATE TABLE user_counters (
+    user_id                   BIGINT PRIMARY KEY REFERENCES users (id) ON DELETE CASCADE,
+    appointments_total        BIGINT NOT NULL DEFAULT 0,
+    appointments_scheduled    BIGINT NOT NULL DEFAULT 0,
+    appointments_confirmed    BIGINT NOT NULL DEFAULT 0,
+    appointments_in_progress  BIGINT NOT NULL DEFAULT 0,
+    appointments_completed    BIGINT NOT NULL DEFAULT 0,
+    appointments_cancelled    BIGINT NOT NULL DEFAULT 0,
+    appointments_no_show      BIGINT NOT NULL DEFAULT 0,
+    records_total             BIGINT NOT NULL DEFAULT 0,
+    updated_at                TIMESTAMP(6) NOT NULL
+);
+
+-- Backfill from existing history
+INSERT INTO user_counters (user_id, appointments_total, appointments_scheduled, appointments_confirmed,
+                           appointments_in_progress, appointments_completed, appointments_cancelled,
+                           appointments_no_show, records_total, updated_at)
+SELECT u.id,
+       COALESCE(a.total, 0), COALESCE(a.scheduled, 0), COALESCE(a.confirmed, 0), COALESCE(a.in_progress, 0),
+       COALESCE(a.completed, 0), COALESCE(a.cancelled, 0), COALESCE(a.no_show, 0), COALESCE(r.total, 0),
+       now()
+  FROM users u
+  LEFT JOIN (SELECT user_id,
+                    count(*) AS total,
+                    count(*) FILTER (WHERE status = 'SCHEDULED') AS scheduled,
+                    count(*) FILTER (WHERE status = 'CONFIRMED') AS confirmed,
+                    count(*) FILTER (WHERE status = 'IN_PROGRESS') AS in_progress,
+                    count(*) FILTER (WHERE status = 'COMPLETED') AS completed,
+                    count(*) FILTER (WHERE status = 'CANCELLED') AS cancelled,
+                    count(*) FILTER (WHERE status = 'NO_SHOW') AS no_show
+               FROM (SELECT patient_id AS user_id, status FROM appointments
+                     UNION ALL
+                     SELECT doctor_id, status FROM appointments) sides
+              GROUP BY user_id) a ON a.user_id = u.id
+  LEFT JOIN (SELECT user_id, count(*) AS total
+               FROM (SELECT patient_id AS user_id FROM medical_records
+                     UNION ALL
+                     SELECT doctor_id FROM medical_records) sides
+              GROUP BY user_id) r ON r.user_id = u.id;
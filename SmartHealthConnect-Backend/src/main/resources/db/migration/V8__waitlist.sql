@@ -0,0 +1,29 @@
+-- Cancellation waitlist; a patient waits either for one doctor or for any doctor of a specialization
+CREATE TABLE waitlist_entries (
+    id                      BIGSERIAL PRIMARY KEY,
+    patient_id              BIGINT NOT NULL REFERENCES users (id),
+    doctor_id               BIGINT REFERENCES users (id),
+    specialization          VARCHAR(100),
+    earliest                TIMESTAMP(6) NOT NULL,
+    latest                  TIMESTAMP(6) NOT NULL,
+    duration_minutes        INTEGER NOT NULL,
+    urgency                 VARCHAR(20) NOT NULL,
+    type                    VARCHAR(255),
+    reason                  VARCHAR(255),
+    status                  VARCHAR(20) NOT NULL,
+    -- Slot currently held for this patient while status is OFFERED
+    offer_doctor_id         BIGINT REFERENCES users (id),
+    offer_start             TIMESTAMP(6),
+    offer_duration_minutes  INTEGER,
+    offer_expires_at        TIMESTAMP(6),
+    appointment_id          BIGINT REFERENCES appointments (id) ON DELETE SET NULL,
+    created_at              TIMESTAMP(6) NOT NULL,
+    updated_at              TIMESTAMP(6),
+    CONSTRAINT waitlist_entries_target CHECK ((doctor_id IS NULL) <> (specialization IS NULL))
+);
+
+-- Startup reload and expiry sweep only touch live entries
+CREATE INDEX idx_waitlist_entries_live ON waitlist_entries (status) WHERE status IN ('WAITING', 'OFFERED');
+CREATE INDEX idx_waitlist_entries_patient ON waitlist_entries (patient_id, created_at);
+-- Hold check on every booking
+CREATE INDEX idx_waitlist_entries_holds ON waitlist_entries (offer_doctor_id, offer_start) WHERE status = 'OFFERED';
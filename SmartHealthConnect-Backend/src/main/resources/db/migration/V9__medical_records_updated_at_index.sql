@@ -0,0 +1,2 @@
+-- The record search index re-reads records changed since its last flush on startup
+CREATE INDEX IF NOT EXISTS idx_medical_records_updated_at ON medical_records (updated_at);
@@ -0,0 +1,92 @@
+package com.smarthealth;
+
+import com.smarthealth.entity.User;
+import com.smarthealth.repository.UserRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Base for tests that need the real schema: the application context runs
+ * against a Postgres container shared by all test classes, migrated by
+ * Flyway on startup. Tests are skipped when Docker is not available, unless
+ * {@code -Dtest.db.url=jdbc:postgresql://...} points them at an existing,
+ * empty database ({@code test.db.username} / {@code test.db.password}
+ * default to postgres and an empty password). A {@code MockMvc} is available
+ * for tests that go through the web layer.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public abstract class PostgresIntegrationTest {
+
+    private static final String EXTERNAL_URL = System.getProperty("test.db.url");
+
+    private static PostgreSQLContainer<?> postgres;
+
+    @Autowired
+    protected UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate lockProbe;
+
+    @BeforeAll
+    static void startDatabase() {
+        if (EXTERNAL_URL != null) {
+            return;
+        }
+        assumeTrue(DockerClientFactory.instance().isDockerAvailable(), "Docker is not available");
+        synchronized (PostgresIntegrationTest.class) {
+            if (postgres == null) {
+                postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+                postgres.start();
+            }
+        }
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        if (EXTERNAL_URL != null) {
+            registry.add("spring.datasource.url", () -> EXTERNAL_URL);
+            registry.add("spring.datasource.username", () -> System.getProperty("test.db.username", "postgres"));
+            registry.add("spring.datasource.password", () -> System.getProperty("test.db.password", ""));
+        } else {
+            registry.add("spring.datasource.url", () -> postgres.getJdbcUrl());
+            registry.add("spring.datasource.username", () -> postgres.getUsername());
+            registry.add("spring.datasource.password", () -> postgres.getPassword());
+        }
+    }
+
+    // A new active user with a unique username and email
+    protected User createUser(User.Role role) {
+        String name = role.name().toLowerCase() + "-" + UUID.randomUUID().toString().substring(0, 12);
+        return userRepository.save(new User(name, name + "@example.com", "x", "Test", name, role));
+    }
+
+    // Blocks until some session of this database is waiting for a lock
+    protected void awaitLockWait() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            Integer waiting = lockProbe.queryForObject(
+                    "SELECT count(*) FROM pg_stat_activity WHERE datname = current_database() AND wait_event_type = 'Lock'",
+                    Integer.class);
+            if (waiting != null && waiting > 0) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("no session ever waited for a lock");
+    }
+}
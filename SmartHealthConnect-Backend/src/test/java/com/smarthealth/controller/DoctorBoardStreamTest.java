@@ -0,0 +1,82 @@
+package com.smarthealth.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smarthealth.PostgresIntegrationTest;
+import com.smarthealth.entity.User;
+import com.smarthealth.security.JwtUtils;
+import com.smarthealth.security.UserPrincipal;
+import com.smarthealth.service.DoctorBoardService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class DoctorBoardStreamTest extends PostgresIntegrationTest {
+
+    private static final String STREAM = "/appointments/doctor/today/stream";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private DoctorBoardService doctorBoardService;
+
+    @Test
+    void streamOpensWithAStreamTokenInTheUrl() throws Exception {
+        User doctor = createUser(User.Role.DOCTOR);
+        String body = mockMvc.perform(post(STREAM + "-token")
+                        .header("Authorization", "Bearer " + jwtUtils.generateTokenForUser(doctor)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String streamToken = new ObjectMapper().readTree(body).path("token").asText();
+
+        MvcResult stream = mockMvc.perform(get(STREAM).param("token", streamToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitSnapshots(stream, 1);
+
+        // Open boards are handed the new day's snapshot at midnight
+        doctorBoardService.rollover();
+        awaitSnapshots(stream, 2);
+    }
+
+    @Test
+    void tokensOnlyWorkWhereTheyAreMeantFor() throws Exception {
+        User doctor = createUser(User.Role.DOCTOR);
+        String accessToken = jwtUtils.generateTokenForUser(doctor);
+        String streamToken = jwtUtils.generateStreamToken(UserPrincipal.from(doctor));
+
+        // Access tokens never go in a URL
+        mockMvc.perform(get(STREAM).param("token", accessToken))
+                .andExpect(status().isUnauthorized());
+        // A stream token opens nothing else
+        mockMvc.perform(get("/appointments/doctor/today").header("Authorization", "Bearer " + streamToken))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/appointments/doctor/today").param("token", streamToken))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private static void awaitSnapshots(MvcResult stream, int count) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            String content = stream.getResponse().getContentAsString();
+            if (content.split("event:snapshot", -1).length - 1 >= count) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        assertThat(stream.getResponse().getContentAsString().split("event:snapshot", -1).length - 1)
+                .as("snapshots sent").isGreaterThanOrEqualTo(count);
+    }
+}
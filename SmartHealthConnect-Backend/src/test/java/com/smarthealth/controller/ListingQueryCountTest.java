@@ -0,0 +1,182 @@
+package com.smarthealth.controller;
+
+import com.smarthealth.PostgresIntegrationTest;
+import com.smarthealth.entity.Appointment;
+import com.smarthealth.entity.MedicalRecord;
+import com.smarthealth.entity.User;
+import com.smarthealth.repository.AppointmentRepository;
+import com.smarthealth.repository.MedicalRecordRepository;
+import com.smarthealth.security.JwtUtils;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts the SQL statements Hibernate prepares for each listing endpoint,
+ * with few and with many rows whose parties are all different users. Any
+ * lazy load per row (an N+1) makes the second count larger and fails the test.
+ */
+class ListingQueryCountTest extends PostgresIntegrationTest {
+
+    private static final int FEW = 2;
+    private static final int MANY = 10;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private MedicalRecordRepository medicalRecordRepository;
+
+    private Statistics statistics;
+
+    // Keeps one doctor's seeded appointments from overlapping
+    private final AtomicInteger slots = new AtomicInteger();
+
+    @BeforeEach
+    void enableStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    void patientAppointments() throws Exception {
+        User patient = createUser(User.Role.PATIENT);
+        assertStatementsIndependentOfRows(patient, "/appointments/patient",
+                () -> appointment(patient, createUser(User.Role.DOCTOR), nextFutureSlot()));
+    }
+
+    @Test
+    void patientAppointmentPage() throws Exception {
+        User patient = createUser(User.Role.PATIENT);
+        assertStatementsIndependentOfRows(patient, "/appointments/patient?limit=50",
+                () -> appointment(patient, createUser(User.Role.DOCTOR), nextFutureSlot()));
+    }
+
+    @Test
+    void doctorAppointments() throws Exception {
+        User doctor = createUser(User.Role.DOCTOR);
+        assertStatementsIndependentOfRows(doctor, "/appointments/doctor",
+                () -> appointment(createUser(User.Role.PATIENT), doctor, nextFutureSlot()));
+    }
+
+    @Test
+    void doctorTodayAppointments() throws Exception {
+        User doctor = createUser(User.Role.DOCTOR);
+        LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
+        AtomicInteger slot = new AtomicInteger();
+        assertStatementsIndependentOfRows(doctor, "/appointments/doctor/today",
+                () -> appointment(createUser(User.Role.PATIENT), doctor, startOfDay.plusMinutes(30L * slot.getAndIncrement())));
+    }
+
+    @Test
+    void upcomingAppointments() throws Exception {
+        User patient = createUser(User.Role.PATIENT);
+        assertStatementsIndependentOfRows(patient, "/appointments/upcoming",
+                () -> appointment(patient, createUser(User.Role.DOCTOR), nextFutureSlot()));
+    }
+
+    @Test
+    void patientRecords() throws Exception {
+        User patient = createUser(User.Role.PATIENT);
+        assertStatementsIndependentOfRows(patient, "/medical-records/patient",
+                () -> record(patient, createUser(User.Role.DOCTOR)));
+    }
+
+    @Test
+    void doctorRecords() throws Exception {
+        User doctor = createUser(User.Role.DOCTOR);
+        assertStatementsIndependentOfRows(doctor, "/medical-records/doctor",
+                () -> record(createUser(User.Role.PATIENT), doctor));
+    }
+
+    @Test
+    void patientRecordsSeenByDoctor() throws Exception {
+        User doctor = createUser(User.Role.DOCTOR);
+        User patient = createUser(User.Role.PATIENT);
+        assertStatementsIndependentOfRows(doctor, "/medical-records/patient/" + patient.getId(),
+                () -> record(patient, createUser(User.Role.DOCTOR)));
+    }
+
+    @Test
+    void patientDashboard() throws Exception {
+        User patient = createUser(User.Role.PATIENT);
+        assertStatementsIndependentOfRows(patient, "/dashboard/patient", () -> {
+            User doctor = createUser(User.Role.DOCTOR);
+            appointment(patient, doctor, nextFutureSlot());
+            record(patient, doctor);
+        });
+    }
+
+    @Test
+    void doctorDashboard() throws Exception {
+        User doctor = createUser(User.Role.DOCTOR);
+        assertStatementsIndependentOfRows(doctor, "/dashboard/doctor",
+                () -> appointment(createUser(User.Role.PATIENT), doctor, nextFutureSlot()));
+    }
+
+    @Test
+    void patients() throws Exception {
+        User doctor = createUser(User.Role.DOCTOR);
+        assertStatementsIndependentOfRows(doctor, "/users/patients", () -> createUser(User.Role.PATIENT));
+    }
+
+    private void assertStatementsIndependentOfRows(User viewer, String path, Runnable addRow) throws Exception {
+        String token = jwtUtils.generateTokenForUser(viewer);
+        // Warm-up: per-user caches such as the token version are filled on the first request
+        statements(token, path);
+
+        for (int i = 0; i < FEW; i++) {
+            addRow.run();
+        }
+        long few = statements(token, path);
+        for (int i = FEW; i < MANY; i++) {
+            addRow.run();
+        }
+        long many = statements(token, path);
+
+        assertThat(many)
+                .as("statements for %s with %d rows (%d with %d rows)", path, MANY, few, FEW)
+                .isEqualTo(few);
+    }
+
+    private long statements(String token, String path) throws Exception {
+        statistics.clear();
+        mockMvc.perform(get(path).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private LocalDateTime nextFutureSlot() {
+        return LocalDateTime.now().plusDays(60).truncatedTo(ChronoUnit.DAYS).plusMinutes(30L * slots.getAndIncrement());
+    }
+
+    private void appointment(User patient, User doctor, LocalDateTime at) {
+        appointmentRepository.save(new Appointment(patient, doctor, at, "CONSULTATION", "query count"));
+    }
+
+    private void record(User patient, User doctor) {
+        medicalRecordRepository.save(new MedicalRecord(patient, doctor, "Checkup", MedicalRecord.RecordType.CONSULTATION));
+    }
+}
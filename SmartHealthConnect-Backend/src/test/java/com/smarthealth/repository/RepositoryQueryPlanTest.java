@@ -0,0 +1,391 @@
+package com.smarthealth.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smarthealth.PostgresIntegrationTest;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs EXPLAIN on the SQL behind every {@code @Query} repository method
+ * against tables seeded to production-like sizes, and fails when a plan
+ * reads one of the large tables with a sequential scan. Each method is
+ * invoked in a rolled-back transaction with representative arguments; the
+ * statements it issues are captured at the JDBC layer together with their
+ * bound parameters and explained with the same values.
+ */
+@Import(RepositoryQueryPlanTest.RecordingDataSourceConfiguration.class)
+class RepositoryQueryPlanTest extends PostgresIntegrationTest {
+
+    // Tables that grow with usage; doctors and departments are small reference tables
+    private static final Set<String> LARGE_TABLES = Set.of(
+            "users", "appointments", "medical_records", "notifications", "waitlist_entries",
+            "refresh_tokens", "revoked_tokens", "record_attachments");
+
+    // Queries that read most of a large table by design, where a scan is the cheapest plan
+    private static final Map<String, String> ACCEPTED_SCANS = Map.of(
+            "UserRepository.findActiveUsersByRole", "unpaged listing of every active user of a role");
+
+    private static final int PATIENTS = 18_000;
+    private static final int DOCTORS = 2_000;
+    private static final int ROWS = 100_000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS);
+    private long patientId;
+    private long doctorId;
+    private long recordId;
+    private long appointmentId;
+
+    @TestFactory
+    Stream<DynamicTest> queriesAvoidSequentialScansOfLargeTables() {
+        seed();
+
+        Repositories repositories = new Repositories(applicationContext);
+        List<DynamicTest> tests = new ArrayList<>();
+        for (Class<?> domainType : repositories) {
+            Class<?> repositoryInterface = repositories.getRequiredRepositoryInformation(domainType).getRepositoryInterface();
+            Object repository = repositories.getRepositoryFor(domainType).orElseThrow();
+            Arrays.stream(repositoryInterface.getDeclaredMethods())
+                    .filter(method -> method.isAnnotationPresent(Query.class))
+                    .sorted(Comparator.comparing(Method::getName))
+                    .forEach(method -> {
+                        String name = repositoryInterface.getSimpleName() + "." + method.getName();
+                        tests.add(DynamicTest.dynamicTest(name, () -> assertNoSequentialScans(name, repository, method)));
+                    });
+        }
+        return tests.stream();
+    }
+
+    private void assertNoSequentialScans(String name, Object repository, Method method) throws Exception {
+        List<RecordedStatement> statements = record(repository, method);
+        assertThat(statements).as("statements issued by %s", name).isNotEmpty();
+        if (ACCEPTED_SCANS.containsKey(name)) {
+            return;
+        }
+
+        for (RecordedStatement statement : statements) {
+            JsonNode plan = explain(statement);
+            List<String> scanned = new ArrayList<>();
+            collectSequentialScans(plan, scanned);
+            assertThat(scanned)
+                    .as("sequential scans of large tables in%n%s%nplan:%n%s", statement.sql(), plan.toPrettyString())
+                    .isEmpty();
+        }
+    }
+
+    // Invokes the method in a transaction that is always rolled back, capturing what it sends to the database
+    private List<RecordedStatement> record(Object repository, Method method) {
+        Object[] arguments = Arrays.stream(method.getParameters()).map(this::argument).toArray();
+        List<RecordedStatement> statements = new ArrayList<>();
+        RecordingDataSourceConfiguration.RECORDING.set(statements);
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                status.setRollbackOnly();
+                try {
+                    method.invoke(repository, arguments);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                } catch (InvocationTargetException e) {
+                    throw new IllegalStateException(method.getName() + " failed", e.getCause());
+                }
+            });
+        } finally {
+            RecordingDataSourceConfiguration.RECORDING.remove();
+        }
+        return statements;
+    }
+
+    private JsonNode explain(RecordedStatement statement) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement explain = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + statement.sql())) {
+            for (Binding binding : statement.bindings()) {
+                binding.method().invoke(explain, binding.arguments());
+            }
+            try (ResultSet result = explain.executeQuery()) {
+                result.next();
+                return MAPPER.readTree(result.getString(1)).get(0).get("Plan");
+            }
+        }
+    }
+
+    private static void collectSequentialScans(JsonNode node, List<String> scanned) {
+        if ("Seq Scan".equals(node.path("Node Type").asText())
+                && LARGE_TABLES.contains(node.path("Relation Name").asText())) {
+            scanned.add(node.path("Relation Name").asText());
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectSequentialScans(child, scanned);
+        }
+    }
+
+    // Representative values: the ids belong to seeded rows, times fall inside the seeded range
+    private Object argument(Parameter parameter) {
+        Param param = parameter.getAnnotation(Param.class);
+        String name = param != null ? param.value() : parameter.getName();
+        Class<?> type = parameter.getType();
+
+        if (type == Long.class || type == long.class) {
+            return switch (name) {
+                case "doctorId" -> doctorId;
+                case "recordId" -> recordId;
+                case "appointmentId" -> appointmentId;
+                case "excludeId" -> 0L;
+                default -> patientId;
+            };
+        }
+        if (type == LocalDateTime.class) {
+            return switch (name) {
+                case "endDate" -> base.plusDays(1);
+                case "endTime" -> base.plusMinutes(30);
+                case "expiresAt" -> base.plusHours(1);
+                default -> base;
+            };
+        }
+        if (type == String.class) {
+            return "smith";
+        }
+        if (type == Integer.class || type == int.class) {
+            return 30;
+        }
+        if (type == Double.class) {
+            return 4.0;
+        }
+        if (type == Boolean.class) {
+            return Boolean.TRUE;
+        }
+        if (type.isEnum()) {
+            return type.getEnumConstants()[0];
+        }
+        if (type == Pageable.class) {
+            return PageRequest.of(0, 20);
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            Class<?> element = (Class<?>) ((ParameterizedType) parameter.getParameterizedType()).getActualTypeArguments()[0];
+            if (element.isEnum()) {
+                return List.of(element.getEnumConstants()[0], element.getEnumConstants()[1]);
+            }
+            return List.of(recordId, recordId + 1);
+        }
+        throw new IllegalArgumentException("No sample value for " + parameter + " of " + parameter.getDeclaringExecutable());
+    }
+
+    private void seed() {
+        String prefix = "plan-" + UUID.randomUUID().toString().substring(0, 8) + "-";
+        String like = prefix + "%";
+
+        seed("INSERT INTO users (username, email, password, first_name, last_name, role, " +
+                "created_at, is_active, email_verified, enabled, token_version) " +
+                "SELECT ? || g, ? || g || '@example.com', 'x', 'First' || g, 'Last' || g, " +
+                "CASE WHEN g % 10 = 0 THEN 'DOCTOR' ELSE 'PATIENT' END, :base, g % 50 <> 0, true, true, 0 " +
+                "FROM generate_series(1, ?) g", prefix, prefix, PATIENTS + DOCTORS);
+        seed("INSERT INTO doctors (first_name, last_name, email, phone_number, specialization, department, " +
+                "license_number, availability, rating, total_patients, is_active, created_at) " +
+                "SELECT 'First' || g, 'Last' || g, ? || g || '@example.com', '555', 'Specialization' || (g % 20), " +
+                "'Department' || (g % 10), ? || g, 'AVAILABLE', g % 5, g, true, :base " +
+                "FROM generate_series(10, 2000, 10) g", prefix, prefix);
+
+        // Id arrays of the seeded parties, shared by the inserts below
+        String parties = "WITH p AS (SELECT array_agg(id ORDER BY id) ids FROM users WHERE username LIKE ? AND role = 'PATIENT'), " +
+                "d AS (SELECT array_agg(id ORDER BY id) ids FROM users WHERE username LIKE ? AND role = 'DOCTOR') ";
+
+        // One appointment per doctor per week, from 300 days back to 50 days ahead
+        seed(parties + "INSERT INTO appointments (patient_id, doctor_id, appointment_date, type, reason, " +
+                "status, duration_minutes, is_video_consultation, created_at) " +
+                "SELECT p.ids[1 + g % ?], d.ids[1 + g % ?], a.at, 'CONSULTATION', 'seed', " +
+                "CASE WHEN a.at >= :base THEN (CASE WHEN g % 2 = 0 THEN 'SCHEDULED' ELSE 'CONFIRMED' END) " +
+                "WHEN g % 10 = 0 THEN 'CANCELLED' WHEN g % 10 = 1 THEN 'NO_SHOW' ELSE 'COMPLETED' END, " +
+                "30, false, a.at - interval '7 days' " +
+                "FROM p, d, generate_series(0, ? - 1) g, " +
+                "LATERAL (SELECT :base - interval '300 days' + make_interval(days => 7 * (g / ?), hours => 9)) a(at)",
+                like, like, PATIENTS, DOCTORS, ROWS, DOCTORS);
+        seed(parties + "INSERT INTO medical_records (patient_id, doctor_id, title, type, diagnosis, symptoms, " +
+                "created_at, updated_at, is_confidential) " +
+                "SELECT p.ids[1 + g % ?], d.ids[1 + (g * 7) % ?], 'Record ' || g, 'CONSULTATION', md5(g::text), 'seed', " +
+                ":base - make_interval(mins => g * 5), :base - make_interval(mins => g * 5), g % 5 = 0 " +
+                "FROM p, d, generate_series(0, ? - 1) g",
+                like, like, PATIENTS, DOCTORS, ROWS);
+        seed(parties + "INSERT INTO notifications (user_id, type, message, created_at, read_at) " +
+                "SELECT p.ids[1 + g % ?], 'INFO', 'seed', :base - make_interval(mins => g * 5), " +
+                "CASE WHEN g % 4 = 0 THEN NULL ELSE :base - make_interval(mins => g * 5) END " +
+                "FROM p, d, generate_series(0, ? - 1) g",
+                like, like, PATIENTS, ROWS);
+        // Mostly settled entries; the few held offers expire far beyond anything the running schedulers look at
+        seed(parties + "INSERT INTO waitlist_entries (patient_id, doctor_id, earliest, latest, duration_minutes, " +
+                "urgency, status, offer_doctor_id, offer_start, offer_duration_minutes, offer_expires_at, created_at) " +
+                "SELECT p.ids[1 + g % ?], d.ids[1 + g % ?], :base - interval '30 days', :base + interval '30 days', 30, 'NORMAL', " +
+                "CASE WHEN g % 100 = 0 THEN 'OFFERED' WHEN g % 2 = 0 THEN 'BOOKED' ELSE 'CANCELLED' END, " +
+                "CASE WHEN g % 100 = 0 THEN d.ids[1 + g % ?] END, " +
+                "CASE WHEN g % 100 = 0 THEN :base + interval '3650 days' + make_interval(hours => g) END, " +
+                "CASE WHEN g % 100 = 0 THEN 30 END, " +
+                "CASE WHEN g % 100 = 0 THEN :base + interval '3650 days' END, " +
+                ":base - make_interval(mins => g * 5) " +
+                "FROM p, d, generate_series(0, ? / 5 - 1) g",
+                like, like, PATIENTS, DOCTORS, DOCTORS, ROWS);
+        // Expiry sweeps run often, so only an hour's worth of tokens has expired; the same holds for revocations
+        seed(parties + "INSERT INTO refresh_tokens (user_id, token_hash, family_id, expires_at, created_at, used_at, revoked) " +
+                "SELECT p.ids[1 + g % ?], md5('refresh' || ? || g), left(md5('family' || ? || g / 4), 36), " +
+                ":base - interval '1 hour' + make_interval(mins => g), :base - make_interval(mins => g * 5), " +
+                "CASE WHEN g % 4 <> 3 THEN :base - make_interval(mins => g * 5) END, g % 8 = 0 " +
+                "FROM p, d, generate_series(0, ? / 2 - 1) g",
+                like, like, PATIENTS, prefix, prefix, ROWS);
+        seed("INSERT INTO revoked_tokens (jti, expires_at, revoked_at) " +
+                "SELECT md5('revoked' || ? || g), :base - interval '1 hour' + make_interval(mins => g), " +
+                ":base - make_interval(mins => g) " +
+                "FROM generate_series(0, ? / 5 - 1) g",
+                prefix, ROWS);
+        seed(parties + ", r AS (SELECT array_agg(id ORDER BY id) ids FROM medical_records " +
+                "WHERE patient_id = ANY ((SELECT ids FROM p)::bigint[])) " +
+                "INSERT INTO record_attachments (record_id, sha256, size_bytes, content_type, filename, uploaded_by, created_at) " +
+                "SELECT r.ids[1 + g % cardinality(r.ids)], md5('a' || ? || g) || md5('b' || ? || g), 1024, " +
+                "'application/pdf', 'seed.pdf', d.ids[1 + g % ?], :base - make_interval(mins => g * 5) " +
+                "FROM p, d, r, generate_series(0, ? / 2 - 1) g",
+                like, like, prefix, prefix, DOCTORS, ROWS);
+
+        for (String table : LARGE_TABLES) {
+            jdbcTemplate.execute("VACUUM ANALYZE " + table);
+        }
+        jdbcTemplate.execute("ANALYZE doctors");
+
+        patientId = jdbcTemplate.queryForObject("SELECT min(id) FROM users WHERE username LIKE ? AND role = 'PATIENT'", Long.class, like);
+        doctorId = jdbcTemplate.queryForObject("SELECT min(id) FROM users WHERE username LIKE ? AND role = 'DOCTOR'", Long.class, like);
+        recordId = jdbcTemplate.queryForObject("SELECT min(id) FROM medical_records WHERE patient_id = ?", Long.class, patientId);
+        appointmentId = jdbcTemplate.queryForObject("SELECT min(id) FROM appointments WHERE doctor_id = ?", Long.class, doctorId);
+    }
+
+    // :base stands for the start of today as a timestamp literal
+    private void seed(String sql, Object... args) {
+        jdbcTemplate.update(sql.replace(":base", "TIMESTAMP '" + base + "'"), args);
+    }
+
+    record Binding(Method method, Object[] arguments) {
+    }
+
+    record RecordedStatement(String sql, List<Binding> bindings) {
+    }
+
+    /**
+     * Wraps the application's data source so that connections taken while
+     * {@link #RECORDING} is set report every executed prepared statement and
+     * its parameters. Connections taken at any other time are not wrapped.
+     */
+    @TestConfiguration
+    static class RecordingDataSourceConfiguration {
+
+        static final ThreadLocal<List<RecordedStatement>> RECORDING = new ThreadLocal<>();
+
+        private static final Set<String> EXECUTE_METHODS = Set.of(
+                "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "addBatch");
+
+        @Bean
+        static BeanPostProcessor recordingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? recording(dataSource) : bean;
+                }
+            };
+        }
+
+        private static DataSource recording(DataSource target) {
+            return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                    new Class<?>[] {DataSource.class, Closeable.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("close")) {
+                            if (target instanceof Closeable closeable) {
+                                closeable.close();
+                            }
+                            return null;
+                        }
+                        Object result = invoke(target, method, args);
+                        List<RecordedStatement> statements = RECORDING.get();
+                        return statements != null && result instanceof Connection connection
+                                ? recording(connection, statements) : result;
+                    });
+        }
+
+        private static Connection recording(Connection target, List<RecordedStatement> statements) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                        Object result = invoke(target, method, args);
+                        return method.getName().equals("prepareStatement")
+                                ? recording((PreparedStatement) result, (String) args[0], statements) : result;
+                    });
+        }
+
+        private static PreparedStatement recording(PreparedStatement target, String sql, List<RecordedStatement> statements) {
+            Map<Integer, Binding> bindings = new TreeMap<>();
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                            bindings.put(index, new Binding(method, args.clone()));
+                        } else if (name.equals("clearParameters")) {
+                            bindings.clear();
+                        } else if (EXECUTE_METHODS.contains(name) && (args == null || args.length == 0)) {
+                            statements.add(new RecordedStatement(sql, List.copyOf(bindings.values())));
+                        }
+                        return invoke(target, method, args);
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
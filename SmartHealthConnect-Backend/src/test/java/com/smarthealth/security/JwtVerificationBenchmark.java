@@ -0,0 +1,95 @@
+package com.smarthealth.security;
+
+import com.smarthealth.entity.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Key;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of authenticating a bearer token, before and after the
+ * single-parse pipeline: the old filter path (secret decoded and a parser
+ * built for every call, token parsed twice), one parse with the prebuilt
+ * parser, and a verified-token cache hit. Run with
+ * {@code mvn test -Dtest=JwtVerificationBenchmark -Dbenchmarks=true}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "smartHealthConnectSecretKey2024ForSecureAuthentication";
+
+    private JwtUtils cached;
+    private JwtUtils uncached;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cached = jwtUtils(10_000);
+        uncached = jwtUtils(0);
+
+        User user = new User("bench", "bench@example.com", "x", "Bench", "User", User.Role.PATIENT);
+        user.setId(42L);
+        user.setTokenVersion(0);
+        token = cached.generateTokenForUser(user);
+    }
+
+    // What AuthTokenFilter did before: validateJwtToken and getUserNameFromJwtToken each decoded the key and parsed
+    @Benchmark
+    public String legacyDoubleParse() {
+        Jwts.parserBuilder().setSigningKey(legacyKey()).build().parse(token);
+        return Jwts.parserBuilder().setSigningKey(legacyKey()).build().parseClaimsJws(token).getBody().getSubject();
+    }
+
+    @Benchmark
+    public UserPrincipal singleParse() {
+        return principal(uncached);
+    }
+
+    @Benchmark
+    public UserPrincipal cachedVerification() {
+        return principal(cached);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void run() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    private UserPrincipal principal(JwtUtils jwtUtils) {
+        Claims claims = jwtUtils.verifyJwtToken(token);
+        return jwtUtils.principalFromClaims(claims);
+    }
+
+    private static Key legacyKey() {
+        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+    }
+
+    private static JwtUtils jwtUtils(int verifiedCacheSize) {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 900_000);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheSize", verifiedCacheSize);
+        jwtUtils.init();
+        return jwtUtils;
+    }
+}
@@ -0,0 +1,33 @@
+package com.smarthealth.security;
+
+import com.smarthealth.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenRevocationServiceTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void revocationsMadeByAnotherInstanceArePickedUp() {
+        String jti = UUID.randomUUID().toString();
+        // Logged out through another instance: only the table has it
+        jdbcTemplate.update("INSERT INTO revoked_tokens (jti, expires_at, revoked_at) VALUES (?, ?, ?)",
+                jti, LocalDateTime.now().plusMinutes(15), LocalDateTime.now());
+        assertThat(tokenRevocationService.isRevoked(jti)).isFalse();
+
+        tokenRevocationService.purgeExpired();
+
+        assertThat(tokenRevocationService.isRevoked(jti)).isTrue();
+    }
+}
@@ -0,0 +1,153 @@
+package com.smarthealth.service;
+
+import com.smarthealth.PostgresIntegrationTest;
+import com.smarthealth.entity.Appointment;
+import com.smarthealth.entity.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Booking throughput for cold doctors, alone and then next to one saturated
+ * hot doctor. Half the threads book the hot doctor in the second run; the
+ * other half book many cold doctors in both. Cold-doctor bookings per second
+ * must stay above a fixed share of the cold-only baseline. Run with
+ * {@code mvn test -Dtest=AppointmentBookingBenchmark -Dbenchmarks=true}
+ * (plus {@code -Dtest.db.url=...} when Docker is not available).
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class AppointmentBookingBenchmark extends PostgresIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AppointmentBookingBenchmark.class);
+
+    private static final int THREADS = 16;
+    private static final int COLD_DOCTORS = 64;
+    private static final int PATIENTS = 32;
+    private static final long WARMUP_MS = 5_000;
+    private static final long DURATION_MS = 15_000;
+    // Half-hour slots over a year of working days; the hot doctor runs out of free slots first
+    private static final int SLOTS = 365 * 16;
+    // Share of the baseline cold throughput that must survive a saturated hot doctor
+    private static final double MIN_COLD_RATIO = 0.7;
+
+    @Autowired
+    private AppointmentBookingService appointmentBookingService;
+
+    private static final class Tally {
+        final LongAdder booked = new LongAdder();
+        final LongAdder unavailable = new LongAdder();
+        final LongAdder busy = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+
+        long attempts() {
+            return booked.sum() + unavailable.sum() + busy.sum();
+        }
+
+        double bookedPerSecond() {
+            return booked.sum() / (DURATION_MS / 1000.0);
+        }
+
+        String summary() {
+            long attempts = attempts();
+            return String.format("%8.1f attempts/s %8.1f bookings/s  mean %6.2f ms  booked=%d unavailable=%d busy=%d",
+                    attempts / (DURATION_MS / 1000.0), bookedPerSecond(),
+                    attempts == 0 ? 0.0 : nanos.sum() / 1e6 / attempts,
+                    booked.sum(), unavailable.sum(), busy.sum());
+        }
+    }
+
+    @Test
+    void coldDoctorsKeepTheirThroughputNextToAHotOne() throws Exception {
+        List<User> patients = new ArrayList<>();
+        for (int i = 0; i < PATIENTS; i++) {
+            patients.add(createUser(User.Role.PATIENT));
+        }
+        LocalDateTime firstSlot = LocalDateTime.now().plusYears(1).truncatedTo(ChronoUnit.DAYS).withHour(9);
+
+        // Unmeasured, so the baseline is not the run that pays for JIT warm-up
+        run(THREADS / 2, null, coldDoctors(), patients, firstSlot, null, new Tally(), WARMUP_MS);
+
+        // Fresh cold doctors per run, so later runs do not start on fuller calendars
+        Tally baseline = new Tally();
+        run(THREADS / 2, null, coldDoctors(), patients, firstSlot, null, baseline, DURATION_MS);
+        logger.info("cold alone    {}", baseline.summary());
+
+        Tally hot = new Tally();
+        Tally cold = new Tally();
+        run(THREADS / 2, createUser(User.Role.DOCTOR), coldDoctors(), patients, firstSlot, hot, cold, DURATION_MS);
+        logger.info("hot           {}", hot.summary());
+        logger.info("cold with hot {}", cold.summary());
+
+        assertThat(hot.attempts()).isPositive();
+        assertThat(cold.bookedPerSecond())
+                .as("cold bookings/s next to a hot doctor vs %.1f alone", baseline.bookedPerSecond())
+                .isGreaterThanOrEqualTo(baseline.bookedPerSecond() * MIN_COLD_RATIO);
+    }
+
+    private List<User> coldDoctors() {
+        List<User> doctors = new ArrayList<>();
+        for (int i = 0; i < COLD_DOCTORS; i++) {
+            doctors.add(createUser(User.Role.DOCTOR));
+        }
+        return doctors;
+    }
+
+    // coldThreads book random cold doctors; with a hot doctor, as many threads again book only that one
+    private void run(int coldThreads, User hotDoctor, List<User> coldDoctors, List<User> patients,
+                     LocalDateTime firstSlot, Tally hot, Tally cold, long durationMs) throws Exception {
+        int threads = hotDoctor != null ? coldThreads * 2 : coldThreads;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMs);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                boolean isHot = t >= coldThreads;
+                workers.add(pool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        User doctor = isHot ? hotDoctor : coldDoctors.get(random.nextInt(coldDoctors.size()));
+                        User patient = patients.get(random.nextInt(patients.size()));
+                        int slot = random.nextInt(SLOTS);
+                        LocalDateTime start = firstSlot.plusDays(slot / 16).plusMinutes(30L * (slot % 16));
+                        book(isHot ? hot : cold, new Appointment(patient, doctor, start, "CONSULTATION", "benchmark"));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(durationMs * 2, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void book(Tally tally, Appointment appointment) {
+        long started = System.nanoTime();
+        try {
+            appointmentBookingService.book(appointment);
+            tally.booked.increment();
+        } catch (AppointmentBookingService.SlotUnavailableException e) {
+            tally.unavailable.increment();
+        } catch (AppointmentBookingService.BookingBusyException e) {
+            tally.busy.increment();
+        } finally {
+            tally.nanos.add(System.nanoTime() - started);
+        }
+    }
+}
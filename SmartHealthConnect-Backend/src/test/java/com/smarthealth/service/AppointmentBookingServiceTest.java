@@ -0,0 +1,139 @@
+package com.smarthealth.service;
+
+import com.smarthealth.PostgresIntegrationTest;
+import com.smarthealth.entity.Appointment;
+import com.smarthealth.entity.User;
+import com.smarthealth.repository.AppointmentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AppointmentBookingServiceTest extends PostgresIntegrationTest {
+
+    private static final int PARALLEL_BOOKINGS = 16;
+
+    @Autowired
+    private AppointmentBookingService appointmentBookingService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void parallelBookingsOfOneSlotConfirmExactlyOne() throws Exception {
+        User doctor = createUser(User.Role.DOCTOR);
+        LocalDateTime slot = LocalDateTime.now().plusDays(30).truncatedTo(ChronoUnit.HOURS);
+        List<User> patients = new ArrayList<>();
+        for (int i = 0; i < PARALLEL_BOOKINGS; i++) {
+            patients.add(createUser(User.Role.PATIENT));
+        }
+
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger unavailable = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(PARALLEL_BOOKINGS);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (User patient : patients) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        appointmentBookingService.book(new Appointment(patient, doctor, slot, "CONSULTATION", "test"));
+                        booked.incrementAndGet();
+                    } catch (AppointmentBookingService.SlotUnavailableException e) {
+                        unavailable.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(booked.get()).isEqualTo(1);
+        assertThat(unavailable.get()).isEqualTo(PARALLEL_BOOKINGS - 1);
+        assertThat(appointmentRepository.findByDoctorId(doctor.getId())).hasSize(1);
+    }
+
+    @Test
+    void exclusionConstraintRejectsOverlapThatBypassesTheLocks() {
+        User doctor = createUser(User.Role.DOCTOR);
+        LocalDateTime slot = LocalDateTime.now().plusDays(31).truncatedTo(ChronoUnit.HOURS);
+        appointmentRepository.saveAndFlush(new Appointment(createUser(User.Role.PATIENT), doctor, slot, "CONSULTATION", "first"));
+
+        Appointment overlapping = new Appointment(createUser(User.Role.PATIENT), doctor, slot.plusMinutes(15), "CONSULTATION", "second");
+        assertThatThrownBy(() -> appointmentRepository.saveAndFlush(overlapping))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .hasMessageContaining("appointments_no_overlap");
+    }
+
+    @Test
+    void otherDoctorsDoNotWaitForABusyDoctor() throws Exception {
+        User busyDoctor = createUser(User.Role.DOCTOR);
+        User otherDoctor = createUser(User.Role.DOCTOR);
+        User patient = createUser(User.Role.PATIENT);
+        LocalDateTime slot = LocalDateTime.now().plusDays(32).truncatedTo(ChronoUnit.HOURS);
+
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> holder = pool.submit(() -> appointmentBookingService.withDoctorLock(busyDoctor.getId(), () -> {
+                held.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            assertThat(held.await(10, TimeUnit.SECONDS)).isTrue();
+
+            // Sharing a lock with the busy doctor would end in BookingBusyException after the lock timeout
+            Appointment saved = appointmentBookingService.book(new Appointment(patient, otherDoctor, slot, "CONSULTATION", "test"));
+            assertThat(saved.getId()).isNotNull();
+
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void slotFreedByAnotherInstanceCanBeBookedAgain() {
+        User doctor = createUser(User.Role.DOCTOR);
+        LocalDateTime slot = LocalDateTime.now().plusDays(33).truncatedTo(ChronoUnit.HOURS);
+        Appointment first = appointmentBookingService.book(
+                new Appointment(createUser(User.Role.PATIENT), doctor, slot, "CONSULTATION", "first"));
+
+        // Cancelled elsewhere: no event reaches this instance's conflict index
+        jdbcTemplate.update("UPDATE appointments SET status = 'CANCELLED' WHERE id = ?", first.getId());
+
+        Appointment second = appointmentBookingService.book(
+                new Appointment(createUser(User.Role.PATIENT), doctor, slot, "CONSULTATION", "second"));
+        assertThat(second.getId()).isNotEqualTo(first.getId());
+    }
+}
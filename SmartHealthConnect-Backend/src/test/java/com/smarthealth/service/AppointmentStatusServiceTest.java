@@ -0,0 +1,75 @@
+package com.smarthealth.service;
+
+import com.smarthealth.PostgresIntegrationTest;
+import com.smarthealth.entity.Appointment;
+import com.smarthealth.entity.User;
+import com.smarthealth.repository.AppointmentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AppointmentStatusServiceTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private AppointmentStatusService appointmentStatusService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void transitionWaitingOnAConcurrentOneSeesItsResult() throws Exception {
+        User patient = createUser(User.Role.PATIENT);
+        User doctor = createUser(User.Role.DOCTOR);
+        LocalDateTime slot = LocalDateTime.now().plusDays(40).truncatedTo(ChronoUnit.HOURS);
+        Long id = appointmentRepository.save(new Appointment(patient, doctor, slot, "CONSULTATION", "test")).getId();
+
+        CountDownLatch confirmed = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            // Confirms the appointment and keeps the row locked until told to commit
+            Future<?> confirm = pool.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                jdbcTemplate.update("UPDATE appointments SET status = 'CONFIRMED', version = version + 1 WHERE id = ?", id);
+                confirmed.countDown();
+                try {
+                    commit.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertThat(confirmed.await(10, TimeUnit.SECONDS)).isTrue();
+
+            Future<Appointment> cancel = pool.submit(() ->
+                    appointmentStatusService.transition(id, patient.getId(), Appointment.Status.CANCELLED, null, null));
+            awaitLockWait();
+            commit.countDown();
+            confirm.get(10, TimeUnit.SECONDS);
+
+            Appointment cancelled = cancel.get(10, TimeUnit.SECONDS);
+            assertThat(cancelled.getStatus()).isEqualTo(Appointment.Status.CANCELLED);
+            assertThat(cancelled.getPreviousStatus()).isEqualTo(Appointment.Status.CONFIRMED);
+            assertThat(cancelled.getVersion()).isEqualTo(2L);
+        } finally {
+            commit.countDown();
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.smarthealth.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smarthealth.PostgresIntegrationTest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the outbox relay against a webhook stub served from this JVM. The stub
+ * checks the signature of every request and records the sequences it accepted.
+ */
+class OutboxRelayWebhookTest extends PostgresIntegrationTest {
+
+    private static final String SECRET = "outbox-test-secret";
+    private static final String AGGREGATE = "outbox_test";
+
+    private static HttpServer server;
+    // Every sequence the stub answered 2xx for, in arrival order
+    private static final List<Long> accepted = new CopyOnWriteArrayList<>();
+    // Sequence of every accepted event of the test aggregate, by aggregate id
+    private static final Map<Long, Long> testEvents = new ConcurrentHashMap<>();
+    private static final AtomicInteger failNext = new AtomicInteger();
+    private static final AtomicInteger badSignatures = new AtomicInteger();
+    private static final AtomicInteger requests = new AtomicInteger();
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void webhook(DynamicPropertyRegistry registry) throws IOException {
+        if (server == null) {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/hook", OutboxRelayWebhookTest::handle);
+            server.start();
+        }
+        registry.add("app.outbox.webhooks", () -> "http://127.0.0.1:" + server.getAddress().getPort() + "/hook");
+        registry.add("app.outbox.webhookSecret", () -> SECRET);
+        registry.add("app.outbox.pollMs", () -> 100);
+        registry.add("app.outbox.maxBackoffMs", () -> 500);
+        // Everything delivered is eligible for pruning straight away
+        registry.add("app.outbox.retentionDays", () -> 0);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void keepsDeliveringAfterPruneEmptiesTheOutbox() throws Exception {
+        List<Long> first = append(3);
+        awaitDelivered(first);
+        long lastBeforePrune = testEvents.get(first.get(2));
+
+        outboxRelay.prune();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM outbox_events WHERE sequence <= ?",
+                Long.class, lastBeforePrune)).isZero();
+
+        List<Long> second = append(2);
+        awaitDelivered(second);
+        assertThat(second).allSatisfy(id -> assertThat(testEvents.get(id)).isGreaterThan(lastBeforePrune));
+        assertThat(badSignatures.get()).isZero();
+    }
+
+    @Test
+    void failedDeliveriesAreRetriedInOrder() throws Exception {
+        failNext.set(2);
+        int requestsBefore = requests.get();
+
+        List<Long> ids = append(3);
+        awaitDelivered(ids);
+
+        assertThat(requests.get() - requestsBefore).isGreaterThanOrEqualTo(3);
+        assertThat(ids.stream().map(testEvents::get).toList()).isSorted();
+        // Rejected batches are never accepted, so accepted sequences only move forward
+        assertThat(accepted).isSorted();
+        assertThat(badSignatures.get()).isZero();
+    }
+
+    // Appends one event per new aggregate id in its own transaction, like the services do
+    private List<Long> append(int count) {
+        long base = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE / 2);
+        List<Long> ids = LongStream.range(base, base + count).boxed().toList();
+        for (Long id : ids) {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    outboxService.append(AGGREGATE, id, AGGREGATE + ".created", Map.of("n", id)));
+        }
+        return ids;
+    }
+
+    private static void awaitDelivered(List<Long> ids) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (System.nanoTime() < deadline) {
+            if (testEvents.keySet().containsAll(ids)) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("events " + ids + " never reached the webhook; accepted " + testEvents.keySet());
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        int status = 200;
+        if (!("sha256=" + sign(body)).equals(exchange.getRequestHeaders().getFirst("X-Outbox-Signature"))) {
+            badSignatures.incrementAndGet();
+            status = 401;
+        } else if (failNext.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            status = 500;
+        } else {
+            for (JsonNode event : new ObjectMapper().readTree(body).path("events")) {
+                long sequence = event.path("sequence").asLong();
+                accepted.add(sequence);
+                if (AGGREGATE.equals(event.path("aggregateType").asText())) {
+                    testEvents.put(event.path("aggregateId").asLong(), sequence);
+                }
+            }
+        }
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+    private static String sign(byte[] body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(body));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
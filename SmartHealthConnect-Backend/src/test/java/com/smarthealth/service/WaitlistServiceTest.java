@@ -0,0 +1,146 @@
+package com.smarthealth.service;
+
+import com.smarthealth.PostgresIntegrationTest;
+import com.smarthealth.entity.Appointment;
+import com.smarthealth.entity.User;
+import com.smarthealth.entity.WaitlistEntry;
+import com.smarthealth.repository.WaitlistEntryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WaitlistServiceTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private WaitlistEntryRepository waitlistEntryRepository;
+
+    @Autowired
+    private AppointmentBookingService appointmentBookingService;
+
+    @Autowired
+    private AppointmentStatusService appointmentStatusService;
+
+    @Autowired
+    private SlotAvailabilityIndex slotAvailabilityIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void claimOfAnOfferReleasedWhileWaitingForTheLockBooksNothing() throws Exception {
+        User patient = createUser(User.Role.PATIENT);
+        User doctor = createUser(User.Role.DOCTOR);
+        LocalDateTime slot = LocalDateTime.now().plusDays(50).truncatedTo(ChronoUnit.HOURS);
+        WaitlistEntry entry = waitlistService.join(patient.getId(), doctor.getId(), null, slot.minusDays(1),
+                slot.plusDays(1), 30, null, "CONSULTATION", "test");
+        LocalDateTime now = LocalDateTime.now();
+        assertThat(waitlistEntryRepository.offer(entry.getId(), doctor.getId(), slot, 30, now.plusMinutes(15), now))
+                .isEqualTo(1);
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            // Holds the doctor's advisory lock, then releases the offer before letting go
+            Future<?> holder = pool.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                jdbcTemplate.query("SELECT pg_advisory_xact_lock(?)", rs -> { }, doctor.getId());
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                jdbcTemplate.update("UPDATE waitlist_entries SET status = 'WAITING', offer_doctor_id = NULL, " +
+                        "offer_start = NULL, offer_duration_minutes = NULL, offer_expires_at = NULL WHERE id = ?",
+                        entry.getId());
+            }));
+            assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+            Future<?> claim = pool.submit(() -> waitlistService.claim(entry.getId(), patient.getId()));
+            awaitLockWait();
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+
+            assertThatThrownBy(() -> claim.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause()
+                    .isInstanceOfSatisfying(WaitlistService.WaitlistException.class,
+                            e -> assertThat(e.getRejection()).isEqualTo(WaitlistService.Rejection.NO_OFFER));
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM appointments WHERE doctor_id = ?",
+                Integer.class, doctor.getId())).isZero();
+        assertThat(waitlistEntryRepository.findById(entry.getId()).orElseThrow().getStatus())
+                .isEqualTo(WaitlistEntry.Status.WAITING);
+    }
+
+    @Test
+    void heldSlotsAreNotListedAsAvailable() {
+        User patient = createUser(User.Role.PATIENT);
+        User doctor = createUser(User.Role.DOCTOR);
+        LocalDateTime slot = LocalDateTime.now().plusDays(51).toLocalDate().atTime(LocalTime.of(10, 0));
+        WaitlistEntry entry = waitlistService.join(patient.getId(), doctor.getId(), null, slot.minusDays(1),
+                slot.plusDays(1), 30, null, "CONSULTATION", "test");
+        LocalDateTime now = LocalDateTime.now();
+        waitlistEntryRepository.offer(entry.getId(), doctor.getId(), slot, 30, now.plusMinutes(15), now);
+
+        List<LocalDateTime> starts = slotAvailabilityIndex
+                .findFreeSlots(List.of(doctor.getId()), slot.minusHours(1), slot.plusHours(1), 30, 100)
+                .stream()
+                .map(SlotAvailabilityIndex.FreeSlot::start)
+                .toList();
+        assertThat(starts).contains(slot.minusMinutes(30), slot.plusMinutes(30))
+                .doesNotContain(slot.minusMinutes(15), slot, slot.plusMinutes(15));
+    }
+
+    @Test
+    void freedSlotIsOfferedToAWaiterThisInstanceNeverSaw() throws Exception {
+        User doctor = createUser(User.Role.DOCTOR);
+        User booker = createUser(User.Role.PATIENT);
+        User waiter = createUser(User.Role.PATIENT);
+        LocalDateTime slot = LocalDateTime.now().plusDays(52).truncatedTo(ChronoUnit.HOURS);
+        Appointment booked = appointmentBookingService.book(new Appointment(booker, doctor, slot, "CONSULTATION", "test"));
+
+        // Joined through another instance: only the table knows about it
+        Long entryId = jdbcTemplate.queryForObject("INSERT INTO waitlist_entries (patient_id, doctor_id, earliest, " +
+                "latest, duration_minutes, urgency, status, created_at) " +
+                "VALUES (?, ?, ?, ?, 30, 'NORMAL', 'WAITING', ?) RETURNING id", Long.class,
+                waiter.getId(), doctor.getId(), slot.minusDays(1), slot.plusDays(1), LocalDateTime.now());
+
+        appointmentStatusService.transition(booked.getId(), booker.getId(), Appointment.Status.CANCELLED, null, null);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        WaitlistEntry entry = waitlistEntryRepository.findById(entryId).orElseThrow();
+        while (entry.getStatus() != WaitlistEntry.Status.OFFERED && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+            entry = waitlistEntryRepository.findById(entryId).orElseThrow();
+        }
+        assertThat(entry.getStatus()).isEqualTo(WaitlistEntry.Status.OFFERED);
+        assertThat(entry.getOfferStart()).isEqualTo(slot);
+    }
+}
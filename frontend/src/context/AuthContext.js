@@ -39,9 +39,10 @@ export const AuthProvider = ({ children }) => {
   const login = async (credentials) => {
     try {
       const response = await authService.login(credentials);
-      const { token, user: userData } = response;
+      const { token, refreshToken, user: userData } = response;
       
       localStorage.setItem('token', token);
+      localStorage.setItem('refreshToken', refreshToken);
       setUser(userData);
       setIsAuthenticated(true);
       
@@ -69,7 +70,7 @@ export const AuthProvider = ({ children }) => {
   };
 
   const logout = () => {
-    localStorage.removeItem('token');
+    authService.logout();
     setUser(null);
     setIsAuthenticated(false);
   };
@@ -1,6 +1,20 @@
 import React, { useState, useEffect } from 'react';
 import { Link, useNavigate } from 'react-router-dom';
 import { useAuth } from '../../context/AuthContext';
+import doctorBoardService from '../../services/doctorBoardService';
+
+// Board entries as the Today's Appointments list shows them
+const toTodayAppointment = (entry) => ({
+  id: entry.id,
+  appointmentDate: entry.appointmentDate,
+  patientName: entry.patient?.name,
+  time: new Date(entry.appointmentDate).toLocaleTimeString([], { hour: '2-digit', minute: '2-digit' }),
+  type: entry.type,
+  status: (entry.status || '').toLowerCase().split('_')
+    .map((word) => word.charAt(0).toUpperCase() + word.slice(1)).join(' ')
+});
+
+const byTime = (a, b) => a.appointmentDate.localeCompare(b.appointmentDate);
 
 const DoctorDashboard = () => {
   const { user, logout } = useAuth();
@@ -23,26 +37,26 @@ const DoctorDashboard = () => {
     fetchDashboardData();
   }, []);
 
+  // Today's appointments come from the live board instead of polling
+  useEffect(() => {
+    const setToday = (update) => setDashboardData((data) => ({
+      ...data,
+      todayAppointments: update(data.todayAppointments)
+    }));
+    return doctorBoardService.open({
+      onSnapshot: (snapshot) => setToday(() => snapshot.appointments.map(toTodayAppointment).sort(byTime)),
+      onUpsert: (entry) => setToday((list) => [
+        ...list.filter((appointment) => appointment.id !== entry.id),
+        toTodayAppointment(entry)
+      ].sort(byTime)),
+      onRemove: ({ id }) => setToday((list) => list.filter((appointment) => appointment.id !== id))
+    });
+  }, []);
+
   const fetchDashboardData = async () => {
     try {
       // Mock data - replace with actual API calls
       const mockData = {
-        todayAppointments: [
-          {
-            id: 1,
-            patientName: 'John Smith',
-            time: '09:00 AM',
-            type: 'Consultation',
-            status: 'Scheduled'
-          },
-          {
-            id: 2,
-            patientName: 'Sarah Johnson',
-            time: '10:30 AM',
-            type: 'Follow-up',
-            status: 'In Progress'
-          }
-        ],
         upcomingAppointments: [
           {
             id: 3,
@@ -82,7 +96,7 @@ const DoctorDashboard = () => {
         ]
       };
       
-      setDashboardData(mockData);
+      setDashboardData((data) => ({ ...data, ...mockData }));
     } catch (error) {
       console.error('Error fetching dashboard data:', error);
     } finally {
@@ -24,12 +24,27 @@ api.interceptors.request.use(
   }
 );
 
-// Handle token expiration
+// Handle token expiration: renew once with the refresh token, then give up
 api.interceptors.response.use(
   (response) => response,
-  (error) => {
+  async (error) => {
+    const original = error.config;
+    const refreshToken = localStorage.getItem('refreshToken');
+    if (error.response?.status === 401 && refreshToken && original && !original._retry && !original.url?.endsWith('/refresh')) {
+      original._retry = true;
+      try {
+        const { data } = await api.post('/refresh', { refreshToken });
+        localStorage.setItem('token', data.token);
+        localStorage.setItem('refreshToken', data.refreshToken);
+        original.headers.Authorization = `Bearer ${data.token}`;
+        return api(original);
+      } catch (refreshError) {
+        // fall through to the logout below
+      }
+    }
     if (error.response?.status === 401) {
       localStorage.removeItem('token');
+      localStorage.removeItem('refreshToken');
       window.location.href = '/login';
     }
     return Promise.reject(error);
@@ -57,7 +72,14 @@ const authService = {
 
   // Logout user
   logout: () => {
+    const token = localStorage.getItem('token');
+    const refreshToken = localStorage.getItem('refreshToken');
+    if (token) {
+      // Revoke the tokens server-side; local logout proceeds regardless
+      api.post('/logout', { refreshToken }, { headers: { Authorization: `Bearer ${token}` } }).catch(() => {});
+    }
     localStorage.removeItem('token');
+    localStorage.removeItem('refreshToken');
   },
 
   // Check if user is authenticated
@@ -73,7 +95,9 @@ const authService = {
 
   // Refresh token
   refreshToken: async () => {
-    const response = await api.post('/refresh');
+    const response = await api.post('/refresh', { refreshToken: localStorage.getItem('refreshToken') });
+    localStorage.setItem('token', response.data.token);
+    localStorage.setItem('refreshToken', response.data.refreshToken);
     return response.data;
   },
 
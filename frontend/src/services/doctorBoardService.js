@@ -0,0 +1,67 @@
+import axios from 'axios';
+
+const API_URL = '/api/appointments/doctor/today';
+const RETRY_MS = 5000;
+
+// EventSource cannot send the Authorization header, so each connection is
+// opened with a short-lived stream token fetched with the access token.
+const fetchStreamToken = async () => {
+  const token = localStorage.getItem('token');
+  const response = await axios.post(`${API_URL}/stream-token`, null, {
+    headers: { Authorization: `Bearer ${token}` },
+  });
+  return response.data.token;
+};
+
+const doctorBoardService = {
+  // Live day-board: handlers get the snapshot, then upserts and removals.
+  // Returns a function that closes the stream.
+  open: ({ onSnapshot, onUpsert, onRemove }) => {
+    let source = null;
+    let retry = null;
+    let closed = false;
+
+    const connect = async () => {
+      try {
+        const streamToken = await fetchStreamToken();
+        if (closed) {
+          return;
+        }
+        source = new EventSource(`${API_URL}/stream?token=${encodeURIComponent(streamToken)}`);
+        source.addEventListener('snapshot', (event) => onSnapshot(JSON.parse(event.data)));
+        source.addEventListener('upsert', (event) => onUpsert(JSON.parse(event.data)));
+        source.addEventListener('remove', (event) => onRemove(JSON.parse(event.data)));
+        source.onerror = () => {
+          // The browser retries with the same URL by itself; once the token has expired it gives up
+          if (source.readyState === EventSource.CLOSED) {
+            scheduleReconnect();
+          }
+        };
+      } catch (error) {
+        console.error('Error opening doctor board stream:', error);
+        scheduleReconnect();
+      }
+    };
+
+    const scheduleReconnect = () => {
+      if (!closed && retry === null) {
+        retry = setTimeout(() => {
+          retry = null;
+          connect();
+        }, RETRY_MS);
+      }
+    };
+
+    connect();
+
+    return () => {
+      closed = true;
+      clearTimeout(retry);
+      if (source) {
+        source.close();
+      }
+    };
+  },
+};
+
+export default doctorBoardService;